@@ -0,0 +1,40 @@
+package cn.xxt.gatewaynetty.benchmark;
+
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: benchmarks.jar 的入口，参数与 JMH 命令行一致，运行时总是带上 GC 分析器，输出分配速率（gc.alloc.rate.norm）
+ * @author: Havad
+ * @create: 2026-10-18 18:25
+ **/
+
+public final class BenchmarkRunner {
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions cli = new CommandLineOptions(args);
+        if (cli.shouldHelp() || cli.shouldList() || cli.shouldListWithParams() || cli.shouldListProfilers()
+                || cli.shouldListResultFormats()) {
+            Main.main(args);
+            return;
+        }
+        boolean gcProfiled = cli.getProfilers().stream()
+                .anyMatch(profiler -> GCProfiler.class.getName().equals(profiler.getKlass())
+                        || "gc".equals(profiler.getKlass()));
+        OptionsBuilder builder = new OptionsBuilder();
+        builder.parent(cli);
+        if (!gcProfiled) {
+            builder.addProfiler(GCProfiler.class);
+        }
+        Options options = builder.build();
+        new Runner(options).run();
+    }
+}
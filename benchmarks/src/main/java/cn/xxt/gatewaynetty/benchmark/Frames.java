@@ -0,0 +1,120 @@
+package cn.xxt.gatewaynetty.benchmark;
+
+import cn.xxt.gatewaynetty.netty.handler.kar_video.JsonProtocolDecoder;
+import cn.xxt.gatewaynetty.netty.handler.kar_video.MessageReassembler;
+import cn.xxt.gatewaynetty.netty.model.VideoMessage;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: 读取 frames 目录下抓取的设备报文，供各基准测试使用
+ * <p>
+ * 普通话机报文为 PDU 文本（.txt），视频话机报文为完整帧的十六进制（.hex，每行一个分包）。
+ * @author: Havad
+ * @create: 2026-10-18 17:50
+ **/
+
+@SuppressWarnings("checkstyle:MagicNumber")
+public final class Frames {
+    /**
+     * 报文资源目录
+     */
+    private static final String DIRECTORY = "/frames/";
+    /**
+     * 视频话机协议头长度
+     */
+    private static final int VIDEO_HEADER_LENGTH = 20;
+
+    private Frames() {
+    }
+
+    /**
+     * 读取文本报文，去掉首尾空白
+     *
+     * @param name 文件名
+     * @return 报文内容
+     */
+    public static String text(String name) {
+        return new String(read(name), StandardCharsets.UTF_8).trim();
+    }
+
+    /**
+     * 读取视频话机帧，所有分包按顺序拼接
+     *
+     * @param name 帧名，不含扩展名
+     * @return 帧的原始字节
+     */
+    public static byte[] videoFrame(String name) {
+        String hex = new String(read(name + ".hex"), StandardCharsets.US_ASCII).replaceAll("\\s+", "");
+        return ByteBufUtil.decodeHexDump(hex);
+    }
+
+    /**
+     * 读取视频话机帧的消息体，去掉每个分包的协议头后拼接
+     *
+     * @param name 帧名，不含扩展名
+     * @return 消息体 JSON 字节
+     */
+    public static byte[] videoBody(String name) {
+        byte[] frame = videoFrame(name);
+        ByteArrayOutputStream out = new ByteArrayOutputStream(frame.length);
+        int offset = 0;
+        while (offset + VIDEO_HEADER_LENGTH <= frame.length) {
+            int dataLength = ((frame[offset + 18] & 0xFF) << 8) | (frame[offset + 19] & 0xFF);
+            out.write(frame, offset + VIDEO_HEADER_LENGTH, dataLength);
+            offset += VIDEO_HEADER_LENGTH + dataLength;
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 用网关的解码器把视频话机帧解码为消息
+     *
+     * @param name 帧名，不含扩展名
+     * @return 解码后的消息
+     */
+    public static VideoMessage videoMessage(String name) {
+        EmbeddedChannel channel = new EmbeddedChannel(new JsonProtocolDecoder(new MessageReassembler()));
+        try {
+            channel.writeInbound(Unpooled.wrappedBuffer(videoFrame(name)));
+            Object message = channel.readInbound();
+            if (!(message instanceof VideoMessage)) {
+                throw new IllegalArgumentException("帧未解码为消息: " + name);
+            }
+            return (VideoMessage) message;
+        } finally {
+            channel.finishAndReleaseAll();
+        }
+    }
+
+    /**
+     * 读取资源文件
+     *
+     * @param name 文件名
+     * @return 文件内容
+     */
+    private static byte[] read(String name) {
+        try (InputStream in = Frames.class.getResourceAsStream(DIRECTORY + name)) {
+            if (in == null) {
+                throw new IllegalArgumentException("找不到报文: " + name);
+            }
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
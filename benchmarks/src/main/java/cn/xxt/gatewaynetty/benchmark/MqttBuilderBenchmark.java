@@ -0,0 +1,94 @@
+package cn.xxt.gatewaynetty.benchmark;
+
+import cn.xxt.gatewaynetty.mqtt.builder.MqttMessageBuilder;
+import cn.xxt.gatewaynetty.mqtt.builder.MqttMessageNormalBuilder;
+import cn.xxt.gatewaynetty.mqtt.builder.MqttMessageVideoBuilder;
+import cn.xxt.gatewaynetty.mqtt.builder.MqttMessageVideoFaceBuilder;
+import cn.xxt.gatewaynetty.netty.model.DeviceData;
+import cn.xxt.gatewaynetty.netty.model.Pdu;
+import cn.xxt.gatewaynetty.netty.model.VideoMessage;
+import cn.xxt.gatewaynetty.netty.protocol.ProtocolIdentifier;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: 上行 MQTT 消息构建：普通话机、视频话机和人脸机心跳三种构建器
+ * @author: Havad
+ * @create: 2026-10-18 18:10
+ **/
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MqttBuilderBenchmark {
+    /**
+     * 普通话机构建器
+     */
+    private final MqttMessageBuilder normalBuilder = new MqttMessageNormalBuilder();
+    /**
+     * 视频话机构建器
+     */
+    private final MqttMessageBuilder videoBuilder = new MqttMessageVideoBuilder();
+    /**
+     * 人脸机心跳构建器
+     */
+    private final MqttMessageBuilder faceBuilder = new MqttMessageVideoFaceBuilder();
+
+    /**
+     * 普通话机状态上报
+     */
+    private DeviceData normalData;
+    /**
+     * 视频话机状态上报
+     */
+    private DeviceData videoData;
+    /**
+     * 人脸机心跳
+     */
+    private DeviceData faceData;
+
+    @Setup
+    public void setup() throws IOException {
+        Pdu pdu = Pdu.of(Frames.text("normal-status.txt"));
+        normalData = new DeviceData(pdu.getDeviceNo(), pdu, ProtocolIdentifier.PROTOCOL_NORMAL);
+
+        VideoMessage message = Frames.videoMessage("video-devstatus");
+        videoData = new DeviceData(message.getPayloadText("Identity"), message, ProtocolIdentifier.PROTOCOL_VIDEO);
+
+        String heartbeat = Frames.text("face-heartbeat.json");
+        String deviceKey = new ObjectMapper().readTree(heartbeat).get("deviceKey").asText();
+        faceData = new DeviceData(deviceKey, heartbeat, ProtocolIdentifier.PROTOCOL_VIDEO_FACE);
+    }
+
+    @Benchmark
+    public MqttMessage normal() throws Exception {
+        return normalBuilder.buildMessage(normalData);
+    }
+
+    @Benchmark
+    public MqttMessage video() throws Exception {
+        return videoBuilder.buildMessage(videoData);
+    }
+
+    @Benchmark
+    public MqttMessage face() throws Exception {
+        return faceBuilder.buildMessage(faceData);
+    }
+}
@@ -0,0 +1,69 @@
+package cn.xxt.gatewaynetty.benchmark;
+
+import cn.xxt.gatewaynetty.mqtt.parser.MqttMessageParser;
+import cn.xxt.gatewaynetty.mqtt.parser.MqttNormalMessageParser;
+import cn.xxt.gatewaynetty.mqtt.parser.MqttVideoMessageParser;
+import cn.xxt.gatewaynetty.netty.model.DeviceData;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: 下行 MQTT 消息解析：ThingsBoard 下发的 RPC 转换为普通话机和视频话机的设备数据
+ * @author: Havad
+ * @create: 2026-10-18 18:15
+ **/
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MqttParserBenchmark {
+    /**
+     * 普通话机解析器
+     */
+    private final MqttMessageParser normalParser = new MqttNormalMessageParser();
+    /**
+     * 视频话机解析器
+     */
+    private final MqttMessageParser videoParser = new MqttVideoMessageParser();
+
+    /**
+     * 普通话机 RPC
+     */
+    private MqttMessage normalMessage;
+    /**
+     * 视频话机 RPC
+     */
+    private MqttMessage videoMessage;
+
+    @Setup
+    public void setup() {
+        normalMessage = new MqttMessage(Frames.text("mqtt-rpc-normal.json").getBytes(StandardCharsets.UTF_8));
+        videoMessage = new MqttMessage(Frames.text("mqtt-rpc-video.json").getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public DeviceData normal() throws Exception {
+        return normalParser.parseMessage(normalMessage);
+    }
+
+    @Benchmark
+    public DeviceData video() throws Exception {
+        return videoParser.parseMessage(videoMessage);
+    }
+}
@@ -0,0 +1,77 @@
+package cn.xxt.gatewaynetty.benchmark;
+
+import cn.xxt.gatewaynetty.netty.model.Pdu;
+import cn.xxt.gatewaynetty.util.PDUUtil;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: 普通话机 PDU 的校验与字段解析：字符串工具类 PDUUtil 与字节视图 Pdu 对比
+ * @author: Havad
+ * @create: 2026-10-18 17:55
+ **/
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PduBenchmark {
+    /**
+     * 抓取的报文名
+     */
+    @Param({"normal-heartbeat", "normal-status", "normal-record"})
+    private String frame;
+
+    /**
+     * 报文字符串
+     */
+    private String text;
+    /**
+     * 报文字节，与解码器切出的帧一致
+     */
+    private ByteBuf buffer;
+
+    @Setup
+    public void setup() {
+        text = Frames.text(frame + ".txt");
+        buffer = Unpooled.wrappedBuffer(text.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @Benchmark
+    public boolean utilValidate() {
+        return PDUUtil.validateCheck(text);
+    }
+
+    @Benchmark
+    public void utilParse(Blackhole bh) {
+        bh.consume(PDUUtil.validateCheck(text));
+        bh.consume(PDUUtil.getDeviceNo(text));
+        bh.consume(PDUUtil.getFuncNo(text));
+    }
+
+    @Benchmark
+    public void pduParse(Blackhole bh) {
+        Pdu pdu = Pdu.wrap(buffer.duplicate());
+        bh.consume(pdu.isValid());
+        bh.consume(pdu.getDeviceNo());
+        bh.consume(pdu.getFuncNo());
+    }
+}
@@ -0,0 +1,130 @@
+package cn.xxt.gatewaynetty.benchmark;
+
+import cn.xxt.gatewaynetty.kafka.DeviceDataDeserializer;
+import cn.xxt.gatewaynetty.kafka.DeviceDataSerializer;
+import cn.xxt.gatewaynetty.netty.model.DeviceData;
+import cn.xxt.gatewaynetty.netty.model.Pdu;
+import cn.xxt.gatewaynetty.netty.model.VideoMessage;
+import cn.xxt.gatewaynetty.netty.protocol.ProtocolIdentifier;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: 设备数据的序列化：DeviceData.serializeMsg，以及 Kafka 的二进制格式与 JSON 格式（kafka.value-format=json）
+ * <p>
+ * JSON 格式用 Spring Kafka 的 JsonSerializer 写出，用消费端的 DeviceDataDeserializer 兼容读取，与线上的两端一致。
+ * @author: Havad
+ * @create: 2026-10-18 18:20
+ **/
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SerdeBenchmark {
+    /**
+     * Kafka 主题，序列化器不使用
+     */
+    private static final String TOPIC = "benchmark";
+
+    /**
+     * 消息来源：普通话机 PDU、视频话机消息、人脸机心跳字符串
+     */
+    @Param({"normal", "video", "face"})
+    private String kind;
+
+    /**
+     * 二进制序列化器
+     */
+    private final DeviceDataSerializer binarySerializer = new DeviceDataSerializer();
+    /**
+     * JSON 序列化器
+     */
+    private final JsonSerializer<DeviceData> jsonSerializer = new JsonSerializer<>();
+    /**
+     * 反序列化器，兼容二进制和 JSON
+     */
+    private final DeviceDataDeserializer deserializer = new DeviceDataDeserializer();
+
+    /**
+     * 待序列化的设备数据
+     */
+    private DeviceData data;
+    /**
+     * 二进制格式的消息
+     */
+    private byte[] binary;
+    /**
+     * JSON 格式的消息
+     */
+    private byte[] json;
+
+    @Setup
+    public void setup() throws IOException {
+        switch (kind) {
+            case "normal":
+                Pdu pdu = Pdu.of(Frames.text("normal-status.txt"));
+                data = new DeviceData(pdu.getDeviceNo(), pdu, ProtocolIdentifier.PROTOCOL_NORMAL);
+                break;
+            case "video":
+                VideoMessage message = Frames.videoMessage("video-call");
+                data = new DeviceData(message.getPayloadText("Identity"), message, ProtocolIdentifier.PROTOCOL_VIDEO);
+                break;
+            case "face":
+                data = new DeviceData("FK20261018000123", Frames.text("face-heartbeat.json"),
+                        ProtocolIdentifier.PROTOCOL_VIDEO_FACE);
+                break;
+            default:
+                throw new IllegalArgumentException("未知的消息来源: " + kind);
+        }
+        binary = binarySerializer.serialize(TOPIC, data);
+        json = jsonSerializer.serialize(TOPIC, data);
+    }
+
+    @TearDown
+    public void tearDown() {
+        jsonSerializer.close();
+    }
+
+    @Benchmark
+    public byte[] serializeMsg() throws Exception {
+        return data.serializeMsg();
+    }
+
+    @Benchmark
+    public byte[] binarySerialize() {
+        return binarySerializer.serialize(TOPIC, data);
+    }
+
+    @Benchmark
+    public DeviceData binaryDeserialize() {
+        return deserializer.deserialize(TOPIC, binary);
+    }
+
+    @Benchmark
+    public byte[] jsonSerialize() {
+        return jsonSerializer.serialize(TOPIC, data);
+    }
+
+    @Benchmark
+    public DeviceData jsonDeserialize() {
+        return deserializer.deserialize(TOPIC, json);
+    }
+}
@@ -0,0 +1,74 @@
+package cn.xxt.gatewaynetty.benchmark;
+
+import cn.xxt.gatewaynetty.netty.handler.kar_video.JsonProtocolDecoder;
+import cn.xxt.gatewaynetty.netty.handler.kar_video.MessageReassembler;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.ReferenceCountUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: 视频话机帧解码：单包消息、心跳和多包组装，每次调用写入一帧完整报文并取出解码结果
+ * @author: Havad
+ * @create: 2026-10-18 18:00
+ **/
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class VideoDecodeBenchmark {
+    /**
+     * 抓取的帧名，video-readlog-multi 为 4 个分包的多包消息
+     */
+    @Param({"video-link", "video-heartbeat", "video-devstatus", "video-call", "video-readlog-multi"})
+    private String frame;
+
+    /**
+     * 帧的原始字节
+     */
+    private byte[] bytes;
+    /**
+     * 只装有解码器的通道
+     */
+    private EmbeddedChannel channel;
+
+    @Setup
+    public void setup() {
+        bytes = Frames.videoFrame(frame);
+        channel = new EmbeddedChannel(new JsonProtocolDecoder(new MessageReassembler()));
+    }
+
+    @TearDown
+    public void tearDown() {
+        channel.finishAndReleaseAll();
+    }
+
+    @Benchmark
+    public void decode(Blackhole bh) {
+        ByteBuf in = channel.alloc().buffer(bytes.length).writeBytes(bytes);
+        channel.writeInbound(in);
+        Object message;
+        while ((message = channel.readInbound()) != null) {
+            bh.consume(message);
+            ReferenceCountUtil.release(message);
+        }
+    }
+}
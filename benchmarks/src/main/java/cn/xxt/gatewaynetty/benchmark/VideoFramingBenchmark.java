@@ -0,0 +1,78 @@
+package cn.xxt.gatewaynetty.benchmark;
+
+import cn.xxt.gatewaynetty.util.VideoParserUtil;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.ReferenceCountUtil;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: 视频话机下发分包：VideoParserUtil.sendData 把消息体按协议头分包写入通道
+ * @author: Havad
+ * @create: 2026-10-18 18:05
+ **/
+
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class VideoFramingBenchmark {
+    /**
+     * 抓取的帧名，取其消息体作为下发内容；video-readlog-multi 下发时拆为 4 包
+     */
+    @Param({"video-devstatus", "video-call", "video-readlog-multi"})
+    private String frame;
+
+    /**
+     * 命令名，决定协议头模板
+     */
+    private String method;
+    /**
+     * 下发的消息体
+     */
+    private byte[] body;
+    /**
+     * 没有处理器的通道，写出的数据留在出站队列
+     */
+    private EmbeddedChannel channel;
+
+    @Setup
+    public void setup() throws IOException {
+        body = Frames.videoBody(frame);
+        method = new ObjectMapper().readTree(body).get("command").asText();
+        channel = new EmbeddedChannel();
+    }
+
+    @TearDown
+    public void tearDown() {
+        channel.finishAndReleaseAll();
+    }
+
+    @Benchmark
+    public void sendData(Blackhole bh) {
+        VideoParserUtil.sendData(channel, method, body);
+        Object packet;
+        while ((packet = channel.readOutbound()) != null) {
+            bh.consume(packet);
+            ReferenceCountUtil.release(packet);
+        }
+    }
+}
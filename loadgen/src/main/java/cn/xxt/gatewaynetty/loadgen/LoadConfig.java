@@ -0,0 +1,292 @@
+package cn.xxt.gatewaynetty.loadgen;
+
+import lombok.Getter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: 压测配置，依次读取内置的 loadgen.properties、--config 指定的文件和命令行的 key=value
+ * <p>
+ * 各类消息的频率按“每台设备每隔多少秒一次”配置，0 表示不发送；总速率约为设备数除以间隔。
+ * @author: Havad
+ * @create: 2026-10-18 18:40
+ **/
+
+@Getter
+@SuppressWarnings("checkstyle:MagicNumber")
+public final class LoadConfig {
+    /**
+     * 内置默认配置
+     */
+    private static final String DEFAULT_RESOURCE = "/loadgen.properties";
+
+    /**
+     * 网关地址
+     */
+    private final String host;
+    /**
+     * 网关设备端口，普通话机和视频话机共用
+     */
+    private final int port;
+    /**
+     * 网关人脸心跳端口
+     */
+    private final int httpPort;
+    /**
+     * 本地源地址，连接数超过单个地址的临时端口数时配置多个（如 127.0.0.2,127.0.0.3）
+     */
+    private final List<String> localAddresses;
+    /**
+     * I/O 线程数，0 表示 CPU 核数 * 2
+     */
+    private final int ioThreads;
+
+    /**
+     * 普通话机数量
+     */
+    private final int normalDevices;
+    /**
+     * 视频话机数量
+     */
+    private final int videoDevices;
+    /**
+     * 同时发送人脸心跳的视频话机数量，取前若干台
+     */
+    private final int faceDevices;
+    /**
+     * 设备编号起始序号，多台压测机同时压测时错开
+     */
+    private final long deviceOffset;
+
+    /**
+     * 建连速率（每秒连接数）
+     */
+    private final int connectRate;
+    /**
+     * 压测时长（秒），0 表示一直运行
+     */
+    private final int durationSeconds;
+    /**
+     * 统计输出间隔（秒）
+     */
+    private final int reportIntervalSeconds;
+    /**
+     * 连接断开后的重连等待（毫秒）
+     */
+    private final long reconnectDelayMillis;
+    /**
+     * 重连等待的随机抖动上限（毫秒）
+     */
+    private final long reconnectJitterMillis;
+
+    /**
+     * 重连风暴的间隔（秒），0 表示不制造重连风暴
+     */
+    private final int stormIntervalSeconds;
+    /**
+     * 每次重连风暴断开的在线设备比例
+     */
+    private final double stormFraction;
+    /**
+     * 重连风暴中设备重连的随机抖动上限（毫秒），越小越集中
+     */
+    private final long stormReconnectJitterMillis;
+
+    /**
+     * 普通话机心跳间隔（秒）
+     */
+    private final double normalHeartbeatSeconds;
+    /**
+     * 普通话机状态上报间隔（秒）
+     */
+    private final double normalStatusSeconds;
+    /**
+     * 普通话机通话记录上报间隔（秒）
+     */
+    private final double normalCallSeconds;
+    /**
+     * 普通话机短信上传间隔（秒）
+     */
+    private final double normalSmsSeconds;
+    /**
+     * 每条短信在功能号 98 帧之前的分片帧数
+     */
+    private final int normalSmsFragments;
+    /**
+     * 普通话机心跳功能号
+     */
+    private final int normalHeartbeatFunc;
+    /**
+     * 普通话机状态上报功能号
+     */
+    private final int normalStatusFunc;
+    /**
+     * 普通话机通话记录功能号
+     */
+    private final int normalCallFunc;
+
+    /**
+     * 视频话机心跳间隔（秒）
+     */
+    private final double videoHeartbeatSeconds;
+    /**
+     * 视频话机 devstatus 上报间隔（秒）
+     */
+    private final double videoStatusSeconds;
+    /**
+     * 视频话机 call 上报间隔（秒）
+     */
+    private final double videoCallSeconds;
+    /**
+     * 人脸心跳间隔（秒）
+     */
+    private final double faceHeartbeatSeconds;
+
+    /**
+     * 是否在本进程启动认证接口桩
+     */
+    private final boolean authStubEnabled;
+    /**
+     * 认证接口桩端口
+     */
+    private final int authStubPort;
+    /**
+     * 认证接口桩的响应延迟（毫秒）
+     */
+    private final long authStubDelayMillis;
+    /**
+     * 认证接口桩拒绝的设备比例
+     */
+    private final double authStubRejectRatio;
+    /**
+     * 是否在本进程启动 MQTT Broker 桩
+     */
+    private final boolean mqttStubEnabled;
+    /**
+     * MQTT Broker 桩端口
+     */
+    private final int mqttStubPort;
+
+    private LoadConfig(Properties p) {
+        host = p.getProperty("gateway.host", "127.0.0.1");
+        port = intValue(p, "gateway.port", 5566);
+        httpPort = intValue(p, "gateway.http-port", 12000);
+        localAddresses = listValue(p, "local-addresses");
+        ioThreads = intValue(p, "io-threads", 0);
+
+        normalDevices = intValue(p, "normal.devices", 1000);
+        videoDevices = intValue(p, "video.devices", 1000);
+        faceDevices = Math.min(intValue(p, "face.devices", 0), videoDevices);
+        deviceOffset = Long.parseLong(p.getProperty("device-offset", "0").trim());
+
+        connectRate = Math.max(1, intValue(p, "connect-rate", 500));
+        durationSeconds = intValue(p, "duration-seconds", 300);
+        reportIntervalSeconds = Math.max(1, intValue(p, "report-interval-seconds", 10));
+        reconnectDelayMillis = longValue(p, "reconnect.delay-millis", 5000);
+        reconnectJitterMillis = longValue(p, "reconnect.jitter-millis", 5000);
+
+        stormIntervalSeconds = intValue(p, "storm.interval-seconds", 0);
+        stormFraction = doubleValue(p, "storm.fraction", 0.2);
+        stormReconnectJitterMillis = longValue(p, "storm.reconnect-jitter-millis", 1000);
+
+        normalHeartbeatSeconds = doubleValue(p, "normal.heartbeat-seconds", 60);
+        normalStatusSeconds = doubleValue(p, "normal.status-seconds", 300);
+        normalCallSeconds = doubleValue(p, "normal.call-seconds", 600);
+        normalSmsSeconds = doubleValue(p, "normal.sms-seconds", 1800);
+        normalSmsFragments = intValue(p, "normal.sms-fragments", 2);
+        normalHeartbeatFunc = intValue(p, "normal.heartbeat-func", 1);
+        normalStatusFunc = intValue(p, "normal.status-func", 12);
+        normalCallFunc = intValue(p, "normal.call-func", 13);
+
+        videoHeartbeatSeconds = doubleValue(p, "video.heartbeat-seconds", 30);
+        videoStatusSeconds = doubleValue(p, "video.status-seconds", 300);
+        videoCallSeconds = doubleValue(p, "video.call-seconds", 600);
+        faceHeartbeatSeconds = doubleValue(p, "face.heartbeat-seconds", 10);
+
+        authStubEnabled = Boolean.parseBoolean(p.getProperty("stub.auth.enabled", "true").trim());
+        authStubPort = intValue(p, "stub.auth.port", 18080);
+        authStubDelayMillis = longValue(p, "stub.auth.delay-millis", 0);
+        authStubRejectRatio = doubleValue(p, "stub.auth.reject-ratio", 0);
+        mqttStubEnabled = Boolean.parseBoolean(p.getProperty("stub.mqtt.enabled", "true").trim());
+        mqttStubPort = intValue(p, "stub.mqtt.port", 11883);
+    }
+
+    /**
+     * 按默认配置、配置文件、命令行参数的顺序加载配置，后者覆盖前者
+     *
+     * @param args 命令行参数：--config=文件路径 或 key=value
+     * @return 配置
+     * @throws IOException 读取配置文件失败时抛出
+     */
+    public static LoadConfig load(String[] args) throws IOException {
+        Properties p = new Properties();
+        try (InputStream in = LoadConfig.class.getResourceAsStream(DEFAULT_RESOURCE)) {
+            if (in != null) {
+                p.load(in);
+            }
+        }
+        for (String arg : args) {
+            if (arg.startsWith("--config=")) {
+                try (Reader reader = Files.newBufferedReader(Paths.get(arg.substring("--config=".length())),
+                        StandardCharsets.UTF_8)) {
+                    p.load(reader);
+                }
+            }
+        }
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (!arg.startsWith("--config=") && eq > 0) {
+                p.setProperty(arg.substring(0, eq).replaceFirst("^--", ""), arg.substring(eq + 1));
+            }
+        }
+        return new LoadConfig(p);
+    }
+
+    private static int intValue(Properties p, String key, int defaultValue) {
+        String value = p.getProperty(key);
+        return value == null || value.trim().isEmpty() ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    private static long longValue(Properties p, String key, long defaultValue) {
+        String value = p.getProperty(key);
+        return value == null || value.trim().isEmpty() ? defaultValue : Long.parseLong(value.trim());
+    }
+
+    private static double doubleValue(Properties p, String key, double defaultValue) {
+        String value = p.getProperty(key);
+        return value == null || value.trim().isEmpty() ? defaultValue : Double.parseDouble(value.trim());
+    }
+
+    private static List<String> listValue(Properties p, String key) {
+        String value = p.getProperty(key);
+        if (value == null || value.trim().isEmpty()) {
+            return Collections.emptyList();
+        }
+        List<String> values = new ArrayList<>();
+        for (String item : value.split(",")) {
+            if (!item.trim().isEmpty()) {
+                values.add(item.trim());
+            }
+        }
+        return values;
+    }
+
+    /**
+     * 认证接口桩的地址，网关的 auth.url 配置为该地址
+     *
+     * @return 认证接口地址
+     */
+    public String authStubUrl() {
+        return "http://127.0.0.1:" + authStubPort + "/device-auth";
+    }
+}
@@ -0,0 +1,109 @@
+package cn.xxt.gatewaynetty.loadgen;
+
+import cn.xxt.gatewaynetty.loadgen.device.DeviceFleet;
+import cn.xxt.gatewaynetty.loadgen.stub.AuthStub;
+import cn.xxt.gatewaynetty.loadgen.stub.MqttBrokerStub;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.concurrent.DefaultThreadFactory;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: 设备群压测入口：启动认证接口桩和 MQTT Broker 桩，按配置模拟普通话机、视频话机和人脸机，定期输出耗时分位数
+ * @author: Havad
+ * @create: 2026-10-18 19:30
+ **/
+
+@SuppressWarnings("checkstyle:Regexp")
+public final class LoadGenerator {
+    /**
+     * 收到退出信号后等待输出最终统计的时间（秒）
+     */
+    private static final int SHUTDOWN_WAIT_SECONDS = 10;
+
+    private LoadGenerator() {
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadConfig config = LoadConfig.load(args);
+        LoadStats stats = new LoadStats();
+
+        boolean epoll = Epoll.isAvailable();
+        DefaultThreadFactory threadFactory = new DefaultThreadFactory("loadgen-io");
+        EventLoopGroup group = epoll
+                ? new EpollEventLoopGroup(config.getIoThreads(), threadFactory)
+                : new NioEventLoopGroup(config.getIoThreads(), threadFactory);
+        Class<? extends SocketChannel> channelClass = epoll ? EpollSocketChannel.class : NioSocketChannel.class;
+        Class<? extends ServerChannel> serverChannelClass =
+                epoll ? EpollServerSocketChannel.class : NioServerSocketChannel.class;
+
+        AuthStub authStub = null;
+        if (config.isAuthStubEnabled()) {
+            authStub = new AuthStub(group, serverChannelClass, config.getAuthStubDelayMillis(),
+                    config.getAuthStubRejectRatio(), stats);
+            authStub.start(config.getAuthStubPort());
+            System.out.println("认证接口桩已启动，网关配置 auth.url=" + config.authStubUrl());
+        }
+        MqttBrokerStub mqttStub = null;
+        if (config.isMqttStubEnabled()) {
+            mqttStub = new MqttBrokerStub(group, serverChannelClass, stats);
+            mqttStub.start(config.getMqttStubPort());
+            System.out.println("MQTT Broker 桩已启动，网关配置 mqtt.url=tcp://127.0.0.1:" + config.getMqttStubPort());
+        }
+
+        DeviceFleet fleet = new DeviceFleet(config, stats, group, channelClass);
+        System.out.printf("压测 %s:%d（人脸心跳 %d），普通话机 %d 台，视频话机 %d 台（其中人脸 %d 台），建连速率 %d/s，传输 %s%n",
+                config.getHost(), config.getPort(), config.getHttpPort(), config.getNormalDevices(),
+                config.getVideoDevices(), config.getFaceDevices(), config.getConnectRate(), epoll ? "epoll" : "nio");
+
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(
+                new DefaultThreadFactory("loadgen-report"));
+        reporter.scheduleAtFixedRate(() -> System.out.print(stats.report(fleet.gauges())),
+                config.getReportIntervalSeconds(), config.getReportIntervalSeconds(), TimeUnit.SECONDS);
+
+        // Ctrl+C 时也停止设备并输出最终统计
+        CountDownLatch finished = new CountDownLatch(1);
+        CountDownLatch stopped = new CountDownLatch(1);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            finished.countDown();
+            try {
+                stopped.await(SHUTDOWN_WAIT_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, "loadgen-shutdown"));
+        fleet.start();
+        if (config.getDurationSeconds() > 0) {
+            finished.await(config.getDurationSeconds(), TimeUnit.SECONDS);
+        } else {
+            finished.await();
+        }
+
+        fleet.stop();
+        reporter.shutdownNow();
+        System.out.print(stats.report(fleet.gauges()));
+        if (authStub != null) {
+            authStub.stop();
+        }
+        if (mqttStub != null) {
+            // 等待网关把断线消息发完
+            TimeUnit.SECONDS.sleep(1);
+            mqttStub.stop();
+        }
+        group.shutdownGracefully().syncUninterruptibly();
+        stopped.countDown();
+    }
+}
@@ -0,0 +1,122 @@
+package cn.xxt.gatewaynetty.loadgen;
+
+import cn.xxt.gatewaynetty.metrics.LatencyRecorder;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: 压测统计：按名称记录耗时分布和计数，定期输出速率和分位数
+ * <p>
+ * 耗时分布使用网关自身的 {@link LatencyRecorder}，分位数为自压测开始的累计值。
+ * @author: Havad
+ * @create: 2026-10-18 18:45
+ **/
+
+@SuppressWarnings("checkstyle:MagicNumber")
+public final class LoadStats {
+    /**
+     * 输出的分位数
+     */
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    /**
+     * 按名称排序的耗时分布
+     */
+    private final Map<String, LatencyRecorder> latencies = new ConcurrentSkipListMap<>();
+    /**
+     * 按名称排序的计数
+     */
+    private final Map<String, LongAdder> counters = new ConcurrentSkipListMap<>();
+    /**
+     * 上次输出时的计数，用于计算区间速率
+     */
+    private final Map<String, Long> lastCounts = new ConcurrentHashMap<>();
+    /**
+     * 压测开始时间（纳秒）
+     */
+    private final long startNanos = System.nanoTime();
+    /**
+     * 上次输出时间（纳秒）
+     */
+    private long lastReportNanos = startNanos;
+
+    /**
+     * 记录一次耗时
+     *
+     * @param name   指标名
+     * @param micros 耗时（微秒）
+     */
+    public void record(String name, long micros) {
+        latencies.computeIfAbsent(name, k -> new LatencyRecorder()).record(micros);
+    }
+
+    /**
+     * 记录从指定时刻到现在的耗时
+     *
+     * @param name       指标名
+     * @param startNanos 开始时刻（System.nanoTime）
+     */
+    public void recordSince(String name, long startNanos) {
+        latencies.computeIfAbsent(name, k -> new LatencyRecorder()).recordSince(startNanos);
+    }
+
+    /**
+     * 计数加一
+     *
+     * @param name 计数名
+     */
+    public void increment(String name) {
+        add(name, 1);
+    }
+
+    /**
+     * 计数增加
+     *
+     * @param name  计数名
+     * @param delta 增量
+     */
+    public void add(String name, long delta) {
+        counters.computeIfAbsent(name, k -> new LongAdder()).add(delta);
+    }
+
+    /**
+     * 输出当前统计
+     *
+     * @param gauges 额外输出的瞬时值，如在线连接数
+     * @return 统计文本
+     */
+    public synchronized String report(Map<String, Long> gauges) {
+        long now = System.nanoTime();
+        double elapsed = (now - startNanos) / 1e9;
+        double interval = Math.max(1e-3, (now - lastReportNanos) / 1e9);
+        lastReportNanos = now;
+
+        StringBuilder sb = new StringBuilder(1024);
+        sb.append(String.format("%n==== 运行 %.0f 秒 ====%n", elapsed));
+        gauges.forEach((name, value) -> sb.append(String.format("%-28s %,d%n", name, value)));
+
+        sb.append(String.format("%-28s %14s %10s%n", "计数", "累计", "每秒"));
+        counters.forEach((name, adder) -> {
+            long total = adder.sum();
+            Long last = lastCounts.put(name, total);
+            double rate = (total - (last == null ? 0 : last)) / interval;
+            sb.append(String.format("%-28s %,14d %,10.1f%n", name, total, rate));
+        });
+
+        sb.append(String.format("%-28s %10s %9s %9s %9s %9s %9s%n",
+                "耗时(ms)", "次数", "p50", "p90", "p99", "p99.9", "max"));
+        latencies.forEach((name, recorder) -> {
+            LatencyRecorder.Snapshot snapshot = recorder.snapshot();
+            sb.append(String.format("%-28s %,10d", name, snapshot.getCount()));
+            for (double q : QUANTILES) {
+                sb.append(String.format(" %9.2f", snapshot.valueAt(q) / 1000.0));
+            }
+            sb.append(String.format(" %9.2f%n", snapshot.getMax() / 1000.0));
+        });
+        return sb.toString();
+    }
+}
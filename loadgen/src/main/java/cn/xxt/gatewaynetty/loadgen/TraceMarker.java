@@ -0,0 +1,86 @@
+package cn.xxt.gatewaynetty.loadgen;
+
+import io.netty.buffer.ByteBuf;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: 端到端耗时标记：设备在上报内容中写入 lgts=类型字母+发送时刻（微秒），MQTT Broker 桩在收到的消息中找出标记计算耗时
+ * <p>
+ * 发送时刻取 System.nanoTime，桩与设备在同一进程内才能比较。网关合并多条消息时一条 MQTT 消息中会有多个标记。
+ * @author: Havad
+ * @create: 2026-10-18 18:50
+ **/
+
+@SuppressWarnings("checkstyle:MagicNumber")
+public final class TraceMarker {
+    /**
+     * 标记前缀
+     */
+    private static final byte[] PREFIX = {'l', 'g', 't', 's', '='};
+
+    private TraceMarker() {
+    }
+
+    /**
+     * 生成当前时刻的标记
+     *
+     * @param kind 消息类型字母，如 n 普通话机、v 视频话机、f 人脸心跳
+     * @return 标记文本
+     */
+    public static String now(char kind) {
+        return "lgts=" + kind + TimeUnit.NANOSECONDS.toMicros(System.nanoTime());
+    }
+
+    /**
+     * 找出内容中的全部标记，对每个标记回调其到现在的耗时（微秒）
+     *
+     * @param content  消息内容，不移动读指针
+     * @param listener 耗时回调
+     */
+    public static void scan(ByteBuf content, Listener listener) {
+        long nowMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime());
+        int end = content.writerIndex();
+        int i = content.readerIndex();
+        while (i < end && (i = content.indexOf(i, end, PREFIX[0])) >= 0) {
+            int matched = 1;
+            while (matched < PREFIX.length && i + matched < end && content.getByte(i + matched) == PREFIX[matched]) {
+                matched++;
+            }
+            i += matched;
+            if (matched < PREFIX.length || i >= end) {
+                continue;
+            }
+            char kind = (char) content.getByte(i++);
+            long value = 0;
+            int digits = 0;
+            while (i < end) {
+                int digit = content.getByte(i) - '0';
+                if (digit < 0 || digit > 9) {
+                    break;
+                }
+                value = value * 10 + digit;
+                digits++;
+                i++;
+            }
+            if (digits > 0) {
+                listener.onMarker(kind, nowMicros - value);
+            }
+        }
+    }
+
+    /**
+     * 标记回调
+     */
+    @FunctionalInterface
+    public interface Listener {
+        /**
+         * 找到一个标记
+         *
+         * @param kind   消息类型字母
+         * @param micros 从发送到现在的耗时（微秒）
+         */
+        void onMarker(char kind, long micros);
+    }
+}
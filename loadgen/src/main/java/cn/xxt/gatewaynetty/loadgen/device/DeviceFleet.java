@@ -0,0 +1,261 @@
+package cn.xxt.gatewaynetty.loadgen.device;
+
+import cn.xxt.gatewaynetty.loadgen.LoadConfig;
+import cn.xxt.gatewaynetty.loadgen.LoadStats;
+import cn.xxt.gatewaynetty.netty.handler.kar_video.MessageReassembler;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import lombok.Getter;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: 模拟设备群：按速率建连，维护在线数，定期制造重连风暴
+ * @author: Havad
+ * @create: 2026-10-18 19:10
+ **/
+
+@SuppressWarnings("checkstyle:MagicNumber")
+public class DeviceFleet {
+    /**
+     * 建连节拍（毫秒），每拍按速率连接若干台设备
+     */
+    private static final long RAMP_TICK_MILLIS = 10;
+    /**
+     * 建连超时（毫秒）
+     */
+    private static final int CONNECT_TIMEOUT_MILLIS = 10000;
+
+    /**
+     * 压测配置
+     */
+    @Getter
+    private final LoadConfig config;
+    /**
+     * 压测统计
+     */
+    @Getter
+    private final LoadStats stats;
+    /**
+     * 设备连接共用的事件循环组
+     */
+    private final EventLoopGroup group;
+    /**
+     * 设备连接的基础配置
+     */
+    private final Bootstrap bootstrap;
+    /**
+     * 视频话机多包消息组装器，所有设备共用
+     */
+    @Getter
+    private final MessageReassembler reassembler = new MessageReassembler();
+    /**
+     * 人脸心跳客户端
+     */
+    @Getter
+    private final FaceHeartbeatClient faceClient;
+    /**
+     * 全部设备
+     */
+    private final List<SimulatedDevice> devices = new ArrayList<>();
+    /**
+     * 按类型统计的在线设备数
+     */
+    private final Map<String, AtomicInteger> online = new LinkedHashMap<>();
+    /**
+     * 轮流使用的本地源地址
+     */
+    private final List<InetSocketAddress> localAddresses = new ArrayList<>();
+    /**
+     * 下一个本地源地址的序号
+     */
+    private final AtomicInteger nextLocalAddress = new AtomicInteger();
+    /**
+     * 建连和风暴的定时任务
+     */
+    private final List<ScheduledFuture<?>> timers = new ArrayList<>();
+    /**
+     * 是否运行中，停止后不再重连
+     */
+    private volatile boolean running;
+
+    public DeviceFleet(LoadConfig config, LoadStats stats, EventLoopGroup group,
+                       Class<? extends SocketChannel> channelClass) {
+        this.config = config;
+        this.stats = stats;
+        this.group = group;
+        this.bootstrap = new Bootstrap()
+                .group(group)
+                .channel(channelClass)
+                .option(ChannelOption.TCP_NODELAY, true)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, CONNECT_TIMEOUT_MILLIS)
+                .remoteAddress(config.getHost(), config.getPort());
+        for (String address : config.getLocalAddresses()) {
+            localAddresses.add(new InetSocketAddress(address, 0));
+        }
+        this.faceClient = new FaceHeartbeatClient(this, bootstrap.clone()
+                .remoteAddress(config.getHost(), config.getHttpPort()));
+
+        for (int i = 0; i < config.getNormalDevices(); i++) {
+            devices.add(new NormalPhone(this, String.format("86%016d", config.getDeviceOffset() + i)));
+        }
+        for (int i = 0; i < config.getVideoDevices(); i++) {
+            devices.add(new VideoPhone(this, String.format("LGV%010d", config.getDeviceOffset() + i),
+                    i < config.getFaceDevices()));
+        }
+        online.put(NormalPhone.KIND, new AtomicInteger());
+        online.put(VideoPhone.KIND, new AtomicInteger());
+        // 普通话机和视频话机交替建连，两类设备同时上量
+        Collections.shuffle(devices);
+    }
+
+    /**
+     * 开始按速率建连，启用时定期制造重连风暴
+     */
+    public void start() {
+        running = true;
+        double perTick = config.getConnectRate() * RAMP_TICK_MILLIS / 1000.0;
+        int[] next = {0};
+        double[] budget = {0};
+        ScheduledFuture<?>[] ramp = new ScheduledFuture<?>[1];
+        ramp[0] = group.next().scheduleAtFixedRate(() -> {
+            budget[0] += perTick;
+            while (budget[0] >= 1 && next[0] < devices.size()) {
+                devices.get(next[0]++).connect();
+                budget[0]--;
+            }
+            if (next[0] >= devices.size()) {
+                ramp[0].cancel(false);
+            }
+        }, 0, RAMP_TICK_MILLIS, TimeUnit.MILLISECONDS);
+        timers.add(ramp[0]);
+
+        int storm = config.getStormIntervalSeconds();
+        if (storm > 0) {
+            timers.add(group.next().scheduleAtFixedRate(this::storm, storm, storm, TimeUnit.SECONDS));
+        }
+    }
+
+    /**
+     * 停止压测，断开全部连接且不再重连
+     */
+    public void stop() {
+        running = false;
+        for (ScheduledFuture<?> timer : timers) {
+            timer.cancel(false);
+        }
+        for (SimulatedDevice device : devices) {
+            device.disconnect(false);
+        }
+    }
+
+    /**
+     * 重连风暴：同时断开一部分在线设备，这些设备在很短的抖动时间内集中重连
+     */
+    private void storm() {
+        int count = 0;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (SimulatedDevice device : devices) {
+            if (device.isConnected() && random.nextDouble() < config.getStormFraction()) {
+                device.disconnect(true);
+                count++;
+            }
+        }
+        stats.add("storm.disconnected", count);
+    }
+
+    /**
+     * 建立一个设备连接，配置了多个本地源地址时轮流绑定
+     *
+     * @param handler 连接的初始化处理器
+     * @return 连接结果
+     */
+    ChannelFuture connect(ChannelHandler handler) {
+        Bootstrap b = bootstrap.clone().handler(handler);
+        if (localAddresses.isEmpty()) {
+            return b.connect();
+        }
+        int index = Math.floorMod(nextLocalAddress.getAndIncrement(), localAddresses.size());
+        return b.connect(b.config().remoteAddress(), localAddresses.get(index));
+    }
+
+    /**
+     * 人脸心跳连接的本地源地址
+     *
+     * @return 本地源地址，未配置时为 null
+     */
+    InetSocketAddress nextLocalAddress() {
+        if (localAddresses.isEmpty()) {
+            return null;
+        }
+        return localAddresses.get(Math.floorMod(nextLocalAddress.getAndIncrement(), localAddresses.size()));
+    }
+
+    /**
+     * 延迟执行任务
+     *
+     * @param task        任务
+     * @param delayMillis 延迟（毫秒）
+     */
+    void schedule(Runnable task, long delayMillis) {
+        group.next().schedule(task, delayMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 断开后的重连等待时间
+     *
+     * @param storm 是否为重连风暴中的重连
+     * @return 等待时间（毫秒）
+     */
+    long reconnectDelayMillis(boolean storm) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        if (storm) {
+            return random.nextLong(config.getStormReconnectJitterMillis() + 1);
+        }
+        return config.getReconnectDelayMillis() + random.nextLong(config.getReconnectJitterMillis() + 1);
+    }
+
+    void onConnected(SimulatedDevice device) {
+        online.get(device.kind()).incrementAndGet();
+    }
+
+    void onDisconnected(SimulatedDevice device) {
+        online.get(device.kind()).decrementAndGet();
+    }
+
+    /**
+     * 是否运行中
+     *
+     * @return 运行中返回 true
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * 瞬时状态，随统计一起输出
+     *
+     * @return 名称到数值
+     */
+    public Map<String, Long> gauges() {
+        Map<String, Long> gauges = new LinkedHashMap<>();
+        online.forEach((kind, count) -> gauges.put("online." + kind, (long) count.get()));
+        gauges.put("video.reassembly-bytes", reassembler.getPendingBytes());
+        gauges.put("face.inflight", (long) faceClient.getInflight());
+        return gauges;
+    }
+}
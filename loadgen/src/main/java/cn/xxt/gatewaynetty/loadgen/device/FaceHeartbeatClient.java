@@ -0,0 +1,180 @@
+package cn.xxt.gatewaynetty.loadgen.device;
+
+import cn.xxt.gatewaynetty.loadgen.LoadStats;
+import cn.xxt.gatewaynetty.loadgen.TraceMarker;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpClientCodec;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.timeout.ReadTimeoutHandler;
+import io.netty.util.CharsetUtil;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: 人脸心跳客户端：每次心跳新建一个 HTTP 连接发送 POST，网关响应后关闭连接，与人脸机的行为一致
+ * <p>
+ * 耗时从发起连接算起到收到完整响应为止，包含网关处理下发任务的 Redis 往返；响应中带人员列表时计为收到任务。
+ * @author: Havad
+ * @create: 2026-10-18 19:25
+ **/
+
+@SuppressWarnings("checkstyle:MagicNumber")
+public class FaceHeartbeatClient {
+    /**
+     * 人脸心跳接口地址
+     */
+    private static final String HEARTBEAT_URL = "/karface/cp/yf/heart.admin";
+    /**
+     * 响应的最大长度，下发任务时包含 Base64 图片
+     */
+    private static final int MAX_RESPONSE_LENGTH = 16 * 1024 * 1024;
+    /**
+     * 读取响应超时（秒）
+     */
+    private static final int READ_TIMEOUT_SECONDS = 30;
+    /**
+     * 响应中表示下发了任务的字段名
+     */
+    private static final ByteBuf TASK_FIELD = Unpooled.unreleasableBuffer(
+            Unpooled.copiedBuffer("personList", CharsetUtil.US_ASCII));
+
+    /**
+     * 所属的设备群
+     */
+    private final DeviceFleet fleet;
+    /**
+     * 压测统计
+     */
+    private final LoadStats stats;
+    /**
+     * 指向网关 HTTP 端口的连接配置
+     */
+    private final Bootstrap bootstrap;
+    /**
+     * 进行中的心跳数
+     */
+    private final AtomicInteger inflight = new AtomicInteger();
+    /**
+     * Host 请求头
+     */
+    private final String host;
+
+    FaceHeartbeatClient(DeviceFleet fleet, Bootstrap bootstrap) {
+        this.fleet = fleet;
+        this.stats = fleet.getStats();
+        this.bootstrap = bootstrap;
+        this.host = fleet.getConfig().getHost() + ":" + fleet.getConfig().getHttpPort();
+    }
+
+    /**
+     * 发送一次人脸心跳
+     *
+     * @param deviceKey 设备标识，与该设备 TCP 连接的标识相同
+     */
+    public void send(String deviceKey) {
+        long start = System.nanoTime();
+        inflight.incrementAndGet();
+        Bootstrap b = bootstrap.clone().handler(new ChannelInitializer<SocketChannel>() {
+            @Override
+            protected void initChannel(SocketChannel ch) {
+                ch.pipeline().addLast(new ReadTimeoutHandler(READ_TIMEOUT_SECONDS));
+                ch.pipeline().addLast(new HttpClientCodec());
+                ch.pipeline().addLast(new HttpObjectAggregator(MAX_RESPONSE_LENGTH));
+                ch.pipeline().addLast(new ResponseHandler(start));
+            }
+        });
+        InetSocketAddress local = fleet.nextLocalAddress();
+        ChannelFuture future = local == null ? b.connect() : b.connect(b.config().remoteAddress(), local);
+        future.addListener((ChannelFuture f) -> {
+            if (!f.isSuccess()) {
+                inflight.decrementAndGet();
+                stats.increment("face.failed");
+                return;
+            }
+            Channel ch = f.channel();
+            String body = "{\"deviceKey\":\"" + deviceKey + "\",\"time\":\"2026-10-18 12:00:00\",\"ip\":\"10.0.0.1\","
+                    + "\"personCount\":0,\"faceCount\":0,\"version\":\"1.8.2\",\"trace\":\"" + TraceMarker.now('f') + "\"}";
+            FullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.POST, HEARTBEAT_URL,
+                    ByteBufUtil.writeUtf8(ch.alloc(), body));
+            request.headers().set(HttpHeaderNames.HOST, host);
+            request.headers().set(HttpHeaderNames.CONTENT_TYPE, HttpHeaderValues.APPLICATION_JSON);
+            HttpUtil.setContentLength(request, request.content().readableBytes());
+            ch.writeAndFlush(request);
+            stats.increment("face.sent");
+        });
+    }
+
+    /**
+     * 进行中的心跳数
+     *
+     * @return 心跳数
+     */
+    public int getInflight() {
+        return inflight.get();
+    }
+
+    /**
+     * 接收一次心跳的响应
+     */
+    private final class ResponseHandler extends SimpleChannelInboundHandler<FullHttpResponse> {
+        /**
+         * 发起时刻
+         */
+        private final long start;
+        /**
+         * 是否已收到响应
+         */
+        private boolean done;
+
+        ResponseHandler(long start) {
+            this.start = start;
+        }
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, FullHttpResponse response) {
+            done = true;
+            inflight.decrementAndGet();
+            stats.recordSince("face.heartbeat", start);
+            if (response.status().code() != 200) {
+                stats.increment("face.http-" + response.status().code());
+            } else if (ByteBufUtil.indexOf(TASK_FIELD, response.content()) >= 0) {
+                stats.increment("face.task-received");
+            }
+            ctx.close();
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+            if (!done) {
+                done = true;
+                inflight.decrementAndGet();
+                stats.increment("face.failed");
+            }
+            super.channelInactive(ctx);
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            ctx.close();
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package cn.xxt.gatewaynetty.loadgen.device;
+
+import cn.xxt.gatewaynetty.loadgen.LoadConfig;
+import cn.xxt.gatewaynetty.loadgen.TraceMarker;
+import cn.xxt.gatewaynetty.mqtt.parser.MqttNormalMessageParser;
+import cn.xxt.gatewaynetty.netty.handler.kar_normal.PduFrameDecoder;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelPipeline;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: 模拟卡尔普通话机：*#F# 协议，首帧心跳用于认证，之后定时上报心跳、状态、通话记录和多帧短信
+ * <p>
+ * 短信按话机的行为先发送校验不通过的分片帧，再发送功能号 98 的帧，由网关拼接。
+ * @author: Havad
+ * @create: 2026-10-18 19:15
+ **/
+
+@SuppressWarnings("checkstyle:MagicNumber")
+public class NormalPhone extends SimulatedDevice {
+    /**
+     * 设备类型名
+     */
+    static final String KIND = "normal";
+    /**
+     * 短信功能号
+     */
+    private static final int FUNC_SMS = 98;
+    /**
+     * 短信分片帧的 check 字段，帧长度不会使其校验通过
+     */
+    private static final String FRAGMENT_CHECK = "FFFF";
+    /**
+     * 短信分片内容（UCS-2 十六进制）
+     */
+    private static final String SMS_FRAGMENT = "4F60597DFF0C4ECA5929653E5B66540E8BF756DE5BB65403996DFF0C8C228C22FF01";
+
+    /**
+     * 压测配置
+     */
+    private final LoadConfig config;
+    /**
+     * 帧序号，0~9999 循环
+     */
+    private int seqNo;
+
+    NormalPhone(DeviceFleet fleet, String deviceId) {
+        super(fleet, deviceId);
+        this.config = fleet.getConfig();
+    }
+
+    @Override
+    public String kind() {
+        return KIND;
+    }
+
+    @Override
+    protected void initPipeline(ChannelPipeline pipeline) {
+        pipeline.addLast(new PduFrameDecoder());
+        pipeline.addLast(new ChannelInboundHandlerAdapter() {
+            @Override
+            public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                // 网关下发的 RPC 指令
+                stats.increment("recv.normal");
+            }
+
+            @Override
+            public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+                stats.increment("error.normal");
+                ctx.close();
+            }
+        });
+    }
+
+    @Override
+    protected void onConnected(Channel ch) {
+        // 网关用首帧认证
+        sendHeartbeat(ch);
+        every(ch, config.getNormalHeartbeatSeconds(), () -> sendHeartbeat(ch));
+        every(ch, config.getNormalStatusSeconds(), () -> sendStatus(ch));
+        every(ch, config.getNormalCallSeconds(), () -> sendCallRecord(ch));
+        every(ch, config.getNormalSmsSeconds(), () -> sendSms(ch));
+    }
+
+    private void sendHeartbeat(Channel ch) {
+        send(ch, "normal.heartbeat", pdu(config.getNormalHeartbeatFunc(), deviceId));
+    }
+
+    private void sendStatus(Channel ch) {
+        send(ch, "normal.status", pdu(config.getNormalStatusFunc(),
+                deviceId + ",20261018,120000,1,0,85,3,460011234567890," + TraceMarker.now('n')));
+    }
+
+    private void sendCallRecord(Channel ch) {
+        send(ch, "normal.call", pdu(config.getNormalCallFunc(),
+                deviceId + ",20261018,120000,13800138000,0,65,1,1," + TraceMarker.now('n')));
+    }
+
+    /**
+     * 上传短信：若干分片帧加一帧功能号 98，一次刷新
+     *
+     * @param ch 连接
+     */
+    private void sendSms(Channel ch) {
+        if (!writable(ch)) {
+            return;
+        }
+        for (int i = 0; i < config.getNormalSmsFragments(); i++) {
+            String body = "*#F#" + String.format("%04d", 15 + SMS_FRAGMENT.length() + 4) + "1"
+                    + String.format("%02d%04d", FUNC_SMS, nextSeqNo()) + SMS_FRAGMENT + FRAGMENT_CHECK;
+            ch.write(ByteBufUtil.writeAscii(ch.alloc(), body));
+        }
+        ch.writeAndFlush(ByteBufUtil.writeAscii(ch.alloc(),
+                pdu(FUNC_SMS, deviceId + ",13800138000," + TraceMarker.now('n'))));
+        stats.increment("normal.sms");
+    }
+
+    private void send(Channel ch, String counter, String pdu) {
+        if (writable(ch)) {
+            ch.writeAndFlush(ByteBufUtil.writeAscii(ch.alloc(), pdu));
+            stats.increment(counter);
+        }
+    }
+
+    /**
+     * 按 *#F# 格式组帧：pre + length + comm_type + func_no + seq_no + body + check
+     *
+     * @param funcNo 功能号
+     * @param body   消息体，以 18 位设备编号开头
+     * @return 完整的 PDU
+     */
+    private String pdu(int funcNo, String body) {
+        int length = 4 + 4 + 1 + 2 + 4 + body.length() + 4;
+        String withoutCheck = "*#F#" + String.format("%04d", length) + "1"
+                + String.format("%02d%04d", funcNo, nextSeqNo()) + body;
+        // check 为不含 check 的长度（十六进制），与网关下发时的组帧方式一致
+        return MqttNormalMessageParser.appendHexLength(withoutCheck);
+    }
+
+    private int nextSeqNo() {
+        seqNo = (seqNo + 1) % 10000;
+        return seqNo;
+    }
+}
@@ -0,0 +1,201 @@
+package cn.xxt.gatewaynetty.loadgen.device;
+
+import cn.xxt.gatewaynetty.loadgen.LoadStats;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.socket.SocketChannel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: 模拟设备的公共部分：建连、按间隔定时上报、断线后重连
+ * <p>
+ * 定时任务都在设备连接所在的 EventLoop 上执行，连接断开时一并取消。
+ * @author: Havad
+ * @create: 2026-10-18 19:05
+ **/
+
+public abstract class SimulatedDevice {
+    /**
+     * 所属的设备群
+     */
+    protected final DeviceFleet fleet;
+    /**
+     * 压测统计
+     */
+    protected final LoadStats stats;
+    /**
+     * 设备编号
+     */
+    protected final String deviceId;
+    /**
+     * 当前连接，未连接时为 null
+     */
+    private volatile Channel channel;
+    /**
+     * 当前连接上的定时任务
+     */
+    private final List<ScheduledFuture<?>> tasks = new ArrayList<>();
+    /**
+     * 本次断开是否由重连风暴触发
+     */
+    private volatile boolean stormed;
+
+    protected SimulatedDevice(DeviceFleet fleet, String deviceId) {
+        this.fleet = fleet;
+        this.stats = fleet.getStats();
+        this.deviceId = deviceId;
+    }
+
+    /**
+     * 发起连接，失败或断开后按配置自动重连
+     */
+    public void connect() {
+        if (!fleet.isRunning()) {
+            return;
+        }
+        long start = System.nanoTime();
+        ChannelFuture future = fleet.connect(new ChannelInitializer<SocketChannel>() {
+            @Override
+            protected void initChannel(SocketChannel ch) {
+                initPipeline(ch.pipeline());
+            }
+        });
+        future.addListener((ChannelFuture f) -> {
+            if (!f.isSuccess()) {
+                stats.increment("connect.failed");
+                scheduleReconnect(false);
+                return;
+            }
+            stats.recordSince("connect.tcp", start);
+            Channel ch = f.channel();
+            channel = ch;
+            fleet.onConnected(this);
+            ch.closeFuture().addListener(closed -> onClosed());
+            onConnected(ch);
+        });
+    }
+
+    /**
+     * 主动断开连接
+     *
+     * @param storm 是否由重连风暴触发，风暴中的设备集中重连
+     */
+    public void disconnect(boolean storm) {
+        Channel ch = channel;
+        if (ch != null) {
+            stormed = storm;
+            ch.close();
+        }
+    }
+
+    /**
+     * 是否已连接
+     *
+     * @return 已连接返回 true
+     */
+    public boolean isConnected() {
+        Channel ch = channel;
+        return ch != null && ch.isActive();
+    }
+
+    /**
+     * 设备编号
+     *
+     * @return 设备编号
+     */
+    public String getDeviceId() {
+        return deviceId;
+    }
+
+    /**
+     * 设备类型，用于统计分组
+     *
+     * @return 类型名
+     */
+    public abstract String kind();
+
+    /**
+     * 初始化连接的处理器
+     *
+     * @param pipeline 连接的 pipeline
+     */
+    protected abstract void initPipeline(ChannelPipeline pipeline);
+
+    /**
+     * 连接建立后调用，在连接的 EventLoop 上执行
+     *
+     * @param ch 连接
+     */
+    protected abstract void onConnected(Channel ch);
+
+    /**
+     * 在连接的 EventLoop 上按固定间隔执行任务，首次执行时间在一个间隔内随机分布，避免所有设备同时上报
+     *
+     * @param ch              连接
+     * @param intervalSeconds 间隔（秒），不大于 0 时不执行
+     * @param task            任务
+     */
+    protected void every(Channel ch, double intervalSeconds, Runnable task) {
+        if (intervalSeconds <= 0) {
+            return;
+        }
+        long periodMicros = (long) (intervalSeconds * TimeUnit.SECONDS.toMicros(1));
+        long initialMicros = ThreadLocalRandom.current().nextLong(periodMicros);
+        tasks.add(ch.eventLoop().scheduleAtFixedRate(() -> {
+            if (ch.isActive()) {
+                task.run();
+            }
+        }, initialMicros, periodMicros, TimeUnit.MICROSECONDS));
+    }
+
+    /**
+     * 连接是否可以继续写入；出站缓冲超过高水位时跳过本次上报并计数，不在压测端堆积
+     *
+     * @param ch 连接
+     * @return 可写返回 true
+     */
+    protected boolean writable(Channel ch) {
+        if (ch.isWritable()) {
+            return true;
+        }
+        stats.increment("send.skipped-unwritable");
+        return false;
+    }
+
+    /**
+     * 连接关闭：取消定时任务，按配置重连
+     */
+    private void onClosed() {
+        for (ScheduledFuture<?> task : tasks) {
+            task.cancel(false);
+        }
+        tasks.clear();
+        channel = null;
+        fleet.onDisconnected(this);
+        boolean storm = stormed;
+        stormed = false;
+        if (!storm) {
+            stats.increment("disconnect." + kind());
+        }
+        scheduleReconnect(storm);
+    }
+
+    /**
+     * 安排重连
+     *
+     * @param storm 是否为重连风暴中的重连
+     */
+    private void scheduleReconnect(boolean storm) {
+        if (fleet.isRunning()) {
+            fleet.schedule(this::connect, fleet.reconnectDelayMillis(storm));
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package cn.xxt.gatewaynetty.loadgen.device;
+
+import cn.xxt.gatewaynetty.loadgen.LoadConfig;
+import cn.xxt.gatewaynetty.loadgen.TraceMarker;
+import cn.xxt.gatewaynetty.netty.handler.kar_video.JsonProtocolDecoder;
+import cn.xxt.gatewaynetty.netty.model.VideoCommand;
+import cn.xxt.gatewaynetty.netty.model.VideoMessage;
+import cn.xxt.gatewaynetty.util.VideoParserUtil;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelPipeline;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: 模拟卡尔视频话机：用网关自己的 VideoParserUtil 分包发送、JsonProtocolDecoder 解码响应
+ * <p>
+ * 连接后先发送 link，收到 link 响应（认证通过）后开始定时上报心跳、devstatus 和 call；
+ * 启用人脸心跳的设备同时以相同的设备标识向 HTTP 端口发送人脸心跳。
+ * @author: Havad
+ * @create: 2026-10-18 19:20
+ **/
+
+public class VideoPhone extends SimulatedDevice {
+    /**
+     * 设备类型名
+     */
+    static final String KIND = "video";
+
+    /**
+     * 压测配置
+     */
+    private final LoadConfig config;
+    /**
+     * 是否发送人脸心跳
+     */
+    private final boolean face;
+    /**
+     * link 请求的发送时刻，收到响应前不为 0
+     */
+    private long linkStart;
+
+    VideoPhone(DeviceFleet fleet, String deviceId, boolean face) {
+        super(fleet, deviceId);
+        this.config = fleet.getConfig();
+        this.face = face;
+    }
+
+    @Override
+    public String kind() {
+        return KIND;
+    }
+
+    @Override
+    protected void initPipeline(ChannelPipeline pipeline) {
+        pipeline.addLast(new JsonProtocolDecoder(fleet.getReassembler()));
+        pipeline.addLast(new ChannelInboundHandlerAdapter() {
+            @Override
+            public void channelRead(ChannelHandlerContext ctx, Object msg) {
+                onMessage(ctx.channel(), (VideoMessage) msg);
+            }
+
+            @Override
+            public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+                stats.increment("error.video");
+                ctx.close();
+            }
+        });
+    }
+
+    @Override
+    protected void onConnected(Channel ch) {
+        linkStart = System.nanoTime();
+        send(ch, "link", "{\"Identity\":\"" + deviceId + "\",\"Version\":\"V2.3.18\",\"Model\":\"KV-T8\"}");
+    }
+
+    /**
+     * 处理网关下发的消息：link 响应表示认证通过，开始定时上报
+     *
+     * @param ch      连接
+     * @param message 消息
+     */
+    private void onMessage(Channel ch, VideoMessage message) {
+        if (message.getCommand() == VideoCommand.LINK && linkStart != 0) {
+            stats.recordSince("video.link", linkStart);
+            linkStart = 0;
+            every(ch, config.getVideoHeartbeatSeconds(), () -> send(ch, "heartbeat",
+                    "{\"Identity\":\"" + deviceId + "\"}"));
+            every(ch, config.getVideoStatusSeconds(), () -> send(ch, "devstatus",
+                    "{\"Identity\":\"" + deviceId + "\",\"Signal\":28,\"Battery\":100,\"Volume\":6,\"Net\":\"4G\","
+                            + "\"Iccid\":\"89860123456789012345\",\"Trace\":\"" + TraceMarker.now('v') + "\"}"));
+            every(ch, config.getVideoCallSeconds(), () -> send(ch, "call",
+                    "{\"Identity\":\"" + deviceId + "\",\"CardNo\":\"00012345678\",\"Phone\":\"13800138000\","
+                            + "\"StartTime\":\"2026-10-18 12:00:00\",\"Duration\":65,\"CallType\":1,\"Result\":0,"
+                            + "\"Trace\":\"" + TraceMarker.now('v') + "\"}"));
+            if (face) {
+                every(ch, config.getFaceHeartbeatSeconds(), () -> fleet.getFaceClient().send(deviceId));
+            }
+        } else {
+            stats.increment("recv.video");
+        }
+    }
+
+    /**
+     * 按视频话机协议发送一条请求
+     *
+     * @param ch      连接
+     * @param command 命令名
+     * @param request request 字段的 JSON
+     */
+    private void send(Channel ch, String command, String request) {
+        if (writable(ch)) {
+            VideoParserUtil.sendData(ch, command,
+                    "{\"type\":\"terminal\",\"command\":\"" + command + "\",\"request\":" + request + "}");
+            stats.increment("video." + command);
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package cn.xxt.gatewaynetty.loadgen.stub;
+
+import cn.xxt.gatewaynetty.loadgen.LoadStats;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import io.netty.util.CharsetUtil;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: 设备认证接口桩，按网关认证接口的格式返回 {"content":true}，可配置响应延迟和拒绝比例
+ * <p>
+ * 是否拒绝按设备编号的哈希决定，同一设备每次结果相同，与真实接口一致。
+ * @author: Havad
+ * @create: 2026-10-18 18:55
+ **/
+
+public class AuthStub {
+    /**
+     * 请求的最大长度
+     */
+    private static final int MAX_REQUEST_LENGTH = 8192;
+    /**
+     * 拒绝比例的精度
+     */
+    private static final int RATIO_SCALE = 10000;
+
+    /**
+     * 事件循环组，由压测程序共享
+     */
+    private final EventLoopGroup group;
+    /**
+     * 服务端 Channel 类型
+     */
+    private final Class<? extends ServerChannel> channelClass;
+    /**
+     * 响应延迟（毫秒）
+     */
+    private final long delayMillis;
+    /**
+     * 拒绝的设备比例
+     */
+    private final double rejectRatio;
+    /**
+     * 压测统计
+     */
+    private final LoadStats stats;
+    /**
+     * 监听的 Channel
+     */
+    private Channel serverChannel;
+
+    public AuthStub(EventLoopGroup group, Class<? extends ServerChannel> channelClass, long delayMillis,
+                    double rejectRatio, LoadStats stats) {
+        this.group = group;
+        this.channelClass = channelClass;
+        this.delayMillis = delayMillis;
+        this.rejectRatio = rejectRatio;
+        this.stats = stats;
+    }
+
+    /**
+     * 开始监听
+     *
+     * @param port 端口
+     * @throws InterruptedException 等待绑定时被中断
+     */
+    public void start(int port) throws InterruptedException {
+        ChannelHandler handler = new AuthHandler();
+        serverChannel = new ServerBootstrap()
+                .group(group)
+                .channel(channelClass)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        ch.pipeline().addLast(new HttpServerCodec());
+                        ch.pipeline().addLast(new HttpObjectAggregator(MAX_REQUEST_LENGTH));
+                        ch.pipeline().addLast(handler);
+                    }
+                })
+                .bind(port).sync().channel();
+    }
+
+    /**
+     * 停止监听
+     */
+    public void stop() {
+        if (serverChannel != null) {
+            serverChannel.close();
+        }
+    }
+
+    /**
+     * 判断设备是否认证通过
+     *
+     * @param deviceNo 设备编号
+     * @return 认证通过返回 true
+     */
+    private boolean authorize(String deviceNo) {
+        if (rejectRatio <= 0 || deviceNo == null) {
+            return deviceNo != null;
+        }
+        return Math.floorMod(deviceNo.hashCode(), RATIO_SCALE) >= rejectRatio * RATIO_SCALE;
+    }
+
+    /**
+     * 处理认证请求
+     */
+    @ChannelHandler.Sharable
+    private final class AuthHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest request) {
+            List<String> values = new QueryStringDecoder(request.uri()).parameters().get("deviceNo");
+            boolean authorized = authorize(values == null || values.isEmpty() ? null : values.get(0));
+            boolean keepAlive = HttpUtil.isKeepAlive(request);
+            stats.increment(authorized ? "stub.auth.accepted" : "stub.auth.rejected");
+            if (delayMillis > 0) {
+                ctx.executor().schedule(() -> respond(ctx, authorized, keepAlive), delayMillis, TimeUnit.MILLISECONDS);
+            } else {
+                respond(ctx, authorized, keepAlive);
+            }
+        }
+
+        private void respond(ChannelHandlerContext ctx, boolean authorized, boolean keepAlive) {
+            FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK,
+                    Unpooled.copiedBuffer("{\"content\":" + authorized + "}", CharsetUtil.UTF_8));
+            response.headers().set(HttpHeaderNames.CONTENT_TYPE, "application/json; charset=UTF-8");
+            HttpUtil.setContentLength(response, response.content().readableBytes());
+            HttpUtil.setKeepAlive(response, keepAlive);
+            if (keepAlive) {
+                ctx.writeAndFlush(response);
+            } else {
+                ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+            }
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            ctx.close();
+        }
+    }
+}
@@ -0,0 +1,215 @@
+package cn.xxt.gatewaynetty.loadgen.stub;
+
+import cn.xxt.gatewaynetty.loadgen.LoadStats;
+import cn.xxt.gatewaynetty.loadgen.TraceMarker;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.mqtt.MqttConnAckMessage;
+import io.netty.handler.codec.mqtt.MqttConnAckVariableHeader;
+import io.netty.handler.codec.mqtt.MqttConnectReturnCode;
+import io.netty.handler.codec.mqtt.MqttDecoder;
+import io.netty.handler.codec.mqtt.MqttEncoder;
+import io.netty.handler.codec.mqtt.MqttFixedHeader;
+import io.netty.handler.codec.mqtt.MqttMessage;
+import io.netty.handler.codec.mqtt.MqttMessageIdVariableHeader;
+import io.netty.handler.codec.mqtt.MqttMessageType;
+import io.netty.handler.codec.mqtt.MqttPublishMessage;
+import io.netty.handler.codec.mqtt.MqttQoS;
+import io.netty.handler.codec.mqtt.MqttSubAckMessage;
+import io.netty.handler.codec.mqtt.MqttSubAckPayload;
+import io.netty.handler.codec.mqtt.MqttSubscribeMessage;
+import io.netty.handler.codec.mqtt.MqttTopicSubscription;
+import io.netty.handler.codec.mqtt.MqttUnsubAckMessage;
+import io.netty.util.ReferenceCountUtil;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: 最小的 MQTT Broker 桩，只接收网关的发布并按 QoS 确认，统计各主题的消息数并计算端到端耗时
+ * <p>
+ * 不转发消息、不保存会话；订阅按请求的 QoS 直接确认。
+ * @author: Havad
+ * @create: 2026-10-18 19:00
+ **/
+
+public class MqttBrokerStub {
+    /**
+     * 单条消息的最大长度
+     */
+    private static final int MAX_MESSAGE_BYTES = 16 * 1024 * 1024;
+
+    /**
+     * 事件循环组，由压测程序共享
+     */
+    private final EventLoopGroup group;
+    /**
+     * 服务端 Channel 类型
+     */
+    private final Class<? extends ServerChannel> channelClass;
+    /**
+     * 压测统计
+     */
+    private final LoadStats stats;
+    /**
+     * 监听的 Channel
+     */
+    private Channel serverChannel;
+
+    public MqttBrokerStub(EventLoopGroup group, Class<? extends ServerChannel> channelClass, LoadStats stats) {
+        this.group = group;
+        this.channelClass = channelClass;
+        this.stats = stats;
+    }
+
+    /**
+     * 开始监听
+     *
+     * @param port 端口
+     * @throws InterruptedException 等待绑定时被中断
+     */
+    public void start(int port) throws InterruptedException {
+        ChannelHandler handler = new BrokerHandler();
+        serverChannel = new ServerBootstrap()
+                .group(group)
+                .channel(channelClass)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        ch.pipeline().addLast(new MqttDecoder(MAX_MESSAGE_BYTES));
+                        ch.pipeline().addLast(MqttEncoder.INSTANCE);
+                        ch.pipeline().addLast(handler);
+                    }
+                })
+                .bind(port).sync().channel();
+    }
+
+    /**
+     * 停止监听
+     */
+    public void stop() {
+        if (serverChannel != null) {
+            serverChannel.close();
+        }
+    }
+
+    /**
+     * 按标记类型记录端到端耗时
+     *
+     * @param kind   标记类型字母
+     * @param micros 耗时（微秒）
+     */
+    private void onMarker(char kind, long micros) {
+        switch (kind) {
+            case 'n':
+                stats.record("e2e.normal", micros);
+                break;
+            case 'v':
+                stats.record("e2e.video", micros);
+                break;
+            case 'f':
+                stats.record("e2e.face", micros);
+                break;
+            default:
+                stats.record("e2e.other", micros);
+                break;
+        }
+    }
+
+    /**
+     * 处理 MQTT 控制报文
+     */
+    @ChannelHandler.Sharable
+    private final class BrokerHandler extends ChannelInboundHandlerAdapter {
+        @Override
+        public void channelRead(ChannelHandlerContext ctx, Object msg) {
+            try {
+                MqttMessage message = (MqttMessage) msg;
+                if (message.decoderResult().isFailure()) {
+                    stats.increment("stub.mqtt.decode-errors");
+                    ctx.close();
+                    return;
+                }
+                switch (message.fixedHeader().messageType()) {
+                    case CONNECT:
+                        ctx.writeAndFlush(new MqttConnAckMessage(
+                                new MqttFixedHeader(MqttMessageType.CONNACK, false, MqttQoS.AT_MOST_ONCE, false, 0),
+                                new MqttConnAckVariableHeader(MqttConnectReturnCode.CONNECTION_ACCEPTED, false)));
+                        stats.increment("stub.mqtt.connects");
+                        break;
+                    case PUBLISH:
+                        onPublish(ctx, (MqttPublishMessage) message);
+                        break;
+                    case PUBREL:
+                        reply(ctx, MqttMessageType.PUBCOMP, messageId(message));
+                        break;
+                    case SUBSCRIBE:
+                        onSubscribe(ctx, (MqttSubscribeMessage) message);
+                        break;
+                    case UNSUBSCRIBE:
+                        ctx.writeAndFlush(new MqttUnsubAckMessage(
+                                new MqttFixedHeader(MqttMessageType.UNSUBACK, false, MqttQoS.AT_MOST_ONCE, false, 0),
+                                MqttMessageIdVariableHeader.from(messageId(message))));
+                        break;
+                    case PINGREQ:
+                        ctx.writeAndFlush(new MqttMessage(
+                                new MqttFixedHeader(MqttMessageType.PINGRESP, false, MqttQoS.AT_MOST_ONCE, false, 0)));
+                        break;
+                    case DISCONNECT:
+                        ctx.close();
+                        break;
+                    default:
+                        break;
+                }
+            } finally {
+                ReferenceCountUtil.release(msg);
+            }
+        }
+
+        private void onPublish(ChannelHandlerContext ctx, MqttPublishMessage message) {
+            String topic = message.variableHeader().topicName();
+            stats.increment("stub.mqtt." + topic.substring(topic.lastIndexOf('/') + 1));
+            TraceMarker.scan(message.content(), MqttBrokerStub.this::onMarker);
+            MqttQoS qos = message.fixedHeader().qosLevel();
+            if (qos == MqttQoS.AT_LEAST_ONCE) {
+                reply(ctx, MqttMessageType.PUBACK, message.variableHeader().packetId());
+            } else if (qos == MqttQoS.EXACTLY_ONCE) {
+                reply(ctx, MqttMessageType.PUBREC, message.variableHeader().packetId());
+            }
+        }
+
+        private void onSubscribe(ChannelHandlerContext ctx, MqttSubscribeMessage message) {
+            List<Integer> granted = new ArrayList<>();
+            for (MqttTopicSubscription subscription : message.payload().topicSubscriptions()) {
+                granted.add(subscription.qualityOfService().value());
+            }
+            ctx.writeAndFlush(new MqttSubAckMessage(
+                    new MqttFixedHeader(MqttMessageType.SUBACK, false, MqttQoS.AT_MOST_ONCE, false, 0),
+                    MqttMessageIdVariableHeader.from(message.variableHeader().messageId()),
+                    new MqttSubAckPayload(granted)));
+        }
+
+        private void reply(ChannelHandlerContext ctx, MqttMessageType type, int messageId) {
+            ctx.writeAndFlush(new MqttMessage(new MqttFixedHeader(type, false, MqttQoS.AT_MOST_ONCE, false, 0),
+                    MqttMessageIdVariableHeader.from(messageId)));
+        }
+
+        private int messageId(MqttMessage message) {
+            return ((MqttMessageIdVariableHeader) message.variableHeader()).messageId();
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            stats.increment("stub.mqtt.errors");
+            ctx.close();
+        }
+    }
+}
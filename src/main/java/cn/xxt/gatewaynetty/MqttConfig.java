@@ -1,7 +1,7 @@
 package cn.xxt.gatewaynetty;
 
 import cn.xxt.gatewaynetty.mqtt.MqttConnection;
-import org.eclipse.paho.client.mqttv3.MqttClient;
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -33,12 +33,18 @@ public class MqttConfig {
     @Value("${mqtt.username:}")
     private String mqttUsername;
 
+    /**
+     * 允许同时等待确认的最大消息数
+     */
+    @Value("${mqtt.max-inflight:100}")
+    private int maxInflight;
+
     /**
      * 创建MQTT连接
      */
     @Bean
     public MqttConnection mqttConnection() {
-        return new MqttConnection(mqttUrl, mqttClientId, mqttUsername);
+        return new MqttConnection(mqttUrl, mqttClientId, mqttUsername, maxInflight);
     }
 
     /**
@@ -48,7 +54,7 @@ public class MqttConfig {
      * @return MQTT客户端实例
      */
     @Bean
-    public MqttClient mqttClient(MqttConnection mqttConnection) {
+    public MqttAsyncClient mqttClient(MqttConnection mqttConnection) {
         return mqttConnection.getMqttClient();
     }
 }
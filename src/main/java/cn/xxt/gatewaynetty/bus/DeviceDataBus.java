@@ -0,0 +1,24 @@
+package cn.xxt.gatewaynetty.bus;
+
+import cn.xxt.gatewaynetty.netty.model.DeviceData;
+import cn.xxt.gatewaynetty.netty.model.DeviceDataEvent;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: 设备数据总线：设备上行数据发往 ThingsBoard、RPC 下行数据发往设备都经过这里
+ * <p>
+ * 由 bus.type 选择实现：kafka（默认）经 Kafka 中转，可多实例部署；disruptor 在进程内的环形队列中转，
+ * 适合单机和边缘部署，不依赖 Kafka。
+ * @author: Havad
+ * @create: 2026-10-18 19:40
+ **/
+
+public interface DeviceDataBus {
+    /**
+     * 发送设备数据，同一设备的数据按发送顺序处理
+     *
+     * @param data 设备数据
+     * @param type 事件类型
+     */
+    void sendData(DeviceData data, DeviceDataEvent.Type type);
+}
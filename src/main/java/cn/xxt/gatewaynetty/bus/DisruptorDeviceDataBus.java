@@ -0,0 +1,259 @@
+package cn.xxt.gatewaynetty.bus;
+
+import cn.xxt.gatewaynetty.metrics.GatewayMetrics;
+import cn.xxt.gatewaynetty.metrics.MetricCounter;
+import cn.xxt.gatewaynetty.mqtt.MqttSender;
+import cn.xxt.gatewaynetty.mqtt.builder.MqttMessageBuilderFactory;
+import cn.xxt.gatewaynetty.netty.model.DeviceData;
+import cn.xxt.gatewaynetty.netty.model.DeviceDataEvent;
+import cn.xxt.gatewaynetty.netty.protocol.sender.TcpMessageSenderFactory;
+import cn.xxt.gatewaynetty.netty.registry.DeviceRegistry;
+import cn.xxt.gatewaynetty.util.LogUtils;
+import com.lmax.disruptor.BlockingWaitStrategy;
+import com.lmax.disruptor.BusySpinWaitStrategy;
+import com.lmax.disruptor.EventHandler;
+import com.lmax.disruptor.EventTranslatorTwoArg;
+import com.lmax.disruptor.ExceptionHandler;
+import com.lmax.disruptor.RingBuffer;
+import com.lmax.disruptor.SleepingWaitStrategy;
+import com.lmax.disruptor.TimeoutException;
+import com.lmax.disruptor.WaitStrategy;
+import com.lmax.disruptor.YieldingWaitStrategy;
+import com.lmax.disruptor.dsl.Disruptor;
+import com.lmax.disruptor.dsl.ProducerType;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: 进程内的设备数据总线：两个 Disruptor 环形队列分别承载发往 TB 和发往设备的数据，不经过 Kafka
+ * <p>
+ * 槽位是预先分配的 DeviceDataEvent，发布时只填入引用，处理后清空，发布和处理都不分配事件对象。
+ * 发往 TB 的数据在 Netty I/O 线程上发布，队列满时直接丢弃计数，不阻塞事件循环；
+ * 发往设备的 RPC 在 MQTT 回调线程上发布，队列满时等待空位，不丢指令。
+ * 数据只在内存中，进程退出时未处理完的数据会丢失，适合单机和边缘部署。
+ * @author: Havad
+ * @create: 2026-10-18 19:55
+ **/
+
+@Component
+@ConditionalOnProperty(name = "bus.type", havingValue = "disruptor")
+public class DisruptorDeviceDataBus implements DeviceDataBus {
+    /**
+     * 填充槽位：数据、类型和发布时刻
+     */
+    private static final EventTranslatorTwoArg<DeviceDataEvent, DeviceData, DeviceDataEvent.Type> TRANSLATOR =
+            (event, sequence, data, type) -> {
+                event.setValue(data);
+                event.setType(type);
+                event.setPublishedAt(System.nanoTime());
+            };
+
+    /**
+     * 环形队列的槽位数，必须是 2 的幂
+     */
+    @Value("${bus.disruptor.ring-size:65536}")
+    private int ringSize;
+    /**
+     * 等待策略：blocking、sleeping、yielding、busy-spin
+     */
+    @Value("${bus.disruptor.wait-strategy:blocking}")
+    private String waitStrategy;
+    /**
+     * 发往 TB 的处理器（线程）数，按设备标识分片
+     */
+    @Value("${bus.disruptor.to-tb-handlers:1}")
+    private int toTbHandlers;
+    /**
+     * 处理器攒批的最大消息数
+     */
+    @Value("${bus.disruptor.max-batch-messages:500}")
+    private int maxBatchMessages;
+    /**
+     * 停止时等待队列中的数据处理完的时间（毫秒）
+     */
+    @Value("${bus.disruptor.shutdown-timeout-millis:5000}")
+    private long shutdownTimeoutMillis;
+
+    /**
+     * MQTT消息发送器
+     */
+    private final MqttSender mqttSender;
+    /**
+     * 设备注册实例
+     */
+    private final DeviceRegistry deviceRegistry;
+    /**
+     * MQTT消息构造器工厂
+     */
+    private final MqttMessageBuilderFactory builderFactory;
+    /**
+     * TCP消息发送器工厂
+     */
+    private final TcpMessageSenderFactory senderFactory;
+    /**
+     * 发往 TB 的 Disruptor
+     */
+    private Disruptor<DeviceDataEvent> toTb;
+    /**
+     * 发往设备的 Disruptor
+     */
+    private Disruptor<DeviceDataEvent> toDevice;
+    /**
+     * 发往 TB 的环形队列
+     */
+    private RingBuffer<DeviceDataEvent> toTbRing;
+    /**
+     * 发往设备的环形队列
+     */
+    private RingBuffer<DeviceDataEvent> toDeviceRing;
+
+    public DisruptorDeviceDataBus(MqttSender mqttSender, DeviceRegistry deviceRegistry,
+                                  MqttMessageBuilderFactory builderFactory, TcpMessageSenderFactory senderFactory) {
+        this.mqttSender = mqttSender;
+        this.deviceRegistry = deviceRegistry;
+        this.builderFactory = builderFactory;
+        this.senderFactory = senderFactory;
+    }
+
+    /**
+     * 创建并启动两个环形队列
+     */
+    @PostConstruct
+    public void start() {
+        ToThingsBoardEventHandler[] tbHandlers = new ToThingsBoardEventHandler[toTbHandlers];
+        for (int i = 0; i < toTbHandlers; i++) {
+            tbHandlers[i] = new ToThingsBoardEventHandler(i, toTbHandlers, maxBatchMessages, builderFactory, mqttSender);
+        }
+        toTb = create("bus-to-tb", tbHandlers);
+        ToDeviceEventHandler[] deviceHandlers = {
+                new ToDeviceEventHandler(maxBatchMessages, deviceRegistry, senderFactory)
+        };
+        toDevice = create("bus-to-device", deviceHandlers);
+        toTbRing = toTb.start();
+        toDeviceRing = toDevice.start();
+
+        GatewayMetrics.registerGauge("gateway_bus_to_tb_pending", "Disruptor发往TB队列中未处理的消息数",
+                () -> toTbRing.getBufferSize() - toTbRing.remainingCapacity());
+        GatewayMetrics.registerGauge("gateway_bus_to_device_pending", "Disruptor发往设备队列中未处理的消息数",
+                () -> toDeviceRing.getBufferSize() - toDeviceRing.remainingCapacity());
+        LogUtils.logBusiness("Disruptor设备数据总线已启动，槽位数{}，等待策略{}，发往TB处理器{}个",
+                ringSize, waitStrategy, toTbHandlers);
+    }
+
+    /**
+     * 停止总线，等待队列中的数据处理完
+     */
+    @PreDestroy
+    public void shutdown() {
+        shutdown(toTb);
+        shutdown(toDevice);
+    }
+
+    @Override
+    public void sendData(DeviceData data, DeviceDataEvent.Type type) {
+        if (type == DeviceDataEvent.Type.TO_TB) {
+            if (!toTbRing.tryPublishEvent(TRANSLATOR, data, type)) {
+                GatewayMetrics.increment(MetricCounter.BUS_DROPPED, data.getProtocolType());
+                LogUtils.logSampled("bus.full", data.getDeviceId(), "Disruptor发往TB队列已满，丢弃设备{}的消息",
+                        data.getDeviceId());
+                return;
+            }
+        } else if (type == DeviceDataEvent.Type.TO_DEVICE) {
+            toDeviceRing.publishEvent(TRANSLATOR, data, type);
+        } else {
+            throw new IllegalArgumentException("未知的事件类型: " + type);
+        }
+        GatewayMetrics.increment(MetricCounter.BUS_PUBLISHED, data.getProtocolType());
+        LogUtils.logDebug("发送消息到Disruptor[{}], 内容为{}", type, data.getMsg());
+    }
+
+    /**
+     * 设备数据所属的分片，同一设备总是落在同一分片
+     *
+     * @param data       设备数据
+     * @param shardCount 分片总数
+     * @return 分片序号
+     */
+    static int shardOf(DeviceData data, int shardCount) {
+        if (shardCount == 1 || data.getDeviceId() == null) {
+            return 0;
+        }
+        return Math.floorMod(data.getDeviceId().hashCode(), shardCount);
+    }
+
+    /**
+     * 创建环形队列，各处理器并行消费同一队列
+     *
+     * @param name     队列名，同时作为处理线程名前缀
+     * @param handlers 事件处理器
+     * @return 未启动的 Disruptor
+     */
+    private Disruptor<DeviceDataEvent> create(String name, EventHandler<DeviceDataEvent>[] handlers) {
+        // 多个 I/O 线程同时发布；槽位在启动时一次性分配
+        Disruptor<DeviceDataEvent> disruptor = new Disruptor<>(DeviceDataEvent::new, ringSize,
+                new DefaultThreadFactory(name), ProducerType.MULTI, waitStrategy(waitStrategy));
+        disruptor.handleEventsWith(handlers);
+        // 默认的异常处理器会终止处理线程，这里只记录日志，继续处理后续事件
+        disruptor.setDefaultExceptionHandler(new ExceptionHandler<DeviceDataEvent>() {
+            @Override
+            public void handleEventException(Throwable ex, long sequence, DeviceDataEvent event) {
+                LogUtils.logError("Disruptor[{}]处理事件失败, sequence={}", ex, name, sequence);
+                event.clear();
+            }
+
+            @Override
+            public void handleOnStartException(Throwable ex) {
+                LogUtils.logError("Disruptor[{}]启动失败", ex, name);
+            }
+
+            @Override
+            public void handleOnShutdownException(Throwable ex) {
+                LogUtils.logError("Disruptor[{}]停止失败", ex, name);
+            }
+        });
+        return disruptor;
+    }
+
+    private void shutdown(Disruptor<DeviceDataEvent> disruptor) {
+        if (disruptor == null) {
+            return;
+        }
+        try {
+            disruptor.shutdown(shutdownTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            LogUtils.logBusiness("Disruptor停止超时，丢弃队列中未处理的消息");
+            disruptor.halt();
+        }
+    }
+
+    /**
+     * 按名称创建等待策略
+     *
+     * @param name 策略名
+     * @return 等待策略
+     */
+    private static WaitStrategy waitStrategy(String name) {
+        switch (name.toLowerCase(Locale.ROOT)) {
+            case "blocking":
+                // 空闲时不占 CPU，唤醒延迟在微秒级
+                return new BlockingWaitStrategy();
+            case "sleeping":
+                return new SleepingWaitStrategy();
+            case "yielding":
+                return new YieldingWaitStrategy();
+            case "busy-spin":
+                // 延迟最低，每个处理线程独占一个核
+                return new BusySpinWaitStrategy();
+            default:
+                throw new IllegalArgumentException("未知的Disruptor等待策略: " + name);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package cn.xxt.gatewaynetty.bus;
+
+import cn.xxt.gatewaynetty.netty.model.DeviceData;
+import cn.xxt.gatewaynetty.netty.model.DeviceDataEvent;
+import cn.xxt.gatewaynetty.netty.protocol.sender.TcpMessageSenderFactory;
+import cn.xxt.gatewaynetty.netty.registry.DeviceRegistry;
+import cn.xxt.gatewaynetty.util.LogUtils;
+import com.lmax.disruptor.EventHandler;
+import io.netty.channel.Channel;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: 处理发往设备的 Disruptor 事件：一批内按目标设备分组，每个设备只查找一次 Channel、只刷新一次
+ * @author: Havad
+ * @create: 2026-10-18 19:50
+ **/
+
+final class ToDeviceEventHandler implements EventHandler<DeviceDataEvent> {
+    /**
+     * 攒批的最大消息数，未到批次末尾也整批发送
+     */
+    private final int maxBatchMessages;
+    /**
+     * 设备注册实例
+     */
+    private final DeviceRegistry deviceRegistry;
+    /**
+     * TCP消息发送器工厂
+     */
+    private final TcpMessageSenderFactory senderFactory;
+    /**
+     * 按设备分组、等待发送的数据，同一设备保持发布顺序，只在处理线程中访问
+     */
+    private final Map<String, List<DeviceData>> pending = new LinkedHashMap<>();
+    /**
+     * 等待发送的数据条数
+     */
+    private int pendingCount;
+
+    ToDeviceEventHandler(int maxBatchMessages, DeviceRegistry deviceRegistry, TcpMessageSenderFactory senderFactory) {
+        this.maxBatchMessages = maxBatchMessages;
+        this.deviceRegistry = deviceRegistry;
+        this.senderFactory = senderFactory;
+    }
+
+    @Override
+    public void onEvent(DeviceDataEvent event, long sequence, boolean endOfBatch) {
+        DeviceData data = event.getValue();
+        event.clear();
+        if (data != null && data.getDeviceId() != null) {
+            pending.computeIfAbsent(data.getDeviceId(), k -> new ArrayList<>()).add(data);
+            pendingCount++;
+        }
+        if ((endOfBatch || pendingCount >= maxBatchMessages) && pendingCount > 0) {
+            flush();
+        }
+    }
+
+    private void flush() {
+        for (Map.Entry<String, List<DeviceData>> entry : pending.entrySet()) {
+            List<DeviceData> deviceMessages = entry.getValue();
+            try {
+                Channel channel = deviceRegistry.getChannel(entry.getKey());
+                senderFactory.getSender(deviceMessages.get(0).getProtocolType())
+                        .sendMessagesToDevice(deviceMessages, channel);
+            } catch (Exception e) {
+                LogUtils.logSampled("bus.consume.device", entry.getKey(), "处理发往设备的消息失败: {}, 设备:{}, 跳过{}条",
+                        e.getMessage(), entry.getKey(), deviceMessages.size());
+            }
+        }
+        pending.clear();
+        pendingCount = 0;
+    }
+}
@@ -0,0 +1,92 @@
+package cn.xxt.gatewaynetty.bus;
+
+import cn.xxt.gatewaynetty.metrics.GatewayMetrics;
+import cn.xxt.gatewaynetty.metrics.MetricCounter;
+import cn.xxt.gatewaynetty.metrics.Stage;
+import cn.xxt.gatewaynetty.mqtt.MqttSender;
+import cn.xxt.gatewaynetty.mqtt.builder.MqttMessageBuilderFactory;
+import cn.xxt.gatewaynetty.netty.model.DeviceData;
+import cn.xxt.gatewaynetty.netty.model.DeviceDataEvent;
+import cn.xxt.gatewaynetty.netty.protocol.ProtocolIdentifier;
+import cn.xxt.gatewaynetty.util.LogUtils;
+import com.lmax.disruptor.EventHandler;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: 处理发往 ThingsBoard 的 Disruptor 事件：构建 MQTT 消息，攒到一批的末尾再整批交给 MqttSender
+ * <p>
+ * 多个处理器共享同一个环形队列时按设备标识分片，每个处理器只处理自己分片的设备，同一设备的数据保持发布顺序。
+ * @author: Havad
+ * @create: 2026-10-18 19:45
+ **/
+
+final class ToThingsBoardEventHandler implements EventHandler<DeviceDataEvent> {
+    /**
+     * 本处理器的分片序号
+     */
+    private final int shard;
+    /**
+     * 分片总数
+     */
+    private final int shardCount;
+    /**
+     * 攒批的最大消息数，未到批次末尾也整批发送
+     */
+    private final int maxBatchMessages;
+    /**
+     * MQTT消息构造器工厂
+     */
+    private final MqttMessageBuilderFactory builderFactory;
+    /**
+     * MQTT消息发送器
+     */
+    private final MqttSender mqttSender;
+    /**
+     * 已构建、等待整批发送的消息，只在处理线程中访问
+     */
+    private final List<MqttMessage> pending = new ArrayList<>();
+
+    ToThingsBoardEventHandler(int shard, int shardCount, int maxBatchMessages,
+                              MqttMessageBuilderFactory builderFactory, MqttSender mqttSender) {
+        this.shard = shard;
+        this.shardCount = shardCount;
+        this.maxBatchMessages = maxBatchMessages;
+        this.builderFactory = builderFactory;
+        this.mqttSender = mqttSender;
+    }
+
+    @Override
+    public void onEvent(DeviceDataEvent event, long sequence, boolean endOfBatch) {
+        DeviceData data = event.getValue();
+        if (data != null && DisruptorDeviceDataBus.shardOf(data, shardCount) == shard) {
+            try {
+                build(data, event.getPublishedAt());
+            } finally {
+                event.clear();
+            }
+        }
+        if ((endOfBatch || pending.size() >= maxBatchMessages) && !pending.isEmpty()) {
+            mqttSender.sendToThingsboard(pending);
+            pending.clear();
+        }
+    }
+
+    private void build(DeviceData data, long publishedAt) {
+        ProtocolIdentifier protocol = data.getProtocolType();
+        GatewayMetrics.recordSince(Stage.BUS_QUEUE, protocol, publishedAt);
+        try {
+            long start = System.nanoTime();
+            pending.add(builderFactory.getBuilder(protocol).buildMessage(data));
+            GatewayMetrics.recordSince(Stage.BUILD, protocol, start);
+            GatewayMetrics.recordSinceEpochMillis(Stage.END_TO_END, protocol, data.getReceivedAt());
+        } catch (Exception e) {
+            GatewayMetrics.increment(MetricCounter.BUILD_FAILED, protocol);
+            LogUtils.logSampled("bus.consume.tb", data.getDeviceId(), "处理发往TB的消息失败: {}, 设备:{}",
+                    e.getMessage(), data.getDeviceId());
+        }
+    }
+}
@@ -0,0 +1,193 @@
+package cn.xxt.gatewaynetty.kafka;
+
+import cn.xxt.gatewaynetty.netty.model.DeviceData;
+import cn.xxt.gatewaynetty.netty.model.Pdu;
+import cn.xxt.gatewaynetty.netty.model.VideoMessage;
+import cn.xxt.gatewaynetty.netty.protocol.ProtocolIdentifier;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.util.CharsetUtil;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Header;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Deserializer;
+
+import java.io.IOException;
+import java.nio.Buffer;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: DeviceData 的紧凑二进制反序列化器，格式见 {@link DeviceDataSerializer}
+ * <p>
+ * 不以魔数开头的消息按旧的 JSON 格式解析，升级期间 Topic 中残留的 JSON 消息仍可消费。
+ * 网关收到数据的时间从记录头读取；发送时间由消费者取记录的时间戳。
+ * @author: Havad
+ * @create: 2026-10-18 14:40
+ **/
+
+public class DeviceDataDeserializer implements Deserializer<DeviceData> {
+    /**
+     * 对象映射器，用于解析 JSON 消息体和旧格式消息
+     */
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    @Override
+    public DeviceData deserialize(String topic, Headers headers, byte[] bytes) {
+        DeviceData data = deserialize(topic, bytes);
+        Header receivedAt = headers == null ? null : headers.lastHeader(DeviceDataSerializer.RECEIVED_AT_HEADER);
+        if (data != null && receivedAt != null && receivedAt.value() != null
+                && receivedAt.value().length == Long.BYTES) {
+            data.setReceivedAt(getLong(receivedAt.value(), 0));
+        }
+        return data;
+    }
+
+    @Override
+    public DeviceData deserialize(String topic, byte[] bytes) {
+        if (bytes == null) {
+            return null;
+        }
+        if (bytes.length == 0 || bytes[0] != DeviceDataSerializer.MAGIC) {
+            return deserializeJson(bytes);
+        }
+        if (bytes.length < DeviceDataSerializer.HEADER_LENGTH) {
+            throw new SerializationException("DeviceData消息长度不足: " + bytes.length);
+        }
+        byte version = bytes[1];
+        if (version != DeviceDataSerializer.VERSION) {
+            throw new SerializationException("不支持的DeviceData格式版本: " + version);
+        }
+
+        ProtocolIdentifier protocol = null;
+        int protocolCode = bytes[2];
+        if (protocolCode >= 0) {
+            protocol = ProtocolIdentifier.ofCode(protocolCode);
+            if (protocol == null) {
+                throw new SerializationException("未知的协议类型编码: " + protocolCode);
+            }
+        }
+
+        byte kind = bytes[3];
+        short deviceIdLength = (short) (((bytes[4] & 0xFF) << 8) | (bytes[5] & 0xFF));
+        int offset = DeviceDataSerializer.HEADER_LENGTH;
+        String deviceId = null;
+        if (deviceIdLength >= 0) {
+            if (offset + deviceIdLength > bytes.length) {
+                throw new SerializationException("DeviceData设备ID长度越界: " + deviceIdLength);
+            }
+            deviceId = new String(bytes, offset, deviceIdLength, CharsetUtil.UTF_8);
+            offset += deviceIdLength;
+        }
+
+        // 收到时间未知记为 0，由带记录头的重载在记录头存在时设置，避免把消费时刻当作收到时间
+        return new DeviceData(deviceId, decodePayload(kind, bytes, offset), protocol, 0, 0);
+    }
+
+    /**
+     * 读取大端序的 long
+     *
+     * @param bytes  字节数组
+     * @param offset 起始位置
+     * @return 值
+     */
+    @SuppressWarnings("checkstyle:MagicNumber")
+    private static long getLong(byte[] bytes, int offset) {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (bytes[offset + i] & 0xFF);
+        }
+        return value;
+    }
+
+    /**
+     * 按消息体类型还原消息对象
+     *
+     * @param kind   消息体类型
+     * @param bytes  整条消息
+     * @param offset 消息体起始位置
+     * @return 消息对象
+     */
+    private static Object decodePayload(byte kind, byte[] bytes, int offset) {
+        int length = bytes.length - offset;
+        switch (kind) {
+            case DeviceDataSerializer.KIND_NULL:
+                return null;
+            case DeviceDataSerializer.KIND_PDU:
+                return Pdu.of(Arrays.copyOfRange(bytes, offset, bytes.length));
+            case DeviceDataSerializer.KIND_TEXT:
+                return new String(bytes, offset, length, CharsetUtil.UTF_8);
+            case DeviceDataSerializer.KIND_VIDEO:
+                return decodeVideo(bytes, offset);
+            case DeviceDataSerializer.KIND_JSON:
+                try {
+                    return OBJECT_MAPPER.readValue(bytes, offset, length, Map.class);
+                } catch (IOException e) {
+                    throw new SerializationException("DeviceData消息体JSON解析失败", e);
+                }
+            default:
+                throw new SerializationException("未知的消息体类型: " + kind);
+        }
+    }
+
+    /**
+     * 还原视频话机消息，消息体不解析
+     *
+     * @param bytes  整条消息
+     * @param offset 视频话机消息的起始位置
+     * @return 视频话机消息
+     */
+    private static VideoMessage decodeVideo(byte[] bytes, int offset) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        ((Buffer) buffer).position(offset);
+        try {
+            String command = getString(buffer);
+            int directionCode = buffer.get();
+            VideoMessage.Direction direction = VideoMessage.Direction.ofCode(directionCode);
+            if (direction == null) {
+                throw new SerializationException("未知的视频话机消息方向: " + directionCode);
+            }
+            String type = getString(buffer);
+            byte[] body = new byte[buffer.remaining()];
+            buffer.get(body);
+            return VideoMessage.of(command, direction, type, body);
+        } catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new SerializationException("视频话机消息长度不足", e);
+        }
+    }
+
+    /**
+     * 读取带长度前缀的字符串
+     *
+     * @param buffer 缓冲区
+     * @return 字符串，长度为 -1 时返回 null
+     */
+    private static String getString(ByteBuffer buffer) {
+        short length = buffer.getShort();
+        if (length < 0) {
+            return null;
+        }
+        if (length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        String value = new String(buffer.array(), buffer.position(), length, CharsetUtil.UTF_8);
+        ((Buffer) buffer).position(buffer.position() + length);
+        return value;
+    }
+
+    /**
+     * 解析旧的 JSON 格式消息
+     *
+     * @param bytes 消息字节
+     * @return 设备数据
+     */
+    private static DeviceData deserializeJson(byte[] bytes) {
+        try {
+            return OBJECT_MAPPER.readValue(bytes, DeviceData.class);
+        } catch (IOException e) {
+            throw new SerializationException("DeviceData JSON消息解析失败", e);
+        }
+    }
+}
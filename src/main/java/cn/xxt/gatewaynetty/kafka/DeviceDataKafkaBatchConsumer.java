@@ -0,0 +1,258 @@
+package cn.xxt.gatewaynetty.kafka;
+
+import cn.xxt.gatewaynetty.metrics.GatewayMetrics;
+import cn.xxt.gatewaynetty.metrics.MetricCounter;
+import cn.xxt.gatewaynetty.metrics.Stage;
+import cn.xxt.gatewaynetty.mqtt.MqttSender;
+import cn.xxt.gatewaynetty.mqtt.builder.MqttMessageBuilder;
+import cn.xxt.gatewaynetty.mqtt.builder.MqttMessageBuilderFactory;
+import cn.xxt.gatewaynetty.netty.exceptions.UnsupportedProtocolException;
+import cn.xxt.gatewaynetty.netty.model.DeviceData;
+import cn.xxt.gatewaynetty.netty.protocol.ProtocolIdentifier;
+import cn.xxt.gatewaynetty.netty.protocol.sender.TcpMessageSender;
+import cn.xxt.gatewaynetty.netty.protocol.sender.TcpMessageSenderFactory;
+import cn.xxt.gatewaynetty.netty.registry.DeviceRegistry;
+import cn.xxt.gatewaynetty.util.LogUtils;
+import io.netty.channel.Channel;
+import lombok.RequiredArgsConstructor;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.kafka.support.Acknowledgment;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: 批量模式的Kafka消费者，整批处理完成后手动提交位移
+ * @author: Havad
+ * @create: 2026-10-18 14:10
+ **/
+@Component
+@RequiredArgsConstructor
+@ConditionalOnExpression("'${bus.type:kafka}' == 'kafka' and '${kafka.listener-mode:record}' == 'batch'")
+public class DeviceDataKafkaBatchConsumer {
+    /**
+     * 等待单台设备写入结果的最长时间（秒）
+     */
+    private static final long SEND_TIMEOUT_SECONDS = 10;
+
+    /**
+     * MQTT消息发送器
+     */
+    private final MqttSender mqttSender;
+
+    /**
+     * 设备注册实例
+     */
+    private final DeviceRegistry deviceRegistry;
+
+    /**
+     * MQTT消息构造器工厂
+     */
+    private final MqttMessageBuilderFactory builderFactory;
+
+    /**
+     * TCP消息发送器工厂
+     */
+    private final TcpMessageSenderFactory senderFactory;
+
+    /**
+     * 批量处理发送到ThingsBoard的设备数据。
+     * <p>
+     * 按拉取顺序逐条构建并放入 MqttSender 的合并队列，每种协议只查找一次构建器。
+     * 某条数据构建失败或无法入队时，抛出 BatchListenerFailedException 指向该条记录：
+     * 之前的记录已交给下游，由错误处理器提交位移，该条及之后的记录重新投递，与逐条模式的重试语义一致。
+     *
+     * @param records 本次拉取的记录
+     * @param ack     手动提交位移
+     */
+    @KafkaListener(topics = KafkaConfig.TO_TB_TOPIC, containerFactory = "kafkaBatchListenerContainerFactory")
+    public void handleToThingsBoard(List<ConsumerRecord<String, DeviceData>> records, Acknowledgment ack) {
+        Map<ProtocolIdentifier, MqttMessageBuilder> builders = new EnumMap<>(ProtocolIdentifier.class);
+        for (int i = 0; i < records.size(); i++) {
+            ConsumerRecord<String, DeviceData> record = records.get(i);
+            DeviceData data = record.value();
+            if (data == null || data.getProtocolType() == null) {
+                // 无法反序列化的记录重试也不会成功
+                LogUtils.logBusiness("跳过无法识别的发往TB的消息, offset={}", record.offset());
+                continue;
+            }
+            ProtocolIdentifier protocol = data.getProtocolType();
+            GatewayMetrics.increment(MetricCounter.KAFKA_CONSUMED, protocol);
+            data.setSentAt(record.timestamp());
+            GatewayMetrics.recordSinceEpochMillis(Stage.KAFKA_QUEUE, protocol, data.getSentAt());
+            try {
+                MqttMessageBuilder builder = builders.computeIfAbsent(protocol, builderFactory::getBuilder);
+                long start = System.nanoTime();
+                MqttMessage message;
+                try {
+                    message = builder.buildMessage(data);
+                } catch (Exception e) {
+                    GatewayMetrics.increment(MetricCounter.BUILD_FAILED, protocol);
+                    throw e;
+                }
+                GatewayMetrics.recordSince(Stage.BUILD, protocol, start);
+                // 内存队列和磁盘缓存都放不下时抛出异常
+                mqttSender.sendToThingsboard(message);
+                GatewayMetrics.recordSinceEpochMillis(Stage.END_TO_END, protocol, data.getReceivedAt());
+            } catch (Exception e) {
+                LogUtils.logSampled("kafka.consume.tb", data.getDeviceId(), "处理发往TB的消息失败: {}, 设备:{}, 已处理{}条",
+                        e.getMessage(), data.getDeviceId(), i);
+                throw new BatchListenerFailedException("处理发往TB的消息失败: " + e.getMessage(), e, record);
+            }
+        }
+
+        LogUtils.logBusiness("消费者批量处理发往TB的消息，拉取{}条", records.size());
+        ack.acknowledge();
+    }
+
+    /**
+     * 批量处理发送到设备的数据。
+     * <p>
+     * 按目标设备分组：每个设备只查找一次 Channel，同一设备的多条数据在其 EventLoop 上写完后只刷新一次。
+     * 设备不在线或协议不支持的记录重试也无法送达（逐条模式在重试耗尽后同样跳过），直接跳过并计入错误统计，
+     * 不影响同一批中发往在线设备的记录。
+     * 等各设备报告写入结果后，若有写入失败的记录，取最小的未发送位移抛出 BatchListenerFailedException：
+     * 它之前的记录都已写出，由错误处理器提交位移，该条及之后的记录重新投递。
+     * 只有连接在写入途中断开时才会如此，该位移之后已写给其他设备的记录会在重新投递时再发送一次，
+     * 而断开的设备在重新投递时已不在线，会被跳过。
+     *
+     * @param records 本次拉取的记录
+     * @param ack     手动提交位移
+     */
+    @KafkaListener(topics = KafkaConfig.TO_DEVICE_TOPIC, containerFactory = "kafkaBatchListenerContainerFactory")
+    public void handleToDevice(List<ConsumerRecord<String, DeviceData>> records, Acknowledgment ack) {
+        // 同一设备的数据保持拉取顺序
+        Map<String, DeviceBatch> byDevice = new LinkedHashMap<>();
+        // 本批中已确认不在线的设备，避免重复查找
+        Set<String> offline = new HashSet<>();
+        int skipped = 0;
+        int failedIndex = records.size();
+        for (int i = 0; i < records.size(); i++) {
+            DeviceData data = records.get(i).value();
+            if (data == null || data.getDeviceId() == null) {
+                LogUtils.logBusiness("跳过无法识别的发往设备的消息, offset={}", records.get(i).offset());
+                continue;
+            }
+            DeviceBatch batch = byDevice.get(data.getDeviceId());
+            if (batch == null) {
+                Channel channel = offline.contains(data.getDeviceId()) ? null : deviceRegistry.getChannel(data.getDeviceId());
+                if (channel == null || !channel.isActive()) {
+                    offline.add(data.getDeviceId());
+                    LogUtils.countError("kafka.device.offline", "跳过发往设备的消息: 设备:{} 不在线, offset={}",
+                            data.getDeviceId(), records.get(i).offset());
+                    skipped++;
+                    continue;
+                }
+                TcpMessageSender sender;
+                try {
+                    sender = senderFactory.getSender(data.getProtocolType());
+                } catch (UnsupportedProtocolException e) {
+                    LogUtils.countError("kafka.device.unsupported", "跳过发往设备的消息: {}, 设备:{}, offset={}",
+                            e.getMessage(), data.getDeviceId(), records.get(i).offset());
+                    skipped++;
+                    continue;
+                }
+                batch = new DeviceBatch(channel, sender);
+                byDevice.put(data.getDeviceId(), batch);
+            }
+            batch.add(i, data);
+        }
+
+        for (DeviceBatch batch : byDevice.values()) {
+            batch.send();
+        }
+        for (Map.Entry<String, DeviceBatch> entry : byDevice.entrySet()) {
+            DeviceBatch batch = entry.getValue();
+            int sent = batch.awaitSent();
+            if (sent < batch.indexes.size()) {
+                LogUtils.logSampled("kafka.consume.device", entry.getKey(), "发往设备的消息发送失败, 设备:{}, 已发送{}/{}条",
+                        entry.getKey(), sent, batch.indexes.size());
+                failedIndex = Math.min(failedIndex, batch.indexes.get(sent));
+            }
+        }
+
+        if (failedIndex < records.size()) {
+            throw new BatchListenerFailedException("处理发往设备的消息失败", records.get(failedIndex));
+        }
+        LogUtils.logBusiness("消费者批量处理发往设备的消息，拉取{}条，涉及{}台设备，跳过{}条",
+                records.size(), byDevice.size(), skipped);
+        ack.acknowledge();
+    }
+
+    /**
+     * 一批记录中发往同一设备的数据及其在批次中的下标
+     */
+    private static final class DeviceBatch {
+        /**
+         * 设备通道
+         */
+        private final Channel channel;
+        /**
+         * 对应协议的发送器
+         */
+        private final TcpMessageSender sender;
+        /**
+         * 各条数据在批次中的下标，升序
+         */
+        private final List<Integer> indexes = new ArrayList<>();
+        /**
+         * 按拉取顺序排列的数据
+         */
+        private final List<DeviceData> messages = new ArrayList<>();
+        /**
+         * 发送结果，连续发送成功的条数
+         */
+        private CompletableFuture<Integer> result;
+
+        DeviceBatch(Channel channel, TcpMessageSender sender) {
+            this.channel = channel;
+            this.sender = sender;
+        }
+
+        void add(int index, DeviceData data) {
+            indexes.add(index);
+            messages.add(data);
+        }
+
+        void send() {
+            try {
+                result = sender.sendMessagesToDevice(messages, channel);
+            } catch (Exception e) {
+                LogUtils.logError("发往设备的消息发送异常", e);
+                result = CompletableFuture.completedFuture(0);
+            }
+        }
+
+        /**
+         * 等待写入结果，超时或异常时视为一条都未发送
+         *
+         * @return 连续发送成功的条数
+         */
+        int awaitSent() {
+            try {
+                return result.get(SEND_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return 0;
+            } catch (ExecutionException | TimeoutException e) {
+                LogUtils.logError("等待发往设备的写入结果失败", e);
+                return 0;
+            }
+        }
+    }
+}
@@ -1,6 +1,10 @@
 package cn.xxt.gatewaynetty.kafka;
 
+import cn.xxt.gatewaynetty.metrics.GatewayMetrics;
+import cn.xxt.gatewaynetty.metrics.MetricCounter;
+import cn.xxt.gatewaynetty.metrics.Stage;
 import cn.xxt.gatewaynetty.netty.model.DeviceData;
+import cn.xxt.gatewaynetty.netty.protocol.ProtocolIdentifier;
 import cn.xxt.gatewaynetty.mqtt.MqttSender;
 import cn.xxt.gatewaynetty.mqtt.builder.MqttMessageBuilder;
 import cn.xxt.gatewaynetty.mqtt.builder.MqttMessageBuilderFactory;
@@ -11,7 +15,10 @@ import cn.xxt.gatewaynetty.util.LogUtils;
 import io.netty.channel.Channel;
 import lombok.RequiredArgsConstructor;
 import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
 import org.springframework.kafka.annotation.KafkaListener;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.handler.annotation.Header;
 import org.springframework.stereotype.Component;
 
 /**
@@ -22,6 +29,7 @@ import org.springframework.stereotype.Component;
  **/
 @Component
 @RequiredArgsConstructor
+@ConditionalOnExpression("'${bus.type:kafka}' == 'kafka' and '${kafka.listener-mode:record}' == 'record'")
 public class DeviceDataKafkaConsumer {
     /**
      * MQTT消息发送器
@@ -47,21 +55,36 @@ public class DeviceDataKafkaConsumer {
      * 处理发送到ThingsBoard的设备数据。
      *
      * @param deviceData 设备数据对象
+     * @param timestamp  记录的时间戳，即发送到 Kafka 的时间
      * @throws Exception 在处理过程中可能抛出的异常
      */
     @KafkaListener(topics = KafkaConfig.TO_TB_TOPIC, containerFactory = "kafkaListenerContainerFactory")
-    public void handleToThingsBoard(DeviceData deviceData) throws Exception {
+    public void handleToThingsBoard(DeviceData deviceData,
+                                    @Header(KafkaHeaders.RECEIVED_TIMESTAMP) long timestamp) throws Exception {
         try {
-            LogUtils.logBusiness("消费者处理发往TB的消息，数据为{}", deviceData.getMsg());
+            LogUtils.logDebug("消费者处理发往TB的消息，数据为{}", deviceData.getMsg());
+            ProtocolIdentifier protocol = deviceData.getProtocolType();
+            GatewayMetrics.increment(MetricCounter.KAFKA_CONSUMED, protocol);
+            deviceData.setSentAt(timestamp);
+            GatewayMetrics.recordSinceEpochMillis(Stage.KAFKA_QUEUE, protocol, deviceData.getSentAt());
 
             // 1. 获取对应的信息构建器
-            MqttMessageBuilder builder = builderFactory.getBuilder(deviceData.getProtocolType());
+            MqttMessageBuilder builder = builderFactory.getBuilder(protocol);
             // 2. 构建 MQTT 消息
-            MqttMessage message = builder.buildMessage(deviceData);
+            long start = System.nanoTime();
+            MqttMessage message;
+            try {
+                message = builder.buildMessage(deviceData);
+            } catch (Exception e) {
+                GatewayMetrics.increment(MetricCounter.BUILD_FAILED, protocol);
+                throw e;
+            }
+            GatewayMetrics.recordSince(Stage.BUILD, protocol, start);
             // 3. 发送 MQTT 信息
             mqttSender.sendToThingsboard(message);
+            GatewayMetrics.recordSinceEpochMillis(Stage.END_TO_END, protocol, deviceData.getReceivedAt());
         } catch (Exception e) {
-            LogUtils.logBusiness("处理发往TB的消息失败: {}", e.getMessage());
+            LogUtils.logSampled("kafka.consume.tb", deviceData.getDeviceId(), "处理发往TB的消息失败: {}", e.getMessage());
             throw e;
         }
     }
@@ -75,7 +98,7 @@ public class DeviceDataKafkaConsumer {
     @KafkaListener(topics = KafkaConfig.TO_DEVICE_TOPIC, containerFactory = "kafkaListenerContainerFactory")
     public void handleToDevice(DeviceData deviceData) throws Exception {
         try {
-            LogUtils.logBusiness("消费者处理发往设备的消息，数据为{}", deviceData.getMsg());
+            LogUtils.logDebug("消费者处理发往设备的消息，数据为{}", deviceData.getMsg());
 
             // 1. 获取该数据流的 Channel
             Channel channel = deviceRegistry.getChannel(deviceData.getDeviceId());
@@ -84,7 +107,7 @@ public class DeviceDataKafkaConsumer {
             // 3. 发送数据到设备
             sender.sendMessageToDevice(deviceData, channel);
         } catch (Exception e) {
-            LogUtils.logBusiness("处理发往设备的消息失败: {}", e.getMessage());
+            LogUtils.logSampled("kafka.consume.device", deviceData.getDeviceId(), "处理发往设备的消息失败: {}", e.getMessage());
             throw e;
         }
     }
@@ -1,9 +1,14 @@
 package cn.xxt.gatewaynetty.kafka;
 
+import cn.xxt.gatewaynetty.bus.DeviceDataBus;
+import cn.xxt.gatewaynetty.metrics.GatewayMetrics;
+import cn.xxt.gatewaynetty.metrics.MetricCounter;
+import cn.xxt.gatewaynetty.metrics.Stage;
 import cn.xxt.gatewaynetty.netty.model.DeviceDataEvent;
 import cn.xxt.gatewaynetty.netty.model.DeviceData;
 import cn.xxt.gatewaynetty.util.LogUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.support.SendResult;
 import org.springframework.stereotype.Component;
@@ -12,13 +17,14 @@ import org.springframework.util.concurrent.ListenableFutureCallback;
 
 /**
  * @program: gateway-cn.xxt.gatewaynetty.netty
- * @description:
+ * @description: 经 Kafka 中转的设备数据总线
  * @author: Havad
  * @create: 2025-02-27 15:23
  **/
 
 @Component
-public class DeviceDataKafkaProducer {
+@ConditionalOnProperty(name = "bus.type", havingValue = "kafka", matchIfMissing = true)
+public class DeviceDataKafkaProducer implements DeviceDataBus {
     /**
      * Kafka消息模板，用于发送设备数据。
      */
@@ -35,6 +41,7 @@ public class DeviceDataKafkaProducer {
      * @param data 设备数据
      * @param type 事件类型
      */
+    @Override
     public void sendData(DeviceData data, DeviceDataEvent.Type type) {
         String topic;
 
@@ -47,6 +54,7 @@ public class DeviceDataKafkaProducer {
         }
 
         // 使用设备ID作为消息的key，确保同一设备的消息按顺序处理
+        long start = System.nanoTime();
         ListenableFuture<SendResult<String, DeviceData>> future =
                 kafkaTemplate.send(topic, data.getDeviceId(), data);
 
@@ -54,7 +62,9 @@ public class DeviceDataKafkaProducer {
         future.addCallback(new ListenableFutureCallback<SendResult<String, DeviceData>>() {
             @Override
             public void onSuccess(SendResult<String, DeviceData> result) {
-                LogUtils.logBusiness("发送消息到Kafka成功: topic={}, partition={}, offset={}, deviceId={}",
+                GatewayMetrics.recordSince(Stage.KAFKA_SEND, data.getProtocolType(), start);
+                GatewayMetrics.increment(MetricCounter.KAFKA_SENT, data.getProtocolType());
+                LogUtils.logDebug("发送消息到Kafka成功: topic={}, partition={}, offset={}, deviceId={}",
                         result.getRecordMetadata().topic(),
                         result.getRecordMetadata().partition(),
                         result.getRecordMetadata().offset(),
@@ -63,11 +73,12 @@ public class DeviceDataKafkaProducer {
 
             @Override
             public void onFailure(Throwable ex) {
-                LogUtils.logBusiness("发送消息到Kafka失败: deviceId={}, error={}",
+                GatewayMetrics.increment(MetricCounter.KAFKA_SEND_FAILED, data.getProtocolType());
+                LogUtils.logSampled("kafka.send", data.getDeviceId(), "发送消息到Kafka失败: deviceId={}, error={}",
                         data.getDeviceId(), ex.getMessage());
             }
         });
 
-        LogUtils.logBusiness("发送消息到Kafka主题[{}], 内容为{}", topic, data.getMsg());
+        LogUtils.logDebug("发送消息到Kafka主题[{}], 内容为{}", topic, data.getMsg());
     }
 }
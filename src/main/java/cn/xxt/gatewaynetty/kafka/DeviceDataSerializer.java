@@ -0,0 +1,177 @@
+package cn.xxt.gatewaynetty.kafka;
+
+import cn.xxt.gatewaynetty.netty.model.DeviceData;
+import cn.xxt.gatewaynetty.netty.model.Pdu;
+import cn.xxt.gatewaynetty.netty.model.VideoMessage;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.util.CharsetUtil;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.serialization.Serializer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: DeviceData 的紧凑二进制序列化器，不写类型头，消息体直接写原始字节
+ * <p>
+ * 格式（版本 1）：
+ * <pre>
+ * magic(1) version(1) protocol(1) kind(1) deviceIdLen(2) deviceId(n) payload(剩余字节)
+ * </pre>
+ * 网关收到数据的时间写在记录头 {@link #RECEIVED_AT_HEADER} 中（8 字节大端序），发送时间取记录自身的时间戳，
+ * 消息体保持版本 1 不变：每个节点同时是生产者和消费者，滚动升级期间未升级的节点仍能读取新节点写入的消息。
+ * protocol 为 {@link cn.xxt.gatewaynetty.netty.protocol.ProtocolIdentifier#getCode()}，空值写 -1；
+ * 视频话机消息的 payload 为 commandLen(2) command(n) direction(1) typeLen(2) type(n) 消息体(剩余字节)，
+ * direction 为 {@link VideoMessage.Direction#getCode()}；
+ * deviceIdLen 为 -1 表示设备ID为空；kind 取值见 {@link #KIND_NULL} 等常量。
+ * @author: Havad
+ * @create: 2026-10-18 14:40
+ **/
+
+public class DeviceDataSerializer implements Serializer<DeviceData> {
+    /**
+     * 魔数，与 JSON 文本的首字节（'{'、空白等）区分，反序列化时据此兼容旧的 JSON 消息
+     */
+    static final byte MAGIC = (byte) 0xD7;
+    /**
+     * 当前格式版本
+     */
+    static final byte VERSION = 1;
+    /**
+     * 固定头部长度：magic、version、protocol、kind、deviceIdLen
+     */
+    static final int HEADER_LENGTH = 6;
+    /**
+     * 记录头：网关收到数据的时间（毫秒时间戳）
+     */
+    static final String RECEIVED_AT_HEADER = "receivedAt";
+    /**
+     * 消息体为空
+     */
+    static final byte KIND_NULL = 0;
+    /**
+     * 消息体为普通话机 PDU 原始字节
+     */
+    static final byte KIND_PDU = 1;
+    /**
+     * 消息体为 UTF-8 文本
+     */
+    static final byte KIND_TEXT = 2;
+    /**
+     * 消息体为已编码的 JSON
+     */
+    static final byte KIND_JSON = 3;
+    /**
+     * 消息体为视频话机消息，命令和方向单独编码，request/response 原样写入
+     */
+    static final byte KIND_VIDEO = 4;
+
+    /**
+     * 对象映射器，只用于把 Map 等结构化消息编码为 JSON
+     */
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    @Override
+    public byte[] serialize(String topic, Headers headers, DeviceData data) {
+        if (headers != null && data != null && data.getReceivedAt() > 0) {
+            headers.add(RECEIVED_AT_HEADER, ByteBuffer.allocate(Long.BYTES).putLong(data.getReceivedAt()).array());
+        }
+        return serialize(topic, data);
+    }
+
+    @Override
+    public byte[] serialize(String topic, DeviceData data) {
+        if (data == null) {
+            return null;
+        }
+        byte[] deviceId = data.getDeviceId() == null ? null : data.getDeviceId().getBytes(CharsetUtil.UTF_8);
+        if (deviceId != null && deviceId.length > Short.MAX_VALUE) {
+            throw new SerializationException("设备ID过长: " + deviceId.length);
+        }
+
+        Object msg = data.getMsg();
+        byte kind;
+        byte[] payload;
+        if (msg == null) {
+            kind = KIND_NULL;
+            payload = new byte[0];
+        } else if (msg instanceof Pdu) {
+            kind = KIND_PDU;
+            payload = ((Pdu) msg).toBytes();
+        } else if (msg instanceof VideoMessage) {
+            kind = KIND_VIDEO;
+            payload = encodeVideo((VideoMessage) msg);
+        } else if (msg instanceof CharSequence) {
+            kind = KIND_TEXT;
+            payload = msg.toString().getBytes(CharsetUtil.UTF_8);
+        } else {
+            kind = KIND_JSON;
+            try {
+                payload = OBJECT_MAPPER.writeValueAsBytes(msg);
+            } catch (JsonProcessingException e) {
+                throw new SerializationException("DeviceData消息体编码失败", e);
+            }
+        }
+
+        int deviceIdLength = deviceId == null ? 0 : deviceId.length;
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_LENGTH + deviceIdLength + payload.length);
+        buffer.put(MAGIC);
+        buffer.put(VERSION);
+        buffer.put(data.getProtocolType() == null ? -1 : (byte) data.getProtocolType().getCode());
+        buffer.put(kind);
+        buffer.putShort(deviceId == null ? -1 : (short) deviceIdLength);
+        if (deviceId != null) {
+            buffer.put(deviceId);
+        }
+        buffer.put(payload);
+        return buffer.array();
+    }
+
+    /**
+     * 编码视频话机消息
+     *
+     * @param message 视频话机消息
+     * @return 编码后的字节
+     */
+    private static byte[] encodeVideo(VideoMessage message) {
+        byte[] command = message.getCommandName() == null ? null : message.getCommandName().getBytes(CharsetUtil.UTF_8);
+        byte[] type = message.getType() == null ? null : message.getType().getBytes(CharsetUtil.UTF_8);
+        byte[] body = message.getPayload();
+        ByteBuffer buffer = ByteBuffer.allocate(2 + length(command) + 1 + 2 + length(type) + body.length);
+        putString(buffer, command);
+        buffer.put((byte) message.getDirection().getCode());
+        putString(buffer, type);
+        buffer.put(body);
+        return buffer.array();
+    }
+
+    /**
+     * 写入带长度前缀的字符串，空值长度为 -1
+     *
+     * @param buffer 缓冲区
+     * @param bytes  UTF-8 字节，可为 null
+     */
+    private static void putString(ByteBuffer buffer, byte[] bytes) {
+        if (bytes == null) {
+            buffer.putShort((short) -1);
+            return;
+        }
+        if (bytes.length > Short.MAX_VALUE) {
+            throw new SerializationException("字段过长: " + bytes.length);
+        }
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    /**
+     * 字节数组长度，空值为 0
+     *
+     * @param bytes 字节数组
+     * @return 长度
+     */
+    private static int length(byte[] bytes) {
+        return bytes == null ? 0 : bytes.length;
+    }
+}
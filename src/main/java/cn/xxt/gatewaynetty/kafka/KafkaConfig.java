@@ -8,6 +8,7 @@ import org.apache.kafka.clients.producer.ProducerConfig;
 import org.apache.kafka.common.serialization.StringDeserializer;
 import org.apache.kafka.common.serialization.StringSerializer;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.kafka.annotation.EnableKafka;
@@ -18,21 +19,25 @@ import org.springframework.kafka.core.DefaultKafkaProducerFactory;
 import org.springframework.kafka.core.KafkaAdmin;
 import org.springframework.kafka.core.KafkaTemplate;
 import org.springframework.kafka.core.ProducerFactory;
-import org.springframework.kafka.support.serializer.JsonDeserializer;
+import org.springframework.kafka.listener.ContainerProperties;
+import org.springframework.kafka.listener.DefaultErrorHandler;
+import org.springframework.kafka.support.serializer.ErrorHandlingDeserializer;
 import org.springframework.kafka.support.serializer.JsonSerializer;
+import org.springframework.util.backoff.FixedBackOff;
 
 import java.util.HashMap;
 import java.util.Map;
 
 /**
  * @program: gateway-cn.xxt.gatewaynetty.netty
- * @description: kafka 配置类
+ * @description: kafka 配置类，bus.type 为 disruptor 时不创建主题、生产者和消费者
  * @author: Havad
  * @create: 2025-02-27 15:08
  **/
 
 @Configuration
 @EnableKafka
+@ConditionalOnProperty(name = "bus.type", havingValue = "kafka", matchIfMissing = true)
 @SuppressWarnings("checkstyle:MagicNumber")
 public class KafkaConfig {
     /**
@@ -45,6 +50,31 @@ public class KafkaConfig {
      */
     @Value("${spring.kafka.consumer.group-id}")
     private String groupId;
+    /**
+     * 生产者写入的消息格式：binary 为紧凑二进制格式，json 为旧的 JSON 格式（供尚未升级的消费者读取）
+     */
+    @Value("${kafka.value-format:binary}")
+    private String valueFormat;
+    /**
+     * 批量模式下单次拉取的最大记录数
+     */
+    @Value("${kafka.batch.max-poll-records:500}")
+    private int batchMaxPollRecords;
+    /**
+     * 批量模式下单次拉取至少累积的字节数，未达到时最多等待 fetch-max-wait-millis
+     */
+    @Value("${kafka.batch.fetch-min-bytes:1}")
+    private int batchFetchMinBytes;
+    /**
+     * 批量模式下拉取的最长等待时间（毫秒）
+     */
+    @Value("${kafka.batch.fetch-max-wait-millis:500}")
+    private int batchFetchMaxWaitMillis;
+    /**
+     * 批量模式下的并发消费者数量
+     */
+    @Value("${kafka.batch.concurrency:3}")
+    private int batchConcurrency;
     /**
      * Kafka发送数据到Thingsboard的主题常量
      */
@@ -98,7 +128,8 @@ public class KafkaConfig {
         Map<String, Object> configProps = new HashMap<>();
         configProps.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
         configProps.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, StringSerializer.class);
-        configProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, JsonSerializer.class);
+        configProps.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG,
+                "json".equalsIgnoreCase(valueFormat) ? JsonSerializer.class : DeviceDataSerializer.class);
         configProps.put(ProducerConfig.ACKS_CONFIG, "all");
         configProps.put(ProducerConfig.RETRIES_CONFIG, 3);
         return new DefaultKafkaProducerFactory<>(configProps);
@@ -130,14 +161,11 @@ public class KafkaConfig {
         props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
         props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, true);
 
-        // Create the deserializer directly
-        JsonDeserializer<DeviceData> jsonDeserializer = new JsonDeserializer<>(DeviceData.class);
-        jsonDeserializer.addTrustedPackages("*");
-
+        // 二进制反序列化器同时兼容旧的 JSON 消息；无法解析的记录交给错误处理器跳过，不会在同一位移上反复拉取失败
         return new DefaultKafkaConsumerFactory<>(
                 props,
                 new StringDeserializer(),
-                jsonDeserializer
+                new ErrorHandlingDeserializer<>(new DeviceDataDeserializer())
         );
     }
 
@@ -155,4 +183,50 @@ public class KafkaConfig {
         return factory;
     }
 
+    /**
+     * 创建批量模式使用的Kafka消费者工厂
+     * <p>
+     * 关闭自动提交，由监听器在整批数据交给下游后手动提交位移。
+     *
+     * @return Kafka消费者工厂实例
+     */
+    @Bean
+    public ConsumerFactory<String, DeviceData> deviceDataBatchConsumerFactory() {
+        Map<String, Object> props = new HashMap<>();
+        props.put(ConsumerConfig.BOOTSTRAP_SERVERS_CONFIG, bootstrapServers);
+        props.put(ConsumerConfig.GROUP_ID_CONFIG, groupId);
+        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "earliest");
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, false);
+        props.put(ConsumerConfig.MAX_POLL_RECORDS_CONFIG, batchMaxPollRecords);
+        props.put(ConsumerConfig.FETCH_MIN_BYTES_CONFIG, batchFetchMinBytes);
+        props.put(ConsumerConfig.FETCH_MAX_WAIT_MS_CONFIG, batchFetchMaxWaitMillis);
+
+        // 无法解析的记录以空值交给监听器，由监听器跳过
+        return new DefaultKafkaConsumerFactory<>(
+                props,
+                new StringDeserializer(),
+                new ErrorHandlingDeserializer<>(new DeviceDataDeserializer())
+        );
+    }
+
+    /**
+     * 创建批量Kafka监听器容器工厂方法
+     *
+     * 监听器抛出 BatchListenerFailedException 时，错误处理器提交失败记录之前的位移，
+     * 间隔一秒后从失败记录开始重新投递，给 MQTT 发送队列留出排空的时间。
+     *
+     * @return 一次交付整批记录、手动提交位移的监听器容器工厂
+     */
+    @Bean
+    public ConcurrentKafkaListenerContainerFactory<String, DeviceData> kafkaBatchListenerContainerFactory() {
+        ConcurrentKafkaListenerContainerFactory<String, DeviceData> factory =
+                new ConcurrentKafkaListenerContainerFactory<>();
+        factory.setConsumerFactory(deviceDataBatchConsumerFactory());
+        factory.setConcurrency(batchConcurrency);
+        factory.setBatchListener(true);
+        factory.getContainerProperties().setAckMode(ContainerProperties.AckMode.MANUAL);
+        factory.setCommonErrorHandler(new DefaultErrorHandler(new FixedBackOff(1000L, 9L)));
+        return factory;
+    }
+
 }
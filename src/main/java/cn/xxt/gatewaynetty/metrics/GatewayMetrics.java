@@ -0,0 +1,269 @@
+package cn.xxt.gatewaynetty.metrics;
+
+import cn.xxt.gatewaynetty.netty.protocol.ProtocolIdentifier;
+import cn.xxt.gatewaynetty.util.LogUtils;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: 网关指标：各阶段耗时分布、按协议的计数和队列深度，按 Prometheus 文本格式输出
+ * <p>
+ * 记录器和计数器按 阶段/计数项 × 协议 预先分配，记录时不查表、不分配对象；协议未知时记为 none。
+ * @author: Havad
+ * @create: 2026-10-18 17:30
+ **/
+
+@SuppressWarnings({"checkstyle:HideUtilityClassConstructor", "checkstyle:MagicNumber"})
+public final class GatewayMetrics {
+    /**
+     * 协议表，下标 0 为未知协议
+     */
+    private static final ProtocolIdentifier[] PROTOCOLS = ProtocolIdentifier.values();
+    /**
+     * 协议槽位数
+     */
+    private static final int PROTOCOL_SLOTS = PROTOCOLS.length + 1;
+    /**
+     * 协议标签值，去掉 PROTOCOL_ 前缀后小写
+     */
+    private static final String[] PROTOCOL_LABELS = new String[PROTOCOLS.length];
+    /**
+     * 输出的分位
+     */
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    /**
+     * 微秒转秒
+     */
+    private static final double MICROS_PER_SECOND = 1_000_000d;
+
+    /**
+     * 各阶段、各协议的耗时记录器
+     */
+    private static final LatencyRecorder[][] LATENCIES = new LatencyRecorder[Stage.values().length][PROTOCOL_SLOTS];
+    /**
+     * 各计数项、各协议的计数器
+     */
+    private static final LongAdder[][] COUNTERS = new LongAdder[MetricCounter.values().length][PROTOCOL_SLOTS];
+    /**
+     * 按名称注册的瞬时值，如队列深度
+     */
+    private static final Map<String, Gauge> GAUGES = new ConcurrentSkipListMap<>();
+
+    static {
+        for (int i = 0; i < PROTOCOLS.length; i++) {
+            PROTOCOL_LABELS[i] = PROTOCOLS[i].name().replaceFirst("^PROTOCOL_", "").toLowerCase();
+        }
+        for (LatencyRecorder[] row : LATENCIES) {
+            for (int i = 0; i < row.length; i++) {
+                row[i] = new LatencyRecorder();
+            }
+        }
+        for (LongAdder[] row : COUNTERS) {
+            for (int i = 0; i < row.length; i++) {
+                row[i] = new LongAdder();
+            }
+        }
+    }
+
+    private GatewayMetrics() {
+    }
+
+    /**
+     * 阶段耗时记录器
+     *
+     * @param stage    阶段
+     * @param protocol 协议，可为 null
+     * @return 记录器
+     */
+    public static LatencyRecorder latency(Stage stage, ProtocolIdentifier protocol) {
+        return LATENCIES[stage.ordinal()][slot(protocol)];
+    }
+
+    /**
+     * 记录从 startNanos 到现在的耗时
+     *
+     * @param stage      阶段
+     * @param protocol   协议，可为 null
+     * @param startNanos 开始时间（{@link System#nanoTime()}）
+     */
+    public static void recordSince(Stage stage, ProtocolIdentifier protocol, long startNanos) {
+        latency(stage, protocol).recordSince(startNanos);
+    }
+
+    /**
+     * 记录从毫秒时间戳到现在的耗时，用于跨进程的阶段；时间戳为 0 表示未知，不记录
+     *
+     * @param stage       阶段
+     * @param protocol    协议，可为 null
+     * @param epochMillis 开始时间（{@link System#currentTimeMillis()}）
+     */
+    public static void recordSinceEpochMillis(Stage stage, ProtocolIdentifier protocol, long epochMillis) {
+        if (epochMillis > 0) {
+            latency(stage, protocol).record(TimeUnit.MILLISECONDS.toMicros(System.currentTimeMillis() - epochMillis));
+        }
+    }
+
+    /**
+     * 计数加一
+     *
+     * @param counter  计数项
+     * @param protocol 协议，可为 null
+     */
+    public static void increment(MetricCounter counter, ProtocolIdentifier protocol) {
+        COUNTERS[counter.ordinal()][slot(protocol)].increment();
+    }
+
+    /**
+     * 计数增加
+     *
+     * @param counter  计数项
+     * @param protocol 协议，可为 null
+     * @param delta    增量
+     */
+    public static void add(MetricCounter counter, ProtocolIdentifier protocol, long delta) {
+        COUNTERS[counter.ordinal()][slot(protocol)].add(delta);
+    }
+
+    /**
+     * 注册瞬时值，同名的注册会覆盖之前的注册
+     *
+     * @param name     指标名
+     * @param help     指标说明
+     * @param supplier 取值方法，输出时调用
+     */
+    public static void registerGauge(String name, String help, LongSupplier supplier) {
+        GAUGES.put(name, new Gauge(help, supplier));
+    }
+
+    /**
+     * 按 Prometheus 文本格式（0.0.4）输出全部指标
+     *
+     * @param out 输出
+     */
+    public static void writePrometheus(StringBuilder out) {
+        for (MetricCounter counter : MetricCounter.values()) {
+            header(out, counter.getMetricName(), counter.getHelp(), "counter");
+            LongAdder[] row = COUNTERS[counter.ordinal()];
+            for (int i = 0; i < PROTOCOL_SLOTS; i++) {
+                long value = row[i].sum();
+                if (value > 0) {
+                    out.append(counter.getMetricName()).append("{protocol=\"").append(protocolLabel(i)).append("\"} ")
+                            .append(value).append('\n');
+                }
+            }
+        }
+
+        String latencyName = "gateway_stage_latency_seconds";
+        header(out, latencyName, "链路各阶段耗时", "summary");
+        StringBuilder max = new StringBuilder();
+        for (Stage stage : Stage.values()) {
+            for (int i = 0; i < PROTOCOL_SLOTS; i++) {
+                LatencyRecorder.Snapshot snapshot = LATENCIES[stage.ordinal()][i].snapshot();
+                if (snapshot.getCount() == 0) {
+                    continue;
+                }
+                String labels = "stage=\"" + stage.getLabel() + "\",protocol=\"" + protocolLabel(i) + "\"";
+                for (double quantile : QUANTILES) {
+                    out.append(latencyName).append('{').append(labels).append(",quantile=\"").append(quantile)
+                            .append("\"} ").append(seconds(snapshot.valueAt(quantile))).append('\n');
+                }
+                out.append(latencyName).append("_sum{").append(labels).append("} ")
+                        .append(seconds(snapshot.getSum())).append('\n');
+                out.append(latencyName).append("_count{").append(labels).append("} ")
+                        .append(snapshot.getCount()).append('\n');
+                max.append("gateway_stage_latency_max_seconds{").append(labels).append("} ")
+                        .append(seconds(snapshot.getMax())).append('\n');
+            }
+        }
+        header(out, "gateway_stage_latency_max_seconds", "链路各阶段的最大耗时", "gauge");
+        out.append(max);
+
+        header(out, "gateway_protocol_errors_total", "按类别统计的可预期协议错误", "counter");
+        for (Map.Entry<String, Long> entry : LogUtils.getErrorCounts().entrySet()) {
+            out.append("gateway_protocol_errors_total{category=\"").append(escape(entry.getKey())).append("\"} ")
+                    .append(entry.getValue()).append('\n');
+        }
+
+        for (Map.Entry<String, Gauge> entry : GAUGES.entrySet()) {
+            header(out, entry.getKey(), entry.getValue().help, "gauge");
+            out.append(entry.getKey()).append(' ').append(entry.getValue().supplier.getAsLong()).append('\n');
+        }
+    }
+
+    /**
+     * 协议槽位
+     *
+     * @param protocol 协议，可为 null
+     * @return 槽位
+     */
+    private static int slot(ProtocolIdentifier protocol) {
+        return protocol == null ? 0 : protocol.ordinal() + 1;
+    }
+
+    /**
+     * 槽位对应的协议标签值
+     *
+     * @param slot 槽位
+     * @return 标签值，如 normal、video、video_face
+     */
+    private static String protocolLabel(int slot) {
+        return slot == 0 ? "none" : PROTOCOL_LABELS[slot - 1];
+    }
+
+    /**
+     * 写入 HELP 和 TYPE 行
+     *
+     * @param out  输出
+     * @param name 指标名
+     * @param help 指标说明
+     * @param type 指标类型
+     */
+    private static void header(StringBuilder out, String name, String help, String type) {
+        out.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        out.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    /**
+     * 微秒转为秒
+     *
+     * @param micros 微秒
+     * @return 秒
+     */
+    private static double seconds(long micros) {
+        return micros / MICROS_PER_SECOND;
+    }
+
+    /**
+     * 转义标签值中的反斜杠、双引号和换行
+     *
+     * @param value 标签值
+     * @return 转义后的值
+     */
+    private static String escape(String value) {
+        return value.replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+    }
+
+    /**
+     * 瞬时值
+     */
+    private static final class Gauge {
+        /**
+         * 指标说明
+         */
+        private final String help;
+        /**
+         * 取值方法
+         */
+        private final LongSupplier supplier;
+
+        Gauge(String help, LongSupplier supplier) {
+            this.help = help;
+            this.supplier = supplier;
+        }
+    }
+}
@@ -0,0 +1,199 @@
+package cn.xxt.gatewaynetty.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: 耗时分布记录器，按 HdrHistogram 的对数-线性方式分桶，记录时无锁、不分配对象
+ * <p>
+ * 单位为微秒。小于 64 的值每个值一个桶；之后每个 2 的幂区间再均分为 32 个桶，相对误差不超过约 3%。
+ * 超过上限的值计入最后一个桶。
+ * @author: Havad
+ * @create: 2026-10-18 17:20
+ **/
+
+@SuppressWarnings("checkstyle:MagicNumber")
+public final class LatencyRecorder {
+    /**
+     * 每个 2 的幂区间内的桶数（2^5）
+     */
+    private static final int SUB_BUCKET_BITS = 5;
+    /**
+     * 每个 2 的幂区间内的桶数
+     */
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    /**
+     * 可记录的最大值（微秒），约 25 天
+     */
+    private static final long MAX_VALUE = (1L << 41) - 1;
+    /**
+     * 桶总数
+     */
+    private static final int BUCKET_COUNT = indexOf(MAX_VALUE) + 1;
+
+    /**
+     * 各桶的计数
+     */
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    /**
+     * 记录总数
+     */
+    private final LongAdder count = new LongAdder();
+    /**
+     * 记录值之和（微秒）
+     */
+    private final LongAdder sum = new LongAdder();
+    /**
+     * 最大值（微秒）
+     */
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * 记录一次耗时
+     *
+     * @param micros 耗时（微秒），负值按 0 记录
+     */
+    public void record(long micros) {
+        long value = Math.max(0, Math.min(micros, MAX_VALUE));
+        counts.incrementAndGet(indexOf(value));
+        count.increment();
+        sum.add(value);
+        long current = max.get();
+        while (value > current && !max.compareAndSet(current, value)) {
+            current = max.get();
+        }
+    }
+
+    /**
+     * 记录一次耗时
+     *
+     * @param startNanos 开始时间（{@link System#nanoTime()}）
+     */
+    public void recordSince(long startNanos) {
+        record((System.nanoTime() - startNanos) / 1000);
+    }
+
+    /**
+     * 生成快照，快照中的分位数由同一组桶计数算出
+     *
+     * @return 快照
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKET_COUNT];
+        long total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            copy[i] = counts.get(i);
+            total += copy[i];
+        }
+        return new Snapshot(copy, total, sum.sum(), max.get());
+    }
+
+    /**
+     * 值所在的桶
+     *
+     * @param value 值（微秒）
+     * @return 桶序号
+     */
+    private static int indexOf(long value) {
+        if (value < 2 * SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int shift = exponent - SUB_BUCKET_BITS;
+        return (shift << SUB_BUCKET_BITS) + (int) (value >>> shift);
+    }
+
+    /**
+     * 桶内的最大值
+     *
+     * @param index 桶序号
+     * @return 桶内的最大值（微秒）
+     */
+    private static long highestValueIn(int index) {
+        if (index < 2 * SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = (index >> SUB_BUCKET_BITS) - 1;
+        long subBucket = (index & (SUB_BUCKET_COUNT - 1)) + SUB_BUCKET_COUNT;
+        return ((subBucket + 1) << shift) - 1;
+    }
+
+    /**
+     * 耗时分布快照
+     */
+    public static final class Snapshot {
+        /**
+         * 各桶的计数
+         */
+        private final long[] counts;
+        /**
+         * 记录总数
+         */
+        private final long count;
+        /**
+         * 记录值之和（微秒）
+         */
+        private final long sum;
+        /**
+         * 最大值（微秒）
+         */
+        private final long max;
+
+        Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        /**
+         * 分位数
+         *
+         * @param quantile 分位（0~1）
+         * @return 该分位所在桶的最大值（微秒），不超过记录到的最大值；没有记录时为 0
+         */
+        public long valueAt(double quantile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(quantile * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(highestValueIn(i), max);
+                }
+            }
+            return max;
+        }
+
+        /**
+         * 记录总数
+         *
+         * @return 记录总数
+         */
+        public long getCount() {
+            return count;
+        }
+
+        /**
+         * 记录值之和
+         *
+         * @return 记录值之和（微秒）
+         */
+        public long getSum() {
+            return sum;
+        }
+
+        /**
+         * 最大值
+         *
+         * @return 最大值（微秒）
+         */
+        public long getMax() {
+            return max;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package cn.xxt.gatewaynetty.metrics;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: 链路上的计数指标
+ * @author: Havad
+ * @create: 2026-10-18 17:25
+ **/
+
+@Getter
+@AllArgsConstructor
+public enum MetricCounter {
+    /**
+     * 设备上行消息数
+     */
+    RECEIVED_MESSAGES("gateway_received_messages_total", "设备上行消息数"),
+    /**
+     * 设备上行字节数
+     */
+    RECEIVED_BYTES("gateway_received_bytes_total", "设备上行字节数"),
+    /**
+     * Kafka 发送成功数
+     */
+    KAFKA_SENT("gateway_kafka_sent_total", "Kafka发送成功的消息数"),
+    /**
+     * Kafka 发送失败数
+     */
+    KAFKA_SEND_FAILED("gateway_kafka_send_failed_total", "Kafka发送失败的消息数"),
+    /**
+     * Kafka 消费数
+     */
+    KAFKA_CONSUMED("gateway_kafka_consumed_total", "从Kafka消费的发往TB的消息数"),
+    /**
+     * 放入 Disruptor 环形队列的消息数
+     */
+    BUS_PUBLISHED("gateway_bus_published_total", "放入Disruptor环形队列的消息数"),
+    /**
+     * Disruptor 环形队列已满而丢弃的消息数
+     */
+    BUS_DROPPED("gateway_bus_dropped_total", "Disruptor环形队列已满而丢弃的消息数"),
+    /**
+     * 构建 MQTT 消息失败数
+     */
+    BUILD_FAILED("gateway_build_failed_total", "构建MQTT消息失败的消息数"),
+    /**
+     * 放入 MQTT 发布队列（含磁盘缓存）的消息数
+     */
+    MQTT_ENQUEUED("gateway_mqtt_enqueued_total", "放入MQTT发布队列的消息数"),
+    /**
+     * 内存队列和磁盘缓存都放不下而丢弃的消息数
+     */
+    MQTT_DROPPED("gateway_mqtt_dropped_total", "MQTT发布队列已满而丢弃的消息数"),
+    /**
+     * MQTT 发布成功的原始消息数
+     */
+    MQTT_PUBLISHED("gateway_mqtt_published_total", "MQTT发布成功的设备消息数"),
+    /**
+     * MQTT 发布失败（转入磁盘缓存）的原始消息数
+     */
+    MQTT_PUBLISH_FAILED("gateway_mqtt_publish_failed_total", "MQTT发布失败的设备消息数");
+
+    /**
+     * 指标名
+     */
+    private final String metricName;
+    /**
+     * 指标说明
+     */
+    private final String help;
+}
@@ -0,0 +1,67 @@
+package cn.xxt.gatewaynetty.metrics;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandler;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.util.CharsetUtil;
+import io.netty.util.ReferenceCountUtil;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: 指标抓取接口，GET /metrics 返回 Prometheus 文本格式的指标，其余请求交给后续处理器
+ * @author: Havad
+ * @create: 2026-10-18 17:35
+ **/
+
+@ChannelHandler.Sharable
+public class MetricsHttpHandler extends ChannelInboundHandlerAdapter {
+    /**
+     * 指标接口路径
+     */
+    private static final String METRICS_URI = "/metrics";
+    /**
+     * Prometheus 文本格式的内容类型
+     */
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) {
+        if (!(msg instanceof FullHttpRequest) || !isMetricsRequest((FullHttpRequest) msg)) {
+            ctx.fireChannelRead(msg);
+            return;
+        }
+        ReferenceCountUtil.release(msg);
+
+        StringBuilder body = new StringBuilder(8192);
+        GatewayMetrics.writePrometheus(body);
+        FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK,
+                Unpooled.copiedBuffer(body, CharsetUtil.UTF_8));
+        response.headers().set(HttpHeaderNames.CONTENT_TYPE, CONTENT_TYPE);
+        response.headers().set(HttpHeaderNames.CONTENT_LENGTH, response.content().readableBytes());
+        ctx.writeAndFlush(response).addListener(ChannelFutureListener.CLOSE);
+    }
+
+    /**
+     * 是否为指标抓取请求
+     *
+     * @param request 请求
+     * @return 是否为 GET /metrics
+     */
+    private static boolean isMetricsRequest(FullHttpRequest request) {
+        if (!HttpMethod.GET.equals(request.method())) {
+            return false;
+        }
+        String uri = request.uri();
+        int query = uri.indexOf('?');
+        return METRICS_URI.equals(query < 0 ? uri : uri.substring(0, query));
+    }
+}
@@ -0,0 +1,57 @@
+package cn.xxt.gatewaynetty.metrics;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: 设备到 ThingsBoard 链路上的耗时阶段
+ * @author: Havad
+ * @create: 2026-10-18 17:25
+ **/
+
+@Getter
+@AllArgsConstructor
+public enum Stage {
+    /**
+     * 帧解码：JsonProtocolDecoder / PduFrameDecoder 处理一次读到的数据
+     */
+    DECODE("decode"),
+    /**
+     * 数据处理器：DataInbound*Handler 处理一条消息
+     */
+    HANDLER("handler"),
+    /**
+     * Kafka 发送：调用 send 到 Broker 确认
+     */
+    KAFKA_SEND("kafka_send"),
+    /**
+     * Kafka 排队：发送到消费者取到消息（跨进程，毫秒精度）
+     */
+    KAFKA_QUEUE("kafka_queue"),
+    /**
+     * Disruptor 排队：发布到处理器取到事件（进程内，纳秒精度）
+     */
+    BUS_QUEUE("bus_queue"),
+    /**
+     * 构建 MQTT 消息
+     */
+    BUILD("build"),
+    /**
+     * MQTT 发布队列中的等待时间
+     */
+    MQTT_QUEUE("mqtt_queue"),
+    /**
+     * MQTT 发布：发出到 Broker 确认（含重试）
+     */
+    MQTT_PUBLISH("mqtt_publish"),
+    /**
+     * 端到端：网关收到设备数据到消费者构建好 MQTT 消息、交给发布队列（经 Kafka 时跨进程，毫秒精度）
+     */
+    END_TO_END("end_to_end");
+
+    /**
+     * 指标标签值
+     */
+    private final String label;
+}
@@ -0,0 +1,327 @@
+package cn.xxt.gatewaynetty.mqtt;
+
+import cn.xxt.gatewaynetty.util.LogUtils;
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PreDestroy;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: 基于异步客户端的 MQTT 发布器，用在途窗口限流，按确认回调统计发布结果
+ * @author: Havad
+ * @create: 2026-10-18 12:50
+ **/
+
+@Component
+public class MqttAsyncPublisher {
+    /**
+     * MQTT异步客户端
+     */
+    private final MqttAsyncClient mqttClient;
+    /**
+     * 在途窗口，每条已发出但未收到确认的消息占用一个许可
+     */
+    private final Semaphore window;
+    /**
+     * 窗口大小
+     */
+    private final int maxInflight;
+    /**
+     * 等待窗口许可的最长时间（毫秒）
+     */
+    private final long acquireTimeoutMillis;
+    /**
+     * 单条消息的最大重试次数
+     */
+    private final int maxRetries;
+    /**
+     * 重试的基础间隔（毫秒），第 n 次重试等待 n 倍间隔
+     */
+    private final long retryDelayMillis;
+
+    /**
+     * 重试调度器
+     */
+    private final ScheduledExecutorService retryScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "mqtt-publish-retry");
+        t.setDaemon(true);
+        return t;
+    });
+
+    /**
+     * 已发出的消息数（不含重试）
+     */
+    private final LongAdder publishedCount = new LongAdder();
+    /**
+     * 已确认的消息数
+     */
+    private final LongAdder ackedCount = new LongAdder();
+    /**
+     * 最终失败的消息数
+     */
+    private final LongAdder failedCount = new LongAdder();
+    /**
+     * 重试次数
+     */
+    private final LongAdder retriedCount = new LongAdder();
+    /**
+     * 已确认消息的发布耗时总和（纳秒）
+     */
+    private final LongAdder latencyNanosTotal = new LongAdder();
+    /**
+     * 最大发布耗时（纳秒）
+     */
+    private final AtomicLong maxLatencyNanos = new AtomicLong();
+
+    public MqttAsyncPublisher(MqttAsyncClient mqttClient,
+                              @Value("${mqtt.max-inflight:100}") int maxInflight,
+                              @Value("${mqtt.publisher.acquire-timeout-millis:5000}") long acquireTimeoutMillis,
+                              @Value("${mqtt.publisher.max-retries:3}") int maxRetries,
+                              @Value("${mqtt.publisher.retry-delay-millis:1000}") long retryDelayMillis) {
+        this.mqttClient = mqttClient;
+        this.maxInflight = maxInflight;
+        this.window = new Semaphore(maxInflight);
+        this.acquireTimeoutMillis = acquireTimeoutMillis;
+        this.maxRetries = maxRetries;
+        this.retryDelayMillis = retryDelayMillis;
+    }
+
+    /**
+     * 发布消息，窗口已满时最多阻塞 acquire-timeout-millis 等待许可
+     * <p>
+     * 不能在 Paho 回调线程中调用：窗口许可在同一线程上归还，阻塞会造成死锁，此时应使用
+     * {@link #publishNonBlocking(String, MqttMessage)}。
+     *
+     * @param topic   主题
+     * @param message 消息
+     * @return 收到 Broker 确认时完成；重试耗尽或等待窗口超时时以异常完成
+     */
+    public CompletableFuture<Void> publish(String topic, MqttMessage message) {
+        PublishRequest request = new PublishRequest(topic, message);
+        publishedCount.increment();
+        boolean acquired;
+        try {
+            acquired = window.tryAcquire(acquireTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            acquired = false;
+        }
+        if (!acquired) {
+            failedCount.increment();
+            request.future.completeExceptionally(new MqttException(MqttException.REASON_CODE_MAX_INFLIGHT));
+            return request.future;
+        }
+        send(request);
+        return request.future;
+    }
+
+    /**
+     * 发布消息，调用线程不会阻塞；窗口已满时交给重试线程等待许可
+     *
+     * @param topic   主题
+     * @param message 消息
+     * @return 收到 Broker 确认时完成；重试耗尽时以异常完成
+     */
+    public CompletableFuture<Void> publishNonBlocking(String topic, MqttMessage message) {
+        PublishRequest request = new PublishRequest(topic, message);
+        publishedCount.increment();
+        if (window.tryAcquire()) {
+            send(request);
+        } else {
+            scheduleSend(request, retryDelayMillis);
+        }
+        return request.future;
+    }
+
+    /**
+     * 发出消息，调用前必须已持有一个窗口许可
+     *
+     * @param request 发布请求
+     */
+    private void send(PublishRequest request) {
+        request.attempts++;
+        long start = System.nanoTime();
+        try {
+            mqttClient.publish(request.topic, request.message, null, new IMqttActionListener() {
+                @Override
+                public void onSuccess(IMqttToken token) {
+                    window.release();
+                    recordLatency(System.nanoTime() - start);
+                    ackedCount.increment();
+                    request.future.complete(null);
+                }
+
+                @Override
+                public void onFailure(IMqttToken token, Throwable exception) {
+                    window.release();
+                    handleFailure(request, exception);
+                }
+            });
+        } catch (MqttException | RuntimeException e) {
+            window.release();
+            handleFailure(request, e);
+        }
+    }
+
+    /**
+     * 处理发布失败：未超过重试次数时延迟重试，否则以异常结束
+     *
+     * @param request 发布请求
+     * @param cause   失败原因
+     */
+    private void handleFailure(PublishRequest request, Throwable cause) {
+        if (request.attempts <= maxRetries) {
+            retriedCount.increment();
+            LogUtils.logBusiness("MQTT消息发布失败，第{}次重试, 主题:{}, 原因:{}",
+                    request.attempts, request.topic, cause.getMessage());
+            scheduleSend(request, retryDelayMillis * request.attempts);
+        } else {
+            failedCount.increment();
+            request.future.completeExceptionally(cause);
+        }
+    }
+
+    /**
+     * 在重试线程上延迟发送，拿不到窗口许可时继续等待，不计入重试次数
+     *
+     * @param request 发布请求
+     * @param delay   延迟（毫秒）
+     */
+    private void scheduleSend(PublishRequest request, long delay) {
+        try {
+            retryScheduler.schedule(() -> {
+                if (window.tryAcquire()) {
+                    send(request);
+                } else {
+                    scheduleSend(request, retryDelayMillis);
+                }
+            }, delay, TimeUnit.MILLISECONDS);
+        } catch (RuntimeException e) {
+            // 调度器已关闭
+            failedCount.increment();
+            request.future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * 记录一次发布耗时
+     *
+     * @param nanos 耗时（纳秒）
+     */
+    private void recordLatency(long nanos) {
+        latencyNanosTotal.add(nanos);
+        maxLatencyNanos.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * 关闭重试调度器
+     */
+    @PreDestroy
+    public void shutdown() {
+        retryScheduler.shutdownNow();
+    }
+
+    /**
+     * 已发出的消息数（不含重试）
+     *
+     * @return 消息数
+     */
+    public long getPublishedCount() {
+        return publishedCount.sum();
+    }
+
+    /**
+     * 已确认的消息数
+     *
+     * @return 消息数
+     */
+    public long getAckedCount() {
+        return ackedCount.sum();
+    }
+
+    /**
+     * 最终失败的消息数
+     *
+     * @return 消息数
+     */
+    public long getFailedCount() {
+        return failedCount.sum();
+    }
+
+    /**
+     * 重试次数
+     *
+     * @return 重试次数
+     */
+    public long getRetriedCount() {
+        return retriedCount.sum();
+    }
+
+    /**
+     * 当前在途（已发出未确认）的消息数
+     *
+     * @return 消息数
+     */
+    public int getInflightCount() {
+        return maxInflight - window.availablePermits();
+    }
+
+    /**
+     * 已确认消息的平均发布耗时
+     *
+     * @return 平均耗时（毫秒）
+     */
+    public double getAverageLatencyMillis() {
+        long acked = ackedCount.sum();
+        return acked == 0 ? 0 : latencyNanosTotal.sum() / (double) acked / TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * 最大发布耗时
+     *
+     * @return 最大耗时（毫秒）
+     */
+    public double getMaxLatencyMillis() {
+        return maxLatencyNanos.get() / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+
+    /**
+     * 一条待发布的消息及其重试状态
+     */
+    private static final class PublishRequest {
+        /**
+         * 主题
+         */
+        private final String topic;
+        /**
+         * 消息
+         */
+        private final MqttMessage message;
+        /**
+         * 发布结果
+         */
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+        /**
+         * 已尝试发送的次数，只在持有窗口许可的线程中修改
+         */
+        private volatile int attempts;
+
+        PublishRequest(String topic, MqttMessage message) {
+            this.topic = topic;
+            this.message = message;
+        }
+    }
+}
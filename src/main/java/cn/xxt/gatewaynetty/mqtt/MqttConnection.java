@@ -1,15 +1,20 @@
 package cn.xxt.gatewaynetty.mqtt;
 
 import cn.xxt.gatewaynetty.util.LogUtils;
+import lombok.AccessLevel;
 import lombok.Getter;
-import org.eclipse.paho.client.mqttv3.MqttClient;
+import org.eclipse.paho.client.mqttv3.IMqttActionListener;
+import org.eclipse.paho.client.mqttv3.IMqttToken;
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
 import org.eclipse.paho.client.mqttv3.MqttConnectOptions;
 import org.eclipse.paho.client.mqttv3.MqttException;
 import org.eclipse.paho.client.mqttv3.persist.MemoryPersistence;
 
+import java.util.concurrent.atomic.AtomicBoolean;
+
 /**
  * @program: gateway-cn.xxt.gatewaynetty.netty
- * @description: 管理MQTT连接
+ * @description: 管理MQTT连接，所有重连都经由本类发起，同一时刻只有一次连接在进行
  * @author: Havad
  * @create: 2025-02-08 11:48
  **/
@@ -29,22 +34,37 @@ public class MqttConnection {
      */
     private final String username;
     /**
-     * MQTT客户端实例
+     * 允许同时等待确认的最大消息数
+     */
+    private final int maxInflight;
+    /**
+     * MQTT客户端实例，所有发布和订阅均为异步
+     */
+    private MqttAsyncClient mqttClient;
+    /**
+     * 连接选项，重连时复用
+     */
+    private MqttConnectOptions connectOptions;
+    /**
+     * 是否有重连正在进行
      */
-    private MqttClient mqttClient;
+    @Getter(AccessLevel.NONE)
+    private final AtomicBoolean reconnecting = new AtomicBoolean(false);
 
     /**
      * 构造MqttConnection对象。
      *
      * @param mqttUrl  MQTT服务器URL
      * @param clientId 客户端ID
-     * @param username MQTT用户名
+     * @param username    MQTT用户名
+     * @param maxInflight 允许同时等待确认的最大消息数
      * @throws RuntimeException 如果初始化MQTT客户端失败
      */
-    public MqttConnection(String mqttUrl, String clientId, String username) {
+    public MqttConnection(String mqttUrl, String clientId, String username, int maxInflight) {
         this.mqttUrl = mqttUrl;
         this.clientId = clientId;
         this.username = username;
+        this.maxInflight = maxInflight;
 
         try {
             initMqttClient();
@@ -60,14 +80,13 @@ public class MqttConnection {
      *
      * @throws MqttException 当连接过程中发生错误时抛出此异常
      */
-    @SuppressWarnings("checkstyle:MagicNumber")
     private void initMqttClient() throws MqttException {
         // 1. 创建持久化对象
         // 使用内存持久化
         MemoryPersistence memoryPersistence = new MemoryPersistence();
 
         // 2. 创建 MQTT 客户端
-        mqttClient = new MqttClient(
+        mqttClient = new MqttAsyncClient(
                 this.mqttUrl,
                 this.clientId,
                 memoryPersistence
@@ -79,11 +98,57 @@ public class MqttConnection {
         connOpts.setCleanSession(true); // 设置为 true，表示每次连接都清除之前的会话
         // Thingsboard 需要用户名认证
         connOpts.setUserName(this.username);
-        // 默认值通常为10，可以根据需要调高
-        connOpts.setMaxInflight(100);
+        // 默认值通常为10，可以根据需要调高，需与发布窗口保持一致
+        connOpts.setMaxInflight(maxInflight);
+        connectOptions = connOpts;
 
-        // 4. 连接 MQTT Broker
-        mqttClient.connect(connOpts);
+        // 4. 连接 MQTT Broker，启动时同步等待连接结果
+        mqttClient.connect(connOpts).waitForCompletion();
         LogUtils.logBusiness("=====网关成功建立MQTT连接=====");
     }
+
+    /**
+     * 使用初始的连接选项重新连接，阻塞直到连接完成或失败
+     *
+     * @throws MqttException 连接失败或已有连接正在进行时抛出
+     */
+    public void reconnect() throws MqttException {
+        if (mqttClient.isConnected()) {
+            return;
+        }
+        if (!reconnecting.compareAndSet(false, true)) {
+            throw new MqttException(MqttException.REASON_CODE_CONNECT_IN_PROGRESS);
+        }
+        try {
+            mqttClient.connect(connectOptions).waitForCompletion();
+        } finally {
+            reconnecting.set(false);
+        }
+    }
+
+    /**
+     * 使用初始的连接选项异步重新连接，不等待结果；已连接或已有重连正在进行时直接返回
+     */
+    public void reconnectAsync() {
+        if (mqttClient.isConnected() || !reconnecting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            mqttClient.connect(connectOptions, null, new IMqttActionListener() {
+                @Override
+                public void onSuccess(IMqttToken asyncActionToken) {
+                    reconnecting.set(false);
+                }
+
+                @Override
+                public void onFailure(IMqttToken asyncActionToken, Throwable exception) {
+                    reconnecting.set(false);
+                    LogUtils.logBusiness("MQTT客户端重连失败: {}", exception.getMessage());
+                }
+            });
+        } catch (MqttException e) {
+            reconnecting.set(false);
+            LogUtils.logBusiness("MQTT客户端重连失败: {}", e.getMessage());
+        }
+    }
 }
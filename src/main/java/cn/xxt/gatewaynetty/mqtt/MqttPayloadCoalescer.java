@@ -0,0 +1,232 @@
+package cn.xxt.gatewaynetty.mqtt;
+
+import cn.xxt.gatewaynetty.netty.config.GatewayConfig;
+import cn.xxt.gatewaynetty.util.LogUtils;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: 将同一主题下多个设备的遥测/属性消息合并为一条网关消息
+ * @author: Havad
+ * @create: 2026-10-18 12:10
+ **/
+
+public class MqttPayloadCoalescer {
+    /**
+     * 对象映射器
+     */
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    /**
+     * 合并后单条消息的最大字节数
+     */
+    private final int maxPayloadBytes;
+
+    public MqttPayloadCoalescer(int maxPayloadBytes) {
+        this.maxPayloadBytes = maxPayloadBytes;
+    }
+
+    /**
+     * 合并一批待发布的消息
+     * <p>
+     * ThingsBoard 网关的遥测主题接受 {"设备A":[...],"设备B":[...]}，属性主题接受 {"设备A":{...},"设备B":{...}}，
+     * 因此这两个主题的消息可以按设备名合并；同一设备在遥测中出现多次时拼接数组，在属性中出现多次时后者覆盖前者。
+     * 连接/断开主题每条消息只能声明一个设备，以及无法解析为 JSON 对象的消息，都原样保留。
+     * 结果按各组首条消息出现的顺序排列。
+     * <p>
+     * 批次占用其首条消息的位置，因此原样保留的消息到达时，先关闭含有其所声明设备的批次，
+     * 该设备之后的消息另起批次、排在它后面，保证同一设备不会出现后发的遥测先于先发的连接/断开；
+     * 无法确定所属设备时关闭全部批次。
+     *
+     * @param tasks 按入队顺序排列的消息
+     * @return 合并后的消息
+     */
+    public List<MqttSender.MqttPublishTask> coalesce(List<MqttSender.MqttPublishTask> tasks) {
+        List<MqttSender.MqttPublishTask> result = new ArrayList<>(tasks.size());
+        // 每个可合并主题当前正在累积的批次
+        Map<String, Batch> openBatches = new LinkedHashMap<>();
+        // result 中为批次预留的位置
+        Map<Batch, Integer> slots = new LinkedHashMap<>();
+
+        for (MqttSender.MqttPublishTask task : tasks) {
+            String topic = task.getTopic();
+            boolean mergeable = isMergeable(topic);
+            ObjectNode payload = mergeable ? parseObject(task.getMessage()) : null;
+            if (payload == null) {
+                closeBatches(openBatches, mergeable ? null : declaredDevice(task.getMessage()));
+                result.add(task);
+                continue;
+            }
+
+            int size = task.getMessage().getPayload().length;
+            Batch batch = openBatches.get(topic);
+            if (batch != null && batch.size + size > maxPayloadBytes) {
+                // 当前批次已满，另起一个批次
+                batch = null;
+            }
+            if (batch == null) {
+                batch = new Batch(topic);
+                openBatches.put(topic, batch);
+                slots.put(batch, result.size());
+                result.add(null);
+            }
+            batch.merge(payload, size, task.getMessage().getQos(), task.getReceipts());
+        }
+
+        for (Map.Entry<Batch, Integer> slot : slots.entrySet()) {
+            result.set(slot.getValue(), slot.getKey().toTask());
+        }
+        return result;
+    }
+
+    /**
+     * 关闭涉及指定设备的批次，之后同主题的消息另起批次
+     *
+     * @param openBatches 各主题正在累积的批次
+     * @param device      设备名，为 null 时关闭全部批次
+     */
+    private static void closeBatches(Map<String, Batch> openBatches, String device) {
+        if (device == null) {
+            openBatches.clear();
+            return;
+        }
+        openBatches.values().removeIf(batch -> batch.contains(device));
+    }
+
+    /**
+     * 读取原样保留的消息所声明的设备
+     *
+     * @param message MQTT 消息
+     * @return 消息体中 device 字段的值，无法确定时返回 null
+     */
+    private static String declaredDevice(MqttMessage message) {
+        ObjectNode node = parseObject(message);
+        JsonNode device = node == null ? null : node.get("device");
+        return device != null && device.isTextual() ? device.asText() : null;
+    }
+
+    /**
+     * 判断主题是否支持按设备合并
+     *
+     * @param topic 主题
+     * @return 支持合并返回 true
+     */
+    private static boolean isMergeable(String topic) {
+        return GatewayConfig.TELEMETRY_TOPIC.equals(topic) || GatewayConfig.ATTRIBUTE_TOPIC.equals(topic);
+    }
+
+    /**
+     * 将消息体解析为 JSON 对象
+     *
+     * @param message MQTT 消息
+     * @return JSON 对象，不是对象或解析失败时返回 null
+     */
+    private static ObjectNode parseObject(MqttMessage message) {
+        try {
+            JsonNode node = OBJECT_MAPPER.readTree(message.getPayload());
+            return node instanceof ObjectNode ? (ObjectNode) node : null;
+        } catch (IOException e) {
+            LogUtils.logBusiness("MQTT消息不是合法的JSON，跳过合并: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * 同一主题下正在累积的合并批次
+     */
+    private static final class Batch {
+        /**
+         * 主题
+         */
+        private final String topic;
+        /**
+         * 合并后的消息体
+         */
+        private final ObjectNode payload = OBJECT_MAPPER.createObjectNode();
+        /**
+         * 已合并消息的原始字节数之和，作为合并后大小的上界
+         */
+        private int size;
+        /**
+         * 合并后的 QoS，取各条消息的最大值
+         */
+        private int qos;
+        /**
+         * 已合并的消息条数
+         */
+        private int count;
+        /**
+         * 已合并的磁盘缓存消息的回执
+         */
+        private final List<MqttSpool.Receipt> receipts = new ArrayList<>();
+
+        Batch(String topic) {
+            this.topic = topic;
+        }
+
+        /**
+         * 合并一条消息
+         *
+         * @param part         消息体
+         * @param partSize     消息字节数
+         * @param partQos      消息 QoS
+         * @param partReceipts 消息的磁盘缓存回执
+         */
+        void merge(ObjectNode part, int partSize, int partQos, List<MqttSpool.Receipt> partReceipts) {
+            Iterator<Map.Entry<String, JsonNode>> fields = part.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                JsonNode existing = payload.get(field.getKey());
+                JsonNode value = field.getValue();
+                if (existing instanceof ArrayNode && value instanceof ArrayNode) {
+                    ((ArrayNode) existing).addAll((ArrayNode) value);
+                } else if (existing instanceof ObjectNode && value instanceof ObjectNode) {
+                    ((ObjectNode) existing).setAll((ObjectNode) value);
+                } else {
+                    payload.set(field.getKey(), value);
+                }
+            }
+            size += partSize;
+            qos = Math.max(qos, partQos);
+            count++;
+            receipts.addAll(partReceipts);
+        }
+
+        /**
+         * 判断批次中是否含有指定设备的数据
+         *
+         * @param device 设备名
+         * @return 含有返回 true
+         */
+        boolean contains(String device) {
+            return payload.has(device);
+        }
+
+        /**
+         * 生成合并后的发布任务
+         *
+         * @return 发布任务
+         */
+        MqttSender.MqttPublishTask toTask() {
+            MqttMessage message;
+            try {
+                message = new MqttMessage(OBJECT_MAPPER.writeValueAsBytes(payload));
+            } catch (IOException e) {
+                throw new IllegalStateException("序列化合并后的MQTT消息失败", e);
+            }
+            message.setQos(qos);
+            return new MqttSender.MqttPublishTask(topic, message, count, receipts);
+        }
+    }
+}
@@ -9,27 +9,33 @@ import cn.xxt.gatewaynetty.netty.model.DeviceData;
 import cn.xxt.gatewaynetty.mqtt.parser.MqttMessageParser;
 import cn.xxt.gatewaynetty.mqtt.parser.MqttMessageParserFactory;
 import cn.xxt.gatewaynetty.netty.protocol.ProtocolIdentifier;
+import cn.xxt.gatewaynetty.netty.videophone.image.FaceImageFetcher;
 import cn.xxt.gatewaynetty.netty.videophone.task.Task;
 import cn.xxt.gatewaynetty.netty.videophone.task.TaskManager;
 import cn.xxt.gatewaynetty.util.LogUtils;
-import cn.xxt.gatewaynetty.kafka.DeviceDataKafkaProducer;
+import cn.xxt.gatewaynetty.bus.DeviceDataBus;
 import org.eclipse.paho.client.mqttv3.IMqttDeliveryToken;
-import org.eclipse.paho.client.mqttv3.MqttCallback;
-import org.eclipse.paho.client.mqttv3.MqttClient;
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.MqttCallbackExtended;
 import org.eclipse.paho.client.mqttv3.MqttException;
 import org.eclipse.paho.client.mqttv3.MqttMessage;
+import io.netty.util.concurrent.DefaultThreadFactory;
 
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
-import static cn.xxt.gatewaynetty.util.VideoParserUtil.imageUrlToBase64;
-
 
 /**
  * @program: gateway-cn.xxt.gatewaynetty.netty
@@ -39,15 +45,23 @@ import static cn.xxt.gatewaynetty.util.VideoParserUtil.imageUrlToBase64;
  **/
 
 
-public class MqttReceiver implements MqttCallback {
+public class MqttReceiver implements MqttCallbackExtended {
     /**
      * 设备数据事件生产者
      */
-    private final DeviceDataKafkaProducer producer;
+    private final DeviceDataBus producer;
+    /**
+     * MQTT连接
+     */
+    private final MqttConnection mqttConnection;
     /**
      * MQTT客户端实例。
      */
-    private final MqttClient mqttClient;
+    private final MqttAsyncClient mqttClient;
+    /**
+     * 异步发布器，用于发送RPC确认
+     */
+    private final MqttAsyncPublisher publisher;
 
 
     /**
@@ -69,19 +83,43 @@ public class MqttReceiver implements MqttCallback {
      * MQTT消息解析工厂实例。
      */
     private final MqttMessageParserFactory parserFactory;
+    /**
+     * 人脸图片下载器
+     */
+    private final FaceImageFetcher imageFetcher;
+    /**
+     * 每台设备最后一个人脸任务的写入阶段，后到的任务接在其后写入，保证同一设备的任务按 RPC 到达顺序入队
+     */
+    private final ConcurrentHashMap<String, CompletableFuture<Void>> faceTaskChains = new ConcurrentHashMap<>();
+    /**
+     * 人脸 RPC 接收线程：解析人员并提交图片下载，下载队列满时在这里阻塞，不占用 MQTT 回调线程。
+     * 单线程保证同一设备的任务按 RPC 到达顺序排队；等待队列满时拒绝新的 RPC
+     */
+    private final ExecutorService faceIntake;
+    /**
+     * 人脸任务写入线程：图片就绪后在这里写入 Redis，不在 MQTT 回调线程或下载线程上访问 Redis
+     */
+    private final ExecutorService faceTaskWriter =
+            Executors.newSingleThreadExecutor(new DefaultThreadFactory("face-task-writer"));
     /**
      * 是否正在重连
      */
     private volatile boolean isReconnecting = false;
 
-    public MqttReceiver(DeviceDataKafkaProducer producer,
-                        MqttClient mqttClient, TaskManager taskManager,
-                        MqttMessageParserFactory parserFactory) {
+    public MqttReceiver(DeviceDataBus producer,
+                        MqttConnection mqttConnection, MqttAsyncPublisher publisher, TaskManager taskManager,
+                        MqttMessageParserFactory parserFactory, FaceImageFetcher imageFetcher,
+                        int faceIntakeCapacity) {
         this.producer = producer;
-        this.mqttClient = mqttClient;
+        this.mqttConnection = mqttConnection;
+        this.mqttClient = mqttConnection.getMqttClient();
+        this.publisher = publisher;
         this.taskManager = taskManager;
         this.mqttClient.setCallback(this); // 设置回调
         this.parserFactory = parserFactory;
+        this.imageFetcher = imageFetcher;
+        this.faceIntake = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(faceIntakeCapacity), new DefaultThreadFactory("face-intake"));
     }
 
     /**
@@ -91,10 +129,39 @@ public class MqttReceiver implements MqttCallback {
      */
     public void start() throws MqttException {
         // 订阅服务器的RPC命令
-        mqttClient.subscribe(GatewayConfig.RPC_TOPIC);
+        mqttClient.subscribe(GatewayConfig.RPC_TOPIC, 1).waitForCompletion();
         LogUtils.logBusiness("MQTT 订阅 RPC 地址成功");
     }
 
+    /**
+     * 停止人脸任务的接收和写入线程
+     */
+    public void stop() {
+        faceIntake.shutdownNow();
+        faceTaskWriter.shutdownNow();
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * 连接建立后调用。回调注册在首次连接之后，因此这里只会在重连后触发；
+     * 无论是本类还是发送器触发的重连，都在这里重新订阅。
+     * 该方法运行在 Paho 回调线程上，订阅以异步方式发出。
+     *
+     * @param reconnect 是否为自动重连
+     * @param serverURI 服务器地址
+     */
+    @Override
+    public void connectComplete(boolean reconnect, String serverURI) {
+        isReconnecting = false;
+        reconnectAttempts.set(0);
+        try {
+            mqttClient.subscribe(GatewayConfig.RPC_TOPIC, 1);
+            LogUtils.logBusiness("MQTT 重连成功，已重新订阅 RPC 地址");
+        } catch (MqttException e) {
+            LogUtils.logError("MQTT 重连后订阅 RPC 地址失败", e);
+        }
+    }
+
 
     /**
      * 当与服务器的连接丢失时调用此方法。
@@ -131,16 +198,9 @@ public class MqttReceiver implements MqttCallback {
 
             scheduler.schedule(() -> {
                 try {
-                    if (!mqttClient.isConnected()) {
-                        mqttClient.reconnect();
-                        LogUtils.logBusiness("Successfully reconnected to MQTT broker.");
-                        // 重连成功，重置标志位
-                        isReconnecting = false;
-                        //重置计数器
-                        reconnectAttempts.set(0);
-                        //重新订阅
-                        start();
-                    }
+                    // 重连成功后由 connectComplete 重置标志位并重新订阅
+                    mqttConnection.reconnect();
+                    LogUtils.logBusiness("Successfully reconnected to MQTT broker.");
                 } catch (Exception e) {
                     LogUtils.logBusiness("Failed to reconnect to MQTT broker: {}, retry is {}",
                             e.getMessage(), reconnectAttempts.get());
@@ -167,7 +227,7 @@ public class MqttReceiver implements MqttCallback {
     @SuppressWarnings("checkstyle:ReturnCount")
     @Override
     public void messageArrived(String topic, MqttMessage message) throws Exception {
-        LogUtils.logBusiness("【收到thingsboard】的消息 {}", message);
+        LogUtils.logDebug("【收到thingsboard】的消息 {}", message);
         String messageContent = new String(message.getPayload());
         ObjectMapper objectMapper = new ObjectMapper();
         JsonNode rootNode = objectMapper.readTree(messageContent);
@@ -183,36 +243,13 @@ public class MqttReceiver implements MqttCallback {
             return;
         } else if (protocolType.equals(ProtocolIdentifier.PROTOCOL_VIDEO_FACE)) {
             LogUtils.logBusiness("视频话机白名单处理");
-            JsonNode paramsNode = dataNode.get("params");
-            String taskId = paramsNode.get("taskId").asText();
-            JsonNode bodyNode = paramsNode.get("body");
-            List<Map<String, Object>> personList = new ArrayList<>();
-            if (bodyNode.isArray()) {
-                for (JsonNode personNode : bodyNode) {
-                    Map<String, Object> personMap = new HashMap<>();
-                    int operType = personNode.get("operType").asInt();
-                    if (operType == 1) {
-                        LogUtils.logBusiness("下发人脸");
-                        personMap.put("operType", operType);
-                        personMap.put("id", personNode.get("id").asText());
-                        personMap.put("number", personNode.get("number").asText());
-                        personMap.put("depName", personNode.get("depName").asText());
-                        personMap.put("userType", personNode.get("userType").asInt());
-                        personMap.put("name", personNode.get("name").asText());
-                        personMap.put("cardNo", personNode.get("cardNo").asText());
-                        String base64 = imageUrlToBase64(personNode.get("imageUrl").asText());
-                        personMap.put("picture", base64);
-                    } else {
-                        LogUtils.logBusiness("删除人脸");
-                        personMap.put("operType", operType);
-                        personMap.put("id", personNode.get("id").asText());
-                    }
-                    personList.add(personMap);
-                }
+            try {
+                faceIntake.execute(() -> acceptFaceTask(device, dataNode.get("params")));
+            } catch (RejectedExecutionException e) {
+                // 回复失败，由平台稍后重试
+                LogUtils.logSampled("face.intake.full", device, "人脸任务接收队列已满，拒绝RPC, 设备:{}, 请求ID:{}", device, id);
+                sendRpcResponse(topic, device, id, false);
             }
-            Task task = new Task(taskId, device, personList);
-            taskManager.addTask(device, task);
-            LogUtils.logBusiness("Added task {} for device {}", task.getTaskId(), device);
             return;
         }
 
@@ -227,6 +264,120 @@ public class MqttReceiver implements MqttCallback {
         sendConfirmationResponse(topic, device, id);
     }
 
+    /**
+     * 在人脸 RPC 接收线程上解析人员、提交图片下载，并按到达顺序排队写入任务
+     *
+     * @param device     设备ID
+     * @param paramsNode RPC 参数
+     */
+    private void acceptFaceTask(String device, JsonNode paramsNode) {
+        try {
+            parseFaceTask(device, paramsNode);
+        } catch (RuntimeException e) {
+            LogUtils.logError("处理人脸任务失败, 设备:{}", e, device);
+        }
+    }
+
+    /**
+     * 解析人员并提交图片下载，所有图片就绪后写入任务
+     *
+     * @param device     设备ID
+     * @param paramsNode RPC 参数
+     */
+    private void parseFaceTask(String device, JsonNode paramsNode) {
+        String taskId = paramsNode.get("taskId").asText();
+        JsonNode bodyNode = paramsNode.get("body");
+        List<Map<String, Object>> personList = new ArrayList<>();
+        List<CompletableFuture<Void>> pictures = new ArrayList<>();
+        if (bodyNode.isArray()) {
+            for (JsonNode personNode : bodyNode) {
+                Map<String, Object> personMap = new HashMap<>();
+                int operType = personNode.get("operType").asInt();
+                if (operType == 1) {
+                    LogUtils.logBusiness("下发人脸");
+                    personMap.put("operType", operType);
+                    personMap.put("id", personNode.get("id").asText());
+                    personMap.put("number", personNode.get("number").asText());
+                    personMap.put("depName", personNode.get("depName").asText());
+                    personMap.put("userType", personNode.get("userType").asInt());
+                    personMap.put("name", personNode.get("name").asText());
+                    personMap.put("cardNo", personNode.get("cardNo").asText());
+                    // 图片在下载线程池中获取，下载队列满时阻塞本线程
+                    String imageUrl = personNode.get("imageUrl").asText();
+                    pictures.add(imageFetcher.fetchBase64(imageUrl).handle((base64, e) -> {
+                        if (e != null) {
+                            LogUtils.logError("人脸图片下载失败, 任务:{}, 人员:{}, 地址:{}", e, taskId,
+                                    personMap.get("id"), imageUrl);
+                        } else {
+                            personMap.put("picture", base64);
+                        }
+                        return null;
+                    }));
+                } else {
+                    LogUtils.logBusiness("删除人脸");
+                    personMap.put("operType", operType);
+                    personMap.put("id", personNode.get("id").asText());
+                }
+                personList.add(personMap);
+            }
+        }
+        // 图片并行下载，所有图片就绪且同一设备之前的任务已写入后再写入任务队列
+        CompletableFuture<Void> ready = CompletableFuture.allOf(pictures.toArray(new CompletableFuture<?>[0]));
+        chainFaceTask(device, ready, () -> addFaceTask(taskId, device, personList));
+    }
+
+    /**
+     * 把人脸任务的写入接在同一设备上一个任务之后
+     * <p>
+     * 只删除人员的任务不需要下载图片，如果直接写入会越过之前仍在下载图片的新增任务。
+     *
+     * @param device 设备ID
+     * @param ready  本任务的图片全部就绪（成功或失败）时完成
+     * @param write  写入任务
+     */
+    private void chainFaceTask(String device, CompletableFuture<Void> ready, Runnable write) {
+        CompletableFuture<Void> written = new CompletableFuture<>();
+        CompletableFuture<Void> previous = faceTaskChains.put(device, written);
+        CompletableFuture<Void> start = previous == null ? ready : previous.thenCompose(v -> ready);
+        start.thenRunAsync(write, faceTaskWriter).whenComplete((v, e) -> {
+            // 写入失败已在 addFaceTask 中记录，写入线程已关闭时放弃，均不阻塞后续任务
+            faceTaskChains.remove(device, written);
+            written.complete(null);
+        });
+    }
+
+    /**
+     * 写入人脸任务，图片下载失败的人员不下发
+     *
+     * @param taskId     任务ID
+     * @param device     设备ID
+     * @param personList 人员列表
+     */
+    private void addFaceTask(String taskId, String device, List<Map<String, Object>> personList) {
+        List<Object> dropped = new ArrayList<>();
+        personList.removeIf(person -> {
+            boolean missing = Integer.valueOf(1).equals(person.get("operType")) && !person.containsKey("picture");
+            if (missing) {
+                dropped.add(person.get("id"));
+            }
+            return missing;
+        });
+        if (!dropped.isEmpty()) {
+            LogUtils.logBusiness("任务{}中{}名人员图片获取失败未下发, 设备:{}, 人员:{}", taskId, dropped.size(), device, dropped);
+        }
+        if (personList.isEmpty()) {
+            LogUtils.logBusiness("任务{}没有可下发的人员, 设备:{}", taskId, device);
+            return;
+        }
+        try {
+            Task task = new Task(taskId, device, personList);
+            taskManager.addTask(device, task);
+            LogUtils.logBusiness("Added task {} for device {}", task.getTaskId(), device);
+        } catch (RuntimeException e) {
+            LogUtils.logError("写入人脸任务失败, 任务:{}, 设备:{}", e, taskId, device);
+        }
+    }
+
     /**
      * 确定协议类型的方法
      *
@@ -275,23 +426,38 @@ public class MqttReceiver implements MqttCallback {
      * @param originalTopic 原始Topic
      * @param deviceId      设备ID
      * @param requestId     请求ID
-     * @throws Exception 发送过程中遇到异常时抛出
      */
-    private void sendConfirmationResponse(String originalTopic, String deviceId, int requestId) throws Exception {
+    private void sendConfirmationResponse(String originalTopic, String deviceId, int requestId) {
+        sendRpcResponse(originalTopic, deviceId, requestId, true);
+    }
+
+    /**
+     * 发送 RPC 响应到指定Topic。
+     *
+     * @param originalTopic 原始Topic
+     * @param deviceId      设备ID
+     * @param requestId     请求ID
+     * @param success       是否处理成功
+     */
+    private void sendRpcResponse(String originalTopic, String deviceId, int requestId, boolean success) {
         // 构建响应 JSON
         JSONObject responseJson = new JSONObject();
         responseJson.put("device", deviceId);
         responseJson.put("id", requestId);
         JSONObject dataJson = new JSONObject();
-        dataJson.put("success", true);
+        dataJson.put("success", success);
         responseJson.put("data", dataJson);
 
         // 创建 MQTT 消息
         MqttMessage responseMessage = new MqttMessage(responseJson.toString().getBytes());
         responseMessage.setQos(1); // 设置 QoS 等级
 
-        // 发布响应消息到相同的 Topic
-        mqttClient.publish(originalTopic, responseMessage);
+        // 发布响应消息到相同的 Topic，当前处于 Paho 回调线程，不能阻塞等待确认
+        publisher.publishNonBlocking(originalTopic, responseMessage).whenComplete((v, e) -> {
+            if (e != null) {
+                LogUtils.logBusiness("RPC确认发送失败, 设备:{}, 请求ID:{}, 原因:{}", deviceId, requestId, e.getMessage());
+            }
+        });
     }
 
 }
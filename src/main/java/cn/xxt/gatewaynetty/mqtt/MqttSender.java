@@ -2,17 +2,25 @@ package cn.xxt.gatewaynetty.mqtt;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import cn.xxt.gatewaynetty.metrics.GatewayMetrics;
+import cn.xxt.gatewaynetty.metrics.MetricCounter;
+import cn.xxt.gatewaynetty.metrics.Stage;
 import cn.xxt.gatewaynetty.netty.config.GatewayConfig;
 import cn.xxt.gatewaynetty.util.LogUtils;
 import lombok.Getter;
-import org.eclipse.paho.client.mqttv3.MqttClient;
-import org.eclipse.paho.client.mqttv3.MqttException;
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
 import org.eclipse.paho.client.mqttv3.MqttMessage;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.concurrent.ArrayBlockingQueue;
@@ -24,7 +32,7 @@ import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * @program: gateway-cn.xxt.gatewaynetty.netty
- * @description: 用于发送给TB，增加了消息队列和限流机制
+ * @description: 用于发送给TB，增加了消息队列、限流、多设备消息合并和磁盘缓存机制
  * @author: Havad
  * @create: 2025-02-25 14:36
  **/
@@ -35,26 +43,49 @@ public class MqttSender {
     /**
      * MQTT客户端实例。
      */
-    private final MqttClient mqttClient;
+    private final MqttAsyncClient mqttClient;
+    /**
+     * MQTT连接管理，重连统一经由此对象发起
+     */
+    private final MqttConnection mqttConnection;
+    /**
+     * 异步发布器
+     */
+    private final MqttAsyncPublisher publisher;
     /**
      * 随机数生成器实例。
      */
     private static final Random RANDOM = new Random();
 
     /**
-     * 消息队列最大容量
+     * 每秒处理队列的次数，每次处理一批合并后的消息
      */
-    private static final int QUEUE_CAPACITY = 1000;
+    private static final int MAX_PUBLISH_RATE = 50;
 
     /**
-     * 发布消息的最大速率 (条/秒)
+     * 消息处理队列
      */
-    private static final int MAX_PUBLISH_RATE = 50;
+    private final BlockingQueue<MqttPublishTask> messageQueue;
 
     /**
-     * 消息处理队列
+     * 每次从队列中取出的最大消息数
+     */
+    private final int maxBatchMessages;
+
+    /**
+     * 多设备消息合并器
+     */
+    private final MqttPayloadCoalescer coalescer;
+
+    /**
+     * 磁盘缓存，Broker 不可用、队列已满或发布最终失败的消息写入这里，恢复后按速率重放
      */
-    private final BlockingQueue<MqttPublishTask> messageQueue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final MqttSpool spool;
+
+    /**
+     * 每次从磁盘缓存重放的最大消息数
+     */
+    private final int spoolDrainPerTick;
 
     /**
      * 调度器，用于定期从队列提取消息并发布
@@ -66,21 +97,43 @@ public class MqttSender {
      */
     private final AtomicBoolean processorStarted = new AtomicBoolean(false);
 
+    /**
+     * 上次触发重连的时间（System.nanoTime）
+     */
+    private long lastReconnectAttempt;
+
     /**
      * 构造函数
      *
-     * @param mqttClient MQTT客户端对象
+     * @param mqttConnection    MQTT连接管理
+     * @param publisher         异步发布器
+     * @param spool             磁盘缓存
+     * @param queueCapacity     消息队列最大容量
+     * @param maxBatchMessages  每次从队列中取出的最大消息数
+     * @param maxPayloadBytes   合并后单条消息的最大字节数
+     * @param spoolDrainPerTick 每次从磁盘缓存重放的最大消息数
      */
     @Autowired
-    public MqttSender(MqttClient mqttClient) {
-        this.mqttClient = mqttClient;
+    public MqttSender(MqttConnection mqttConnection, MqttAsyncPublisher publisher, MqttSpool spool,
+                      @Value("${mqtt.sender.queue-capacity:10000}") int queueCapacity,
+                      @Value("${mqtt.sender.max-batch-messages:500}") int maxBatchMessages,
+                      @Value("${mqtt.sender.max-payload-bytes:65536}") int maxPayloadBytes,
+                      @Value("${mqtt.spool.drain-per-tick:100}") int spoolDrainPerTick) {
+        this.mqttConnection = mqttConnection;
+        this.mqttClient = mqttConnection.getMqttClient();
+        this.publisher = publisher;
+        this.spool = spool;
+        this.spoolDrainPerTick = spoolDrainPerTick;
+        this.messageQueue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxBatchMessages = maxBatchMessages;
+        this.coalescer = new MqttPayloadCoalescer(maxPayloadBytes);
     }
 
     /**
      * 消息发布任务类
      */
     @Getter
-    private static class MqttPublishTask {
+    static class MqttPublishTask {
         /**
          * 主题
          */
@@ -89,17 +142,41 @@ public class MqttSender {
          * MQTT消息对象。
          */
         private final MqttMessage message;
+        /**
+         * 合并进该消息的原始消息条数
+         */
+        private final int count;
+        /**
+         * 合并进该消息的磁盘缓存消息的回执，发布完成后交回磁盘缓存确认
+         */
+        private final List<MqttSpool.Receipt> receipts;
+        /**
+         * 创建（放入队列）的时间（{@link System#nanoTime()}）
+         */
+        private final long enqueuedAt;
 
         MqttPublishTask(String topic, MqttMessage message) {
+            this(topic, message, 1);
+        }
+
+        MqttPublishTask(String topic, MqttMessage message, int count) {
+            this(topic, message, count, Collections.emptyList());
+        }
+
+        MqttPublishTask(String topic, MqttMessage message, int count, List<MqttSpool.Receipt> receipts) {
             this.topic = topic;
             this.message = message;
+            this.count = count;
+            this.receipts = receipts;
+            this.enqueuedAt = System.nanoTime();
         }
 
     }
 
     /**
-     * 初始化消息处理器
+     * 初始化消息处理器，启动时即开始运行，以便重放上次退出前缓存在磁盘上的消息
      */
+    @PostConstruct
     @SuppressWarnings("checkstyle:MagicNumber")
     public void init() {
         if (processorStarted.compareAndSet(false, true)) {
@@ -109,44 +186,109 @@ public class MqttSender {
             // 启动定时任务，定期从队列中取出消息并发布
             scheduler.scheduleAtFixedRate(this::processQueuedMessages, 0, publishIntervalMs, TimeUnit.MILLISECONDS);
 
-            LogUtils.logBusiness("MQTT消息队列处理器已启动，发布速率限制为：{} 条/秒", MAX_PUBLISH_RATE);
+            GatewayMetrics.registerGauge("gateway_mqtt_pending_messages", "MQTT发布队列中等待的消息数",
+                    this::getPendingMessageCount);
+            GatewayMetrics.registerGauge("gateway_mqtt_spool_segments", "MQTT磁盘缓存中的段文件数",
+                    spool::getSegmentCount);
+            LogUtils.logBusiness("MQTT消息队列处理器已启动，每秒处理{}批，每批最多{}条消息",
+                    MAX_PUBLISH_RATE, maxBatchMessages);
         }
     }
 
     /**
      * 处理队列中的消息
+     * <p>
+     * 每次取出一批消息，将同一主题下不同设备的遥测/属性消息合并后再发布，
+     * 使吞吐量随批次大小而不是定时频率增长。
      */
     @SuppressWarnings("checkstyle:ReturnCount")
     private void processQueuedMessages() {
-        if (messageQueue.isEmpty()) {
+        if (messageQueue.isEmpty() && spool.isEmpty()) {
+            return;
+        }
+
+        if (!mqttClient.isConnected()) {
+            triggerReconnect();
+            // Broker 不可用期间把内存队列转存到磁盘，内存占用不随断线时长增长
+            spillQueueToSpool();
+            return;
+        }
+
+        // 先按限定速率重放磁盘中较早的消息，再取内存队列中的新消息
+        List<MqttPublishTask> drained = new ArrayList<>(spool.poll(spoolDrainPerTick));
+        messageQueue.drainTo(drained, maxBatchMessages);
+        if (drained.isEmpty()) {
             return;
         }
+        for (MqttPublishTask task : drained) {
+            GatewayMetrics.recordSince(Stage.MQTT_QUEUE, null, task.getEnqueuedAt());
+        }
+
+        List<MqttPublishTask> tasks;
+        try {
+            tasks = coalescer.coalesce(drained);
+        } catch (RuntimeException e) {
+            LogUtils.logError("合并MQTT消息失败，按原消息逐条发布", e);
+            tasks = drained;
+        }
 
-        MqttPublishTask task = messageQueue.poll();
-        if (task != null) {
-            try {
-                if (!mqttClient.isConnected()) {
-                    try {
-                        mqttClient.reconnect();
-                    } catch (MqttException e) {
-                        LogUtils.logBusiness("MQTT客户端重连失败: {}", e.getMessage());
-                        // 重新放回队列稍后处理
-                        messageQueue.offer(task);
-                        return;
-                    }
+        for (MqttPublishTask task : tasks) {
+            publish(task);
+        }
+    }
+
+    /**
+     * 发布一条（可能是合并后的）消息
+     * <p>
+     * 不等待 Broker 确认，在途窗口满时才会阻塞；确认结果在回调中处理，
+     * 失败重试由 {@link MqttAsyncPublisher} 负责，重试耗尽后写入磁盘缓存。
+     * 无论成功还是重新写入磁盘缓存，完成后都确认其中来自磁盘缓存的消息，使重放游标前进。
+     *
+     * @param task 发布任务
+     */
+    private void publish(MqttPublishTask task) {
+        long start = System.nanoTime();
+        publisher.publish(task.getTopic(), task.getMessage()).whenComplete((v, e) -> {
+            GatewayMetrics.recordSince(Stage.MQTT_PUBLISH, null, start);
+            if (e == null) {
+                GatewayMetrics.add(MetricCounter.MQTT_PUBLISHED, null, task.getCount());
+                LogUtils.logDebug("成功发布MQTT消息到主题: {}, 包含{}条设备消息", task.getTopic(), task.getCount());
+            } else {
+                GatewayMetrics.add(MetricCounter.MQTT_PUBLISH_FAILED, null, task.getCount());
+                LogUtils.logBusiness("发布MQTT消息失败: {}, 主题: {}, 写入磁盘缓存", e.getMessage(), task.getTopic());
+                if (!spool.append(task.getTopic(), task.getMessage())) {
+                    LogUtils.logBusiness("MQTT消息未能写入磁盘缓存，已丢弃: {}", task.getTopic());
                 }
+            }
+            spool.ack(task.getReceipts());
+        });
+    }
 
-                // 发布消息
-                mqttClient.publish(task.getTopic(), task.getMessage());
-                LogUtils.logBusiness("成功发布MQTT消息到主题: {}", task.getTopic());
-            } catch (MqttException e) {
-                LogUtils.logBusiness("发布MQTT消息失败: {}, 将重新放入队列", e.getMessage());
-                // 如果发送失败，重新放入队列尾部稍后再试
-//                boolean offered = messageQueue.offer(task);
-                LogUtils.logBusiness("当前队列中还有{}条数据", getPendingMessageCount());
-//                if (!offered) {
-//                    LogUtils.logBusiness("消息队列已满，无法重新入队: {}", task.getTopic());
-//                }
+    /**
+     * 触发异步重连，两次触发之间至少间隔一段时间，避免 Broker 不可用时频繁建连；
+     * 与 {@link MqttReceiver} 共用 {@link MqttConnection}，同一时刻只有一次连接在进行
+     */
+    @SuppressWarnings("checkstyle:MagicNumber")
+    private void triggerReconnect() {
+        long now = System.nanoTime();
+        if (now - lastReconnectAttempt < TimeUnit.SECONDS.toNanos(5)) {
+            return;
+        }
+        lastReconnectAttempt = now;
+        mqttConnection.reconnectAsync();
+    }
+
+    /**
+     * 将内存队列中的消息全部转存到磁盘缓存；未启用磁盘缓存时保留在内存队列中
+     */
+    private void spillQueueToSpool() {
+        if (!spool.isEnabled()) {
+            return;
+        }
+        MqttPublishTask task;
+        while ((task = messageQueue.poll()) != null) {
+            if (!spool.append(task.getTopic(), task.getMessage())) {
+                LogUtils.logBusiness("MQTT消息未能写入磁盘缓存，已丢弃: {}", task.getTopic());
             }
         }
     }
@@ -168,15 +310,24 @@ public class MqttSender {
         boolean success = messageQueue.offer(task);
 
         if (!success) {
-            LogUtils.logBusiness("MQTT消息队列已满，无法添加新消息: {}", topic);
+            // 内存队列已满时写入磁盘缓存
+            success = spool.append(topic, message);
+            if (!success) {
+                GatewayMetrics.increment(MetricCounter.MQTT_DROPPED, null);
+                LogUtils.logSampled("mqtt.queue-full", topic, "MQTT消息队列已满，无法添加新消息: {}", topic);
+            }
+        }
+        if (success) {
+            GatewayMetrics.increment(MetricCounter.MQTT_ENQUEUED, null);
         }
 
         return success;
     }
 
     /**
-     * 关闭清理资源
+     * 关闭清理资源，未发布的消息转存到磁盘缓存，下次启动后重放
      */
+    @PreDestroy
     @SuppressWarnings("checkstyle:MagicNumber")
     public void shutdown() {
         scheduler.shutdown();
@@ -188,6 +339,7 @@ public class MqttSender {
             scheduler.shutdownNow();
             Thread.currentThread().interrupt();
         }
+        spillQueueToSpool();
     }
 
     /**
@@ -265,9 +417,9 @@ public class MqttSender {
     public void sendAttribute(MqttMessage message) {
         boolean enqueued = enqueueMessage(GatewayConfig.ATTRIBUTE_TOPIC, message);
         if (enqueued) {
-            LogUtils.logBusiness("设备属性消息已加入队列: {}", message);
+            LogUtils.logDebug("设备属性消息已加入队列: {}", message);
         } else {
-            LogUtils.logBusiness("设备属性消息加入队列失败: {}", message);
+            LogUtils.logSampled("mqtt.enqueue", GatewayConfig.ATTRIBUTE_TOPIC, "设备属性消息加入队列失败: {}", message);
             throw new RuntimeException("设备属性消息加入队列失败");
         }
     }
@@ -281,13 +433,34 @@ public class MqttSender {
     public void sendToThingsboard(MqttMessage message) {
         boolean enqueued = enqueueMessage(GatewayConfig.TELEMETRY_TOPIC, message);
         if (enqueued) {
-            LogUtils.logBusiness("遥测数据消息已加入队列: {}", message);
+            LogUtils.logDebug("遥测数据消息已加入队列: {}", message);
         } else {
-            LogUtils.logError("遥测数据消息加入队列失败: {}", new Throwable(), message);
+            LogUtils.logSampled("mqtt.enqueue", GatewayConfig.TELEMETRY_TOPIC, "遥测数据消息加入队列失败: {}", message);
             throw new RuntimeException("遥测数据消息加入队列失败");
         }
     }
 
+    /**
+     * 批量发送遥测数据到Thingsboard
+     * <p>
+     * 整批放入发布队列，只记录一条汇总日志；队列放不下的消息写入磁盘缓存，两者都失败的消息被丢弃，不计入返回值。
+     *
+     * @param messages MQTT消息列表，每条包含设备遥测数据
+     * @return 成功入队（含写入磁盘缓存）的消息数
+     */
+    public int sendToThingsboard(List<MqttMessage> messages) {
+        int enqueued = 0;
+        for (MqttMessage message : messages) {
+            if (enqueueMessage(GatewayConfig.TELEMETRY_TOPIC, message)) {
+                enqueued++;
+            }
+        }
+        if (enqueued < messages.size()) {
+            LogUtils.logBusiness("遥测数据批量加入队列，成功{}条，失败{}条", enqueued, messages.size() - enqueued);
+        }
+        return enqueued;
+    }
+
     /**
      * 当前队列中待处理的消息数量
      *
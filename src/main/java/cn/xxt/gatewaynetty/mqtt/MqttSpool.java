@@ -0,0 +1,561 @@
+package cn.xxt.gatewaynetty.mqtt;
+
+import cn.xxt.gatewaynetty.util.LogUtils;
+import io.netty.util.internal.PlatformDependent;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: MQTT 待发布消息的磁盘缓存：内存映射的追加写分段文件，重放游标持久化，磁盘占用有上限
+ * <p>
+ * 投递语义为至少一次：{@link #poll} 只推进内存中的读取位置，每条取出的消息带一个 {@link Receipt}，
+ * 发布完成后由 {@link #ack} 确认；持久化的游标停在最早一条未确认的消息处，分段在其中消息全部确认后才删除。
+ * 进程在发布确认前退出时，重启后会从该消息起重放，可能出现重复。
+ * 超出磁盘上限被删除的分段中的消息不在此保证之内。
+ * @author: Havad
+ * @create: 2026-10-18 13:30
+ **/
+
+@Component
+public class MqttSpool {
+    /**
+     * 分段文件名格式
+     */
+    private static final Pattern SEGMENT_NAME = Pattern.compile("segment-(\\d{20})\\.spool");
+    /**
+     * 游标文件名
+     */
+    private static final String CURSOR_FILE = "cursor";
+    /**
+     * 游标文件长度：segment(8) + offset(4)
+     */
+    private static final int CURSOR_LENGTH = 12;
+    /**
+     * 记录头长度：length(4)
+     */
+    private static final int LENGTH_FIELD = 4;
+    /**
+     * 记录固定部分长度：qos(1) + topicLength(2)
+     */
+    private static final int RECORD_FIXED = 3;
+
+    /**
+     * 是否启用磁盘缓存
+     */
+    @Value("${mqtt.spool.enabled:true}")
+    private boolean enabled;
+    /**
+     * 缓存目录
+     */
+    @Value("${mqtt.spool.dir:./data/mqtt-spool}")
+    private String dir;
+    /**
+     * 单个分段文件的大小（字节）
+     */
+    @Value("${mqtt.spool.segment-bytes:16777216}")
+    private int segmentBytes;
+    /**
+     * 最多保留的分段数，超出后删除最旧的分段
+     */
+    @Value("${mqtt.spool.max-segments:64}")
+    private int maxSegments;
+
+    /**
+     * 缓存目录
+     */
+    private File directory;
+    /**
+     * 现存分段的序号，从旧到新
+     */
+    private final Deque<Long> segments = new ArrayDeque<>();
+    /**
+     * 正在写入的分段序号
+     */
+    private long writeSegment;
+    /**
+     * 正在写入的分段映射
+     */
+    private MappedByteBuffer writeBuffer;
+    /**
+     * 写入位置
+     */
+    private int writeOffset;
+    /**
+     * 正在读取的分段序号
+     */
+    private long readSegment;
+    /**
+     * 正在读取的分段映射，读写同一分段时与写入映射共享页缓存
+     */
+    private MappedByteBuffer readBuffer;
+    /**
+     * 读取位置
+     */
+    private int readOffset;
+    /**
+     * 游标文件映射
+     */
+    private MappedByteBuffer cursorBuffer;
+    /**
+     * 已取出但尚未确认的消息，按读取顺序排列
+     */
+    private final Deque<Receipt> unacked = new ArrayDeque<>();
+
+    /**
+     * 写入的消息数
+     */
+    private long appendedCount;
+    /**
+     * 重放的消息数
+     */
+    private long replayedCount;
+    /**
+     * 因超出磁盘上限被删除的分段数
+     */
+    private long evictedSegmentCount;
+
+    /**
+     * 打开缓存目录，恢复写入位置和重放游标
+     *
+     * @throws IOException 文件操作失败时抛出
+     */
+    @PostConstruct
+    public synchronized void open() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        directory = new File(dir);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("无法创建MQTT缓存目录: " + directory.getAbsolutePath());
+        }
+
+        List<Long> existing = new ArrayList<>();
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                Matcher m = SEGMENT_NAME.matcher(file.getName());
+                if (m.matches()) {
+                    existing.add(Long.parseLong(m.group(1)));
+                }
+            }
+        }
+        Collections.sort(existing);
+        segments.addAll(existing);
+        if (segments.isEmpty()) {
+            segments.add(0L);
+        }
+
+        writeSegment = segments.peekLast();
+        writeBuffer = map(writeSegment);
+        writeOffset = scanEnd(writeBuffer);
+
+        cursorBuffer = mapFile(new File(directory, CURSOR_FILE), CURSOR_LENGTH);
+        long cursorSegment = cursorBuffer.getLong(0);
+        int cursorOffset = cursorBuffer.getInt(8);
+        if (segments.contains(cursorSegment)) {
+            readSegment = cursorSegment;
+            readOffset = cursorOffset;
+        } else {
+            readSegment = segments.peekFirst();
+            readOffset = 0;
+        }
+        readBuffer = map(readSegment);
+        LogUtils.logBusiness("MQTT磁盘缓存已打开, 目录:{}, 分段数:{}, 游标:{}@{}",
+                directory.getAbsolutePath(), segments.size(), readSegment, readOffset);
+    }
+
+    /**
+     * 关闭缓存，保存游标并解除映射；未确认的消息在下次启动后重放
+     */
+    @PreDestroy
+    public synchronized void close() {
+        if (!enabled || writeBuffer == null) {
+            return;
+        }
+        commit();
+        writeBuffer.force();
+        cursorBuffer.force();
+        unmap(readBuffer);
+        unmap(writeBuffer);
+        unmap(cursorBuffer);
+        writeBuffer = null;
+        readBuffer = null;
+        cursorBuffer = null;
+    }
+
+    /**
+     * 是否启用
+     *
+     * @return 启用时返回 true
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 追加一条消息
+     *
+     * @param topic   主题
+     * @param message 消息
+     * @return 写入成功返回 true；未启用或消息超过分段大小时返回 false
+     */
+    public synchronized boolean append(String topic, MqttMessage message) {
+        if (!enabled || writeBuffer == null) {
+            return false;
+        }
+        byte[] topicBytes = topic.getBytes(StandardCharsets.UTF_8);
+        byte[] payload = message.getPayload();
+        int length = RECORD_FIXED + topicBytes.length + payload.length;
+        if (LENGTH_FIELD + length > segmentBytes) {
+            LogUtils.logBusiness("MQTT消息超过缓存分段大小，无法缓存: {}, {}字节", topic, payload.length);
+            return false;
+        }
+        try {
+            if (segmentBytes - writeOffset < LENGTH_FIELD + length) {
+                rotate();
+            }
+        } catch (IOException e) {
+            LogUtils.logError("MQTT缓存分段切换失败", e);
+            return false;
+        }
+
+        // 先写内容再写长度，进程中途退出时不会留下半条可读的记录
+        ByteBuffer record = at(writeBuffer, writeOffset + LENGTH_FIELD);
+        record.put((byte) message.getQos());
+        record.putShort((short) topicBytes.length);
+        record.put(topicBytes);
+        record.put(payload);
+        writeBuffer.putInt(writeOffset, length);
+        writeOffset += LENGTH_FIELD + length;
+        appendedCount++;
+        return true;
+    }
+
+    /**
+     * 按写入顺序取出最多 max 条消息
+     * <p>
+     * 只推进读取位置，持久化的游标要等取出的消息经 {@link #ack} 确认后才推进。
+     *
+     * @param max 最大条数
+     * @return 消息列表，缓存为空时返回空列表
+     */
+    public synchronized List<MqttSender.MqttPublishTask> poll(int max) {
+        if (!enabled || writeBuffer == null) {
+            return Collections.emptyList();
+        }
+        List<MqttSender.MqttPublishTask> result = new ArrayList<>();
+        try {
+            while (result.size() < max) {
+                int limit = readSegment == writeSegment ? writeOffset : readBuffer.capacity();
+                int length = readOffset + LENGTH_FIELD <= limit ? readBuffer.getInt(readOffset) : 0;
+                if (length <= 0 || readOffset + LENGTH_FIELD + length > limit) {
+                    if (readSegment == writeSegment) {
+                        break;
+                    }
+                    // 当前分段已读完，删除并切换到下一个分段
+                    advanceSegment();
+                    continue;
+                }
+                Receipt receipt = new Receipt(readSegment, readOffset);
+                result.add(readRecord(readOffset + LENGTH_FIELD, length, receipt));
+                unacked.addLast(receipt);
+                readOffset += LENGTH_FIELD + length;
+            }
+        } catch (IOException e) {
+            LogUtils.logError("读取MQTT缓存失败", e);
+        }
+        replayedCount += result.size();
+        return result;
+    }
+
+    /**
+     * 确认消息已发布完成（成功，或失败后已另行处理），推进持久化的游标
+     *
+     * @param receipts 消息回执
+     */
+    public synchronized void ack(List<Receipt> receipts) {
+        if (receipts.isEmpty() || writeBuffer == null) {
+            return;
+        }
+        for (Receipt receipt : receipts) {
+            receipt.acked = true;
+        }
+        Receipt head = unacked.peekFirst();
+        if (head == null || !head.acked) {
+            return;
+        }
+        while (!unacked.isEmpty() && unacked.peekFirst().acked) {
+            unacked.pollFirst();
+        }
+        commit();
+    }
+
+    /**
+     * 缓存中是否还有未重放的消息
+     *
+     * @return 没有时返回 true
+     */
+    public synchronized boolean isEmpty() {
+        if (!enabled || writeBuffer == null) {
+            return true;
+        }
+        return readSegment == writeSegment && readOffset >= writeOffset;
+    }
+
+    /**
+     * 当前缓存占用的分段数
+     *
+     * @return 分段数
+     */
+    public synchronized int getSegmentCount() {
+        return segments.size();
+    }
+
+    /**
+     * 写入的消息数
+     *
+     * @return 消息数
+     */
+    public synchronized long getAppendedCount() {
+        return appendedCount;
+    }
+
+    /**
+     * 重放的消息数
+     *
+     * @return 消息数
+     */
+    public synchronized long getReplayedCount() {
+        return replayedCount;
+    }
+
+    /**
+     * 因超出磁盘上限被删除的分段数
+     *
+     * @return 分段数
+     */
+    public synchronized long getEvictedSegmentCount() {
+        return evictedSegmentCount;
+    }
+
+    /**
+     * 读取一条记录
+     *
+     * @param offset  记录内容的起始位置
+     * @param length  记录内容长度
+     * @param receipt 记录的回执
+     * @return 发布任务
+     */
+    private MqttSender.MqttPublishTask readRecord(int offset, int length, Receipt receipt) {
+        int qos = readBuffer.get(offset);
+        int topicLength = readBuffer.getShort(offset + 1) & 0xFFFF;
+        byte[] topicBytes = new byte[topicLength];
+        byte[] payload = new byte[length - RECORD_FIXED - topicLength];
+        ByteBuffer view = at(readBuffer, offset + RECORD_FIXED);
+        view.get(topicBytes);
+        view.get(payload);
+        MqttMessage message = new MqttMessage(payload);
+        message.setQos(qos);
+        return new MqttSender.MqttPublishTask(new String(topicBytes, StandardCharsets.UTF_8), message, 1,
+                Collections.singletonList(receipt));
+    }
+
+    /**
+     * 切换到新的写入分段，超出分段上限时删除最旧的分段
+     *
+     * @throws IOException 文件操作失败时抛出
+     */
+    private void rotate() throws IOException {
+        writeBuffer.force();
+        unmap(writeBuffer);
+        writeSegment++;
+        writeBuffer = map(writeSegment);
+        writeOffset = 0;
+        segments.addLast(writeSegment);
+
+        while (segments.size() > maxSegments) {
+            long oldest = segments.pollFirst();
+            if (oldest == readSegment) {
+                LogUtils.logBusiness("MQTT缓存超出{}个分段上限，丢弃最旧分段{}中未重放的消息", maxSegments, oldest);
+                advanceSegment();
+            }
+            // 被删除分段中已取出的消息不再等待确认
+            unacked.removeIf(receipt -> receipt.segment == oldest);
+            delete(oldest);
+            evictedSegmentCount++;
+        }
+        commit();
+    }
+
+    /**
+     * 读取位置移动到下一个分段；已读完的分段等其中消息全部确认后由 {@link #commit} 删除
+     *
+     * @throws IOException 文件操作失败时抛出
+     */
+    private void advanceSegment() throws IOException {
+        long finished = readSegment;
+        unmap(readBuffer);
+        for (long segment : segments) {
+            if (segment > finished) {
+                readSegment = segment;
+                break;
+            }
+        }
+        readOffset = 0;
+        readBuffer = map(readSegment);
+        commit();
+    }
+
+    /**
+     * 将游标持久化到最早一条未确认的消息处，没有未确认的消息时取读取位置，并删除游标之前的分段
+     */
+    private void commit() {
+        Receipt head = unacked.peekFirst();
+        long cursorSegment = head == null ? readSegment : head.segment;
+        int cursorOffset = head == null ? readOffset : head.offset;
+        cursorBuffer.putLong(0, cursorSegment);
+        cursorBuffer.putInt(8, cursorOffset);
+        while (segments.peekFirst() < cursorSegment) {
+            delete(segments.pollFirst());
+        }
+    }
+
+    /**
+     * 创建一个从指定位置开始的视图，不改变原映射的位置
+     * <p>
+     * 通过 Buffer 调用 position，避免编译出 JDK 9 之后才有的协变方法，保证在 Java 8 上运行。
+     *
+     * @param buffer   映射
+     * @param position 起始位置
+     * @return 视图
+     */
+    private static ByteBuffer at(ByteBuffer buffer, int position) {
+        ByteBuffer view = buffer.duplicate();
+        ((Buffer) view).position(position);
+        return view;
+    }
+
+    /**
+     * 从头扫描分段，找到最后一条完整记录之后的位置
+     *
+     * @param buffer 分段映射
+     * @return 写入位置
+     */
+    private static int scanEnd(MappedByteBuffer buffer) {
+        int offset = 0;
+        while (offset + LENGTH_FIELD <= buffer.capacity()) {
+            int length = buffer.getInt(offset);
+            if (length <= 0 || offset + LENGTH_FIELD + length > buffer.capacity()) {
+                break;
+            }
+            offset += LENGTH_FIELD + length;
+        }
+        return offset;
+    }
+
+    /**
+     * 映射指定序号的分段文件，不存在时创建
+     *
+     * @param segment 分段序号
+     * @return 映射
+     * @throws IOException 文件操作失败时抛出
+     */
+    private MappedByteBuffer map(long segment) throws IOException {
+        return mapFile(segmentFile(segment), segmentBytes);
+    }
+
+    /**
+     * 以读写方式映射文件
+     *
+     * @param file 文件
+     * @param size 映射大小
+     * @return 映射
+     * @throws IOException 文件操作失败时抛出
+     */
+    private static MappedByteBuffer mapFile(File file, int size) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw");
+             FileChannel channel = raf.getChannel()) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+        }
+    }
+
+    /**
+     * 删除分段文件
+     *
+     * @param segment 分段序号
+     */
+    private void delete(long segment) {
+        File file = segmentFile(segment);
+        if (file.exists() && !file.delete()) {
+            LogUtils.logBusiness("删除MQTT缓存分段失败: {}", file.getAbsolutePath());
+        }
+    }
+
+    /**
+     * 分段文件
+     *
+     * @param segment 分段序号
+     * @return 文件
+     */
+    private File segmentFile(long segment) {
+        return new File(directory, String.format("segment-%020d.spool", segment));
+    }
+
+    /**
+     * 解除映射，不等待 GC 回收
+     *
+     * @param buffer 映射
+     */
+    private static void unmap(MappedByteBuffer buffer) {
+        if (buffer != null && buffer.isDirect()) {
+            try {
+                PlatformDependent.freeDirectBuffer(buffer);
+            } catch (Throwable e) {
+                // 无法主动释放时交给 GC
+            }
+        }
+    }
+
+    /**
+     * 取出的一条消息在缓存中的位置，发布完成后交回 {@link #ack}
+     */
+    public static final class Receipt {
+        /**
+         * 所在分段序号
+         */
+        private final long segment;
+        /**
+         * 记录在分段中的起始位置
+         */
+        private final int offset;
+        /**
+         * 是否已确认，只在持有缓存锁时读写
+         */
+        private boolean acked;
+
+        Receipt(long segment, int offset) {
+            this.segment = segment;
+            this.offset = offset;
+        }
+    }
+}
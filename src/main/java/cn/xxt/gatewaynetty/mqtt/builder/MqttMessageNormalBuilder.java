@@ -4,8 +4,8 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ArrayNode;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import cn.xxt.gatewaynetty.netty.model.DeviceData;
+import cn.xxt.gatewaynetty.netty.model.Pdu;
 import cn.xxt.gatewaynetty.util.LogUtils;
-import cn.xxt.gatewaynetty.util.PDUUtil;
 import org.eclipse.paho.client.mqttv3.MqttMessage;
 
 import java.nio.charset.StandardCharsets;
@@ -18,20 +18,22 @@ import java.nio.charset.StandardCharsets;
  **/
 
 public class MqttMessageNormalBuilder implements MqttMessageBuilder {
+    /**
+     * 对象映射器
+     */
+    private final ObjectMapper objectMapper = new ObjectMapper();
 
-    @SuppressWarnings("checkstyle:MagicNumber")
     @Override
     public MqttMessage buildMessage(DeviceData deviceData) throws Exception {
         // 创建 JSON 对象
-        ObjectMapper objectMapper = new ObjectMapper();
         ObjectNode msg = objectMapper.createObjectNode();
         ArrayNode nameArray = objectMapper.createArrayNode();
         ObjectNode nameObject = objectMapper.createObjectNode();
 
         // 获取相关参数
-        String pdu = (String) deviceData.getMsg();
-        String deviceNo = PDUUtil.getDeviceNo(pdu);
-        String data = pdu.substring(4);
+        Pdu pdu = Pdu.from(deviceData.getMsg());
+        String deviceNo = pdu.getDeviceNo();
+        String data = pdu.getData();
 
         nameObject.put("INFO", data);
         nameArray.add(nameObject);
@@ -42,7 +44,7 @@ public class MqttMessageNormalBuilder implements MqttMessageBuilder {
         // 创建 MQTT 消息对象
         MqttMessage message = new MqttMessage(payload.getBytes(StandardCharsets.UTF_8));
         message.setQos(1);
-        LogUtils.logBusiness("普通话机创建MQTT信息成功{}", message);
+        LogUtils.logDebug("普通话机创建MQTT信息成功{}", message);
 
         return message;
     }
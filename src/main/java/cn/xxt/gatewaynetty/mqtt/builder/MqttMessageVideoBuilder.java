@@ -1,16 +1,12 @@
 package cn.xxt.gatewaynetty.mqtt.builder;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import cn.xxt.gatewaynetty.netty.model.DeviceData;
+import cn.xxt.gatewaynetty.netty.model.VideoMessage;
+import cn.xxt.gatewaynetty.util.JsonBytes;
 import cn.xxt.gatewaynetty.util.LogUtils;
-import cn.xxt.gatewaynetty.util.VideoParserUtil;
 import org.eclipse.paho.client.mqttv3.MqttMessage;
 
-import java.nio.charset.StandardCharsets;
-import java.util.Collections;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.io.ByteArrayOutputStream;
 
 /**
  * @program: gateway-cn.xxt.gatewaynetty.netty
@@ -22,39 +18,44 @@ import java.util.Map;
 public class MqttMessageVideoBuilder implements MqttMessageBuilder {
 
     @Override
-    public MqttMessage buildMessage(DeviceData deviceData) throws Exception {
+    @SuppressWarnings("checkstyle:MagicNumber")
+    public MqttMessage buildMessage(DeviceData deviceData) {
         // 获取常量
         String deviceNo = deviceData.getDeviceId();
-        @SuppressWarnings("unchecked")
-        Map<String, Object> messageMap = (Map<String, Object>) deviceData.getMsg();
-        // 获取 command
-        String command = (String) messageMap.get("command");
-        // 获取 request 内容
-        @SuppressWarnings("unchecked")
-        Map<String, Object> request = (Map<String, Object>) messageMap.get(VideoParserUtil.getToTBMessageType(command));
-
-        // 创建 JSON 对象
-        // 创建嵌套的数据结构
-        Map<String, Object> values = new HashMap<>();
-        values.put(command, request);  // 使用 command 作为 key，request 作为 value
-
-        Map<String, Object> dataPoint = new HashMap<>();
-        dataPoint.put("ts", System.currentTimeMillis());  // 使用给定的时间戳
-        dataPoint.put("values", values);
-
-        // 创建最终的 JSON 结构
-        Map<String, List<Map<String, Object>>> result = new HashMap<>();
-        result.put(deviceNo, Collections.singletonList(dataPoint));
-
-        // 转换为 JSON 字符串
-        ObjectMapper mapper = new ObjectMapper();
-        String payload = mapper.writeValueAsString(result);
+        VideoMessage videoMessage = VideoMessage.from(deviceData.getMsg());
+        String command = videoMessage.getCommandName();
+        if (command == null) {
+            // 缺少 command 的旧 Map 消息无法生成遥测键，不能发布 null 作为键的非法 JSON
+            LogUtils.countError("mqtt.build.video.nocommand", "视频话机消息缺少command，拒绝构建MQTT消息, 设备:{}", deviceNo);
+            throw new IllegalArgumentException("视频话机消息缺少command, 设备: " + deviceNo);
+        }
+        // 只有消息体位于该命令上报方向的字段时才取值，与原先按字段名取值一致
+        byte[] request = videoMessage.getDirection() == videoMessage.getCommand().toTbDirection()
+                ? videoMessage.getPayload() : JsonBytes.NULL;
+
+        // 创建最终的 JSON 结构：{设备号:[{"ts":时间戳,"values":{command: request}}]}，request 原样嵌入
+        ByteArrayOutputStream out = new ByteArrayOutputStream(request.length + deviceNo.length() + 64);
+        out.write('{');
+        JsonBytes.writeFieldName(out, deviceNo);
+        out.write('[');
+        out.write('{');
+        JsonBytes.writeFieldName(out, "ts");
+        JsonBytes.writeAscii(out, Long.toString(System.currentTimeMillis()));
+        out.write(',');
+        JsonBytes.writeFieldName(out, "values");
+        out.write('{');
+        JsonBytes.writeFieldName(out, command);
+        JsonBytes.writeRaw(out, request);
+        out.write('}');
+        out.write('}');
+        out.write(']');
+        out.write('}');
 
         // 创建 MQTT 消息对象
-        MqttMessage message = new MqttMessage(payload.getBytes(StandardCharsets.UTF_8));
+        MqttMessage message = new MqttMessage(out.toByteArray());
         message.setQos(1);
 
-        LogUtils.logBusiness("视频话机创建MQTT信息成功{}", message);
+        LogUtils.logDebug("视频话机创建MQTT信息成功{}", message);
 
         return message;
     }
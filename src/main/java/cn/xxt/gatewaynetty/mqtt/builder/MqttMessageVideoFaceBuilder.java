@@ -48,7 +48,7 @@ public class MqttMessageVideoFaceBuilder implements MqttMessageBuilder {
         // 创建 MQTT 消息对象
         MqttMessage message = new MqttMessage(payload.getBytes(StandardCharsets.UTF_8));
         message.setQos(1);
-        LogUtils.logBusiness("视频话机 HTTP 创建 MQTT 信息成功{}", message);
+        LogUtils.logDebug("视频话机 HTTP 创建 MQTT 信息成功{}", message);
 
         return message;
     }
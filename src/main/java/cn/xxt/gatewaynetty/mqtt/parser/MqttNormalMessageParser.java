@@ -33,7 +33,7 @@ public class MqttNormalMessageParser implements MqttMessageParser {
         String device = rootNode.get("device").asText();
         // 构造成设备接收所需要的类型
         String body = appendHexLength("*#F#" + rootNode.get("data").get("params").get("body").asText());
-        LogUtils.logBusiness("普通话机解析的值为:{}", body);
+        LogUtils.logDebug("普通话机解析的值为:{}", body);
         return new DeviceData(device, body, ProtocolIdentifier.PROTOCOL_NORMAL);
     }
 
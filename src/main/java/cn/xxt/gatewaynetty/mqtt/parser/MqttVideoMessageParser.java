@@ -3,15 +3,12 @@ package cn.xxt.gatewaynetty.mqtt.parser;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import cn.xxt.gatewaynetty.netty.model.DeviceData;
+import cn.xxt.gatewaynetty.netty.model.VideoCommand;
+import cn.xxt.gatewaynetty.netty.model.VideoMessage;
 import cn.xxt.gatewaynetty.netty.protocol.ProtocolIdentifier;
 import cn.xxt.gatewaynetty.util.LogUtils;
-import cn.xxt.gatewaynetty.util.VideoParserUtil;
-import io.netty.util.CharsetUtil;
 import org.eclipse.paho.client.mqttv3.MqttMessage;
 
-import java.util.HashMap;
-import java.util.Map;
-
 /**
  * @program: gateway-cn.xxt.gatewaynetty.netty
  * @description: 用于卡尔视频话机的数据解析器
@@ -20,6 +17,10 @@ import java.util.Map;
  **/
 
 public class MqttVideoMessageParser implements MqttMessageParser {
+    /**
+     * 对象映射器
+     */
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
 
     /**
      * 解析接收到的MQTT消息为设备数据对象。
@@ -30,13 +31,8 @@ public class MqttVideoMessageParser implements MqttMessageParser {
      */
     @Override
     public DeviceData parseMessage(MqttMessage message) throws Exception {
-        // 创建 ObjectMapper 用于 JSON 解析
-        ObjectMapper mapper = new ObjectMapper();
-        // 将消息内容转换为字符串
-        String messageContent = new String(message.getPayload(), CharsetUtil.UTF_8);
-
         // 解析原始 JSON
-        JsonNode rootNode = mapper.readTree(messageContent);
+        JsonNode rootNode = OBJECT_MAPPER.readTree(message.getPayload());
 
         // 获取设备ID
         String deviceId = rootNode.get("device").asText();
@@ -44,15 +40,12 @@ public class MqttVideoMessageParser implements MqttMessageParser {
         // 获取 data.params 节点
         JsonNode paramsNode = rootNode.get("data").get("params");
 
-        // 构造新地响应格式
-        Map<String, Object> responseMsg = new HashMap<>();
+        // 构造新地响应格式，data 节点直接编码为消息体
         String command = paramsNode.get("command").asText();
+        VideoMessage responseMsg = VideoMessage.of(command, VideoCommand.of(command).toDeviceDirection(),
+                "terminal", OBJECT_MAPPER.writeValueAsBytes(paramsNode.get("data")));
 
-        responseMsg.put("type", "terminal");
-        responseMsg.put("command", command);
-        responseMsg.put(VideoParserUtil.getToDeviceMessageType(command), paramsNode.get("data"));
-
-        LogUtils.logBusiness("视频话机解析的值为:{}", responseMsg);
+        LogUtils.logDebug("视频话机解析的值为:{}", responseMsg);
         // 创建并返回 DeviceData 对象
         return new DeviceData(deviceId, responseMsg, ProtocolIdentifier.PROTOCOL_VIDEO);
     }
@@ -1,30 +1,31 @@
 package cn.xxt.gatewaynetty.netty;
 
+import cn.xxt.gatewaynetty.netty.auth.DeviceAuthService;
 import cn.xxt.gatewaynetty.netty.handler.ProtocolDetectionHandler;
 import cn.xxt.gatewaynetty.netty.videophone.http.HttpServer;
 import cn.xxt.gatewaynetty.netty.videophone.http.file_tcp.FileTcpServer;
+import cn.xxt.gatewaynetty.netty.videophone.image.FaceImageFetcher;
+import cn.xxt.gatewaynetty.mqtt.MqttAsyncPublisher;
 import cn.xxt.gatewaynetty.mqtt.MqttConnection;
 import cn.xxt.gatewaynetty.mqtt.MqttReceiver;
 import cn.xxt.gatewaynetty.mqtt.MqttSender;
 import cn.xxt.gatewaynetty.mqtt.parser.MqttMessageParserFactory;
 import cn.xxt.gatewaynetty.netty.protocol.ProtocolHandlerFactory;
 import cn.xxt.gatewaynetty.netty.registry.DeviceRegistry;
+import cn.xxt.gatewaynetty.netty.transport.NettyTransport;
 import cn.xxt.gatewaynetty.netty.videophone.task.TaskManager;
 import cn.xxt.gatewaynetty.util.LogUtils;
 import io.netty.bootstrap.ServerBootstrap;
-import io.netty.channel.ChannelFuture;
+import io.netty.channel.Channel;
 import io.netty.channel.ChannelInitializer;
-import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
-import cn.xxt.gatewaynetty.kafka.DeviceDataKafkaProducer;
+import cn.xxt.gatewaynetty.bus.DeviceDataBus;
 import lombok.RequiredArgsConstructor;
-import org.eclipse.paho.client.mqttv3.MqttClient;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.annotation.PreDestroy;
+import java.util.List;
 
 /**
  * @program: gateway-cn.xxt.gatewaynetty.netty
@@ -43,6 +44,11 @@ public class ThingsboardGateway {
      */
     @Value(value = "${netty.port}")
     private int port;
+    /**
+     * 等待处理的人脸 RPC 数上限，超出时回复失败由平台重试
+     */
+    @Value("${face-fetch.intake-queue-capacity:100}")
+    private int faceIntakeCapacity;
     /**
      * MQTT连接对象。
      */
@@ -51,14 +57,22 @@ public class ThingsboardGateway {
      * MQTT消息发送器
      */
     private final MqttSender mqttSender;
+    /**
+     * MQTT异步发布器
+     */
+    private final MqttAsyncPublisher mqttPublisher;
     /**
      * 设备注册表实例
      */
     private final DeviceRegistry deviceRegistry;
     /**
-     * 设备数据Kafka生产者
+     * 设备认证服务
      */
-    private final DeviceDataKafkaProducer producer;
+    private final DeviceAuthService authService;
+    /**
+     * 设备数据总线
+     */
+    private final DeviceDataBus producer;
     /**
      * 任务管理器
      */
@@ -75,19 +89,23 @@ public class ThingsboardGateway {
      * 文件TCP服务器实例。
      */
     private final FileTcpServer fileTcpServer;
-
     /**
-     * 主事件循环组
+     * 人脸图片下载器
      */
-    private EventLoopGroup bossGroup;
+    private final FaceImageFetcher imageFetcher;
     /**
-     * 工作线程事件循环组
+     * 共享的 Netty 传输层
      */
-    private EventLoopGroup workerGroup;
+    private final NettyTransport transport;
+
+    /**
+     * 设备端口上的监听通道
+     */
+    private List<Channel> serverChannels;
     /**
-     * 通道未来的状态和结果。
+     * MQTT接收器
      */
-    private ChannelFuture channelFuture;
+    private MqttReceiver mqttReceiver;
 
     /**
      * 启动方法，负责初始化和启动整个系统。
@@ -97,14 +115,13 @@ public class ThingsboardGateway {
      */
     @SuppressWarnings("checkstyle:RegexpSingleline")
     public void start() throws Exception {
-        // 1. 获取MQTT客户端
-        MqttClient mqttClient = mqttConnection.getMqttClient();
-
+        // 1. 创建协议处理器工厂
         ProtocolHandlerFactory handlerFactory = ProtocolHandlerFactory
-                .createDefault(deviceRegistry, producer, mqttSender);
+                .createDefault(deviceRegistry, authService, producer, mqttSender);
 
         // 2. 创建MQTT接收器
-        MqttReceiver mqttReceiver = new MqttReceiver(producer, mqttClient, taskManager, parserFactory);
+        mqttReceiver = new MqttReceiver(producer, mqttConnection, mqttPublisher, taskManager, parserFactory,
+                imageFetcher, faceIntakeCapacity);
 
         // 3. 启动MQTT接收器
         mqttReceiver.start();
@@ -115,31 +132,21 @@ public class ThingsboardGateway {
         // 5. 启动TCP文件服务器
         fileTcpServer.start();
 
-        // 6. 启动Netty服务器
-        bossGroup = new NioEventLoopGroup();
-        workerGroup = new NioEventLoopGroup();
-
-
-        try {
-            ServerBootstrap b = new ServerBootstrap();
-            b.group(bossGroup, workerGroup)
-                    .channel(NioServerSocketChannel.class)
-                    .childHandler(new ChannelInitializer<SocketChannel>() {
-                        @Override
-                        public void initChannel(SocketChannel ch) {
-                            ch.pipeline().addLast(
-                                    new ProtocolDetectionHandler(handlerFactory)
-                            );
-                        }
-                    });
-
-            channelFuture = b.bind(port).sync();
-            LogUtils.logBusiness("Gateway server started on port {}", port);
-            channelFuture.channel().closeFuture().sync();
-
-        } finally {
-            workerGroup.shutdownGracefully();
-            bossGroup.shutdownGracefully();
+        // 6. 启动Netty服务器，线程组由共享的传输层管理
+        ServerBootstrap b = transport.serverBootstrap();
+        b.childHandler(new ChannelInitializer<SocketChannel>() {
+            @Override
+            public void initChannel(SocketChannel ch) {
+                ch.pipeline().addLast(
+                        new ProtocolDetectionHandler(handlerFactory)
+                );
+            }
+        });
+
+        serverChannels = transport.bind(b, port);
+        LogUtils.logBusiness("Gateway server started on port {}", port);
+        for (Channel channel : serverChannels) {
+            channel.closeFuture().sync();
         }
     }
 
@@ -151,17 +158,12 @@ public class ThingsboardGateway {
     public void shutdown() {
         LogUtils.logBusiness("Shutting down gateway...");
 
-        // 关闭Netty资源
-        if (channelFuture != null) {
-            channelFuture.channel().close();
+        // 关闭监听通道，共享的线程组由 NettyTransport 关闭
+        if (serverChannels != null) {
+            serverChannels.forEach(Channel::close);
         }
-
-        if (workerGroup != null) {
-            workerGroup.shutdownGracefully();
-        }
-
-        if (bossGroup != null) {
-            bossGroup.shutdownGracefully();
+        if (mqttReceiver != null) {
+            mqttReceiver.stop();
         }
 
         LogUtils.logBusiness("Gateway shutdown complete");
@@ -0,0 +1,190 @@
+package cn.xxt.gatewaynetty.netty.auth;
+
+import cn.xxt.gatewaynetty.util.LogUtils;
+import io.netty.bootstrap.Bootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.ChannelPipeline;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpClientCodec;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpObjectAggregator;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.ssl.SslContext;
+import io.netty.handler.ssl.SslContextBuilder;
+import io.netty.handler.timeout.ReadTimeoutHandler;
+import io.netty.util.CharsetUtil;
+
+import javax.net.ssl.SSLException;
+import java.io.IOException;
+import java.net.URI;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: 基于 Netty 的非阻塞 HTTP 客户端，用于调用设备认证接口
+ * @author: Havad
+ * @create: 2026-10-18 09:10
+ **/
+
+public class AsyncAuthHttpClient {
+    /**
+     * 认证接口响应体的最大长度
+     */
+    private static final int MAX_RESPONSE_LENGTH = 64 * 1024;
+    /**
+     * HTTPS 默认端口
+     */
+    private static final int DEFAULT_HTTPS_PORT = 443;
+    /**
+     * HTTP 默认端口
+     */
+    private static final int DEFAULT_HTTP_PORT = 80;
+
+    /**
+     * 客户端专用的事件循环组，与设备连接的 worker 线程隔离
+     */
+    private final EventLoopGroup group;
+    /**
+     * 客户端 Channel 类型，与事件循环组的传输类型一致
+     */
+    private final Class<? extends SocketChannel> channelClass;
+    /**
+     * TLS 上下文，仅在访问 https 地址时使用
+     */
+    private final SslContext sslContext;
+    /**
+     * 请求超时时间（毫秒），同时作用于建连和读取响应
+     */
+    private final int timeoutMillis;
+
+    /**
+     * 构造认证 HTTP 客户端
+     *
+     * @param group         专用的事件循环组，关闭客户端时一并关闭
+     * @param channelClass  与事件循环组匹配的 Channel 类型
+     * @param timeoutMillis 请求超时时间（毫秒）
+     * @throws SSLException 初始化 TLS 上下文失败时抛出
+     */
+    public AsyncAuthHttpClient(EventLoopGroup group, Class<? extends SocketChannel> channelClass,
+                               int timeoutMillis) throws SSLException {
+        this.group = group;
+        this.channelClass = channelClass;
+        this.sslContext = SslContextBuilder.forClient().build();
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * 异步发送 GET 请求
+     * <p>
+     * 返回的 Future 在客户端的 I/O 线程上完成，调用方如需操作设备 Channel，
+     * 应自行切换回该 Channel 的 EventLoop。
+     *
+     * @param uri 请求地址
+     * @return 响应体字符串；非 2xx 响应、超时或连接失败时以异常完成
+     */
+    public CompletableFuture<String> get(URI uri) {
+        CompletableFuture<String> result = new CompletableFuture<>();
+        boolean ssl = "https".equalsIgnoreCase(uri.getScheme());
+        String host = uri.getHost();
+        int port = uri.getPort() > 0 ? uri.getPort() : (ssl ? DEFAULT_HTTPS_PORT : DEFAULT_HTTP_PORT);
+
+        Bootstrap b = new Bootstrap();
+        b.group(group)
+                .channel(channelClass)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, timeoutMillis)
+                .handler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        ChannelPipeline p = ch.pipeline();
+                        if (ssl) {
+                            p.addLast(sslContext.newHandler(ch.alloc(), host, port));
+                        }
+                        p.addLast(new ReadTimeoutHandler(timeoutMillis, TimeUnit.MILLISECONDS));
+                        p.addLast(new HttpClientCodec());
+                        p.addLast(new HttpObjectAggregator(MAX_RESPONSE_LENGTH));
+                        p.addLast(new ResponseHandler(result));
+                    }
+                });
+
+        b.connect(host, port).addListener((ChannelFutureListener) future -> {
+            if (!future.isSuccess()) {
+                result.completeExceptionally(future.cause());
+                return;
+            }
+            Channel channel = future.channel();
+            String path = uri.getRawQuery() == null
+                    ? uri.getRawPath() : uri.getRawPath() + "?" + uri.getRawQuery();
+            FullHttpRequest request = new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, HttpMethod.GET, path);
+            request.headers().set(HttpHeaderNames.HOST, host);
+            request.headers().set(HttpHeaderNames.CONNECTION, HttpHeaderValues.CLOSE);
+            request.headers().set(HttpHeaderNames.ACCEPT, HttpHeaderValues.APPLICATION_JSON);
+            channel.writeAndFlush(request).addListener((ChannelFuture writeFuture) -> {
+                if (!writeFuture.isSuccess()) {
+                    result.completeExceptionally(writeFuture.cause());
+                    channel.close();
+                }
+            });
+        });
+        return result;
+    }
+
+    /**
+     * 关闭客户端，释放 I/O 线程
+     */
+    public void close() {
+        group.shutdownGracefully();
+        LogUtils.logBusiness("认证HTTP客户端已关闭");
+    }
+
+    /**
+     * 将单个 HTTP 响应写入对应的 Future
+     */
+    private static final class ResponseHandler extends SimpleChannelInboundHandler<FullHttpResponse> {
+        /**
+         * 请求结果
+         */
+        private final CompletableFuture<String> result;
+
+        ResponseHandler(CompletableFuture<String> result) {
+            this.result = result;
+        }
+
+        @SuppressWarnings("checkstyle:MagicNumber")
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, FullHttpResponse response) {
+            int code = response.status().code();
+            if (code >= 200 && code < 300) {
+                result.complete(response.content().toString(CharsetUtil.UTF_8));
+            } else {
+                result.completeExceptionally(new IOException("认证接口返回状态码: " + code));
+            }
+            ctx.close();
+        }
+
+        @Override
+        public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+            result.completeExceptionally(cause);
+            ctx.close();
+        }
+
+        @Override
+        public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+            // 服务端提前断开且未返回完整响应
+            result.completeExceptionally(new IOException("认证接口连接已关闭"));
+            super.channelInactive(ctx);
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package cn.xxt.gatewaynetty.netty.auth;
+
+import cn.xxt.gatewaynetty.netty.transport.NettyTransport;
+import cn.xxt.gatewaynetty.util.AuthDeviceUtil;
+import cn.xxt.gatewaynetty.util.LogUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.net.ssl.SSLException;
+import java.io.UnsupportedEncodingException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: 异步设备认证服务，带本地结果缓存和并发请求合并
+ * @author: Havad
+ * @create: 2026-10-18 09:20
+ **/
+
+@Component
+public class DeviceAuthService {
+    /**
+     * 设备认证接口地址
+     */
+    @Value("${auth.url:https://rest.xxt.cn/hardware-business/receive/device-auth}")
+    private String authUrl;
+    /**
+     * 认证成功结果的缓存时间（秒）
+     */
+    @Value("${auth.positive-ttl-seconds:600}")
+    private long positiveTtlSeconds;
+    /**
+     * 认证失败结果的缓存时间（秒）
+     */
+    @Value("${auth.negative-ttl-seconds:60}")
+    private long negativeTtlSeconds;
+    /**
+     * 请求超时时间（毫秒）
+     */
+    @Value("${auth.timeout-millis:5000}")
+    private int timeoutMillis;
+    /**
+     * 认证客户端 I/O 线程数
+     */
+    @Value("${auth.io-threads:2}")
+    private int ioThreads;
+    /**
+     * 缓存的最大设备数
+     */
+    @Value("${auth.cache-max-size:100000}")
+    private int cacheMaxSize;
+
+    /**
+     * 设备编号到认证结果的缓存
+     */
+    private final Map<String, CachedResult> cache = new ConcurrentHashMap<>();
+    /**
+     * 正在进行中的认证请求，同一设备的并发请求共用一个结果
+     */
+    private final Map<String, CompletableFuture<Boolean>> inflight = new ConcurrentHashMap<>();
+    /**
+     * 共享的 Netty 传输层，用于选择与服务端一致的传输类型
+     */
+    private final NettyTransport transport;
+
+    /**
+     * 非阻塞 HTTP 客户端
+     */
+    private AsyncAuthHttpClient httpClient;
+
+    public DeviceAuthService(NettyTransport transport) {
+        this.transport = transport;
+    }
+
+    /**
+     * 初始化 HTTP 客户端
+     *
+     * @throws SSLException 初始化 TLS 上下文失败时抛出
+     */
+    @PostConstruct
+    public void init() throws SSLException {
+        httpClient = new AsyncAuthHttpClient(
+                transport.newEventLoopGroup(ioThreads, "auth-client"), transport.socketChannelClass(), timeoutMillis);
+        LogUtils.logBusiness("设备认证服务已启动, 地址:{}, 成功缓存{}秒, 失败缓存{}秒",
+                authUrl, positiveTtlSeconds, negativeTtlSeconds);
+    }
+
+    /**
+     * 关闭 HTTP 客户端
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (httpClient != null) {
+            httpClient.close();
+        }
+    }
+
+    /**
+     * 异步认证设备
+     * <p>
+     * 命中缓存时直接返回已完成的结果；同一设备已有进行中的请求时复用该请求。
+     * 只有接口明确给出的结果才会被缓存，网络异常和超时不会缓存。
+     *
+     * @param deviceNo 设备编号
+     * @return 认证结果，在认证客户端的 I/O 线程上完成
+     */
+    public CompletableFuture<Boolean> authenticate(String deviceNo) {
+        CachedResult cached = cache.get(deviceNo);
+        if (cached != null) {
+            if (!cached.isExpired(System.nanoTime())) {
+                return CompletableFuture.completedFuture(cached.authorized);
+            }
+            cache.remove(deviceNo, cached);
+        }
+
+        CompletableFuture<Boolean> created = new CompletableFuture<>();
+        CompletableFuture<Boolean> existing = inflight.putIfAbsent(deviceNo, created);
+        if (existing != null) {
+            return existing;
+        }
+
+        URI uri;
+        try {
+            uri = buildUri(deviceNo);
+        } catch (Exception e) {
+            inflight.remove(deviceNo, created);
+            created.completeExceptionally(e);
+            return created;
+        }
+
+        httpClient.get(uri)
+                .thenApply(response -> {
+                    try {
+                        return AuthDeviceUtil.parseAuthResponse(response);
+                    } catch (Exception e) {
+                        throw new IllegalStateException("解析认证结果失败: " + response, e);
+                    }
+                })
+                .whenComplete((authorized, error) -> {
+                    if (error == null) {
+                        putCache(deviceNo, authorized);
+                    }
+                    // 先移除再完成，保证后续请求能直接命中缓存
+                    inflight.remove(deviceNo, created);
+                    if (error != null) {
+                        created.completeExceptionally(error);
+                    } else {
+                        created.complete(authorized);
+                    }
+                });
+        return created;
+    }
+
+    /**
+     * 清除指定设备的缓存结果
+     *
+     * @param deviceNo 设备编号
+     */
+    public void invalidate(String deviceNo) {
+        cache.remove(deviceNo);
+    }
+
+    /**
+     * 写入缓存，超过容量时先清理过期项，仍然超出则放弃缓存本次结果
+     *
+     * @param deviceNo   设备编号
+     * @param authorized 认证结果
+     */
+    private void putCache(String deviceNo, boolean authorized) {
+        long now = System.nanoTime();
+        if (cache.size() >= cacheMaxSize) {
+            cache.values().removeIf(r -> r.isExpired(now));
+            if (cache.size() >= cacheMaxSize) {
+                return;
+            }
+        }
+        long ttl = authorized ? positiveTtlSeconds : negativeTtlSeconds;
+        cache.put(deviceNo, new CachedResult(authorized, now + TimeUnit.SECONDS.toNanos(ttl)));
+    }
+
+    /**
+     * 构造认证请求地址
+     *
+     * @param deviceNo 设备编号
+     * @return 请求 URI
+     * @throws UnsupportedEncodingException 编码失败时抛出
+     */
+    private URI buildUri(String deviceNo) throws UnsupportedEncodingException {
+        return URI.create(authUrl + "?deviceNo=" + URLEncoder.encode(deviceNo, StandardCharsets.UTF_8.name()));
+    }
+
+    /**
+     * 缓存的认证结果
+     */
+    private static final class CachedResult {
+        /**
+         * 是否认证通过
+         */
+        private final boolean authorized;
+        /**
+         * 过期时间（System.nanoTime）
+         */
+        private final long expireAt;
+
+        CachedResult(boolean authorized, long expireAt) {
+            this.authorized = authorized;
+            this.expireAt = expireAt;
+        }
+
+        boolean isExpired(long now) {
+            return now - expireAt > 0;
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package cn.xxt.gatewaynetty.netty.config;
+
+import cn.xxt.gatewaynetty.util.LogUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: 日志采样配置，启动时设置到 {@link LogUtils}
+ * @author: Havad
+ * @create: 2026-10-18 17:10
+ **/
+
+@Component
+public class LogSamplingConfig {
+    /**
+     * 每个窗口内同一类别同一设备最多输出的日志条数，0 表示不限
+     */
+    @Value("${log.sample.permits:20}")
+    private int permits;
+    /**
+     * 采样窗口长度（毫秒）
+     */
+    @Value("${log.sample.window-millis:1000}")
+    private long windowMillis;
+
+    /**
+     * 应用采样配置
+     */
+    @PostConstruct
+    public void init() {
+        LogUtils.configureSampling(permits, windowMillis);
+        LogUtils.logBusiness("日志采样: 每{}ms同一类别同一设备最多{}条", windowMillis, permits);
+    }
+}
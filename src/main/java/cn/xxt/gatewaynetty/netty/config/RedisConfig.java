@@ -16,27 +16,26 @@ import redis.clients.jedis.JedisPooled;
 @SuppressWarnings({"checkstyle:HideUtilityClassConstructor", "checkstyle:JavadocVariable", "checkstyle:FinalClass"})
 public class RedisConfig {
     /**
-     * Redis服务的宿主机地址。
+     * Redis服务的宿主机地址，可用 -Dredis.host 覆盖（压测时指向本机）。
      */
-    private static final String REDIS_HOST = "192.168.3.101";
+    private static final String REDIS_HOST = System.getProperty("redis.host", "192.168.3.101");
     /**
-     * Redis服务的端口号。
+     * Redis服务的端口号，可用 -Dredis.port 覆盖。
      */
-    private static final int REDIS_PORT = 6387;
+    private static final int REDIS_PORT = Integer.getInteger("redis.port", 6387);
     /**
      * 用户Redis缓存的前缀
      */
     private static final String REDIS_USER = null;
     /**
-     * Redis的密码。
-     * 初始值为null，需要在配置时设置实际的密码。
+     * Redis的密码，可用 -Dredis.password 覆盖，设为空串表示无密码。
      */
-    private static final String REDIS_PASSWORD = "xxt123XXT";
+    private static final String REDIS_PASSWORD = emptyToNull(System.getProperty("redis.password", "xxt123XXT"));
 
     /**
-     * Redis数据库索引编号。
+     * Redis数据库索引编号，可用 -Dredis.database 覆盖。
      */
-    private static final int REDIS_DATABASE = 7;
+    private static final int REDIS_DATABASE = Integer.getInteger("redis.database", 7);
 
     /**
      * Jedis 客户端连接池
@@ -64,6 +63,10 @@ public class RedisConfig {
         }
     }
 
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
+    }
+
     /**
      * 私有构造函数，防止外部实例化该工具类。
      */
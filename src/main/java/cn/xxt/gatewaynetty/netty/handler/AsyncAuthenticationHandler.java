@@ -0,0 +1,157 @@
+package cn.xxt.gatewaynetty.netty.handler;
+
+import cn.xxt.gatewaynetty.netty.auth.DeviceAuthService;
+import cn.xxt.gatewaynetty.netty.registry.DeviceRegistry;
+import cn.xxt.gatewaynetty.util.LogUtils;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.util.AttributeKey;
+import io.netty.util.ReferenceCountUtil;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: 异步认证的公共流程，认证期间暂停读取，不阻塞 EventLoop
+ * @author: Havad
+ * @create: 2026-10-18 09:35
+ **/
+
+public abstract class AsyncAuthenticationHandler extends ChannelInboundHandlerAdapter
+        implements AuthenticationHandler {
+    /**
+     * 认证期间允许缓存的最大消息数
+     */
+    private static final int MAX_PENDING_MESSAGES = 16;
+
+    /**
+     * 设备注册表实例
+     */
+    private final DeviceRegistry deviceRegistry;
+    /**
+     * 设备认证服务
+     */
+    private final DeviceAuthService authService;
+    /**
+     * 认证期间到达的后续消息（同一次读取中解码出的多条消息）
+     */
+    private final Queue<Object> pendingMessages = new ArrayDeque<>();
+    /**
+     * 是否正在等待认证结果
+     */
+    private boolean authenticating;
+
+    protected AsyncAuthenticationHandler(DeviceRegistry deviceRegistry, DeviceAuthService authService) {
+        this.deviceRegistry = deviceRegistry;
+        this.authService = authService;
+    }
+
+    /**
+     * 从首条消息中提取设备编号
+     *
+     * @param ctx 通道上下文
+     * @param msg 首条消息
+     * @return 设备编号，消息格式不合法时返回 null
+     * @throws Exception 提取过程中出现异常时抛出
+     */
+    protected abstract String resolveDeviceId(ChannelHandlerContext ctx, Object msg) throws Exception;
+
+    /**
+     * 协议名称，用于日志
+     *
+     * @return 协议名称
+     */
+    protected abstract String protocolName();
+
+    @Override
+    public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        if (authenticating) {
+            if (pendingMessages.size() >= MAX_PENDING_MESSAGES) {
+                LogUtils.logBusiness("{}认证期间缓存消息过多，关闭连接", protocolName());
+                ReferenceCountUtil.release(msg);
+                releasePending();
+                ctx.close();
+                return;
+            }
+            pendingMessages.add(msg);
+            return;
+        }
+        authenticate(ctx, msg);
+    }
+
+    @Override
+    public void authenticate(ChannelHandlerContext ctx, Object msg) throws Exception {
+        String deviceId = resolveDeviceId(ctx, msg);
+        if (deviceId == null) {
+            ReferenceCountUtil.release(msg);
+            ctx.close();
+            return;
+        }
+
+        // 暂停读取，等待认证结果返回后再恢复
+        authenticating = true;
+        ctx.channel().config().setAutoRead(false);
+        authService.authenticate(deviceId).whenComplete((authorized, error) ->
+                ctx.executor().execute(() -> onAuthResult(ctx, deviceId, msg, authorized, error)));
+    }
+
+    /**
+     * 在通道的 EventLoop 上处理认证结果
+     *
+     * @param ctx        通道上下文
+     * @param deviceId   设备编号
+     * @param msg        首条消息
+     * @param authorized 认证结果
+     * @param error      认证异常，成功时为 null
+     */
+    private void onAuthResult(ChannelHandlerContext ctx, String deviceId, Object msg,
+                              Boolean authorized, Throwable error) {
+        authenticating = false;
+        if (!ctx.channel().isActive()) {
+            ReferenceCountUtil.release(msg);
+            releasePending();
+            return;
+        }
+        if (error != null || !Boolean.TRUE.equals(authorized)) {
+            if (error != null) {
+                LogUtils.logError("{}认证请求失败:{}", error, protocolName(), deviceId);
+            } else {
+                LogUtils.logBusiness("{}认证失败:{}", protocolName(), deviceId);
+            }
+            ReferenceCountUtil.release(msg);
+            releasePending();
+            ctx.close();
+            return;
+        }
+
+        LogUtils.logBusiness("{}认证成功:{}", protocolName(), deviceId);
+        deviceRegistry.register(deviceId, ctx.channel());
+        ctx.channel().attr(AttributeKey.<String>valueOf("deviceId")).set(deviceId);
+        //将消息传递到下一个Inbound
+        ctx.fireChannelRead(msg);
+        Object pending;
+        while ((pending = pendingMessages.poll()) != null) {
+            ctx.fireChannelRead(pending);
+        }
+        // 移除自身,避免多次认证
+        ctx.pipeline().remove(this);
+        ctx.channel().config().setAutoRead(true);
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        releasePending();
+        super.channelInactive(ctx);
+    }
+
+    /**
+     * 释放认证期间缓存的消息
+     */
+    private void releasePending() {
+        Object pending;
+        while ((pending = pendingMessages.poll()) != null) {
+            ReferenceCountUtil.release(pending);
+        }
+    }
+}
@@ -1,24 +1,20 @@
 package cn.xxt.gatewaynetty.netty.handler.kar_normal;
 
+import cn.xxt.gatewaynetty.metrics.GatewayMetrics;
+import cn.xxt.gatewaynetty.metrics.Stage;
 import cn.xxt.gatewaynetty.netty.model.DeviceDataEvent;
 import cn.xxt.gatewaynetty.netty.handler.DataInboundHandler;
 import cn.xxt.gatewaynetty.netty.model.DeviceData;
+import cn.xxt.gatewaynetty.netty.model.Pdu;
 import cn.xxt.gatewaynetty.netty.protocol.ProtocolIdentifier;
 import cn.xxt.gatewaynetty.util.LogUtils;
-import cn.xxt.gatewaynetty.util.PDUUtil;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.channel.ChannelInboundHandlerAdapter;
 import io.netty.util.AttributeKey;
-import cn.xxt.gatewaynetty.kafka.DeviceDataKafkaProducer;
+import cn.xxt.gatewaynetty.bus.DeviceDataBus;
 import lombok.AllArgsConstructor;
 
-import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
 
 /**
  * @program: gateway-cn.xxt.gatewaynetty.netty
@@ -31,56 +27,19 @@ import java.util.concurrent.TimeUnit;
 public class DataInboundNormalHandler extends ChannelInboundHandlerAdapter implements DataInboundHandler {
 
     /**
-     * 消息过期时间（毫秒）
+     * 设备数据总线（Kafka 或进程内 Disruptor）
      */
-    private static final long EXPIRATION_TIME = 30 * 60 * 1000; // 30分钟
+    private final DeviceDataBus producer;
 
     /**
-     * 清理间隔（毫秒）
+     * 网关共享的未验证消息缓存
      */
-    private static final long CLEANUP_INTERVAL = 5 * 60 * 1000; // 5分钟
-
-    /**
-     * 定时任务执行器
-     */
-    private final ScheduledExecutorService scheduler;
-    /**
-     * 允许的最大未验证消息数
-     */
-    private static final int MAX_UNVALIDATED_MESSAGES = 100;
-    /**
-     * Kafka生产者，替代原有的Disruptor生产者
-     */
-    private final DeviceDataKafkaProducer producer;
-
-    /**
-     * 设备ID与未验证消息列表的映射
-     */
-    private final Map<String, List<String>> deviceUnvalidatedMessages = new ConcurrentHashMap<>();
-
-    /**
-     * 设备ID与最后访问时间的映射
-     */
-    private final Map<String, Long> deviceLastAccessTime = new ConcurrentHashMap<>();
-
-
-    /**
-     * 构造函数
-     *
-     * @param producer 设备数据事件生产者
-     */
-    public DataInboundNormalHandler(DeviceDataKafkaProducer producer) {
-        this.producer = producer;
-        this.scheduler = Executors.newSingleThreadScheduledExecutor();
-
-        // 启动定时清理任务
-        startCleanupTask();
-    }
+    private final UnvalidatedMessageBuffer unvalidatedMessages;
 
     /**
      * 当从通道中读取到消息时被调用。
      *
-     * <p>此方法首先通过PDUUtil的validateCheck方法验证接收到的消息，
+     * <p>此方法首先通过Pdu的isValid方法验证接收到的消息，
      * 如果验证失败，则不处理该消息；
      * 如果验证成功，则将消息转换为DeviceData对象并将其放入Disruptor队列中，
      * 同时记录相应的日志信息。
@@ -90,132 +49,56 @@ public class DataInboundNormalHandler extends ChannelInboundHandlerAdapter imple
      */
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) throws Exception {
+        long start = System.nanoTime();
         handleData(ctx, msg);
+        GatewayMetrics.recordSince(Stage.HANDLER, ProtocolIdentifier.PROTOCOL_NORMAL, start);
     }
 
     @SuppressWarnings("checkstyle:MagicNumber")
     @Override
     public void handleData(ChannelHandlerContext ctx, Object msg) throws Exception {
         String deviceId = ctx.channel().attr(AttributeKey.<String>valueOf("deviceId")).get();
-        if (!PDUUtil.validateCheck((String) msg)) {
-            LogUtils.logBusiness("普通话机消息验证失败，应该是话机上传短信{}", msg);
-
-            // 更新设备最后访问时间
-            deviceLastAccessTime.put(deviceId, System.currentTimeMillis());
-
-            // 获取设备的未验证消息列表，如果不存在则创建
-            List<String> deviceMessages = deviceUnvalidatedMessages.computeIfAbsent(
-                    deviceId, k -> new ArrayList<>());
-
-            // 检查列表大小，如果超过最大值，删除最旧的消息
-            if (deviceMessages.size() >= MAX_UNVALIDATED_MESSAGES) {
-                deviceMessages.remove(0);
-                LogUtils.logBusiness("设备{}的未验证消息列表已达最大容量，删除最旧消息", deviceId);
-            }
-
-            // 添加消息到列表
-            deviceMessages.add((String) msg);
-            LogUtils.logBusiness("普通话机消息验证失败，已添加到设备{}的未验证消息列表，当前列表大小: {}",
-                    deviceId, deviceMessages.size());
+        Pdu pdu = (Pdu) msg;
+        if (!pdu.isValid()) {
+            LogUtils.logDebug("普通话机消息验证失败，应该是话机上传短信{}", msg);
+
+            // 添加消息到该连接的未验证消息列表
+            int size = unvalidatedMessages.add(ctx.channel(), deviceId, pdu);
+            LogUtils.logSampled("normal.unvalidated", deviceId,
+                    "普通话机消息验证失败，已添加到设备{}的未验证消息列表，当前列表大小: {}", deviceId, size);
         } else {
             // 直接将Message放到Disruptor队列中
-            int funcNo = PDUUtil.getFuncNo((String) msg);
-            LogUtils.logBusiness("普通话机的任务号为{}", funcNo);
+            int funcNo = pdu.getFuncNo();
+            LogUtils.logDebug("普通话机的任务号为{}", funcNo);
             if (funcNo == 98) {
-                List<String> deviceMessages = deviceUnvalidatedMessages.get(deviceId);
+                List<Pdu> deviceMessages = unvalidatedMessages.drain(ctx.channel());
 
-                if (deviceMessages != null && !deviceMessages.isEmpty()) {
+                if (!deviceMessages.isEmpty()) {
                     LogUtils.logBusiness("设备{}上传短信，将长度为{}的之前未验证数据拼接",
                             deviceId, deviceMessages.size());
 
                     // 将设备的所有未验证消息拼接到当前消息后面
-                    StringBuilder concatenatedMessage = new StringBuilder(String.valueOf(msg));
-                    for (String unvalidatedMsg : deviceMessages) {
-                        concatenatedMessage.append(unvalidatedMsg);
-                    }
-
-                    // 更新消息内容
-                    msg = concatenatedMessage.toString();
-
-                    // 清空设备的未验证消息列表
-                    deviceMessages.clear();
+                    pdu = Pdu.concat(pdu, deviceMessages);
                     LogUtils.logBusiness("已清空设备{}的未验证消息列表,", deviceId);
                 }
             }
-            LogUtils.logBusiness("普通话机数据{}写入Disruptor", msg);
+            LogUtils.logDebug("普通话机数据{}写入Disruptor", pdu);
             DeviceData data = new DeviceData(
-                    PDUUtil.getDeviceNo((String) msg),
-                    msg,
+                    pdu.getDeviceNo(),
+                    pdu,
                     ProtocolIdentifier.PROTOCOL_NORMAL);
             producer.sendData(data, DeviceDataEvent.Type.TO_TB);
         }
     }
 
-    /**
-     * 启动定时清理任务
-     */
-    @SuppressWarnings("checkstyle:MagicNumber")
-    private void startCleanupTask() {
-        scheduler.scheduleAtFixedRate(() -> {
-            try {
-                long currentTime = System.currentTimeMillis();
-                LogUtils.logBusiness("开始执行未验证消息清理任务，当前设备数：{}", deviceLastAccessTime.size());
-
-                // 清理超过过期时间的设备消息
-                deviceLastAccessTime.entrySet().removeIf(entry -> {
-                    String deviceId = entry.getKey();
-                    long lastAccess = entry.getValue();
-
-                    if (currentTime - lastAccess > EXPIRATION_TIME) {
-                        deviceUnvalidatedMessages.remove(deviceId);
-                        LogUtils.logBusiness("清理设备{}的未验证消息，该设备已{}分钟未活动",
-                                deviceId, (currentTime - lastAccess) / (60 * 1000));
-                        return true;
-                    }
-                    return false;
-                });
-            } catch (Exception e) {
-                LogUtils.logError("清理未验证消息任务执行异常", e);
-            }
-        }, CLEANUP_INTERVAL, CLEANUP_INTERVAL, TimeUnit.MILLISECONDS);
-    }
-
-    /**
-     * 关闭处理器，释放资源
-     */
-    @SuppressWarnings("checkstyle:MagicNumber")
-    public void close() {
-        if (scheduler != null && !scheduler.isShutdown()) {
-            scheduler.shutdown();
-            try {
-                if (!scheduler.awaitTermination(5, TimeUnit.SECONDS)) {
-                    scheduler.shutdownNow();
-                }
-            } catch (InterruptedException e) {
-                scheduler.shutdownNow();
-                Thread.currentThread().interrupt();
-            }
-        }
-
-        // 清理所有设备的消息
-        deviceUnvalidatedMessages.clear();
-        deviceLastAccessTime.clear();
-        LogUtils.logBusiness("DataInboundNormalHandler关闭，清理所有资源");
-    }
-
     /**
      * 当通道关闭时调用，清理相关资源
      */
     @Override
     public void channelInactive(ChannelHandlerContext ctx) throws Exception {
-        // 获取设备ID
-        String deviceId = ctx.channel().attr(AttributeKey.<String>valueOf("deviceId")).get();
-        if (deviceId != null) {
-            // 清理设备相关的资源
-            deviceUnvalidatedMessages.remove(deviceId);
-            deviceLastAccessTime.remove(deviceId);
-            LogUtils.logBusiness("设备{}连接断开，清理相关资源", deviceId);
-        }
+        unvalidatedMessages.release(ctx.channel());
+        LogUtils.logBusiness("设备{}连接断开，清理相关资源",
+                ctx.channel().attr(AttributeKey.<String>valueOf("deviceId")).get());
         super.channelInactive(ctx);
     }
 }
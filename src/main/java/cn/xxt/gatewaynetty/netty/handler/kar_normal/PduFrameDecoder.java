@@ -0,0 +1,272 @@
+package cn.xxt.gatewaynetty.netty.handler.kar_normal;
+
+import cn.xxt.gatewaynetty.metrics.GatewayMetrics;
+import cn.xxt.gatewaynetty.metrics.MetricCounter;
+import cn.xxt.gatewaynetty.metrics.Stage;
+import cn.xxt.gatewaynetty.netty.model.Pdu;
+import cn.xxt.gatewaynetty.netty.protocol.ProtocolIdentifier;
+import cn.xxt.gatewaynetty.util.LogUtils;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+
+import java.util.List;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: 卡尔、掇月普通话机 *#F# 协议的分帧解码器
+ * @author: Havad
+ * @create: 2026-10-18 10:40
+ **/
+
+public class PduFrameDecoder extends ByteToMessageDecoder {
+    /**
+     * 帧前缀 *#F#
+     */
+    private static final byte[] PREFIX = {'*', '#', 'F', '#'};
+    /**
+     * length 字段长度（4 位十进制字符）
+     */
+    private static final int LENGTH_FIELD_LENGTH = 4;
+    /**
+     * 读取 length 字段所需的字节数：pre(4) + length(4)
+     */
+    private static final int HEADER_LENGTH = PREFIX.length + LENGTH_FIELD_LENGTH;
+    /**
+     * 最短帧长度：pre(4) + length(4) + comm_type(1) + func_no(2) + seq_no(4) + check(4)
+     */
+    private static final int MIN_FRAME_LENGTH = 19;
+    /**
+     * 默认的最大 length 字段值
+     */
+    private static final int DEFAULT_MAX_FRAME_LENGTH = 8192;
+    /**
+     * 默认的两次成帧之间允许的不成帧字节数
+     */
+    private static final int DEFAULT_MAX_UNFRAMED_BYTES = 4 * DEFAULT_MAX_FRAME_LENGTH;
+
+    /**
+     * 允许的最大 length 字段值，超过后按不成帧的数据处理；同时也是单段不成帧数据允许传出的最大字节数
+     */
+    private final int maxFrameLength;
+    /**
+     * 两次成帧之间允许的不成帧字节数，超过后关闭连接
+     */
+    private final int maxUnframedBytes;
+    /**
+     * 上一次成帧以来收到的不成帧字节数
+     */
+    private long unframedBytes;
+    /**
+     * 当前这段连续不成帧数据的字节数，可能跨多次读取
+     */
+    private long runBytes;
+    /**
+     * 连接已因不成帧数据过多而关闭，之后收到的数据全部丢弃
+     */
+    private boolean discarding;
+
+    public PduFrameDecoder() {
+        this(DEFAULT_MAX_FRAME_LENGTH, DEFAULT_MAX_UNFRAMED_BYTES);
+    }
+
+    public PduFrameDecoder(int maxFrameLength, int maxUnframedBytes) {
+        this.maxFrameLength = maxFrameLength;
+        this.maxUnframedBytes = maxUnframedBytes;
+    }
+
+    /**
+     * 每次解出一帧 {@link Pdu}；同一次读取中的多帧由 ByteToMessageDecoder 循环调用依次解出，
+     * 一起传给后续的 Handler。
+     * <p>
+     * 不以 *#F# 开头的数据（短信的续传分片，或 length 字段非法的数据）不丢弃，
+     * 按段原样作为一条 PDU 传出，校验不通过后进入未验证消息缓存，由功能号 98 的短信帧拼接；每段都计入错误统计。
+     * 一段连续的不成帧数据超过 maxFrameLength 字节时，超出部分丢弃；
+     * 两次成帧之间的不成帧数据超过 maxUnframedBytes 字节时关闭连接，避免垃圾数据占满未验证消息缓存。
+     *
+     * @param ctx 通道上下文
+     * @param in  累积的输入数据
+     * @param out 解码结果
+     */
+    @Override
+    protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) {
+        if (discarding) {
+            in.skipBytes(in.readableBytes());
+            return;
+        }
+        long start = System.nanoTime();
+        int prefix = indexOfPrefix(in, in.readerIndex());
+        if (prefix != in.readerIndex()) {
+            // 前缀之前的数据；没有完整前缀时保留末尾可能不完整的前缀，等待更多数据
+            emitUnframed(ctx, in, prefix >= 0 ? prefix : partialPrefixStart(in, in.readerIndex()), out,
+                    "前缀之前的数据");
+            if (prefix >= 0) {
+                runBytes = 0;
+            }
+            return;
+        }
+        if (in.readableBytes() < HEADER_LENGTH) {
+            return;
+        }
+
+        int length = parseLength(in, in.readerIndex() + PREFIX.length);
+        if (length < MIN_FRAME_LENGTH || length > maxFrameLength) {
+            // length 字段非法，当前前缀到下一个前缀之间的数据整段传出
+            int next = indexOfPrefix(in, in.readerIndex() + 1);
+            emitUnframed(ctx, in, next >= 0 ? next : partialPrefixStart(in, in.readerIndex() + 1), out,
+                    "length 字段非法的数据");
+            if (next >= 0) {
+                runBytes = 0;
+            }
+            return;
+        }
+        int frameBytes = frameByteLength(in, in.readerIndex(), length);
+        if (frameBytes < 0) {
+            // 半包，等待更多数据
+            return;
+        }
+
+        out.add(Pdu.wrap(in.readSlice(frameBytes)));
+        unframedBytes = 0;
+        runBytes = 0;
+        GatewayMetrics.increment(MetricCounter.RECEIVED_MESSAGES, ProtocolIdentifier.PROTOCOL_NORMAL);
+        GatewayMetrics.add(MetricCounter.RECEIVED_BYTES, ProtocolIdentifier.PROTOCOL_NORMAL, frameBytes);
+        GatewayMetrics.recordSince(Stage.DECODE, ProtocolIdentifier.PROTOCOL_NORMAL, start);
+    }
+
+    /**
+     * 从指定位置查找完整的帧前缀
+     *
+     * @param in   输入数据
+     * @param from 查找的起始位置
+     * @return 前缀位置，没有完整前缀时返回 -1
+     */
+    private static int indexOfPrefix(ByteBuf in, int from) {
+        int end = in.writerIndex();
+        int i = from;
+        while (i < end) {
+            i = in.indexOf(i, end, PREFIX[0]);
+            if (i < 0) {
+                return -1;
+            }
+            if (matchPrefix(in, i, end) == PREFIX.length) {
+                return i;
+            }
+            i++;
+        }
+        return -1;
+    }
+
+    /**
+     * 查找可读数据末尾不完整的帧前缀
+     *
+     * @param in   输入数据
+     * @param from 查找的起始位置
+     * @return 不完整前缀的起始位置，没有时返回可读数据的结束位置
+     */
+    private static int partialPrefixStart(ByteBuf in, int from) {
+        int end = in.writerIndex();
+        for (int i = Math.max(from, end - PREFIX.length + 1); i < end; i++) {
+            if (matchPrefix(in, i, end) == end - i) {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * 计算从指定位置起与帧前缀匹配的字节数
+     *
+     * @param in    输入数据
+     * @param index 起始位置
+     * @param end   可读数据的结束位置
+     * @return 连续匹配的字节数
+     */
+    private static int matchPrefix(ByteBuf in, int index, int end) {
+        int matched = 0;
+        while (matched < PREFIX.length && index + matched < end
+                && in.getByte(index + matched) == PREFIX[matched]) {
+            matched++;
+        }
+        return matched;
+    }
+
+    /**
+     * 直接从字节解析 4 位十进制的 length 字段，不构造字符串
+     *
+     * @param in    输入数据
+     * @param index length 字段起始位置
+     * @return length 值，包含非数字字符时返回 -1
+     */
+    @SuppressWarnings("checkstyle:MagicNumber")
+    private static int parseLength(ByteBuf in, int index) {
+        int value = 0;
+        for (int i = 0; i < LENGTH_FIELD_LENGTH; i++) {
+            int digit = in.getByte(index + i) - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * length 字段按字符计数（与 PDUUtil 的校验一致），按 UTF-8 序列换算为帧的字节数
+     *
+     * @param in     输入数据
+     * @param index  帧起始位置
+     * @param length length 字段值
+     * @return 帧的字节数，数据不足时返回 -1
+     */
+    private static int frameByteLength(ByteBuf in, int index, int length) {
+        int end = in.writerIndex();
+        int i = index;
+        int chars = 0;
+        while (chars < length) {
+            if (i >= end) {
+                return -1;
+            }
+            int sequence = Pdu.utf8SequenceLength(in.getByte(i));
+            i += sequence;
+            chars += Pdu.utf16Length(sequence);
+        }
+        return i <= end ? i - index : -1;
+    }
+
+    /**
+     * 把读指针到指定位置之间不成帧的数据原样作为一条 PDU 传出，并计入错误统计；
+     * 所在的连续数据超过 maxFrameLength 字节时丢弃，两次成帧之间累计超过 maxUnframedBytes 字节时关闭连接
+     *
+     * @param ctx    通道上下文
+     * @param in     输入数据
+     * @param index  数据的结束位置
+     * @param out    解码结果
+     * @param reason 不成帧的原因，用于日志
+     */
+    private void emitUnframed(ChannelHandlerContext ctx, ByteBuf in, int index, List<Object> out, String reason) {
+        int count = index - in.readerIndex();
+        if (count <= 0) {
+            return;
+        }
+        unframedBytes += count;
+        runBytes += count;
+        if (unframedBytes > maxUnframedBytes) {
+            LogUtils.countError("pdu.unframed.overflow", "普通话机两次成帧之间收到{}字节不成帧的数据，超过上限{}，关闭连接:{}",
+                    unframedBytes, maxUnframedBytes, ctx.channel().remoteAddress());
+            discarding = true;
+            in.skipBytes(in.readableBytes());
+            ctx.close();
+            return;
+        }
+        if (runBytes > maxFrameLength) {
+            LogUtils.countError("pdu.unframed.dropped", "普通话机收到的{}连续{}字节，超过上限{}，丢弃{}字节, 连接:{}",
+                    reason, runBytes, maxFrameLength, count, ctx.channel().remoteAddress());
+            in.skipBytes(count);
+            return;
+        }
+        LogUtils.countError("pdu.unframed", "普通话机收到不成帧的{}{}字节，按未验证消息传出，上次成帧以来累计{}字节, 连接:{}",
+                reason, count, unframedBytes, ctx.channel().remoteAddress());
+        out.add(Pdu.wrap(in.readSlice(count)));
+    }
+}
@@ -0,0 +1,163 @@
+package cn.xxt.gatewaynetty.netty.handler.kar_normal;
+
+import cn.xxt.gatewaynetty.netty.model.Pdu;
+import cn.xxt.gatewaynetty.util.LogUtils;
+import io.netty.channel.Channel;
+import io.netty.util.Attribute;
+import io.netty.util.AttributeKey;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: 普通话机未验证消息（短信分片）的网关级缓存，状态挂在各自的 Channel 上
+ * @author: Havad
+ * @create: 2026-10-18 10:05
+ **/
+
+public class UnvalidatedMessageBuffer {
+    /**
+     * 消息过期时间（毫秒）
+     */
+    private static final long EXPIRATION_TIME = 30 * 60 * 1000; // 30分钟
+
+    /**
+     * 允许的最大未验证消息数
+     */
+    private static final int MAX_UNVALIDATED_MESSAGES = 100;
+
+    /**
+     * 存放在 Channel 上的缓存状态
+     */
+    private static final AttributeKey<State> STATE_KEY = AttributeKey.valueOf("UNVALIDATED_MESSAGES");
+
+    /**
+     * 当前持有未验证消息的连接数
+     */
+    private final AtomicInteger activeBuffers = new AtomicInteger(0);
+
+    /**
+     * 追加一条未验证消息，必须在该 Channel 的 EventLoop 中调用
+     *
+     * @param channel  设备连接
+     * @param deviceId 设备ID，仅用于日志
+     * @param msg      未验证的消息
+     * @return 追加后该连接缓存的消息数
+     */
+    public int add(Channel channel, String deviceId, Pdu msg) {
+        Attribute<State> attr = channel.attr(STATE_KEY);
+        State state = attr.get();
+        if (state == null) {
+            state = new State();
+            attr.set(state);
+            activeBuffers.incrementAndGet();
+        }
+        state.lastAccessTime = System.currentTimeMillis();
+
+        // 检查列表大小，如果超过最大值，删除最旧的消息
+        if (state.messages.size() >= MAX_UNVALIDATED_MESSAGES) {
+            state.messages.poll();
+            LogUtils.logBusiness("设备{}的未验证消息列表已达最大容量，删除最旧消息", deviceId);
+        }
+        state.messages.add(msg);
+
+        if (state.expiryTask == null) {
+            scheduleExpiry(channel, state, EXPIRATION_TIME);
+        }
+        return state.messages.size();
+    }
+
+    /**
+     * 取出并清空该连接缓存的全部未验证消息，必须在该 Channel 的 EventLoop 中调用
+     *
+     * @param channel 设备连接
+     * @return 按接收顺序排列的消息，没有缓存时返回空列表
+     */
+    public List<Pdu> drain(Channel channel) {
+        State state = channel.attr(STATE_KEY).getAndSet(null);
+        if (state == null) {
+            return Collections.emptyList();
+        }
+        state.cancelExpiry();
+        activeBuffers.decrementAndGet();
+        return new ArrayList<>(state.messages);
+    }
+
+    /**
+     * 释放该连接的缓存，在连接断开时调用
+     *
+     * @param channel 设备连接
+     */
+    public void release(Channel channel) {
+        State state = channel.attr(STATE_KEY).getAndSet(null);
+        if (state != null) {
+            state.cancelExpiry();
+            activeBuffers.decrementAndGet();
+        }
+    }
+
+    /**
+     * 当前持有未验证消息的连接数
+     *
+     * @return 连接数
+     */
+    public int getActiveBufferCount() {
+        return activeBuffers.get();
+    }
+
+    /**
+     * 在连接自己的 EventLoop 上安排过期检查，不占用额外线程
+     *
+     * @param channel 设备连接
+     * @param state   缓存状态
+     * @param delay   延迟（毫秒）
+     */
+    @SuppressWarnings("checkstyle:MagicNumber")
+    private void scheduleExpiry(Channel channel, State state, long delay) {
+        state.expiryTask = channel.eventLoop().schedule(() -> {
+            if (channel.attr(STATE_KEY).get() != state) {
+                return;
+            }
+            long idle = System.currentTimeMillis() - state.lastAccessTime;
+            if (idle >= EXPIRATION_TIME) {
+                channel.attr(STATE_KEY).set(null);
+                activeBuffers.decrementAndGet();
+                LogUtils.logBusiness("清理设备{}的未验证消息，该设备已{}分钟未活动",
+                        channel.attr(AttributeKey.<String>valueOf("deviceId")).get(), idle / (60 * 1000));
+            } else {
+                scheduleExpiry(channel, state, EXPIRATION_TIME - idle);
+            }
+        }, delay, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 单个连接的缓存状态，只在该连接的 EventLoop 中访问
+     */
+    private static final class State {
+        /**
+         * 未验证消息
+         */
+        private final ArrayDeque<Pdu> messages = new ArrayDeque<>();
+        /**
+         * 最后访问时间
+         */
+        private long lastAccessTime;
+        /**
+         * 过期检查任务
+         */
+        private ScheduledFuture<?> expiryTask;
+
+        void cancelExpiry() {
+            if (expiryTask != null) {
+                expiryTask.cancel(false);
+                expiryTask = null;
+            }
+        }
+    }
+}
@@ -1,11 +1,15 @@
 package cn.xxt.gatewaynetty.netty.handler.kar_video;
 
-import cn.xxt.gatewaynetty.kafka.DeviceDataKafkaProducer;
+import cn.xxt.gatewaynetty.bus.DeviceDataBus;
+import cn.xxt.gatewaynetty.metrics.GatewayMetrics;
+import cn.xxt.gatewaynetty.metrics.Stage;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import cn.xxt.gatewaynetty.netty.model.DeviceDataEvent;
 import cn.xxt.gatewaynetty.netty.handler.DataInboundHandler;
 import cn.xxt.gatewaynetty.netty.model.DeviceData;
+import cn.xxt.gatewaynetty.netty.model.VideoCommand;
+import cn.xxt.gatewaynetty.netty.model.VideoMessage;
 import cn.xxt.gatewaynetty.mqtt.MqttSender;
 import cn.xxt.gatewaynetty.netty.protocol.ProtocolIdentifier;
 import cn.xxt.gatewaynetty.util.LogUtils;
@@ -16,7 +20,6 @@ import io.netty.util.AttributeKey;
 import lombok.AllArgsConstructor;
 import org.eclipse.paho.client.mqttv3.MqttMessage;
 
-import java.nio.charset.StandardCharsets;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
@@ -33,7 +36,7 @@ public class DataInboundVideoHandler extends ChannelInboundHandlerAdapter implem
     /**
      * 设备数据事件生产者
      */
-    private final DeviceDataKafkaProducer producer;
+    private final DeviceDataBus producer;
 
     /**
      * MQTT消息发送器
@@ -47,42 +50,29 @@ public class DataInboundVideoHandler extends ChannelInboundHandlerAdapter implem
 
     @Override
     public void channelRead(ChannelHandlerContext ctx, Object msg) throws JsonProcessingException {
+        long start = System.nanoTime();
         handleData(ctx, msg);
+        GatewayMetrics.recordSince(Stage.HANDLER, ProtocolIdentifier.PROTOCOL_VIDEO, start);
     }
 
     @Override
     public void handleData(ChannelHandlerContext ctx, Object data) throws JsonProcessingException {
         // 1. 提取所需要的值
-        @SuppressWarnings("unchecked")
-        Map<String, Object> messageMap = (Map<String, Object>) data;
-        // 获取 command
-        String command = (String) messageMap.get("command");
-        // 获取 request 内容
-        @SuppressWarnings("unchecked")
-        Map<String, Object> request = (Map<String, Object>) messageMap.get("request");
-        if (request == null) {
-            request = (Map<String, Object>) messageMap.get("response");
-        }
-        LogUtils.logBusiness("request is {}", request);
-        if (command.equals("link")) {
-            sendSuccessBack(ctx, ctx.channel().attr(AttributeKey.<String>valueOf("deviceId")).get());
-        } else if (command.equals("devstatus")) {
-            LogUtils.logBusiness("设备状态作为属性发送");
-            String deviceId = ctx.channel().attr(AttributeKey.<String>valueOf("deviceId")).get();
-            Map<String, Map<String, Object>> res = new HashMap<>();
-            res.put(deviceId, request);
-            // 转换为 JSON 字符串
-            ObjectMapper mapper = new ObjectMapper();
-            String payload = mapper.writeValueAsString(res);
-            // 创建 MQTT 消息对象
-            MqttMessage message = new MqttMessage(payload.getBytes(StandardCharsets.UTF_8));
-            message.setQos(1);
-            LogUtils.logBusiness("发送设备属性的构建体为:{}", message);
-            mqttSender.sendAttribute(message);
+        VideoMessage message = (VideoMessage) data;
+        String deviceId = ctx.channel().attr(AttributeKey.<String>valueOf("deviceId")).get();
+        LogUtils.logDebug("request is {}", message);
+        if (message.getCommand() == VideoCommand.LINK) {
+            sendSuccessBack(ctx, deviceId);
+        } else if (message.getCommand() == VideoCommand.DEVSTATUS) {
+            LogUtils.logDebug("设备状态作为属性发送");
+            // 消息体原样嵌入 {设备ID: 消息体}，不经过 Map
+            MqttMessage mqttMessage = new MqttMessage(message.wrapPayload(deviceId));
+            mqttMessage.setQos(1);
+            LogUtils.logDebug("发送设备属性的构建体为:{}", mqttMessage);
+            mqttSender.sendAttribute(mqttMessage);
         } else {
-            LogUtils.logBusiness("视频话机数据写入Disruptor:{}", data);
-            DeviceData msg = new DeviceData(ctx.channel().attr(AttributeKey.<String>valueOf("deviceId")).get(),
-                    data, ProtocolIdentifier.PROTOCOL_VIDEO);
+            LogUtils.logDebug("视频话机数据写入Disruptor:{}", data);
+            DeviceData msg = new DeviceData(deviceId, message, ProtocolIdentifier.PROTOCOL_VIDEO);
             producer.sendData(msg, DeviceDataEvent.Type.TO_TB);
         }
     }
@@ -1,20 +1,23 @@
 package cn.xxt.gatewaynetty.netty.handler.kar_video;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import cn.xxt.gatewaynetty.metrics.GatewayMetrics;
+import cn.xxt.gatewaynetty.metrics.MetricCounter;
+import cn.xxt.gatewaynetty.metrics.Stage;
+import cn.xxt.gatewaynetty.netty.model.VideoMessage;
+import cn.xxt.gatewaynetty.netty.protocol.ProtocolIdentifier;
 import cn.xxt.gatewaynetty.util.LogUtils;
-import cn.xxt.gatewaynetty.util.PackageAssembler;
 import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.ByteToMessageDecoder;
 
+import java.io.IOException;
+import java.io.InputStream;
 import java.net.ProtocolException;
-import java.nio.charset.StandardCharsets;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @program: gateway-cn.xxt.gatewaynetty.netty
@@ -28,7 +31,10 @@ public class JsonProtocolDecoder extends ByteToMessageDecoder {
      * 头部长度，固定值为20，根据实际头部长度进行调整。
      */
     private static final int HEADER_LENGTH = 20; // 根据实际头部长度调整
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    /**
+     * 所有连接共用的 JSON 解析器工厂
+     */
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
     /**
      * 同步前缀字节数组，用于标识消息的开始，默认为 0x40（即 '@' 字符）
      */
@@ -39,13 +45,49 @@ public class JsonProtocolDecoder extends ByteToMessageDecoder {
     private static final short HEARTBEAT_TYPE = 0x0313;
 
     /**
-     * 存储未完成的多包消息映射
-     */// 存储未完成的多包消息
-    private final Map<Integer, PackageAssembler> messageAssemblers = new ConcurrentHashMap<>();
+     * 本连接未完成的多包消息，受网关级组装器的字节预算和超时约束
+     */
+    private final MessageReassembler.Connection messageAssemblers;
+
+    /**
+     * 构造函数
+     *
+     * @param reassembler 网关级多包消息组装器
+     */
+    public JsonProtocolDecoder(MessageReassembler reassembler) {
+        this.messageAssemblers = reassembler.newConnection();
+    }
 
-    @SuppressWarnings("checkstyle:ReturnCount")
     @Override
     protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
+        long start = System.nanoTime();
+        int readerIndex = in.readerIndex();
+        int produced = out.size();
+        try {
+            decodeFrame(ctx, in, out);
+        } finally {
+            int consumed = in.readerIndex() - readerIndex;
+            if (consumed > 0) {
+                GatewayMetrics.add(MetricCounter.RECEIVED_BYTES, ProtocolIdentifier.PROTOCOL_VIDEO, consumed);
+            }
+            if (out.size() > produced) {
+                GatewayMetrics.add(MetricCounter.RECEIVED_MESSAGES, ProtocolIdentifier.PROTOCOL_VIDEO,
+                        out.size() - produced);
+                GatewayMetrics.recordSince(Stage.DECODE, ProtocolIdentifier.PROTOCOL_VIDEO, start);
+            }
+        }
+    }
+
+    /**
+     * 解出一帧：校验头部，心跳直接生成响应，多包消息交给组装器，到齐后解析为 {@link VideoMessage}
+     *
+     * @param ctx 通道处理器上下文
+     * @param in  累积的输入数据
+     * @param out 解码结果
+     * @throws Exception 协议格式错误时抛出
+     */
+    @SuppressWarnings("checkstyle:ReturnCount")
+    private void decodeFrame(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) throws Exception {
         if (in.readableBytes() < HEADER_LENGTH) {
             return;
         }
@@ -63,95 +105,153 @@ public class JsonProtocolDecoder extends ByteToMessageDecoder {
         // 读取协议头部
         short protocolType = in.readShort();       // 协议类型(2字节)
         int sessionNumber = in.readInt();          // 会话序号(4字节)
-        short totalPackages = in.readShort();      // 协议总包数(2字节)
-        short currentPackage = in.readShort();     // 协议包序号(2字节)
+        int totalPackages = in.readUnsignedShort(); // 协议总包数(2字节)
+        int currentPackage = in.readUnsignedShort(); // 协议包序号(2字节)
         // 我们目前的协议加密为：未加密（不使用数据但需要读取字节）
         int keyNumber = in.readInt();              // 密钥序号(4字节)
         short encryptionType = in.readShort();     // 加密类型(2字节)
-        short dataLength = in.readShort();         // 数据长度(2字节)
+        int dataLength = in.readUnsignedShort();   // 数据长度(2字节)
         // 验证是否有足够的字节用于完整消息
         if (in.readableBytes() < dataLength) {
             in.resetReaderIndex();
             return;
         }
 
-        // 读取加密的数据内容
-        byte[] encryptedData = new byte[dataLength];
-        in.readBytes(encryptedData);
-
-        // 处理多包消息
-        if (totalPackages > 1) {
-            PackageAssembler assembler = messageAssemblers.computeIfAbsent(sessionNumber,
-                    k -> new PackageAssembler(totalPackages));
+        // 心跳包不需要解析消息体
+        if (protocolType == HEARTBEAT_TYPE) {
+            in.skipBytes(dataLength);
+            out.add(createHeartbeatResponse());
+            return;
+        }
 
-            assembler.addPackage(currentPackage, encryptedData);
+        // 解密数据 （不需要）
 
-            if (!assembler.isComplete()) {
+        // 处理多包消息，到齐后拼成 CompositeByteBuf
+        VideoMessage message;
+        if (totalPackages > 1) {
+            // 组装器预留字节预算后才复制分包
+            ByteBuf assembled = messageAssemblers.offer(ctx, sessionNumber, totalPackages, currentPackage,
+                    in, dataLength);
+            if (assembled == null) {
                 return;
             }
-
-            // 获取完整消息并移除组装器
-            encryptedData = assembler.getCompleteMessage();
-            messageAssemblers.remove(sessionNumber);
+            try {
+                message = parseJsonData(assembled);
+            } finally {
+                assembled.release();
+            }
+        } else {
+            message = parseJsonData(in.readSlice(dataLength));
         }
 
-        // 解密数据 （不需要）
-
-        // 解析JSON
-        String jsonStr = new String(encryptedData, StandardCharsets.UTF_8);
-        JsonNode rootNode = objectMapper.readTree(jsonStr);
-
-        // 处理解析后的数据
-        Map<String, Object> resultMap = processJsonData(rootNode, protocolType);
-        if (resultMap != null) {
-            out.add(resultMap);
+        if (message != null) {
+            out.add(message);
         }
     }
 
+    /**
+     * 连接关闭或解码器移除时释放未完成的多包消息
+     *
+     * @param ctx 通道处理器上下文
+     */
+    @Override
+    protected void handlerRemoved0(ChannelHandlerContext ctx) {
+        messageAssemblers.releaseAll();
+    }
+
     /**
      * 创建心跳响应的私有方法
      * <p>
      * 该方法用于构建返回给客户端的心跳响应数据包。
      *
-     * @return 包含心跳命令及请求详情的映射对象
+     * @return 心跳消息
      */
-    private Map<String, Object> createHeartbeatResponse() {
-        Map<String, Object> resultMap = new HashMap<>();
-        resultMap.put("command", "heartbeat");
-        resultMap.put("request", Collections.singletonMap("heartbeat", "gateway make"));
-        LogUtils.logBusiness("构建心跳包: {}", resultMap);
-        return resultMap;
+    private VideoMessage createHeartbeatResponse() {
+        VideoMessage message = VideoMessage.heartbeat();
+        LogUtils.logDebug("构建心跳包: {}", message);
+        return message;
     }
 
     /**
-     * 处理JSON数据方法
+     * 直接从缓冲区流式解析JSON数据，只取出 command 和 request/response，其余字段跳过
+     * <p>
+     * request/response 子树不解析，按解析器给出的字节偏移从缓冲区中截取原始 JSON 字节。
      *
-     * @param rootNode     JSON根节点
-     * @param protocolType 协议类型
-     * @return 处理后的JSON数据映射，或心跳响应映射，如果发生错误返回null
+     * @param payload 消息体，读取后读指针位于末尾
+     * @return 视频话机消息或心跳消息，如果发生错误返回null
+     * @throws IOException JSON 格式错误时抛出
      */
-    private Map<String, Object> processJsonData(JsonNode rootNode, short protocolType) {
-        if (protocolType == HEARTBEAT_TYPE || rootNode == null || rootNode.isEmpty()) {
-            // 处理心跳包
+    @SuppressWarnings("checkstyle:ReturnCount")
+    private VideoMessage parseJsonData(ByteBuf payload) throws IOException {
+        if (!payload.isReadable()) {
             return createHeartbeatResponse();
         }
 
-        Map<String, Object> resultMap = new HashMap<>();
-
-        if (rootNode.has("command")) {
-            String command = rootNode.get("command").asText();
-            resultMap.put("command", command);
-            // 处理请求或响应
-            if (rootNode.has("request")) {
-                resultMap.put("request", objectMapper.convertValue(rootNode.get("request"), Map.class));
-            } else if (rootNode.has("response")) {
-                resultMap.put("response", objectMapper.convertValue(rootNode.get("response"), Map.class));
-            } else {
-                LogUtils.logError("数据解析错误: {}", new Throwable(), rootNode);
-                return null;
+        int base = payload.readerIndex();
+        String command = null;
+        byte[] request = null;
+        byte[] response = null;
+        boolean empty = true;
+        try (JsonParser parser = JSON_FACTORY.createParser((InputStream) new ByteBufInputStream(payload))) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                // 非对象的消息体与空对象一样按心跳处理
+                return createHeartbeatResponse();
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                empty = false;
+                String field = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if ("command".equals(field) && value.isScalarValue()) {
+                    command = parser.getValueAsString();
+                } else if ("request".equals(field) && value != JsonToken.VALUE_NULL) {
+                    request = captureValue(parser, payload, base);
+                } else if ("response".equals(field) && value != JsonToken.VALUE_NULL) {
+                    response = captureValue(parser, payload, base);
+                } else {
+                    parser.skipChildren();
+                }
             }
         }
-        return resultMap;
+
+        if (empty) {
+            // 处理心跳包
+            return createHeartbeatResponse();
+        }
+        if (command == null) {
+            LogUtils.countError("video.no-command", "视频话机消息缺少command，丢弃");
+            return null;
+        }
+        // 处理请求或响应
+        if (request != null) {
+            return VideoMessage.of(command, VideoMessage.Direction.REQUEST, null, request);
+        } else if (response != null) {
+            return VideoMessage.of(command, VideoMessage.Direction.RESPONSE, null, response);
+        }
+        LogUtils.countError("video.no-body", "数据解析错误, 缺少request/response: {}", command);
+        return null;
+    }
+
+    /**
+     * 跳过解析器当前所在的值，并从缓冲区中截取该值的原始字节
+     *
+     * @param parser  位于值起始处的解析器
+     * @param payload 消息体缓冲区
+     * @param base    解析开始时缓冲区的读指针
+     * @return 该值的原始 JSON 字节
+     * @throws IOException JSON 格式错误时抛出
+     */
+    private static byte[] captureValue(JsonParser parser, ByteBuf payload, int base) throws IOException {
+        long start = parser.getTokenLocation().getByteOffset();
+        if (parser.currentToken().isStructStart()) {
+            parser.skipChildren();
+        } else {
+            // 字符串等标量是惰性读取的，先读完才能得到结束位置
+            parser.finishToken();
+        }
+        long end = parser.getCurrentLocation().getByteOffset();
+        byte[] bytes = new byte[(int) (end - start)];
+        payload.getBytes(base + (int) start, bytes);
+        return bytes;
     }
 
     /**
@@ -0,0 +1,348 @@
+package cn.xxt.gatewaynetty.netty.handler.kar_video;
+
+import cn.xxt.gatewaynetty.util.LogUtils;
+import cn.xxt.gatewaynetty.util.PackageAssembler;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: 视频话机多包消息的网关级组装器，限制单连接和全网关的缓存字节数，超时丢弃不完整的会话
+ * @author: Havad
+ * @create: 2026-10-18 15:00
+ **/
+
+public class MessageReassembler {
+    /**
+     * 单条消息允许的最大总包数
+     */
+    private static final int MAX_TOTAL_PACKAGES = 256;
+
+    /**
+     * 单个连接同时进行中的最大会话数
+     */
+    private static final int MAX_SESSIONS_PER_CONNECTION = 16;
+
+    /**
+     * 单个连接缓存的默认最大字节数
+     */
+    private static final int DEFAULT_MAX_CONNECTION_BYTES = 4 * 1024 * 1024;
+
+    /**
+     * 全网关缓存的默认最大字节数
+     */
+    private static final long DEFAULT_MAX_GLOBAL_BYTES = 256L * 1024 * 1024;
+
+    /**
+     * 不完整会话的默认超时时间（毫秒）
+     */
+    private static final long DEFAULT_SESSION_TIMEOUT = 30 * 1000; // 30秒
+
+    /**
+     * 单个连接缓存的最大字节数
+     */
+    private final int maxConnectionBytes;
+
+    /**
+     * 全网关缓存的最大字节数
+     */
+    private final long maxGlobalBytes;
+
+    /**
+     * 不完整会话的超时时间（毫秒）
+     */
+    private final long sessionTimeout;
+
+    /**
+     * 全网关当前缓存的字节数
+     */
+    private final AtomicLong pendingBytes = new AtomicLong();
+
+    /**
+     * 因总包数或包序号不合法被拒绝的分包数
+     */
+    private final LongAdder rejectedCount = new LongAdder();
+
+    /**
+     * 因超出字节预算被丢弃的会话数
+     */
+    private final LongAdder overBudgetCount = new LongAdder();
+
+    /**
+     * 因超时被丢弃的会话数
+     */
+    private final LongAdder expiredCount = new LongAdder();
+
+    public MessageReassembler() {
+        this(DEFAULT_MAX_CONNECTION_BYTES, DEFAULT_MAX_GLOBAL_BYTES, DEFAULT_SESSION_TIMEOUT);
+    }
+
+    MessageReassembler(int maxConnectionBytes, long maxGlobalBytes, long sessionTimeout) {
+        this.maxConnectionBytes = maxConnectionBytes;
+        this.maxGlobalBytes = maxGlobalBytes;
+        this.sessionTimeout = sessionTimeout;
+    }
+
+    /**
+     * 为一个连接创建组装状态，由该连接的解码器持有
+     *
+     * @return 连接级组装状态
+     */
+    public Connection newConnection() {
+        return new Connection();
+    }
+
+    /**
+     * 全网关当前缓存的字节数
+     *
+     * @return 字节数
+     */
+    public long getPendingBytes() {
+        return pendingBytes.get();
+    }
+
+    /**
+     * 被拒绝的分包数
+     *
+     * @return 分包数
+     */
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    /**
+     * 因超出字节预算被丢弃的会话数
+     *
+     * @return 会话数
+     */
+    public long getOverBudgetCount() {
+        return overBudgetCount.sum();
+    }
+
+    /**
+     * 因超时被丢弃的会话数
+     *
+     * @return 会话数
+     */
+    public long getExpiredCount() {
+        return expiredCount.sum();
+    }
+
+    /**
+     * 在全网关预算中预留字节，多个 EventLoop 同时预留时也不会超出上限
+     *
+     * @param bytes 字节数
+     * @return 预留成功返回 true，超出上限时返回 false
+     */
+    private boolean reserve(int bytes) {
+        long current;
+        do {
+            current = pendingBytes.get();
+            if (current + bytes > maxGlobalBytes) {
+                return false;
+            }
+        } while (!pendingBytes.compareAndSet(current, current + bytes));
+        return true;
+    }
+
+    /**
+     * 一个连接上进行中的多包会话，只在该连接的 EventLoop 中访问
+     */
+    public final class Connection {
+        /**
+         * 会话序号到组装器的映射
+         */
+        private final Map<Integer, PackageAssembler> sessions = new HashMap<>();
+
+        /**
+         * 该连接缓存的字节数
+         */
+        private int connectionBytes;
+
+        /**
+         * 超时检查任务，有进行中的会话时才存在
+         */
+        private ScheduledFuture<?> expiryTask;
+
+        /**
+         * 从输入中读取一个分包：先校验并预留字节预算，通过后才复制到大小正好的池化缓冲区，
+         * 不持有累积缓冲区的切片，缓存的字节数与预算一致；被拒绝或重传的分包直接跳过，不复制
+         *
+         * @param ctx           通道处理器上下文
+         * @param sessionNumber 会话序号
+         * @param totalPackages 总包数
+         * @param packageIndex  包序号
+         * @param in            输入数据，读指针位于分包数据起始处，返回时已越过该分包
+         * @param length        分包数据长度
+         * @return 会话的全部分包到齐时返回拼接后的完整消息（调用方负责释放），否则返回 null
+         */
+        @SuppressWarnings("checkstyle:ReturnCount")
+        public ByteBuf offer(ChannelHandlerContext ctx, int sessionNumber, int totalPackages,
+                             int packageIndex, ByteBuf in, int length) {
+            if (totalPackages > MAX_TOTAL_PACKAGES || packageIndex < 0 || packageIndex >= totalPackages) {
+                rejectedCount.increment();
+                in.skipBytes(length);
+                LogUtils.logBusiness("丢弃不合法的分包: 会话{}, 总包数{}, 包序号{}", sessionNumber, totalPackages, packageIndex);
+                return null;
+            }
+
+            PackageAssembler assembler = sessions.get(sessionNumber);
+            if (assembler != null && assembler.getTotalPackages() != totalPackages) {
+                rejectedCount.increment();
+                in.skipBytes(length);
+                discard(sessionNumber);
+                LogUtils.logBusiness("会话{}的总包数前后不一致({} -> {})，丢弃该会话",
+                        sessionNumber, assembler.getTotalPackages(), totalPackages);
+                return null;
+            }
+            if (assembler != null && assembler.hasPackage(packageIndex)) {
+                // 重传的分包
+                in.skipBytes(length);
+                return null;
+            }
+
+            if (connectionBytes + length > maxConnectionBytes || !reserve(length)) {
+                overBudgetCount.increment();
+                in.skipBytes(length);
+                if (assembler != null) {
+                    discard(sessionNumber);
+                }
+                LogUtils.logBusiness("多包消息缓存超出预算，丢弃会话{}: 连接{}字节, 全局{}字节",
+                        sessionNumber, connectionBytes, pendingBytes.get());
+                return null;
+            }
+            connectionBytes += length;
+
+            ByteBuf fragment;
+            try {
+                fragment = ctx.alloc().buffer(length, length);
+            } catch (RuntimeException e) {
+                release(length);
+                throw e;
+            }
+            fragment.writeBytes(in, length);
+
+            if (assembler == null) {
+                if (sessions.size() >= MAX_SESSIONS_PER_CONNECTION) {
+                    discardOldest();
+                }
+                assembler = new PackageAssembler(totalPackages);
+                sessions.put(sessionNumber, assembler);
+                scheduleExpiry(ctx);
+            }
+            assembler.addPackage(packageIndex, fragment);
+            if (!assembler.isComplete()) {
+                return null;
+            }
+
+            // 获取完整消息并移除组装器
+            sessions.remove(sessionNumber);
+            release(assembler.getReceivedBytes());
+            return assembler.getCompleteMessage(ctx.alloc());
+        }
+
+        /**
+         * 释放该连接所有未完成的会话，连接关闭时调用
+         */
+        public void releaseAll() {
+            for (PackageAssembler assembler : sessions.values()) {
+                release(assembler.getReceivedBytes());
+                assembler.release();
+            }
+            sessions.clear();
+            if (expiryTask != null) {
+                expiryTask.cancel(false);
+                expiryTask = null;
+            }
+        }
+
+        /**
+         * 丢弃超时的会话
+         */
+        private void evictExpired() {
+            long deadline = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(sessionTimeout);
+            Iterator<Map.Entry<Integer, PackageAssembler>> it = sessions.entrySet().iterator();
+            while (it.hasNext()) {
+                Map.Entry<Integer, PackageAssembler> entry = it.next();
+                PackageAssembler assembler = entry.getValue();
+                if (assembler.getCreatedNanos() - deadline <= 0) {
+                    expiredCount.increment();
+                    LogUtils.logBusiness("会话{}超时未收齐，已收{}/{}包，丢弃", entry.getKey(),
+                            assembler.getReceivedCount(), assembler.getTotalPackages());
+                    release(assembler.getReceivedBytes());
+                    assembler.release();
+                    it.remove();
+                }
+            }
+        }
+
+        /**
+         * 有进行中的会话时安排超时检查，检查后仍有会话则继续安排
+         *
+         * @param ctx 通道处理器上下文
+         */
+        private void scheduleExpiry(ChannelHandlerContext ctx) {
+            if (expiryTask != null) {
+                return;
+            }
+            expiryTask = ctx.executor().schedule(() -> {
+                expiryTask = null;
+                evictExpired();
+                if (!sessions.isEmpty()) {
+                    scheduleExpiry(ctx);
+                }
+            }, sessionTimeout, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * 丢弃指定会话
+         *
+         * @param sessionNumber 会话序号
+         */
+        private void discard(int sessionNumber) {
+            PackageAssembler assembler = sessions.remove(sessionNumber);
+            if (assembler != null) {
+                release(assembler.getReceivedBytes());
+                assembler.release();
+            }
+        }
+
+        /**
+         * 丢弃最早开始的会话，为新会话腾出位置
+         */
+        private void discardOldest() {
+            Integer oldest = null;
+            long oldestNanos = 0;
+            for (Map.Entry<Integer, PackageAssembler> entry : sessions.entrySet()) {
+                long created = entry.getValue().getCreatedNanos();
+                if (oldest == null || created - oldestNanos < 0) {
+                    oldest = entry.getKey();
+                    oldestNanos = created;
+                }
+            }
+            if (oldest != null) {
+                overBudgetCount.increment();
+                LogUtils.logBusiness("连接上进行中的多包会话过多，丢弃最早的会话{}", oldest);
+                discard(oldest);
+            }
+        }
+
+        /**
+         * 归还字节预算
+         *
+         * @param bytes 字节数
+         */
+        private void release(int bytes) {
+            connectionBytes -= bytes;
+            pendingBytes.addAndGet(-bytes);
+        }
+    }
+}
@@ -5,7 +5,7 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import cn.xxt.gatewaynetty.netty.model.DeviceDataEvent;
-import cn.xxt.gatewaynetty.kafka.DeviceDataKafkaProducer;
+import cn.xxt.gatewaynetty.bus.DeviceDataBus;
 import cn.xxt.gatewaynetty.netty.model.DeviceData;
 import cn.xxt.gatewaynetty.netty.protocol.ProtocolIdentifier;
 import cn.xxt.gatewaynetty.netty.registry.DeviceRegistry;
@@ -30,6 +30,8 @@ import lombok.AllArgsConstructor;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * @program: gateway-cn.xxt.gatewaynetty.netty
@@ -47,11 +49,15 @@ public class HttpRequestHandler extends SimpleChannelInboundHandler<FullHttpRequ
     /**
      * 设备数据事件生产者
      */
-    private final DeviceDataKafkaProducer producer;
+    private final DeviceDataBus producer;
     /**
      * 任务管理器
      */
     private final TaskManager taskManager;
+    /**
+     * 心跳处理线程池，任务相关的 Redis 操作不在事件循环中执行
+     */
+    private final Executor heartbeatExecutor;
     /**
      * 心跳检测接口URL
      */
@@ -68,7 +74,7 @@ public class HttpRequestHandler extends SimpleChannelInboundHandler<FullHttpRequ
         String jsonContent = content.toString(CharsetUtil.UTF_8);
         String deviceKey = getDeviceIdFromRequest(jsonContent);
         deviceRegistry.registerHttpChannel(deviceKey, ctx.channel());
-        LogUtils.logBusiness("设备进行HTTP连接，还需要认证{}", deviceKey);
+        LogUtils.logDebug("设备进行HTTP连接，还需要认证{}", deviceKey);
         // 1. 设备没有进行 TCP 链接，不进行 HTTP 连接
         if (deviceRegistry.getChannel(deviceKey) == null) {
             LogUtils.logBusiness("还没有建立TCP链接，关闭{}", deviceKey);
@@ -81,12 +87,14 @@ public class HttpRequestHandler extends SimpleChannelInboundHandler<FullHttpRequ
             processHeartbeat(ctx, deviceKey, jsonContent);
         } else {
             ctx.close();
-            LogUtils.logError("连接的uri不符合规定{}", new Throwable(), deviceKey);
+            LogUtils.countError("http.uri", "连接的uri不符合规定{}", deviceKey);
         }
     }
 
     /**
      * 处理设备心跳信息
+     * <p>
+     * JSON 在事件循环中解析，任务相关的 Redis 操作交给心跳线程池，不阻塞事件循环。
      *
      * @param ctx         通道处理器上下文
      * @param deviceKey   设备标识
@@ -95,40 +103,63 @@ public class HttpRequestHandler extends SimpleChannelInboundHandler<FullHttpRequ
      */
     private void processHeartbeat(ChannelHandlerContext ctx, String deviceKey, String jsonContent)
             throws JsonProcessingException {
-        LogUtils.logBusiness("Received heartbeat from device {}: {}", deviceKey, jsonContent);
+        LogUtils.logDebug("Received heartbeat from device {}: {}", deviceKey, jsonContent);
 
         // --- 1. 检查是否有回执 ---
         JsonNode rootNode = objectMapper.readTree(jsonContent);
         JsonNode resultNode = rootNode.get("result");
-        LogUtils.logBusiness("提取出的 result 值为 {}", resultNode);
+        LogUtils.logDebug("提取出的 result 值为 {}", resultNode);
+        boolean hasReceipt = resultNode != null && !resultNode.isEmpty();
 
-        // 处理心跳信息（发送到 TB）
-        processTaskResult(deviceKey, resultNode, jsonContent);
+        try {
+            heartbeatExecutor.execute(() -> handleHeartbeat(ctx, deviceKey, rootNode, hasReceipt, jsonContent));
+        } catch (RejectedExecutionException e) {
+            LogUtils.logSampled("http.heartbeat.rejected", deviceKey, "心跳处理队列已满，关闭设备{}的连接", deviceKey);
+            ctx.close();
+        }
+    }
 
+    /**
+     * 在心跳线程池中处理回执和下发任务，一次 Redis 往返完成
+     *
+     * @param ctx         通道处理器上下文
+     * @param deviceKey   设备标识
+     * @param rootNode    心跳 JSON
+     * @param hasReceipt  是否有回执
+     * @param jsonContent 心跳内容的JSON字符串
+     */
+    private void handleHeartbeat(ChannelHandlerContext ctx, String deviceKey, JsonNode rootNode,
+                                 boolean hasReceipt, String jsonContent) {
+        try {
+            TaskManager.HeartbeatResult result = taskManager.processHeartbeat(deviceKey, hasReceipt);
 
-        // --- 2. 获取新的任务 ---
-        Task task = taskManager.getNextTaskToProcess(deviceKey);
+            // 处理心跳信息（发送到 TB）
+            processTaskResult(deviceKey, rootNode, hasReceipt, result.getCompletedTaskId(), jsonContent);
 
-        // --- 3. 构建返回数据 ---
-        Object responseContent;
-        if (task != null) {
-            Map<String, Object> taskResult = new HashMap<>();
-            taskResult.put("personList", task.getPersonList());
-            responseContent = taskResult;
-            taskManager.markTaskSent(task.getTaskId());
-            LogUtils.logBusiness("Sending task {} to device {}", task.getTaskId(), deviceKey);
-        } else {
-            Map<String, Object> simpleResult = new HashMap<>();
-            simpleResult.put("result", 1);
-            simpleResult.put("success", true);
-            responseContent = simpleResult;
-            LogUtils.logBusiness("No task to send to device {}", deviceKey);
-        }
+            // --- 2. 构建返回数据，取出的任务已标记为发送 ---
+            Task task = result.getNextTask();
+            Object responseContent;
+            if (task != null) {
+                Map<String, Object> taskResult = new HashMap<>();
+                taskResult.put("personList", task.getPersonList());
+                responseContent = taskResult;
+                LogUtils.logBusiness("Sending task {} to device {}", task.getTaskId(), deviceKey);
+            } else {
+                Map<String, Object> simpleResult = new HashMap<>();
+                simpleResult.put("result", 1);
+                simpleResult.put("success", true);
+                responseContent = simpleResult;
+                LogUtils.logDebug("No task to send to device {}", deviceKey);
+            }
 
-        String jsonResponse = objectMapper.writeValueAsString(
-                Collections.singletonMap("result", responseContent));
+            String jsonResponse = objectMapper.writeValueAsString(
+                    Collections.singletonMap("result", responseContent));
 
-        sendJsonResponse(ctx, jsonResponse);
+            sendJsonResponse(ctx, jsonResponse);
+        } catch (JsonProcessingException | RuntimeException e) {
+            LogUtils.logError("处理设备{}心跳失败", e, deviceKey);
+            ctx.close();
+        }
     }
 
     /**
@@ -140,7 +171,7 @@ public class HttpRequestHandler extends SimpleChannelInboundHandler<FullHttpRequ
     private void sendJsonResponse(ChannelHandlerContext ctx, String jsonResponse) {
         // 不打印日志，base64 太长了 非常影响,看日志
 //        LogUtils.logBusiness(" {}", jsonResponse);
-        LogUtils.logBusiness("发送HTTP响应");
+        LogUtils.logDebug("发送HTTP响应");
         FullHttpResponse response = new DefaultFullHttpResponse(
                 HttpVersion.HTTP_1_1, HttpResponseStatus.OK, Unpooled.copiedBuffer(jsonResponse, CharsetUtil.UTF_8)
         );
@@ -150,7 +181,7 @@ public class HttpRequestHandler extends SimpleChannelInboundHandler<FullHttpRequ
 
         ctx.writeAndFlush(response).addListener((ChannelFutureListener) future -> {
             if (future.isSuccess()) {
-                LogUtils.logBusiness("响应发送成功:{}", HttpResponseStatus.OK.code());
+                LogUtils.logDebug("响应发送成功:{}", HttpResponseStatus.OK.code());
                 // 成功处理逻辑
                 ctx.close();
             } else {
@@ -164,35 +195,31 @@ public class HttpRequestHandler extends SimpleChannelInboundHandler<FullHttpRequ
     /**
      * 处理任务结果，并根据需要更新心跳JSON
      *
-     * @param deviceKey     设备标识
-     * @param resultNode    结果节点
-     * @param heartbeatJson 初始心跳JSON字符串
+     * @param deviceKey       设备标识
+     * @param rootNode        心跳 JSON
+     * @param hasReceipt      是否有回执
+     * @param completedTaskId 因回执而结束的任务ID，没有时为 null
+     * @param heartbeatJson   初始心跳JSON字符串
      */
-    private void processTaskResult(String deviceKey, JsonNode resultNode, String heartbeatJson) {
+    private void processTaskResult(String deviceKey, JsonNode rootNode, boolean hasReceipt,
+                                   String completedTaskId, String heartbeatJson) {
         String finalHeartbeatJson = heartbeatJson;
-        if (!resultNode.isEmpty()) {
+        if (hasReceipt) {
             LogUtils.logBusiness("心跳中有消息回执");
-            Task lastSentTask = taskManager.getLastSentTask(deviceKey);
-            if (lastSentTask != null) {
-                // 标记任务成功
-                taskManager.markTaskSuccess(lastSentTask.getTaskId());
-
+            if (completedTaskId != null) {
                 // 将taskId添加到heartbeatJson中
                 try {
-                    ObjectMapper mapper = new ObjectMapper();
-                    JsonNode heartbeatNode = mapper.readTree(heartbeatJson);
-
                     // 创建一个可修改的对象
-                    ObjectNode mutableHeartbeat = (ObjectNode) heartbeatNode;
+                    ObjectNode mutableHeartbeat = (ObjectNode) rootNode;
 
                     // 添加taskId字段
-                    mutableHeartbeat.put("taskId", lastSentTask.getTaskId());
+                    mutableHeartbeat.put("taskId", completedTaskId);
 
                     // 将修改后的JSON转换回字符串
-                    finalHeartbeatJson = mapper.writeValueAsString(mutableHeartbeat);
+                    finalHeartbeatJson = objectMapper.writeValueAsString(mutableHeartbeat);
 
                     LogUtils.logBusiness("Result for task {} (device {}): Heartbeat: {}",
-                            lastSentTask.getTaskId(), deviceKey, finalHeartbeatJson);
+                            completedTaskId, deviceKey, finalHeartbeatJson);
                 } catch (Exception e) {
                     LogUtils.logError("Failed to add taskId to heartbeat JSON", e);
                 }
@@ -200,7 +227,7 @@ public class HttpRequestHandler extends SimpleChannelInboundHandler<FullHttpRequ
                 LogUtils.logBusiness("设备{}心跳有回执，但没找到上条任务", deviceKey);
             }
         } else {
-            LogUtils.logBusiness("心跳中没有消息回执");
+            LogUtils.logDebug("心跳中没有消息回执");
         }
         DeviceData msg = new DeviceData(deviceKey, finalHeartbeatJson, ProtocolIdentifier.PROTOCOL_VIDEO_FACE);
         producer.sendData(msg, DeviceDataEvent.Type.TO_TB);
@@ -219,7 +246,7 @@ public class HttpRequestHandler extends SimpleChannelInboundHandler<FullHttpRequ
             ObjectMapper mapper = new ObjectMapper();
             JsonNode rootNode = mapper.readTree(jsonContent);
             String deviceKey = rootNode.path("deviceKey").asText();
-            LogUtils.logBusiness("从JSON中获取deviceKey:{}", deviceKey);
+            LogUtils.logDebug("从JSON中获取deviceKey:{}", deviceKey);
             return deviceKey;
         } catch (Exception e) {
             LogUtils.logError("解析JSON获取deviceKey时出错", e);
@@ -38,6 +38,27 @@ public class DeviceData {
      */
     private ProtocolIdentifier protocolType;
 
+    /**
+     * 网关收到该数据的时间（毫秒时间戳），0 表示未知
+     */
+    private long receivedAt;
+
+    /**
+     * 发送到 Kafka 的时间（毫秒时间戳），消费时取记录的时间戳，0 表示未发送
+     */
+    private long sentAt;
+
+    /**
+     * 创建设备数据，收到时间记为当前时间
+     *
+     * @param deviceId     设备ID
+     * @param msg          消息内容
+     * @param protocolType 协议类型
+     */
+    public DeviceData(String deviceId, Object msg, ProtocolIdentifier protocolType) {
+        this(deviceId, msg, protocolType, System.currentTimeMillis(), 0);
+    }
+
     /**
      * 序列化消息方法
      *
@@ -45,7 +66,9 @@ public class DeviceData {
      * @throws Exception 当序列化过程中发生错误时抛出
      */
     public byte[] serializeMsg() throws Exception {
-        if (msg instanceof String) {
+        if (msg instanceof Pdu) {
+            return ((Pdu) msg).toBytes();
+        } else if (msg instanceof String) {
             return ((String) msg).getBytes(CharsetUtil.UTF_8);
         } else {
             // 将对象转换为JSON字符串，再转换为字节数组
@@ -4,7 +4,7 @@ import lombok.Data;
 
 /**
  * @program: gateway-cn.xxt.gatewaynetty.netty
- * @description: Disruptor 事件
+ * @description: Disruptor 事件，环形队列中预先分配的槽位，发布时填入数据，处理后清空
  * @author: Havad
  * @create: 2025-02-08 17:03
  **/
@@ -19,6 +19,10 @@ public class DeviceDataEvent {
      * 类型
      */
     private Type type;
+    /**
+     * 发布时刻（System.nanoTime），用于统计排队耗时
+     */
+    private long publishedAt;
 
     public enum Type {
         /**
@@ -32,7 +36,7 @@ public class DeviceDataEvent {
     }
 
     /**
-     * 清空当前对象中的值
+     * 清空当前对象中的值，避免槽位在被覆盖前一直引用已处理的数据
      */
     public void clear() {
         value = null;
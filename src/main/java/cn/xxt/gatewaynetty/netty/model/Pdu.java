@@ -0,0 +1,419 @@
+package cn.xxt.gatewaynetty.netty.model;
+
+import com.fasterxml.jackson.annotation.JsonValue;
+import io.netty.buffer.ByteBuf;
+import io.netty.util.CharsetUtil;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: 普通话机 PDU 的只读视图，头部只解析一次，各字段按需生成
+ * @author: Havad
+ * @create: 2026-10-18 11:10
+ **/
+
+@SuppressWarnings("checkstyle:MagicNumber")
+public final class Pdu {
+    /**
+     * 帧前缀 *#F#
+     */
+    private static final byte[] PREFIX = {'*', '#', 'F', '#'};
+    /**
+     * 固定头部长度：pre(4) + length(4) + comm_type(1) + func_no(2) + seq_no(4)
+     */
+    private static final int HEADER_LENGTH = 15;
+    /**
+     * check 字段长度
+     */
+    private static final int CHECK_LENGTH = 4;
+    /**
+     * body 中设备编号的长度
+     */
+    private static final int DEVICE_NO_LENGTH = 18;
+
+    /**
+     * 原始字节（ASCII/UTF-8）
+     */
+    private final byte[] data;
+    /**
+     * length 字段值（字符数），头部非法时为 -1
+     */
+    private final int length;
+    /**
+     * 前 length 个字符结束处的字节偏移，-2 表示未计算，-1 表示数据不足
+     */
+    private int frameEnd = -2;
+
+    /**
+     * 校验结果缓存：0 未计算，1 通过，-1 失败
+     */
+    private byte validState;
+    /**
+     * 整条 PDU 的字符串形式
+     */
+    private String text;
+    /**
+     * 设备编号
+     */
+    private String deviceNo;
+    /**
+     * body 字段
+     */
+    private String body;
+
+    private Pdu(byte[] data) {
+        this.data = data;
+        this.length = parseLength(data);
+    }
+
+    /**
+     * 从解码器的帧数据创建 PDU，只复制一次可读字节
+     *
+     * @param frame 一个完整的帧
+     * @return PDU 视图
+     */
+    public static Pdu wrap(ByteBuf frame) {
+        byte[] bytes = new byte[frame.readableBytes()];
+        frame.readBytes(bytes);
+        return new Pdu(bytes);
+    }
+
+    /**
+     * 从字节数组创建 PDU，不复制数组
+     *
+     * @param bytes PDU 字节
+     * @return PDU 视图
+     */
+    public static Pdu of(byte[] bytes) {
+        return new Pdu(bytes);
+    }
+
+    /**
+     * 从字符串创建 PDU
+     *
+     * @param text PDU 字符串
+     * @return PDU 视图
+     */
+    public static Pdu of(CharSequence text) {
+        Pdu pdu = new Pdu(text.toString().getBytes(CharsetUtil.UTF_8));
+        pdu.text = text.toString();
+        return pdu;
+    }
+
+    /**
+     * 将消息对象转换为 PDU，兼容经 Kafka JSON 传递后变成字符串的情况
+     *
+     * @param msg 消息对象
+     * @return PDU 视图
+     * @throws IllegalArgumentException 消息既不是 PDU 也不是字符串时抛出
+     */
+    public static Pdu from(Object msg) {
+        if (msg instanceof Pdu) {
+            return (Pdu) msg;
+        }
+        if (msg instanceof CharSequence) {
+            return of((CharSequence) msg);
+        }
+        throw new IllegalArgumentException("无法转换为PDU: " + msg);
+    }
+
+    /**
+     * 将一条 PDU 与其后的若干条 PDU 按顺序拼接
+     *
+     * @param first 第一条 PDU，拼接结果的头部取自该条
+     * @param rest  后续的 PDU
+     * @return 拼接后的 PDU
+     */
+    public static Pdu concat(Pdu first, List<Pdu> rest) {
+        int total = first.data.length;
+        for (Pdu pdu : rest) {
+            total += pdu.data.length;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(total);
+        out.write(first.data, 0, first.data.length);
+        for (Pdu pdu : rest) {
+            out.write(pdu.data, 0, pdu.data.length);
+        }
+        return new Pdu(out.toByteArray());
+    }
+
+    /**
+     * 直接从字节解析 length 字段
+     *
+     * @param data PDU 字节
+     * @return length 值，头部非法时返回 -1
+     */
+    private static int parseLength(byte[] data) {
+        if (data.length < HEADER_LENGTH) {
+            return -1;
+        }
+        for (int i = 0; i < PREFIX.length; i++) {
+            if (data[i] != PREFIX[i]) {
+                return -1;
+            }
+        }
+        return parseDecimal(data, 4, 4);
+    }
+
+    /**
+     * UTF-8 序列首字节对应的字节数，非法首字节按 1 字节计
+     *
+     * @param lead 首字节
+     * @return 序列的字节数
+     */
+    public static int utf8SequenceLength(byte lead) {
+        int b = lead & 0xFF;
+        if (b < 0xC0) {
+            return 1;
+        }
+        if (b < 0xE0) {
+            return 2;
+        }
+        if (b < 0xF0) {
+            return 3;
+        }
+        return b < 0xF8 ? 4 : 1;
+    }
+
+    /**
+     * UTF-8 序列解码后占用的 Java 字符数，4 字节序列为代理对
+     *
+     * @param sequenceLength 序列的字节数
+     * @return 字符数
+     */
+    public static int utf16Length(int sequenceLength) {
+        return sequenceLength == 4 ? 2 : 1;
+    }
+
+    /**
+     * 把字符偏移换算为字节偏移；length 字段按字符计数，body 含中文时与字节数不同
+     *
+     * @param chars 字符数
+     * @return 字节偏移，数据不足时返回 -1
+     */
+    private int byteOffset(int chars) {
+        int index = 0;
+        int count = 0;
+        while (count < chars) {
+            if (index >= data.length) {
+                return -1;
+            }
+            int sequence = utf8SequenceLength(data[index]);
+            index += sequence;
+            count += utf16Length(sequence);
+        }
+        return index <= data.length ? index : -1;
+    }
+
+    /**
+     * 前 length 个字符结束处的字节偏移
+     *
+     * @return 字节偏移，头部非法或数据不足时返回 -1
+     */
+    private int frameEnd() {
+        if (frameEnd == -2) {
+            frameEnd = length < 0 ? -1 : byteOffset(length);
+        }
+        return frameEnd;
+    }
+
+    /**
+     * 解析定长十进制字段
+     *
+     * @param data  字节
+     * @param from  起始位置
+     * @param count 字符数
+     * @return 字段值，包含非数字时返回 -1
+     */
+    private static int parseDecimal(byte[] data, int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            int digit = data[i] - '0';
+            if (digit < 0 || digit > 9) {
+                return -1;
+            }
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    /**
+     * 解析定长十六进制字段
+     *
+     * @param data  字节
+     * @param from  起始位置
+     * @param count 字符数
+     * @return 字段值，包含非十六进制字符时返回 -1
+     */
+    private static int parseHex(byte[] data, int from, int count) {
+        int value = 0;
+        for (int i = from; i < from + count; i++) {
+            int digit = Character.digit(data[i], 16);
+            if (digit < 0) {
+                return -1;
+            }
+            value = (value << 4) | digit;
+        }
+        return value;
+    }
+
+    /**
+     * 校验 PDU：check 字段（16 进制）需等于 length - 4
+     *
+     * @return 校验通过返回 true
+     */
+    public boolean isValid() {
+        if (validState == 0) {
+            boolean valid = length >= CHECK_LENGTH && frameEnd() >= CHECK_LENGTH
+                    && parseHex(data, frameEnd() - CHECK_LENGTH, CHECK_LENGTH) == length - CHECK_LENGTH;
+            validState = valid ? (byte) 1 : (byte) -1;
+        }
+        return validState > 0;
+    }
+
+    /**
+     * 获取 length 字段值，按字符计数
+     *
+     * @return length 值，头部非法时为 -1
+     */
+    public int getLength() {
+        return length;
+    }
+
+    /**
+     * 获取 func_no 字段值
+     *
+     * @return func_no
+     * @throws IllegalArgumentException 头部非法时抛出
+     */
+    public int getFuncNo() {
+        requireHeader();
+        int funcNo = parseDecimal(data, 9, 2);
+        if (funcNo < 0) {
+            throw new IllegalArgumentException("无法解析 func_no 字段: " + this);
+        }
+        return funcNo;
+    }
+
+    /**
+     * 获取 seq_no 字段值
+     *
+     * @return seq_no
+     * @throws IllegalArgumentException 头部非法时抛出
+     */
+    public int getSeqNo() {
+        requireHeader();
+        int seqNo = parseDecimal(data, 11, 4);
+        if (seqNo < 0) {
+            throw new IllegalArgumentException("无法解析 seq_no 字段: " + this);
+        }
+        return seqNo;
+    }
+
+    /**
+     * 获取 body 字段，长度为 length - 19 个字符
+     *
+     * @return body 字符串
+     * @throws IllegalArgumentException body 长度非法或数据不完整时抛出
+     */
+    public String getBody() {
+        if (body == null) {
+            requireHeader();
+            int bodyLength = length - HEADER_LENGTH - CHECK_LENGTH;
+            if (bodyLength < 0) {
+                throw new IllegalArgumentException("计算得到的 body 长度为负数：" + bodyLength);
+            }
+            int bodyEnd = byteOffset(HEADER_LENGTH + bodyLength);
+            if (bodyEnd < 0 || bodyEnd > data.length - CHECK_LENGTH) {
+                throw new IllegalArgumentException("PDU 数据不完整，无法获取完整的 body 字段！");
+            }
+            body = new String(data, HEADER_LENGTH, bodyEnd - HEADER_LENGTH, CharsetUtil.UTF_8);
+        }
+        return body;
+    }
+
+    /**
+     * 获取 check 字段
+     *
+     * @return check 字符串（4 个字符）
+     * @throws IllegalArgumentException 数据长度不足时抛出
+     */
+    public String getCheck() {
+        if (length < CHECK_LENGTH || frameEnd() < CHECK_LENGTH) {
+            throw new IllegalArgumentException("PDU 数据长度不足，无法获取 check 字段！");
+        }
+        return new String(data, frameEnd() - CHECK_LENGTH, CHECK_LENGTH, CharsetUtil.US_ASCII);
+    }
+
+    /**
+     * 获取设备编号：body 的前 18 个字符去掉空白
+     *
+     * @return 设备编号
+     * @throws IllegalArgumentException body 不足 18 个字符时抛出
+     */
+    public String getDeviceNo() {
+        if (deviceNo == null) {
+            requireHeader();
+            int bodyLength = length - HEADER_LENGTH - CHECK_LENGTH;
+            if (bodyLength < DEVICE_NO_LENGTH || HEADER_LENGTH + DEVICE_NO_LENGTH > data.length) {
+                throw new IllegalArgumentException("PDU 数据不完整，无法获取设备编号: " + this);
+            }
+            StringBuilder sb = new StringBuilder(DEVICE_NO_LENGTH);
+            for (int i = HEADER_LENGTH; i < HEADER_LENGTH + DEVICE_NO_LENGTH; i++) {
+                char c = (char) (data[i] & 0xFF);
+                if (!Character.isWhitespace(c)) {
+                    sb.append(c);
+                }
+            }
+            deviceNo = sb.toString();
+        }
+        return deviceNo;
+    }
+
+    /**
+     * 获取去掉 *#F# 前缀后的数据，用于上报 ThingsBoard
+     *
+     * @return 去掉前缀的字符串
+     */
+    public String getData() {
+        return asString().substring(PREFIX.length);
+    }
+
+    /**
+     * 原始字节，不复制，调用方不得修改
+     *
+     * @return PDU 字节
+     */
+    public byte[] toBytes() {
+        return data;
+    }
+
+    /**
+     * 整条 PDU 的字符串形式，经 Kafka JSON 序列化时也使用该值
+     *
+     * @return PDU 字符串
+     */
+    @JsonValue
+    public String asString() {
+        if (text == null) {
+            text = new String(data, CharsetUtil.UTF_8);
+        }
+        return text;
+    }
+
+    /**
+     * 检查头部是否合法
+     */
+    private void requireHeader() {
+        if (length < 0) {
+            throw new IllegalArgumentException("PDU 数据无效或长度不足以获取 length 字段！");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return asString();
+    }
+}
@@ -0,0 +1,178 @@
+package cn.xxt.gatewaynetty.netty.model;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: 卡尔视频话机的协议命令，包含命令名与协议类型编码
+ * @author: Havad
+ * @create: 2026-10-18 15:40
+ **/
+
+@SuppressWarnings("checkstyle:MagicNumber")
+public enum VideoCommand {
+    // 7.1 平台通用协议
+    /**
+     * 联机，协议没有明确的协议类型，这里假设为0x0000
+     */
+    LINK("link", 0x0000, false),
+    /**
+     * 心跳
+     */
+    HEARTBEAT("heartbeat", 0x0313, false),
+    /**
+     * 设备状态通用上报
+     */
+    DEVSTATUS("devstatus", 0x03a7, false),
+    /**
+     * 终端授权
+     */
+    SET_AUTHORIZE("setAuthorize", 0x037f, false),
+    /**
+     * 查询授权状态
+     */
+    GET_AUTHORIZE("getAuthorize", 0x03af, false),
+    /**
+     * 读取终端日志
+     */
+    READLOG("readlog", 0x03b3, false),
+
+    // 7.2 终端维护子系统
+    /**
+     * 通用终端上报日志
+     */
+    DEVICE_LOG("deviceLog", 0x0317, false),
+    /**
+     * 计费话机请求余额和费率
+     */
+    REQFEE("reqfee", 0x0311, false),
+    /**
+     * 话机上报通话记录
+     */
+    CALL("call", 0x0312, false),
+    /**
+     * 家校通配置内容下发
+     */
+    SET_CONFIG_INFO("setConfigInfo", 0x0382, true),
+    /**
+     * 家校通配置内容获取
+     */
+    GET_CONFIG_INFO("getConfigInfo", 0x0383, true),
+    /**
+     * 终端任务反馈
+     */
+    FEEDBACK("feedback", 0x0353, false),
+    /**
+     * 1.1 从亲情号号码池校验手机号
+     */
+    VERIFY_NUM("verifyNum", 0x2328, false),
+    /**
+     * 1.3 SIM卡套餐余量查询
+     */
+    QUERY_SIM("querySIM", 0x2329, true),
+    /**
+     * 1.5 推送广告、公告、通知等
+     */
+    NOTICE("notice", 0x0330, true),
+    /**
+     * 根据卡号获取亲情号码
+     */
+    GET_FAMILY_NUM_LIST("getFamilyNumList", 0x0380, false),
+    /**
+     * 未登记的命令，保留原始命令名透传
+     */
+    UNKNOWN(null, -1, false);
+
+    /**
+     * 命令名到命令的映射
+     */
+    private static final Map<String, VideoCommand> BY_NAME = new HashMap<>();
+
+    static {
+        for (VideoCommand command : values()) {
+            if (command.commandName != null) {
+                BY_NAME.put(command.commandName, command);
+            }
+        }
+    }
+
+    /**
+     * 协议中的命令名
+     */
+    private final String commandName;
+
+    /**
+     * 协议类型编码，未登记的命令为 -1
+     */
+    private final int protocolType;
+
+    /**
+     * 是否由平台发起：平台发起的命令下发给设备的是 request、设备回复的是 response，其余命令相反
+     */
+    private final boolean platformInitiated;
+
+    VideoCommand(String commandName, int protocolType, boolean platformInitiated) {
+        this.commandName = commandName;
+        this.protocolType = protocolType;
+        this.platformInitiated = platformInitiated;
+    }
+
+    /**
+     * 根据命令名查找命令
+     *
+     * @param commandName 命令名
+     * @return 对应的命令，未登记时返回 {@link #UNKNOWN}
+     */
+    public static VideoCommand of(String commandName) {
+        if (commandName == null) {
+            return UNKNOWN;
+        }
+        return BY_NAME.getOrDefault(commandName, UNKNOWN);
+    }
+
+    /**
+     * 协议中的命令名
+     *
+     * @return 命令名，{@link #UNKNOWN} 返回 null
+     */
+    public String getCommandName() {
+        return commandName;
+    }
+
+    /**
+     * 协议类型编码
+     *
+     * @return 编码，未登记的命令返回 -1
+     */
+    public int getProtocolType() {
+        return protocolType;
+    }
+
+    /**
+     * 是否由平台发起
+     *
+     * @return 平台发起返回 true
+     */
+    public boolean isPlatformInitiated() {
+        return platformInitiated;
+    }
+
+    /**
+     * 设备发往平台时消息体所在的字段
+     *
+     * @return 消息方向
+     */
+    public VideoMessage.Direction toTbDirection() {
+        return platformInitiated ? VideoMessage.Direction.RESPONSE : VideoMessage.Direction.REQUEST;
+    }
+
+    /**
+     * 平台发往设备时消息体所在的字段
+     *
+     * @return 消息方向
+     */
+    public VideoMessage.Direction toDeviceDirection() {
+        return platformInitiated ? VideoMessage.Direction.REQUEST : VideoMessage.Direction.RESPONSE;
+    }
+}
@@ -0,0 +1,285 @@
+package cn.xxt.gatewaynetty.netty.model;
+
+import cn.xxt.gatewaynetty.util.JsonBytes;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.annotation.JsonSerialize;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import io.netty.util.CharsetUtil;
+import lombok.Getter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Map;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: 卡尔视频话机消息，命令和方向已解析，request/response 消息体保留为原始 JSON 字节
+ * <p>
+ * 透传的命令在整条链路上不再解析为 Map 再序列化，只有需要读取其中字段的环节才按需解析。
+ * @author: Havad
+ * @create: 2026-10-18 15:50
+ **/
+
+@Getter
+@JsonSerialize(using = VideoMessage.LegacyJsonSerializer.class)
+public final class VideoMessage {
+    /**
+     * 对象映射器，只用于兼容旧的 Map 消息和按需读取字段
+     */
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    /**
+     * 网关生成的心跳消息体
+     */
+    private static final byte[] HEARTBEAT_PAYLOAD = "{\"heartbeat\":\"gateway make\"}".getBytes(CharsetUtil.UTF_8);
+
+    /**
+     * 消息体所在的字段
+     */
+    public enum Direction {
+        /**
+         * 消息体在 request 字段
+         */
+        REQUEST(0, "request"),
+        /**
+         * 消息体在 response 字段
+         */
+        RESPONSE(1, "response");
+
+        /**
+         * 序列化使用的编码，已分配的编码不能修改或复用
+         */
+        private final int code;
+
+        /**
+         * 字段名
+         */
+        private final String fieldName;
+
+        Direction(int code, String fieldName) {
+            this.code = code;
+            this.fieldName = fieldName;
+        }
+
+        /**
+         * 根据编码查找方向
+         *
+         * @param code 方向编码
+         * @return 对应的方向，未知编码返回 null
+         */
+        public static Direction ofCode(int code) {
+            for (Direction direction : values()) {
+                if (direction.code == code) {
+                    return direction;
+                }
+            }
+            return null;
+        }
+
+        /**
+         * 序列化使用的编码
+         *
+         * @return 方向编码
+         */
+        public int getCode() {
+            return code;
+        }
+
+        /**
+         * 字段名
+         *
+         * @return request 或 response
+         */
+        public String getFieldName() {
+            return fieldName;
+        }
+    }
+
+    /**
+     * 命令
+     */
+    private final VideoCommand command;
+
+    /**
+     * 原始命令名，未登记的命令也保留
+     */
+    private final String commandName;
+
+    /**
+     * 消息体所在的字段
+     */
+    private final Direction direction;
+
+    /**
+     * type 字段，设备上报的消息没有该字段时为 null
+     */
+    private final String type;
+
+    /**
+     * request/response 字段的原始 JSON 字节，不得修改
+     */
+    private final byte[] payload;
+
+    private VideoMessage(String commandName, Direction direction, String type, byte[] payload) {
+        this.command = VideoCommand.of(commandName);
+        this.commandName = commandName;
+        this.direction = direction;
+        this.type = type;
+        this.payload = payload == null ? JsonBytes.NULL : payload;
+    }
+
+    /**
+     * 创建消息，不复制消息体
+     *
+     * @param commandName 命令名
+     * @param direction   消息体所在的字段
+     * @param type        type 字段，可为 null
+     * @param payload     消息体的 JSON 字节
+     * @return 消息
+     */
+    public static VideoMessage of(String commandName, Direction direction, String type, byte[] payload) {
+        return new VideoMessage(commandName, direction, type, payload);
+    }
+
+    /**
+     * 网关生成的心跳消息
+     *
+     * @return 心跳消息
+     */
+    public static VideoMessage heartbeat() {
+        return new VideoMessage(VideoCommand.HEARTBEAT.getCommandName(), Direction.REQUEST, null, HEARTBEAT_PAYLOAD);
+    }
+
+    /**
+     * 将消息对象转换为视频话机消息，兼容经 Kafka JSON 传递后变成 Map 的旧消息
+     *
+     * @param msg 消息对象
+     * @return 视频话机消息
+     * @throws IllegalArgumentException 消息既不是 VideoMessage 也不是 Map 时抛出
+     */
+    public static VideoMessage from(Object msg) {
+        if (msg instanceof VideoMessage) {
+            return (VideoMessage) msg;
+        }
+        if (!(msg instanceof Map)) {
+            throw new IllegalArgumentException("无法转换为视频话机消息: " + msg);
+        }
+        Map<?, ?> map = (Map<?, ?>) msg;
+        Object command = map.get("command");
+        Object type = map.get("type");
+        Direction direction = map.containsKey(Direction.REQUEST.getFieldName()) || !map.containsKey(
+                Direction.RESPONSE.getFieldName()) ? Direction.REQUEST : Direction.RESPONSE;
+        try {
+            byte[] payload = OBJECT_MAPPER.writeValueAsBytes(map.get(direction.getFieldName()));
+            return new VideoMessage(command == null ? null : command.toString(), direction,
+                    type == null ? null : type.toString(), payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("无法转换为视频话机消息: " + msg, e);
+        }
+    }
+
+    /**
+     * 消息体的原始 JSON 字节，不复制，调用方不得修改
+     *
+     * @return JSON 字节
+     */
+    public byte[] getPayload() {
+        return payload;
+    }
+
+    /**
+     * 读取消息体中的一个顶层字段，只扫描到该字段为止
+     *
+     * @param field 字段名
+     * @return 字段的文本值，消息体不是对象、字段不存在或不是标量时返回 null
+     * @throws IOException 消息体不是合法 JSON 时抛出
+     */
+    public String getPayloadText(String field) throws IOException {
+        try (JsonParser parser = OBJECT_MAPPER.getFactory().createParser(payload)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return null;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.getCurrentName();
+                JsonToken value = parser.nextToken();
+                if (field.equals(name)) {
+                    return value.isScalarValue() && value != JsonToken.VALUE_NULL ? parser.getValueAsString() : null;
+                }
+                parser.skipChildren();
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 将消息体包装为单字段对象：{"key":消息体}
+     *
+     * @param key 字段名
+     * @return JSON 字节
+     */
+    public byte[] wrapPayload(String key) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(payload.length + key.length() + 8);
+        out.write('{');
+        JsonBytes.writeFieldName(out, key);
+        JsonBytes.writeRaw(out, payload);
+        out.write('}');
+        return out.toByteArray();
+    }
+
+    /**
+     * 编码为设备协议中的完整 JSON：{"type":..,"command":..,"request|response":消息体}
+     *
+     * @return JSON 字节
+     */
+    @SuppressWarnings("checkstyle:MagicNumber")
+    public byte[] toJsonBytes() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(payload.length + 64);
+        out.write('{');
+        if (type != null) {
+            JsonBytes.writeFieldName(out, "type");
+            JsonBytes.writeString(out, type);
+            out.write(',');
+        }
+        JsonBytes.writeFieldName(out, "command");
+        JsonBytes.writeString(out, commandName);
+        out.write(',');
+        JsonBytes.writeFieldName(out, direction.getFieldName());
+        JsonBytes.writeRaw(out, payload);
+        out.write('}');
+        return out.toByteArray();
+    }
+
+    @Override
+    public String toString() {
+        return "VideoMessage(command=" + commandName + ", " + direction.getFieldName() + "="
+                + new String(payload, CharsetUtil.UTF_8) + ")";
+    }
+
+    /**
+     * 以旧的 Map 结构输出 JSON，供 kafka.value-format=json 时使用
+     */
+    static final class LegacyJsonSerializer extends StdSerializer<VideoMessage> {
+        private static final long serialVersionUID = 1L;
+
+        LegacyJsonSerializer() {
+            super(VideoMessage.class);
+        }
+
+        @Override
+        public void serialize(VideoMessage value, JsonGenerator gen, SerializerProvider provider) throws IOException {
+            gen.writeStartObject();
+            if (value.type != null) {
+                gen.writeStringField("type", value.type);
+            }
+            gen.writeStringField("command", value.commandName);
+            gen.writeFieldName(value.direction.getFieldName());
+            gen.writeRawValue(new String(value.payload, CharsetUtil.UTF_8));
+            gen.writeEndObject();
+        }
+    }
+}
@@ -1,16 +1,19 @@
 package cn.xxt.gatewaynetty.netty.protocol;
 
+import cn.xxt.gatewaynetty.netty.auth.DeviceAuthService;
 import cn.xxt.gatewaynetty.netty.exceptions.UnsupportedProtocolException;
 import cn.xxt.gatewaynetty.netty.handler.kar_normal.AuthenticationNormalHandler;
 import cn.xxt.gatewaynetty.netty.handler.kar_normal.DataInboundNormalHandler;
+import cn.xxt.gatewaynetty.netty.handler.kar_normal.PduFrameDecoder;
+import cn.xxt.gatewaynetty.netty.handler.kar_normal.UnvalidatedMessageBuffer;
 import cn.xxt.gatewaynetty.mqtt.MqttSender;
 import cn.xxt.gatewaynetty.netty.handler.kar_video.AuthenticationVideoHandler;
 import cn.xxt.gatewaynetty.netty.handler.kar_video.DataInboundVideoHandler;
 import cn.xxt.gatewaynetty.netty.handler.kar_video.JsonProtocolDecoder;
+import cn.xxt.gatewaynetty.netty.handler.kar_video.MessageReassembler;
 import cn.xxt.gatewaynetty.netty.registry.DeviceRegistry;
 import io.netty.channel.ChannelHandler;
-import io.netty.handler.codec.string.StringDecoder;
-import cn.xxt.gatewaynetty.kafka.DeviceDataKafkaProducer;
+import cn.xxt.gatewaynetty.bus.DeviceDataBus;
 
 import java.util.ArrayList;
 import java.util.HashMap;
@@ -94,27 +97,33 @@ public class ProtocolHandlerFactory {
      * 创建默认的协议处理器工厂。
      *
      * @param deviceRegistry 设备注册中心
+     * @param authService    设备认证服务
      * @param producer       设备数据事件生产者
      * @param sender         MQTT消息发送者
      * @return 创建的默认协议处理器工厂实例
      */
-    public static ProtocolHandlerFactory createDefault(DeviceRegistry deviceRegistry,
-                                                       DeviceDataKafkaProducer producer, MqttSender sender) {
+    public static ProtocolHandlerFactory createDefault(DeviceRegistry deviceRegistry, DeviceAuthService authService,
+                                                       DeviceDataBus producer, MqttSender sender) {
         ProtocolHandlerFactory factory = new ProtocolHandlerFactory();
+        // 所有普通话机连接共用一个未验证消息缓存，状态保存在各自的 Channel 上
+        UnvalidatedMessageBuffer unvalidatedMessages = new UnvalidatedMessageBuffer();
 
         // 注册普通话机的协议的 gateway.handler
         factory.registerHandler(ProtocolIdentifier.PROTOCOL_NORMAL,
-                () -> new AuthenticationNormalHandler(deviceRegistry));
+                () -> new AuthenticationNormalHandler(deviceRegistry, authService));
         factory.registerHandler(ProtocolIdentifier.PROTOCOL_NORMAL,
-                () -> new DataInboundNormalHandler(producer));
-        factory.registerDecoder(ProtocolIdentifier.PROTOCOL_NORMAL, StringDecoder::new);
+                () -> new DataInboundNormalHandler(producer, unvalidatedMessages));
+        factory.registerDecoder(ProtocolIdentifier.PROTOCOL_NORMAL, PduFrameDecoder::new);
+
+        // 所有视频话机连接共用多包消息的字节预算，未完成的会话保存在各自的解码器上
+        MessageReassembler reassembler = new MessageReassembler();
 
         // 注册视频话机的协议的 gateway.handler
         factory.registerHandler(ProtocolIdentifier.PROTOCOL_VIDEO,
-                () -> new AuthenticationVideoHandler(deviceRegistry));
+                () -> new AuthenticationVideoHandler(deviceRegistry, authService));
         factory.registerHandler(ProtocolIdentifier.PROTOCOL_VIDEO,
                 () -> new DataInboundVideoHandler(producer, sender));
-        factory.registerDecoder(ProtocolIdentifier.PROTOCOL_VIDEO, JsonProtocolDecoder::new);
+        factory.registerDecoder(ProtocolIdentifier.PROTOCOL_VIDEO, () -> new JsonProtocolDecoder(reassembler));
 
         return factory;
     }
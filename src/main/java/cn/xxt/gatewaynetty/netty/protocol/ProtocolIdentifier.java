@@ -4,13 +4,61 @@ public enum ProtocolIdentifier {
     /**
      * 协议类型 - 普通话机
      */
-    PROTOCOL_NORMAL,
+    PROTOCOL_NORMAL(0),
     /**
      * 协议类型 - 视频话机
      */
-    PROTOCOL_VIDEO,
+    PROTOCOL_VIDEO(1),
     /**
      * 视频人脸下发协议标识
      */
-    PROTOCOL_VIDEO_FACE,
+    PROTOCOL_VIDEO_FACE(2),
+    ;
+
+    /**
+     * 按编码查找的协议类型表
+     */
+    private static final ProtocolIdentifier[] BY_CODE;
+
+    static {
+        int max = 0;
+        for (ProtocolIdentifier protocol : values()) {
+            max = Math.max(max, protocol.code);
+        }
+        BY_CODE = new ProtocolIdentifier[max + 1];
+        for (ProtocolIdentifier protocol : values()) {
+            if (BY_CODE[protocol.code] != null) {
+                throw new IllegalStateException("协议类型编码重复: " + protocol.code);
+            }
+            BY_CODE[protocol.code] = protocol;
+        }
+    }
+
+    /**
+     * 持久化和跨进程传输使用的编码，已分配的编码不能修改或复用，新增协议追加新编码
+     */
+    private final int code;
+
+    ProtocolIdentifier(int code) {
+        this.code = code;
+    }
+
+    /**
+     * 根据编码查找协议类型
+     *
+     * @param code 协议类型编码
+     * @return 对应的协议类型，未知编码返回 null
+     */
+    public static ProtocolIdentifier ofCode(int code) {
+        return code >= 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+    }
+
+    /**
+     * 持久化和跨进程传输使用的编码
+     *
+     * @return 协议类型编码
+     */
+    public int getCode() {
+        return code;
+    }
 }
@@ -0,0 +1,46 @@
+package cn.xxt.gatewaynetty.netty.protocol.sender;
+
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.ChannelFutureListener;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: 汇总一组按顺序写入同一通道的结果，得出从第一条开始连续写入成功的条数
+ * @author: Havad
+ * @create: 2026-10-18 22:30
+ **/
+
+final class SentPrefix {
+    private SentPrefix() {
+    }
+
+    /**
+     * 等全部写入完成后，以连续成功的条数完成结果
+     *
+     * @param writes 按发送顺序排列的写入结果
+     * @param result 待完成的发送结果
+     */
+    static void completeWhenDone(List<ChannelFuture> writes, CompletableFuture<Integer> result) {
+        if (writes.isEmpty()) {
+            result.complete(0);
+            return;
+        }
+        AtomicInteger remaining = new AtomicInteger(writes.size());
+        ChannelFutureListener listener = future -> {
+            if (remaining.decrementAndGet() == 0) {
+                int sent = 0;
+                while (sent < writes.size() && writes.get(sent).isSuccess()) {
+                    sent++;
+                }
+                result.complete(sent);
+            }
+        };
+        for (ChannelFuture write : writes) {
+            write.addListener(listener);
+        }
+    }
+}
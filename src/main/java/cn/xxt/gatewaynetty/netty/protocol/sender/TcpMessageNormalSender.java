@@ -4,6 +4,11 @@ import cn.xxt.gatewaynetty.netty.model.DeviceData;
 import cn.xxt.gatewaynetty.util.LogUtils;
 import io.netty.buffer.ByteBuf;
 import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * @program: gateway-cn.xxt.gatewaynetty.netty
@@ -16,9 +21,9 @@ public class TcpMessageNormalSender implements TcpMessageSender {
 
     @Override
     public void sendMessageToDevice(DeviceData data, Channel channel) {
-        LogUtils.logBusiness("【发往设备】【普通话机】数据为{}", data);
+        LogUtils.logDebug("【发往设备】【普通话机】数据为{}", data);
         if (channel == null || !channel.isActive()) {
-            LogUtils.logError("【发送失败】通道为空或未激活", new Throwable());
+            LogUtils.logSampled("send.inactive", data.getDeviceId(), "【发送失败】通道为空或未激活");
             return;
         }
 
@@ -34,7 +39,7 @@ public class TcpMessageNormalSender implements TcpMessageSender {
             // 写入并刷新 Channel
             channel.writeAndFlush(buf).addListener(future -> {
                 if (future.isSuccess()) {
-                    LogUtils.logBusiness("【发送成功】消息已发送至设备，数据长度：{} 字节", messageBytes.length);
+                    LogUtils.logDebug("【发送成功】消息已发送至设备，数据长度：{} 字节", messageBytes.length);
                 } else {
                     LogUtils.logError("【发送失败】消息发送失败", future.cause());
                 }
@@ -50,4 +55,64 @@ public class TcpMessageNormalSender implements TcpMessageSender {
             }
         }
     }
+
+    /**
+     * 批量发送：在通道的 EventLoop 上依次写入全部消息后只刷新一次，减少系统调用次数
+     *
+     * @param dataList 设备数据，按发送顺序排列
+     * @param channel  通道信息
+     * @return 从第一条开始连续发送成功的条数
+     */
+    @Override
+    public CompletableFuture<Integer> sendMessagesToDevice(List<DeviceData> dataList, Channel channel) {
+        if (channel == null || !channel.isActive()) {
+            LogUtils.logSampled("send.inactive", dataList.isEmpty() ? null : dataList.get(0).getDeviceId(),
+                    "【发送失败】通道为空或未激活，{}条消息未发送", dataList.size());
+            return CompletableFuture.completedFuture(0);
+        }
+        CompletableFuture<Integer> result = new CompletableFuture<>();
+        if (channel.eventLoop().inEventLoop()) {
+            writeAllAndFlush(dataList, channel, result);
+        } else {
+            channel.eventLoop().execute(() -> writeAllAndFlush(dataList, channel, result));
+        }
+        return result;
+    }
+
+    /**
+     * 写入全部消息并刷新，必须在通道的 EventLoop 上调用；某条消息编码失败时不再写入其后的消息
+     *
+     * @param dataList 设备数据
+     * @param channel  通道信息
+     * @param result   发送结果，以连续写入成功的条数完成
+     */
+    private void writeAllAndFlush(List<DeviceData> dataList, Channel channel, CompletableFuture<Integer> result) {
+        List<ChannelFuture> writes = new ArrayList<>(dataList.size());
+        for (DeviceData data : dataList) {
+            ByteBuf buf = null;
+            try {
+                byte[] messageBytes = data.serializeMsg();
+                buf = channel.alloc().buffer(messageBytes.length);
+                buf.writeBytes(messageBytes);
+                writes.add(channel.write(buf));
+                buf = null;
+            } catch (Exception e) {
+                LogUtils.logError("【发送失败】消息发送过程中发生异常", e);
+                if (buf != null) {
+                    buf.release();
+                }
+                break;
+            }
+        }
+        channel.flush();
+        SentPrefix.completeWhenDone(writes, result);
+        result.thenAccept(sent -> {
+            if (sent == dataList.size()) {
+                LogUtils.logDebug("【发送成功】{}条消息已批量发送至设备", sent);
+            } else {
+                LogUtils.logSampled("send.batch", dataList.get(0).getDeviceId(),
+                        "【发送失败】批量消息只发送了{}/{}条", sent, dataList.size());
+            }
+        });
+    }
 }
@@ -3,6 +3,9 @@ package cn.xxt.gatewaynetty.netty.protocol.sender;
 import cn.xxt.gatewaynetty.netty.model.DeviceData;
 import io.netty.channel.Channel;
 
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
 /**
  * @program: gateway-cn.xxt.gatewaynetty.netty
  * @description:
@@ -19,4 +22,17 @@ public interface TcpMessageSender {
      * @throws Exception 发送过程中遇到异常时抛出
      */
     void sendMessageToDevice(DeviceData data, Channel channel) throws Exception;
+
+    /**
+     * 向同一设备批量发送消息，并报告发送结果
+     * <p>
+     * 返回的结果在全部写入完成后给出从第一条开始连续写入成功的条数：
+     * 通道为空或未激活时立即以 0 完成；某条消息编码失败时不再写入其后的消息；
+     * 连接在写入途中断开时，只计入断开前已写出的消息。
+     *
+     * @param dataList 设备数据，按发送顺序排列
+     * @param channel  通道信息
+     * @return 从第一条开始连续发送成功的条数
+     */
+    CompletableFuture<Integer> sendMessagesToDevice(List<DeviceData> dataList, Channel channel);
 }
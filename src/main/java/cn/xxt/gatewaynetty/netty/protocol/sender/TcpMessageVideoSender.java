@@ -1,13 +1,15 @@
 package cn.xxt.gatewaynetty.netty.protocol.sender;
 
-import com.fasterxml.jackson.core.JsonProcessingException;
-import com.fasterxml.jackson.databind.ObjectMapper;
 import cn.xxt.gatewaynetty.netty.model.DeviceData;
+import cn.xxt.gatewaynetty.netty.model.VideoMessage;
 import cn.xxt.gatewaynetty.util.LogUtils;
 import cn.xxt.gatewaynetty.util.VideoParserUtil;
 import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
 
-import java.util.Map;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * @program: gateway-cn.xxt.gatewaynetty.netty
@@ -17,19 +19,41 @@ import java.util.Map;
  **/
 
 public class TcpMessageVideoSender implements TcpMessageSender {
-    /**
-     * 对象映射器
-     */
-    private final ObjectMapper objectMapper = new ObjectMapper();
 
+    @Override
+    public void sendMessageToDevice(DeviceData data, Channel channel) {
+        LogUtils.logDebug("【发往设备】【视频话机】数据为:{}", data);
+        VideoMessage message = VideoMessage.from(data.getMsg());
+        // 发送数据，消息体原样嵌入
+        VideoParserUtil.sendData(channel, message.getCommandName(), message.toJsonBytes());
+    }
 
+    /**
+     * 批量发送：逐条分包写出并汇总写入结果，某条消息无法编码时不再发送其后的消息
+     *
+     * @param dataList 设备数据，按发送顺序排列
+     * @param channel  通道信息
+     * @return 从第一条开始连续发送成功的条数
+     */
     @Override
-    public void sendMessageToDevice(DeviceData data, Channel channel) throws JsonProcessingException {
-        LogUtils.logBusiness("【发往设备】【视频话机】数据为:{}", data);
-        // 转换为JSON字符串
-        String jsonResponse = objectMapper.writeValueAsString(data.getMsg());
-        Map<String, Object> messageMap = (Map<String, Object>) data.getMsg();
-        // 发送数据
-        VideoParserUtil.sendData(channel, messageMap.get("command").toString(), jsonResponse);
+    public CompletableFuture<Integer> sendMessagesToDevice(List<DeviceData> dataList, Channel channel) {
+        if (channel == null || !channel.isActive()) {
+            LogUtils.logSampled("send.inactive", dataList.isEmpty() ? null : dataList.get(0).getDeviceId(),
+                    "【发送失败】通道为空或未激活，{}条消息未发送", dataList.size());
+            return CompletableFuture.completedFuture(0);
+        }
+        List<ChannelFuture> writes = new ArrayList<>(dataList.size());
+        for (DeviceData data : dataList) {
+            try {
+                VideoMessage message = VideoMessage.from(data.getMsg());
+                writes.add(VideoParserUtil.sendData(channel, message.getCommandName(), message.toJsonBytes()));
+            } catch (RuntimeException e) {
+                LogUtils.logError("【发送失败】消息发送过程中发生异常", e);
+                break;
+            }
+        }
+        CompletableFuture<Integer> result = new CompletableFuture<>();
+        SentPrefix.completeWhenDone(writes, result);
+        return result;
     }
 }
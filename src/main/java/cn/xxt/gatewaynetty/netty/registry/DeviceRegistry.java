@@ -1,6 +1,8 @@
 package cn.xxt.gatewaynetty.netty.registry;
 
+import cn.xxt.gatewaynetty.metrics.GatewayMetrics;
 import cn.xxt.gatewaynetty.mqtt.MqttSender;
+import cn.xxt.gatewaynetty.netty.videophone.task.TaskManager;
 import cn.xxt.gatewaynetty.util.LogUtils;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelFutureListener;
@@ -8,6 +10,7 @@ import io.netty.util.AttributeKey;
 import lombok.AllArgsConstructor;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PostConstruct;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -43,6 +46,20 @@ public class DeviceRegistry {
      */
     private MqttSender mqttSender;
 
+    /**
+     * 人脸任务管理器，设备离线时清除其任务状态缓存
+     */
+    private TaskManager taskManager;
+
+    /**
+     * 注册在线设备数指标
+     */
+    @PostConstruct
+    public void init() {
+        GatewayMetrics.registerGauge("gateway_connected_devices", "TCP在线设备数", tcpChannels::size);
+        GatewayMetrics.registerGauge("gateway_http_connections", "人脸心跳HTTP连接数", httpChannels::size);
+    }
+
     /**
      * 注册设备与通道的映射关系。
      *
@@ -107,6 +124,7 @@ public class DeviceRegistry {
         if (httpChannel != null) {
             httpChannel.close();
         }
+        taskManager.removeDevice(deviceId);
         // 向Thingsboard声明设备断连
         mqttSender.sendDeviceDisconnected(deviceId);
     }
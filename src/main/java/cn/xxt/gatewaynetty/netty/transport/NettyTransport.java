@@ -0,0 +1,209 @@
+package cn.xxt.gatewaynetty.netty.transport;
+
+import cn.xxt.gatewaynetty.util.LogUtils;
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.ServerChannel;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollChannelOption;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: 网关共用的 Netty 传输层：Linux 下优先使用 epoll，三个服务共享同一组 boss/worker 线程
+ * @author: Havad
+ * @create: 2026-10-18 11:40
+ **/
+
+@Component
+public class NettyTransport {
+    /**
+     * 是否优先使用 epoll，不可用时自动退回 NIO
+     */
+    @Value("${netty.transport.native:true}")
+    private boolean preferNative;
+    /**
+     * boss 线程数
+     */
+    @Value("${netty.transport.boss-threads:1}")
+    private int bossThreads;
+    /**
+     * worker 线程数，0 表示使用 Netty 默认值（CPU 核数 * 2）
+     */
+    @Value("${netty.transport.worker-threads:0}")
+    private int workerThreads;
+    /**
+     * 每个端口绑定的监听 socket 数，大于 1 时需要 epoll 的 SO_REUSEPORT
+     */
+    @Value("${netty.transport.acceptors:1}")
+    private int acceptors;
+    /**
+     * 全连接队列长度
+     */
+    @Value("${netty.transport.backlog:1024}")
+    private int backlog;
+    /**
+     * 是否关闭 Nagle 算法
+     */
+    @Value("${netty.transport.tcp-nodelay:true}")
+    private boolean tcpNoDelay;
+    /**
+     * 接收缓冲区大小（字节），0 表示使用系统默认值
+     */
+    @Value("${netty.transport.rcvbuf:0}")
+    private int receiveBufferSize;
+    /**
+     * 发送缓冲区大小（字节），0 表示使用系统默认值
+     */
+    @Value("${netty.transport.sndbuf:0}")
+    private int sendBufferSize;
+
+    /**
+     * 是否使用 epoll
+     */
+    private boolean useEpoll;
+    /**
+     * 共享的 boss 事件循环组
+     */
+    private EventLoopGroup bossGroup;
+    /**
+     * 共享的 worker 事件循环组
+     */
+    private EventLoopGroup workerGroup;
+
+    /**
+     * 初始化共享的事件循环组
+     */
+    @PostConstruct
+    public void init() {
+        useEpoll = preferNative && Epoll.isAvailable();
+        if (preferNative && !useEpoll) {
+            LogUtils.logBusiness("epoll不可用，使用NIO传输, 原因:{}", String.valueOf(Epoll.unavailabilityCause()));
+        }
+        if (acceptors > 1 && !useEpoll) {
+            LogUtils.logBusiness("SO_REUSEPORT需要epoll传输，监听socket数由{}调整为1", acceptors);
+            acceptors = 1;
+        }
+        // 每个监听 socket 注册在不同的 boss 线程上，才能让内核把新连接分摊到多个线程
+        bossGroup = newEventLoopGroup(Math.max(bossThreads, acceptors), "gateway-boss");
+        workerGroup = newEventLoopGroup(workerThreads, "gateway-worker");
+        LogUtils.logBusiness("Netty传输层已初始化, 传输:{}, boss线程:{}, 监听socket数:{}",
+                useEpoll ? "epoll" : "nio", Math.max(bossThreads, acceptors), acceptors);
+    }
+
+    /**
+     * 关闭共享的事件循环组，在各服务关闭监听之后由 Spring 调用
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (workerGroup != null) {
+            workerGroup.shutdownGracefully();
+        }
+        if (bossGroup != null) {
+            bossGroup.shutdownGracefully();
+        }
+    }
+
+    /**
+     * 创建一个已设置好线程组、Channel 类型和 socket 参数的 ServerBootstrap，
+     * 调用方只需设置 childHandler 和业务相关的参数
+     *
+     * @return ServerBootstrap
+     */
+    public ServerBootstrap serverBootstrap() {
+        ServerBootstrap b = new ServerBootstrap();
+        b.group(bossGroup, workerGroup)
+                .channel(serverChannelClass())
+                .option(ChannelOption.SO_BACKLOG, backlog)
+                .childOption(ChannelOption.TCP_NODELAY, tcpNoDelay);
+        if (acceptors > 1) {
+            b.option(EpollChannelOption.SO_REUSEPORT, true);
+        }
+        if (receiveBufferSize > 0) {
+            b.option(ChannelOption.SO_RCVBUF, receiveBufferSize);
+            b.childOption(ChannelOption.SO_RCVBUF, receiveBufferSize);
+        }
+        if (sendBufferSize > 0) {
+            b.childOption(ChannelOption.SO_SNDBUF, sendBufferSize);
+        }
+        return b;
+    }
+
+    /**
+     * 绑定端口；开启 SO_REUSEPORT 时在同一端口上绑定多个监听 socket
+     *
+     * @param b    ServerBootstrap
+     * @param port 端口号
+     * @return 监听的 Channel 列表
+     * @throws InterruptedException 等待绑定时被中断
+     */
+    public List<Channel> bind(ServerBootstrap b, int port) throws InterruptedException {
+        List<Channel> channels = new ArrayList<>(acceptors);
+        try {
+            for (int i = 0; i < acceptors; i++) {
+                channels.add(b.bind(port).sync().channel());
+            }
+        } catch (InterruptedException | RuntimeException e) {
+            channels.forEach(Channel::close);
+            throw e;
+        }
+        return channels;
+    }
+
+    /**
+     * 创建与当前传输类型一致的独立事件循环组，供需要与设备连接隔离的客户端使用
+     *
+     * @param threads  线程数，0 表示使用 Netty 默认值
+     * @param poolName 线程名前缀
+     * @return 事件循环组，由调用方负责关闭
+     */
+    public EventLoopGroup newEventLoopGroup(int threads, String poolName) {
+        DefaultThreadFactory threadFactory = new DefaultThreadFactory(poolName);
+        return useEpoll
+                ? new EpollEventLoopGroup(threads, threadFactory)
+                : new NioEventLoopGroup(threads, threadFactory);
+    }
+
+    /**
+     * 服务端 Channel 类型
+     *
+     * @return Channel 类型
+     */
+    public Class<? extends ServerChannel> serverChannelClass() {
+        return useEpoll ? EpollServerSocketChannel.class : NioServerSocketChannel.class;
+    }
+
+    /**
+     * 客户端 Channel 类型
+     *
+     * @return Channel 类型
+     */
+    public Class<? extends SocketChannel> socketChannelClass() {
+        return useEpoll ? EpollSocketChannel.class : NioSocketChannel.class;
+    }
+
+    /**
+     * 是否使用 epoll
+     *
+     * @return 使用 epoll 时返回 true
+     */
+    public boolean isEpoll() {
+        return useEpoll;
+    }
+}
@@ -1,25 +1,30 @@
 package cn.xxt.gatewaynetty.netty.videophone.http;
 
+import cn.xxt.gatewaynetty.metrics.MetricsHttpHandler;
 import cn.xxt.gatewaynetty.netty.config.RedisConfig;
 import cn.xxt.gatewaynetty.netty.handler.kar_video.face.HttpRequestHandler;
-import cn.xxt.gatewaynetty.kafka.DeviceDataKafkaProducer;
+import cn.xxt.gatewaynetty.bus.DeviceDataBus;
 import cn.xxt.gatewaynetty.netty.registry.DeviceRegistry;
+import cn.xxt.gatewaynetty.netty.transport.NettyTransport;
 import cn.xxt.gatewaynetty.netty.videophone.task.TaskManager;
 import cn.xxt.gatewaynetty.util.LogUtils;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.Channel;
-import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelInitializer;
 import io.netty.channel.ChannelOption;
-import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.handler.codec.http.HttpObjectAggregator;
 import io.netty.handler.codec.http.HttpServerCodec;
+import io.netty.util.concurrent.DefaultThreadFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
 /**
  * @program: gateway-cn.xxt.gatewaynetty.netty
  * @description: 用于卡尔视频话机下发人脸
@@ -29,27 +34,46 @@ import org.springframework.stereotype.Component;
 
 @Component
 public class HttpServer {
+    /**
+     * 指标抓取接口，所有连接共享
+     */
+    private static final MetricsHttpHandler METRICS_HANDLER = new MetricsHttpHandler();
     /**
      * Netty服务的端口号
      */
     @Value(value = "${netty.http_port}")
     private int port;
+    /**
+     * 心跳处理线程数
+     */
+    @Value("${netty.http.heartbeat-threads:8}")
+    private int heartbeatThreads;
+    /**
+     * 等待处理的心跳数上限，超出时直接关闭新的心跳连接
+     */
+    @Value("${netty.http.heartbeat-queue-capacity:2048}")
+    private int heartbeatQueueCapacity;
+    /**
+     * 是否在心跳端口上提供 /metrics 指标接口，接口不做认证，默认关闭
+     */
+    @Value("${metrics.http.enabled:false}")
+    private boolean metricsEnabled;
     /**
      * 设备注册信息
      */
     private final DeviceRegistry deviceRegistry;
     /**
-     * 主事件循环组
+     * 共享的 Netty 传输层
      */
-    private EventLoopGroup bossGroup;
+    private final NettyTransport transport;
     /**
-     * 工作线程事件循环组
+     * 监听通道
      */
-    private EventLoopGroup workerGroup;
+    private List<Channel> channels;
     /**
-     * 通道
+     * 心跳处理线程池
      */
-    private Channel channel;
+    private ExecutorService heartbeatExecutor;
     /**
      * 任务管理器
      */
@@ -57,12 +81,14 @@ public class HttpServer {
     /**
      * 设备数据事件生产者
      */
-    private final DeviceDataKafkaProducer producer;
+    private final DeviceDataBus producer;
 
-    public HttpServer(DeviceRegistry deviceRegistry, TaskManager taskManager, DeviceDataKafkaProducer producer) {
+    public HttpServer(DeviceRegistry deviceRegistry, TaskManager taskManager, DeviceDataBus producer,
+                      NettyTransport transport) {
         this.deviceRegistry = deviceRegistry;
         this.taskManager = taskManager;
         this.producer = producer;
+        this.transport = transport;
     }
 
 
@@ -70,36 +96,31 @@ public class HttpServer {
      * 启动服务器方法。
      * <p>
      * 该方法负责初始化服务器，绑定端口并启动接受进来的连接。
-     * 使用NIO传输和指定的Channel初始化ServerBootstrap。
+     * 使用共享传输层的线程组和Channel类型初始化ServerBootstrap。
      *
      * @throws Exception 如果在启动过程中发生错误，将抛出异常
      */
     @SuppressWarnings("checkstyle:MagicNumber")
     public void start() throws Exception {
-        bossGroup = new NioEventLoopGroup(1);
-        workerGroup = new NioEventLoopGroup();
-
         try {
-            ServerBootstrap b = new ServerBootstrap();
-            b.group(bossGroup, workerGroup)
-                    .channel(NioServerSocketChannel.class)
-                    .childHandler(new ChannelInitializer<SocketChannel>() {
+            heartbeatExecutor = new ThreadPoolExecutor(heartbeatThreads, heartbeatThreads, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(heartbeatQueueCapacity), new DefaultThreadFactory("http-heartbeat"));
+            ServerBootstrap b = transport.serverBootstrap();
+            b.childHandler(new ChannelInitializer<SocketChannel>() {
                         @Override
                         public void initChannel(SocketChannel ch) {
+                            ch.pipeline().addLast(new HttpServerCodec(), new HttpObjectAggregator(65536));
+                            if (metricsEnabled) {
+                                ch.pipeline().addLast(METRICS_HANDLER);
+                            }
                             ch.pipeline().addLast(
-                                    new HttpServerCodec(),
-                                    new HttpObjectAggregator(65536),
-                                    new HttpRequestHandler(deviceRegistry, producer, taskManager)
-                            );
+                                    new HttpRequestHandler(deviceRegistry, producer, taskManager, heartbeatExecutor));
                         }
                     })
-                    .option(ChannelOption.SO_BACKLOG, 128)
                     .childOption(ChannelOption.SO_KEEPALIVE, true);
 
-            ChannelFuture f = b.bind(port).sync();
-            LogUtils.logBusiness("HTTP server started on port {}", port);
-            channel = f.channel();
-//            f.channel().closeFuture().sync();
+            channels = transport.bind(b, port);
+            LogUtils.logBusiness("HTTP server started on port {}, 指标接口{}", port, metricsEnabled ? "开启" : "关闭");
 
         } catch (Exception e) {
             stop();
@@ -110,22 +131,17 @@ public class HttpServer {
     /**
      * 停止服务方法
      * <p>
-     * 此方法负责关闭通道、线程组，并释放相关资源。
+     * 此方法负责关闭通道，并释放相关资源。线程组由共享的传输层关闭。
      *
-     * @see #channel
-     * @see #bossGroup
-     * @see #workerGroup
+     * @see #channels
      * @see RedisConfig#closePool()
      */
     public void stop() {
-        if (channel != null) {
-            channel.close();
-        }
-        if (bossGroup != null) {
-            bossGroup.shutdownGracefully();
+        if (channels != null) {
+            channels.forEach(Channel::close);
         }
-        if (workerGroup != null) {
-            workerGroup.shutdownGracefully();
+        if (heartbeatExecutor != null) {
+            heartbeatExecutor.shutdownNow();
         }
 
         taskManager.shutdown();
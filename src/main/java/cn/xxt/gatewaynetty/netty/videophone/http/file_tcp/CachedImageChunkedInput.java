@@ -0,0 +1,114 @@
+package cn.xxt.gatewaynetty.netty.videophone.http.file_tcp;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.DefaultFileRegion;
+import io.netty.channel.FileRegion;
+import io.netty.handler.stream.ChunkedInput;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: 从本地缓存发送已分包的人脸图片，每次取出若干个完整数据包作为一个 FileRegion，由内核直接从文件发送到 socket
+ * <p>
+ * 缓存文件中保存的是 {@link ImageChunkedInput#toByteArray()} 生成的完整下发数据，发送时不再经过堆内存。
+ * 分段发送是为了让流量整形和通道可写状态继续生效。
+ * 所有 FileRegion 共用创建时打开的同一个文件通道，缓存淘汰删除文件后仍能读完，通道在 {@link #close()} 时关闭。
+ * @author: Havad
+ * @create: 2026-10-18 16:25
+ **/
+
+public class CachedImageChunkedInput implements ChunkedInput<FileRegion> {
+    /**
+     * 每个 FileRegion 包含的数据包数
+     */
+    private static final int PACKETS_PER_REGION = 16;
+    /**
+     * 每个 FileRegion 的字节数，按完整数据包对齐
+     */
+    private static final long REGION_BYTES =
+            (long) PACKETS_PER_REGION * (ImageChunkedInput.PACKET_HEADER_LENGTH + ImageChunkedInput.PACKET_DATA_SIZE);
+
+    /**
+     * 缓存文件的只读通道
+     */
+    private final FileChannel channel;
+    /**
+     * 文件长度
+     */
+    private final long length;
+    /**
+     * 已取出的字节数
+     */
+    private long offset;
+
+    /**
+     * 创建分块输入，接管文件通道的关闭
+     *
+     * @param channel 缓存文件的只读通道
+     * @throws IOException 无法读取文件长度时抛出，此时通道已关闭
+     */
+    public CachedImageChunkedInput(FileChannel channel) throws IOException {
+        this.channel = channel;
+        try {
+            this.length = channel.size();
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public boolean isEndOfInput() {
+        return offset >= length;
+    }
+
+    @Override
+    public void close() throws IOException {
+        // ChunkedWriteHandler 在最后一段写完或连接关闭后调用，此时不再有使用该通道的 FileRegion
+        channel.close();
+    }
+
+    @Deprecated
+    @Override
+    public FileRegion readChunk(ChannelHandlerContext ctx) {
+        return readChunk(ctx.alloc());
+    }
+
+    @Override
+    public FileRegion readChunk(ByteBufAllocator allocator) {
+        if (isEndOfInput()) {
+            return null;
+        }
+        long count = Math.min(REGION_BYTES, length - offset);
+        FileRegion region = new SharedFileRegion(channel, offset, count);
+        offset += count;
+        return region;
+    }
+
+    @Override
+    public long length() {
+        return length;
+    }
+
+    @Override
+    public long progress() {
+        return offset;
+    }
+
+    /**
+     * 共用文件通道的 FileRegion，释放时不关闭通道
+     */
+    private static final class SharedFileRegion extends DefaultFileRegion {
+        SharedFileRegion(FileChannel channel, long position, long count) {
+            super(channel, position, count);
+        }
+
+        @Override
+        protected void deallocate() {
+            // 通道由 CachedImageChunkedInput#close 统一关闭
+        }
+    }
+}
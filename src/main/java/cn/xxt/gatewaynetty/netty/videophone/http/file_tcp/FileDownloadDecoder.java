@@ -1,18 +1,24 @@
 package cn.xxt.gatewaynetty.netty.videophone.http.file_tcp;
 
 import cn.xxt.gatewaynetty.netty.config.RedisConfig;
+import cn.xxt.gatewaynetty.netty.videophone.image.LocalImageStore;
 import cn.xxt.gatewaynetty.util.LogUtils;
 import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.ByteToMessageDecoder;
-import redis.clients.jedis.JedisPooled;
+import io.netty.handler.stream.ChunkedInput;
 
+import java.io.IOException;
+import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * @program: gateway-cn.xxt.gatewaynetty.netty
- * @description:
+ * @description: 文件端口的请求解码器，解析文件ID后从 Redis 读取图片并分包下发
  * @author: Havad
  * @create: 2025-02-21 17:40
  **/
@@ -20,34 +26,40 @@ import java.util.List;
 public class FileDownloadDecoder extends ByteToMessageDecoder {
 
     /**
-     * 同步头信息。
+     * Redis键前缀，用于图像相关数据的存储。
      */
-    private static final byte SYNC_HEADER = (byte) 0xA5;
+    private static final String REDIS_KEY_PREFIX = "tb:image:";
     /**
-     * 类型常量，表示特定的类型标识。
+     * 本地缓存键前缀
      */
-    private static final byte TYPE = (byte) 0x12;
+    private static final String CACHE_KEY_PREFIX = "file:";
 
     /**
-     * Redis键前缀，用于图像相关数据的存储。
+     * 读取 Redis 的线程池，避免在事件循环中阻塞
      */
-    private static final String REDIS_KEY_PREFIX = "tb:image:";
-
+    private final Executor redisExecutor;
     /**
-     * 一个兆 字节的大小，以千字节为单位，常量值为1024。
+     * 本地图片缓存
      */
-    private static final int ONE_MEGABYTE = 1024;
+    private final LocalImageStore imageStore;
+
     /**
-     * 文件ID前缀长度。
+     * 是否已收到文件请求，每个连接只处理一次请求，之后的数据直接丢弃
      */
-    private static final int FILE_ID_PREFIX_LENGTH = 128;
+    private boolean requested;
 
+    public FileDownloadDecoder(Executor redisExecutor, LocalImageStore imageStore) {
+        this.redisExecutor = redisExecutor;
+        this.imageStore = imageStore;
+    }
 
     @SuppressWarnings({"checkstyle:Regexp", "checkstyle:MagicNumber"})
     @Override
     protected void decode(ChannelHandlerContext ctx, ByteBuf in, List<Object> out) {
-        // 获取 redis
-        JedisPooled jedisPooled = RedisConfig.getJedisPool();
+        if (requested) {
+            in.skipBytes(in.readableBytes());
+            return;
+        }
 
         // 检查是否有足够的字节来读取头部字段
         // 我们至少需要5个字节（同步头、类型、长度、包号、总包数）
@@ -60,14 +72,14 @@ public class FileDownloadDecoder extends ByteToMessageDecoder {
 
         // 读取同步头
         byte syncHeader = in.readByte();
-        if (syncHeader != SYNC_HEADER) {
+        if (syncHeader != ImageChunkedInput.SYNC_HEADER) {
             in.resetReaderIndex();
             throw new IllegalStateException("无效的同步头: " + String.format("0x%02X", syncHeader));
         }
 
         // 读取类型
         byte type = in.readByte();
-        if (type != TYPE) {
+        if (type != ImageChunkedInput.TYPE) {
             in.resetReaderIndex();
             throw new IllegalStateException("无效的类型: " + String.format("0x%02X", type));
         }
@@ -100,12 +112,9 @@ public class FileDownloadDecoder extends ByteToMessageDecoder {
 
         // todo 这个 key 应该是上面的 id， 为了测试先写死
 //        String key = REDIS_KEY_PREFIX + "7680093057de4bdfa14dc5dcf4642ad6f73f0ddf-adbb-40fc-80e7-3a9ee3c9ef62";
-        // 根据文件标识符从 Redis 中获取图像数据
-        String key = REDIS_KEY_PREFIX + fileIdentifier;
-        // 获取图像数据
-        byte[] bytes = jedisPooled.get(key.getBytes());
-        // 发送图像响应数据
-        sendImageResponse(ctx, fileIdentifier, bytes);
+        // 根据文件标识符从 Redis 中获取图像数据并发送
+        requested = true;
+        fetchAndSend(ctx, fileIdentifier);
     }
 
     /**
@@ -131,54 +140,112 @@ public class FileDownloadDecoder extends ByteToMessageDecoder {
         return fileIdString;
     }
 
+    /**
+     * 在 Redis 线程池中读取图像数据，读取完成后回到通道的事件循环发送，不阻塞事件循环
+     * <p>
+     * 先查本地缓存，未命中时从 Redis 读取并写入缓存（read-through），同一张人脸被多台话机下载时只读一次 Redis。
+     *
+     * @param ctx            ChannelHandlerContext上下文
+     * @param fileIdentifier 文件标识符
+     */
+    private void fetchAndSend(ChannelHandlerContext ctx, String fileIdentifier) {
+        try {
+            redisExecutor.execute(() -> {
+                String cacheKey = CACHE_KEY_PREFIX + fileIdentifier;
+                ChunkedInput<?> response = openCached(cacheKey);
+                if (response == null) {
+                    String key = REDIS_KEY_PREFIX + fileIdentifier;
+                    byte[] bytes;
+                    try {
+                        bytes = RedisConfig.getJedisPool().get(key.getBytes(StandardCharsets.UTF_8));
+                    } catch (RuntimeException e) {
+                        LogUtils.logError("从Redis读取图像数据失败, key:{}", e, key);
+                        ctx.close();
+                        return;
+                    }
+                    if (bytes != null) {
+                        if (imageStore.isEnabled()) {
+                            // 缓存分包后的完整下发数据，之后命中时整段交给 FileRegion 发送
+                            imageStore.put(cacheKey, new ImageChunkedInput(fileIdentifier, bytes).toByteArray());
+                        }
+                        // 本次请求的数据已在内存中，直接逐包发送
+                        response = new ImageChunkedInput(fileIdentifier, bytes);
+                    }
+                }
+                ChunkedInput<?> finalResponse = response;
+                ctx.executor().execute(() -> sendImageResponse(ctx, fileIdentifier, finalResponse));
+            });
+        } catch (RejectedExecutionException e) {
+            LogUtils.logError("Redis读取队列已满，拒绝文件请求: {}", e, fileIdentifier);
+            ctx.close();
+        }
+    }
+
+    /**
+     * 打开本地缓存的下发数据
+     *
+     * @param cacheKey 缓存键
+     * @return 从缓存文件分段发送的分块输入，未命中或文件无法读取时返回 null
+     */
+    private ChunkedInput<?> openCached(String cacheKey) {
+        FileChannel channel = imageStore.openChannel(cacheKey);
+        if (channel == null) {
+            return null;
+        }
+        try {
+            return new CachedImageChunkedInput(channel);
+        } catch (IOException e) {
+            LogUtils.logError("读取图片缓存文件失败: {}", e, cacheKey);
+            return null;
+        }
+    }
+
     /**
      * 发送图像响应数据到ChannelHandlerContext
+     * <p>
+     * 数据包由 {@link ImageChunkedInput} 逐包生成，或由 {@link CachedImageChunkedInput} 从缓存文件分段发送。
+     * ChunkedWriteHandler 只在通道可写时继续读取下一段，发送速率由通道上的流量整形处理器限制，发送完成后关闭连接。
      *
      * @param ctx            ChannelHandlerContext上下文
      * @param fileIdentifier 文件标识符
-     * @param imageData      图像数据的字节数组
+     * @param response       分块输入，图像数据不存在时为 null
      */
-    @SuppressWarnings("checkstyle:MagicNumber")
-    private void sendImageResponse(ChannelHandlerContext ctx, String fileIdentifier, byte[] imageData) {
-        // 准备文件ID字节（第一个包的前 128 字节）
-        byte[] fileIdBytes = new byte[FILE_ID_PREFIX_LENGTH];
-        byte[] sourceBytes = fileIdentifier.getBytes(StandardCharsets.UTF_8);
-        System.arraycopy(sourceBytes, 0, fileIdBytes, 0, Math.min(sourceBytes.length, FILE_ID_PREFIX_LENGTH));
-
-        // 构建整个数据包
-        byte[] all = new byte[fileIdBytes.length + imageData.length];
-        System.arraycopy(fileIdBytes, 0, all, 0, fileIdBytes.length);
-        System.arraycopy(imageData, 0, all, fileIdBytes.length, imageData.length);
-        LogUtils.logBusiness("id的长{},数据的长{},总长{}", fileIdBytes.length, imageData.length, all.length);
-        // 计算包数，并分包发送
-        int totalPackets = (int) Math.ceil((double) all.length / ONE_MEGABYTE);
-        for (int packetIndex = 0; packetIndex < totalPackets; packetIndex++) {
-            int currentPacketDataLength = Math.min(ONE_MEGABYTE, all.length - packetIndex * ONE_MEGABYTE);
-            // 同步头+类型+长度+包号+总包数+数据
-            int packetTotalLength = 1 + 1 + 2 + 2 + 2 + currentPacketDataLength;
-            ByteBuf packet = ctx.alloc().buffer(packetTotalLength);
-            // 构建下发数据
-            packet.writeByte(0xa5);
-            packet.writeByte(0x12);
-            // 长度字段只包含其之后的数据长度, 且为short类型
-            packet.writeShort(currentPacketDataLength + 4);
-            packet.writeShort(packetIndex);
-            packet.writeShort(totalPackets);
-            packet.writeBytes(all, packetIndex * ONE_MEGABYTE, currentPacketDataLength);
-            // 下发数据
-            ctx.writeAndFlush(packet);
-            LogUtils.logBusiness("发送第 {} 包，共 {} 包，当前包数据长度: {} 字节",
-                    packetIndex + 1, totalPackets, currentPacketDataLength);
-            try {
-                Thread.sleep(10);
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-                LogUtils.logError("发送过程中被中断", e);
-                break;
+    private void sendImageResponse(ChannelHandlerContext ctx, String fileIdentifier, ChunkedInput<?> response) {
+        if (!ctx.channel().isActive()) {
+            closeQuietly(response);
+            return;
+        }
+        if (response == null) {
+            LogUtils.logBusiness("图像数据不存在, 文件标识符:{}", fileIdentifier);
+            ctx.close();
+            return;
+        }
+        LogUtils.logBusiness("开始下发文件 {}, 来源:{}", fileIdentifier,
+                response instanceof CachedImageChunkedInput ? "本地缓存" : "Redis");
+        ctx.writeAndFlush(response).addListener((ChannelFutureListener) future -> {
+            if (future.isSuccess()) {
+                LogUtils.logBusiness("文件下发完成: {}", fileIdentifier);
+            } else {
+                LogUtils.logError("文件下发失败: {}", future.cause(), fileIdentifier);
             }
+            future.channel().close();
+            LogUtils.logBusiness("关闭当前的 TCP 文件连接");
+        });
+    }
+
+    /**
+     * 关闭未交给 ChunkedWriteHandler 的分块输入，释放其持有的文件通道
+     *
+     * @param input 分块输入，可为 null
+     */
+    private static void closeQuietly(ChunkedInput<?> input) {
+        if (input == null) {
+            return;
+        }
+        try {
+            input.close();
+        } catch (Exception e) {
+            LogUtils.logError("关闭分块输入失败", e);
         }
-        LogUtils.logBusiness("文件下发完成，共发送 {} 包数据", totalPackets);
-        ctx.close();
-        LogUtils.logBusiness("关闭当前的 TCP 文件连接");
     }
 }
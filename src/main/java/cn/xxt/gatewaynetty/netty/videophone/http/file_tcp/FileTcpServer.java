@@ -1,20 +1,28 @@
 package cn.xxt.gatewaynetty.netty.videophone.http.file_tcp;
 
+import cn.xxt.gatewaynetty.netty.transport.NettyTransport;
+import cn.xxt.gatewaynetty.netty.videophone.image.LocalImageStore;
 import cn.xxt.gatewaynetty.util.LogUtils;
 import io.netty.bootstrap.ServerBootstrap;
 import io.netty.channel.Channel;
-import io.netty.channel.ChannelFuture;
 import io.netty.channel.ChannelInitializer;
-import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
 import io.netty.channel.socket.SocketChannel;
-import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.stream.ChunkedWriteHandler;
+import io.netty.handler.traffic.ChannelTrafficShapingHandler;
+import io.netty.util.concurrent.DefaultThreadFactory;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
+import javax.annotation.PreDestroy;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
 /**
  * @program: gateway-cn.xxt.gatewaynetty.netty
- * @description:
+ * @description: 卡尔视频话机的人脸图片下载服务
  * @author: Havad
  * @create: 2025-02-21 17:37
  **/
@@ -26,19 +34,49 @@ public class FileTcpServer {
      */
     @Value(value = "${netty.file_port}")
     private int port;
+    /**
+     * 每个连接的发送速率上限（字节/秒），替代原先每包之间的固定休眠，0 表示不限速
+     */
+    @Value("${netty.file.write-limit-bytes:102400}")
+    private long writeLimit;
+    /**
+     * 流量整形的统计周期（毫秒）
+     */
+    @Value("${netty.file.shaping-interval-millis:100}")
+    private long shapingInterval;
+    /**
+     * 读取 Redis 的线程数
+     */
+    @Value("${netty.file.redis-threads:8}")
+    private int redisThreads;
+    /**
+     * 等待读取 Redis 的请求队列长度，队列满时直接关闭新的文件请求连接
+     */
+    @Value("${netty.file.redis-queue-capacity:1024}")
+    private int redisQueueCapacity;
 
     /**
-     * 主事件循环组
+     * 共享的 Netty 传输层
      */
-    private EventLoopGroup bossGroup;
+    private final NettyTransport transport;
     /**
-     * 工作线程事件循环组
+     * 监听通道
      */
-    private EventLoopGroup workerGroup;
+    private List<Channel> channels;
     /**
-     * 通道
+     * 读取 Redis 的线程池
      */
-    private Channel channel;
+    private ExecutorService redisExecutor;
+
+    /**
+     * 本地图片缓存
+     */
+    private final LocalImageStore imageStore;
+
+    public FileTcpServer(NettyTransport transport, LocalImageStore imageStore) {
+        this.transport = transport;
+        this.imageStore = imageStore;
+    }
 
 
     /**
@@ -48,26 +86,25 @@ public class FileTcpServer {
      * @throws Exception 当初始化或绑定端口发生异常时抛出
      */
     public void start() throws Exception {
-        bossGroup = new NioEventLoopGroup(1);
-        workerGroup = new NioEventLoopGroup();
-
         try {
-            ServerBootstrap b = new ServerBootstrap();
-            b.group(bossGroup, workerGroup)
-                    .channel(NioServerSocketChannel.class)
-                    .childHandler(new ChannelInitializer<SocketChannel>() {
-                        @Override
-                        public void initChannel(SocketChannel ch) {
-                            ch.pipeline().addLast(
-                                    new FileDownloadDecoder()
-                            );
-                        }
-                    });
+            redisExecutor = new ThreadPoolExecutor(redisThreads, redisThreads, 0L, TimeUnit.MILLISECONDS,
+                    new ArrayBlockingQueue<>(redisQueueCapacity), new DefaultThreadFactory("file-redis"));
+            ServerBootstrap b = transport.serverBootstrap();
+            b.childHandler(new ChannelInitializer<SocketChannel>() {
+                @Override
+                public void initChannel(SocketChannel ch) {
+                    // 流量整形在 ChunkedWriteHandler 之前（更靠近 head），积压超限时将通道置为不可写，
+                    // ChunkedWriteHandler 暂停读取分块，可写后由 channelWritabilityChanged 继续发送
+                    ch.pipeline().addLast(
+                            new ChannelTrafficShapingHandler(writeLimit, 0, shapingInterval),
+                            new ChunkedWriteHandler(),
+                            new FileDownloadDecoder(redisExecutor, imageStore)
+                    );
+                }
+            });
 
-            ChannelFuture f = b.bind(port).sync();
-            LogUtils.logBusiness("File server started on port {}", port);
-            channel = f.channel(); // 保存channel引用
-            // 不调用 f.channel().closeFuture().sync();
+            channels = transport.bind(b, port);
+            LogUtils.logBusiness("File server started on port {}, 单连接限速 {} 字节/秒", port, writeLimit);
 
         } catch (Exception e) {
             stop();
@@ -75,15 +112,16 @@ public class FileTcpServer {
         }
     }
 
-    private void stop() {
-        if (channel != null) {
-            channel.close();
-        }
-        if (workerGroup != null) {
-            workerGroup.shutdownGracefully();
+    /**
+     * 关闭监听通道和 Redis 线程池
+     */
+    @PreDestroy
+    public void stop() {
+        if (channels != null) {
+            channels.forEach(Channel::close);
         }
-        if (bossGroup != null) {
-            bossGroup.shutdownGracefully();
+        if (redisExecutor != null) {
+            redisExecutor.shutdownNow();
         }
     }
 }
@@ -0,0 +1,169 @@
+package cn.xxt.gatewaynetty.netty.videophone.http.file_tcp;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.stream.ChunkedInput;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: 人脸图片下发的分块输入，按需逐包生成 0xA5 0x12 数据包，交给 ChunkedWriteHandler 按通道可写状态发送
+ * <p>
+ * 数据内容为 128 字节的文件ID前缀加图片数据，不再预先拼接成一个完整数组。
+ * @author: Havad
+ * @create: 2026-10-18 16:05
+ **/
+
+@SuppressWarnings("checkstyle:MagicNumber")
+public class ImageChunkedInput implements ChunkedInput<ByteBuf> {
+    /**
+     * 同步头信息。
+     */
+    static final byte SYNC_HEADER = (byte) 0xA5;
+    /**
+     * 类型常量，表示特定的类型标识。
+     */
+    static final byte TYPE = (byte) 0x12;
+    /**
+     * 每包数据内容的最大长度
+     */
+    static final int PACKET_DATA_SIZE = 1024;
+    /**
+     * 文件ID前缀长度。
+     */
+    static final int FILE_ID_PREFIX_LENGTH = 128;
+    /**
+     * 包头长度：同步头、类型、长度、包号、总包数
+     */
+    static final int PACKET_HEADER_LENGTH = 8;
+
+    /**
+     * 文件ID前缀，固定 128 字节，不足补 0
+     */
+    private final byte[] fileIdPrefix;
+    /**
+     * 图片数据
+     */
+    private final byte[] imageData;
+    /**
+     * 数据内容总长度
+     */
+    private final int totalLength;
+    /**
+     * 总包数
+     */
+    private final int totalPackets;
+    /**
+     * 下一个要生成的包号
+     */
+    private int packetIndex;
+    /**
+     * 已生成的数据内容长度
+     */
+    private int offset;
+
+    /**
+     * 创建分块输入
+     *
+     * @param fileIdentifier 文件标识符
+     * @param imageData      图片数据
+     */
+    public ImageChunkedInput(String fileIdentifier, byte[] imageData) {
+        this.fileIdPrefix = new byte[FILE_ID_PREFIX_LENGTH];
+        byte[] sourceBytes = fileIdentifier.getBytes(StandardCharsets.UTF_8);
+        System.arraycopy(sourceBytes, 0, fileIdPrefix, 0, Math.min(sourceBytes.length, FILE_ID_PREFIX_LENGTH));
+        this.imageData = imageData;
+        this.totalLength = FILE_ID_PREFIX_LENGTH + imageData.length;
+        this.totalPackets = (totalLength + PACKET_DATA_SIZE - 1) / PACKET_DATA_SIZE;
+    }
+
+    @Override
+    public boolean isEndOfInput() {
+        return offset >= totalLength;
+    }
+
+    @Override
+    public void close() {
+        // 数据在内存中，无需释放
+    }
+
+    @Deprecated
+    @Override
+    public ByteBuf readChunk(ChannelHandlerContext ctx) {
+        return readChunk(ctx.alloc());
+    }
+
+    @Override
+    public ByteBuf readChunk(ByteBufAllocator allocator) {
+        if (isEndOfInput()) {
+            return null;
+        }
+        int dataLength = Math.min(PACKET_DATA_SIZE, totalLength - offset);
+        ByteBuf packet = allocator.buffer(PACKET_HEADER_LENGTH + dataLength);
+        writePacket(packet, dataLength);
+        return packet;
+    }
+
+    /**
+     * 一次生成全部数据包，供写入本地缓存
+     *
+     * @return 全部数据包拼接后的字节
+     */
+    public byte[] toByteArray() {
+        byte[] bytes = new byte[(int) length()];
+        ByteBuf out = Unpooled.wrappedBuffer(bytes).writerIndex(0);
+        while (!isEndOfInput()) {
+            writePacket(out, Math.min(PACKET_DATA_SIZE, totalLength - offset));
+        }
+        return bytes;
+    }
+
+    /**
+     * 写入下一个数据包
+     *
+     * @param packet     目标缓冲区
+     * @param dataLength 本包数据内容长度
+     */
+    private void writePacket(ByteBuf packet, int dataLength) {
+        packet.writeByte(SYNC_HEADER);
+        packet.writeByte(TYPE);
+        // 长度字段只包含其之后的数据长度, 且为short类型
+        packet.writeShort(dataLength + 4);
+        packet.writeShort(packetIndex);
+        packet.writeShort(totalPackets);
+
+        int end = offset + dataLength;
+        if (offset < FILE_ID_PREFIX_LENGTH) {
+            int prefixEnd = Math.min(end, FILE_ID_PREFIX_LENGTH);
+            packet.writeBytes(fileIdPrefix, offset, prefixEnd - offset);
+            offset = prefixEnd;
+        }
+        if (offset < end) {
+            packet.writeBytes(imageData, offset - FILE_ID_PREFIX_LENGTH, end - offset);
+            offset = end;
+        }
+        packetIndex++;
+    }
+
+    @Override
+    public long length() {
+        return (long) totalPackets * PACKET_HEADER_LENGTH + totalLength;
+    }
+
+    @Override
+    public long progress() {
+        return (long) packetIndex * PACKET_HEADER_LENGTH + offset;
+    }
+
+    /**
+     * 总包数
+     *
+     * @return 总包数
+     */
+    public int getTotalPackets() {
+        return totalPackets;
+    }
+}
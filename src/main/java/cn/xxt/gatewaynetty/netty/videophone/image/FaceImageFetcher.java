@@ -0,0 +1,233 @@
+package cn.xxt.gatewaynetty.netty.videophone.image;
+
+import cn.xxt.gatewaynetty.util.LogUtils;
+import cn.xxt.gatewaynetty.util.VideoParserUtil;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: 人脸图片的异步下载：有界线程池并行下载，按主机限制并发，带超时和重试，结果写入本地图片缓存
+ * <p>
+ * 同一地址同时只下载一次，并发的请求共享同一个结果。
+ * 等待队列满时阻塞提交请求的线程（人脸 RPC 接收线程）直到有空位，接收的速度随之放慢，请求不会被丢弃；
+ * 因此不能在 MQTT 回调线程上调用。
+ * @author: Havad
+ * @create: 2026-10-18 16:40
+ **/
+
+@Component
+public class FaceImageFetcher {
+    /**
+     * 图片缓存键前缀
+     */
+    private static final String CACHE_KEY_PREFIX = "url:";
+    /**
+     * 队列满时每次等待空位的时长（毫秒），超时后检查线程池是否已关闭
+     */
+    private static final long SLOT_WAIT_MILLIS = 100;
+
+    /**
+     * 下载线程数
+     */
+    @Value("${face-fetch.threads:8}")
+    private int threads;
+    /**
+     * 等待下载的请求数上限，超出时阻塞提交线程
+     */
+    @Value("${face-fetch.queue-capacity:1000}")
+    private int queueCapacity;
+    /**
+     * 同一主机的最大并发下载数
+     */
+    @Value("${face-fetch.max-per-host:4}")
+    private int maxPerHost;
+    /**
+     * 连接超时（毫秒）
+     */
+    @Value("${face-fetch.connect-timeout-millis:3000}")
+    private int connectTimeoutMillis;
+    /**
+     * 读取超时（毫秒）
+     */
+    @Value("${face-fetch.read-timeout-millis:10000}")
+    private int readTimeoutMillis;
+    /**
+     * 失败后的最大重试次数
+     */
+    @Value("${face-fetch.max-retries:2}")
+    private int maxRetries;
+    /**
+     * 重试间隔（毫秒），按重试次数线性增加
+     */
+    @Value("${face-fetch.retry-delay-millis:500}")
+    private long retryDelayMillis;
+
+    /**
+     * 本地图片缓存
+     */
+    private final LocalImageStore imageStore;
+    /**
+     * 每个主机的并发许可
+     */
+    private final ConcurrentHashMap<String, Semaphore> hostPermits = new ConcurrentHashMap<>();
+    /**
+     * 下载中的地址及其结果
+     */
+    private final ConcurrentHashMap<String, CompletableFuture<String>> inflight = new ConcurrentHashMap<>();
+    /**
+     * 下载线程池
+     */
+    private ExecutorService executor;
+
+    public FaceImageFetcher(LocalImageStore imageStore) {
+        this.imageStore = imageStore;
+    }
+
+    /**
+     * 创建下载线程池
+     */
+    @PostConstruct
+    public void init() {
+        executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), new DefaultThreadFactory("face-fetch"),
+                (task, pool) -> waitForSlot(task, pool));
+    }
+
+    /**
+     * 队列满时阻塞提交线程直到有空位；线程池关闭或提交线程被中断时拒绝，结果不会永远不完成
+     *
+     * @param task 下载任务
+     * @param pool 下载线程池
+     */
+    private static void waitForSlot(Runnable task, ThreadPoolExecutor pool) {
+        try {
+            while (!pool.getQueue().offer(task, SLOT_WAIT_MILLIS, TimeUnit.MILLISECONDS)) {
+                if (pool.isShutdown()) {
+                    throw new RejectedExecutionException("人脸图片下载线程池已关闭");
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("等待人脸图片下载队列被中断", e);
+        }
+        if (pool.isShutdown() && pool.remove(task)) {
+            throw new RejectedExecutionException("人脸图片下载线程池已关闭");
+        }
+    }
+
+    /**
+     * 关闭下载线程池
+     */
+    @PreDestroy
+    public void shutdown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * 异步读取图片并转换为Base64编码，优先使用本地缓存
+     *
+     * @param imageUrl 图片的URL地址
+     * @return Base64编码的结果，下载失败或线程池已关闭时异常完成
+     */
+    public CompletableFuture<String> fetchBase64(String imageUrl) {
+        CompletableFuture<String> future = new CompletableFuture<>();
+        CompletableFuture<String> existing = inflight.putIfAbsent(imageUrl, future);
+        if (existing != null) {
+            return existing;
+        }
+        try {
+            executor.execute(() -> {
+                String base64;
+                try {
+                    base64 = load(imageUrl);
+                } catch (IOException | RuntimeException e) {
+                    inflight.remove(imageUrl, future);
+                    future.completeExceptionally(e);
+                    return;
+                }
+                // 先移除再完成，之后的请求直接走本地缓存，不会拿到已完成的旧结果
+                inflight.remove(imageUrl, future);
+                future.complete(base64);
+            });
+        } catch (RejectedExecutionException e) {
+            inflight.remove(imageUrl, future);
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
+    /**
+     * 读取图片，命中缓存时从内存映射编码，否则下载并写入缓存
+     *
+     * @param imageUrl 图片的URL地址
+     * @return Base64编码
+     * @throws IOException 下载失败时抛出
+     */
+    private String load(String imageUrl) throws IOException {
+        String cacheKey = CACHE_KEY_PREFIX + imageUrl;
+        ByteBuffer cached = imageStore.map(cacheKey);
+        if (cached != null) {
+            ByteBuffer encoded = Base64.getEncoder().encode(cached);
+            return new String(encoded.array(), 0, encoded.limit(), StandardCharsets.ISO_8859_1);
+        }
+        byte[] image = download(imageUrl);
+        imageStore.put(cacheKey, image);
+        return Base64.getEncoder().encodeToString(image);
+    }
+
+    /**
+     * 下载图片，同一主机的并发数受限，失败时按间隔重试；资源不存在时不重试
+     *
+     * @param imageUrl 图片的URL地址
+     * @return 图片内容
+     * @throws IOException 重试后仍失败时抛出最后一次的异常
+     */
+    private byte[] download(String imageUrl) throws IOException {
+        Semaphore permits = hostPermits.computeIfAbsent(new URL(imageUrl).getHost(), h -> new Semaphore(maxPerHost));
+        IOException last = null;
+        for (int attempt = 0; attempt <= maxRetries; attempt++) {
+            try {
+                if (attempt > 0) {
+                    Thread.sleep(retryDelayMillis * attempt);
+                }
+                permits.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("下载人脸图片被中断: " + imageUrl);
+            }
+            try {
+                return VideoParserUtil.downloadImage(imageUrl, connectTimeoutMillis, readTimeoutMillis);
+            } catch (FileNotFoundException e) {
+                throw e;
+            } catch (IOException e) {
+                last = e;
+                LogUtils.logBusiness("下载人脸图片失败, 第{}次, 地址:{}, 原因:{}", attempt + 1, imageUrl, e.getMessage());
+            } finally {
+                permits.release();
+            }
+        }
+        throw last;
+    }
+}
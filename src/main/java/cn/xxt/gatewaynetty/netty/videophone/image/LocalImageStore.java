@@ -0,0 +1,448 @@
+package cn.xxt.gatewaynetty.netty.videophone.image;
+
+import cn.xxt.gatewaynetty.util.LogUtils;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: 人脸图片的本地磁盘缓存：文件按内容的 SHA-256 命名，相同内容只存一份，总大小超限时按 LRU 淘汰
+ * <p>
+ * 缓存键由调用方决定（如 file:文件标识符、url:图片地址），键到内容的索引只保存在内存中，启动时清空缓存目录。
+ * 源数据可能在同一个键下被替换，每个键写入后只在 image-cache.ttl-seconds 内有效，过期后按未命中处理并重新读取源数据；
+ * 每次写入前清理所有已过期的键，不再被引用的文件随之删除，过期内容不会一直占用磁盘直到被 LRU 淘汰。
+ * 读取时返回只读文件通道或只读内存映射，由调用方直接用 FileRegion 发送或按需编码，不把整张图片读入堆内存。
+ * @author: Havad
+ * @create: 2026-10-18 16:20
+ **/
+
+@Component
+public class LocalImageStore {
+    /**
+     * 缓存文件扩展名
+     */
+    private static final String BLOB_SUFFIX = ".img";
+    /**
+     * 写入中的临时文件扩展名
+     */
+    private static final String TEMP_SUFFIX = ".tmp";
+    /**
+     * 十六进制字符表
+     */
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * 是否启用本地缓存，关闭时所有查询都未命中
+     */
+    @Value("${image-cache.enabled:true}")
+    private boolean enabled;
+    /**
+     * 缓存目录
+     */
+    @Value("${image-cache.dir:./data/image-cache}")
+    private String dir;
+    /**
+     * 缓存文件总大小上限（字节）
+     */
+    @Value("${image-cache.max-bytes:1073741824}")
+    private long maxBytes;
+    /**
+     * 缓存键写入后的有效期（秒），不大于 0 时不过期
+     */
+    @Value("${image-cache.ttl-seconds:600}")
+    private long ttlSeconds;
+
+    /**
+     * 缓存目录
+     */
+    private File directory;
+    /**
+     * 缓存键到内容摘要的索引，按访问顺序排列，最久未访问的在最前
+     */
+    private final LinkedHashMap<String, String> index = new LinkedHashMap<>(16, 0.75f, true);
+    /**
+     * 缓存键的过期时间（毫秒时间戳），按写入顺序排列，有效期固定，因此最早过期的在最前
+     */
+    private final LinkedHashMap<String, Long> expiresAt = new LinkedHashMap<>();
+    /**
+     * 内容摘要到缓存文件的映射
+     */
+    private final Map<String, Blob> blobs = new HashMap<>();
+    /**
+     * 缓存文件总大小
+     */
+    private long totalBytes;
+
+    /**
+     * 命中次数
+     */
+    private long hitCount;
+    /**
+     * 未命中次数
+     */
+    private long missCount;
+    /**
+     * 淘汰的缓存文件数
+     */
+    private long evictedCount;
+
+    /**
+     * 缓存文件
+     */
+    private static final class Blob {
+        /**
+         * 文件
+         */
+        private final File file;
+        /**
+         * 文件长度
+         */
+        private final long length;
+        /**
+         * 引用该文件的缓存键数量
+         */
+        private int refs;
+
+        Blob(File file, long length) {
+            this.file = file;
+            this.length = length;
+        }
+    }
+
+    /**
+     * 创建缓存目录并清理上次运行遗留的文件
+     *
+     * @throws IOException 无法创建目录时抛出
+     */
+    @PostConstruct
+    public synchronized void open() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        directory = new File(dir);
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("无法创建图片缓存目录: " + directory.getAbsolutePath());
+        }
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                String name = file.getName();
+                if ((name.endsWith(BLOB_SUFFIX) || name.endsWith(TEMP_SUFFIX)) && !file.delete()) {
+                    LogUtils.logBusiness("删除遗留的图片缓存文件失败: {}", file.getAbsolutePath());
+                }
+            }
+        }
+        LogUtils.logBusiness("图片缓存已打开, 目录:{}, 上限:{}字节", directory.getAbsolutePath(), maxBytes);
+    }
+
+    /**
+     * 查询缓存文件
+     *
+     * @param key 缓存键
+     * @return 缓存文件，未命中时返回 null
+     */
+    public synchronized File get(String key) {
+        if (!enabled) {
+            return null;
+        }
+        String digest = index.get(key);
+        Blob blob = digest == null ? null : blobs.get(digest);
+        if (blob == null || isExpired(key) || !blob.file.isFile()) {
+            if (digest != null) {
+                remove(key);
+            }
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        return blob.file;
+    }
+
+    /**
+     * 打开缓存文件的只读通道
+     * <p>
+     * 查找和打开都在锁内完成，淘汰只能发生在打开之前或之后；打开之后文件即使被删除，通道仍能读到完整内容。
+     *
+     * @param key 缓存键
+     * @return 只读通道，由调用方关闭；未命中时返回 null
+     */
+    public synchronized FileChannel openChannel(String key) {
+        File file = get(key);
+        if (file == null) {
+            return null;
+        }
+        try {
+            return FileChannel.open(file.toPath(), StandardOpenOption.READ);
+        } catch (IOException e) {
+            LogUtils.logError("打开图片缓存文件失败: {}", e, file.getAbsolutePath());
+            return null;
+        }
+    }
+
+    /**
+     * 以只读内存映射的方式读取缓存内容
+     *
+     * @param key 缓存键
+     * @return 只读映射，未命中时返回 null
+     */
+    public ByteBuffer map(String key) {
+        File file = get(key);
+        if (file == null) {
+            return null;
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } catch (IOException e) {
+            // 文件刚被淘汰时按未命中处理
+            LogUtils.logError("映射图片缓存文件失败: {}", e, file.getAbsolutePath());
+            return null;
+        }
+    }
+
+    /**
+     * 写入缓存，内容已存在时只增加索引
+     *
+     * @param key  缓存键
+     * @param data 内容
+     * @return 缓存文件，未启用、内容超过上限或写入失败时返回 null
+     */
+    public File put(String key, byte[] data) {
+        if (!enabled || data.length > maxBytes) {
+            return null;
+        }
+        String digest = sha256(data);
+        synchronized (this) {
+            // 先清理过期键再查找内容，避免刚找到的文件被清理删除
+            purgeExpired();
+            Blob blob = blobs.get(digest);
+            if (blob != null && blob.file.isFile()) {
+                link(key, digest);
+                return blob.file;
+            }
+        }
+
+        // 写文件不持有锁，先写临时文件再原子改名，读取方不会看到写了一半的文件
+        File target = new File(directory, digest + BLOB_SUFFIX);
+        Path temp = null;
+        try {
+            temp = Files.createTempFile(directory.toPath(), digest, TEMP_SUFFIX);
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ByteBuffer buffer = ByteBuffer.wrap(data);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+            Files.move(temp, target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            LogUtils.logError("写入图片缓存失败: {}", e, key);
+            deleteQuietly(temp);
+            return null;
+        }
+
+        synchronized (this) {
+            if (!blobs.containsKey(digest)) {
+                blobs.put(digest, new Blob(target, data.length));
+                totalBytes += data.length;
+            }
+            link(key, digest);
+            evict();
+        }
+        return target;
+    }
+
+    /**
+     * 建立缓存键到内容的索引，替换旧的索引
+     *
+     * @param key    缓存键
+     * @param digest 内容摘要
+     */
+    private void link(String key, String digest) {
+        if (ttlSeconds > 0) {
+            // 先删除再放入，使刷新后的键移到末尾，保持按过期时间排序
+            expiresAt.remove(key);
+            expiresAt.put(key, System.currentTimeMillis() + ttlSeconds * 1000);
+        }
+        String previous = index.put(key, digest);
+        if (digest.equals(previous)) {
+            return;
+        }
+        blobs.get(digest).refs++;
+        if (previous != null) {
+            release(previous);
+        }
+    }
+
+    /**
+     * 缓存键是否已过期
+     *
+     * @param key 缓存键
+     * @return 超过有效期时返回 true
+     */
+    private boolean isExpired(String key) {
+        Long deadline = expiresAt.get(key);
+        return deadline != null && System.currentTimeMillis() >= deadline;
+    }
+
+    /**
+     * 从最早过期的键开始删除所有已过期的缓存键，遇到未过期的键即停止
+     */
+    private void purgeExpired() {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<String, Long>> it = expiresAt.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<String, Long> entry = it.next();
+            if (entry.getValue() > now) {
+                return;
+            }
+            it.remove();
+            String digest = index.remove(entry.getKey());
+            if (digest != null) {
+                release(digest);
+            }
+        }
+    }
+
+    /**
+     * 删除一个缓存键
+     *
+     * @param key 缓存键
+     */
+    private void remove(String key) {
+        expiresAt.remove(key);
+        String digest = index.remove(key);
+        if (digest != null) {
+            release(digest);
+        }
+    }
+
+    /**
+     * 减少内容的引用，不再被引用时删除文件
+     *
+     * @param digest 内容摘要
+     */
+    private void release(String digest) {
+        Blob blob = blobs.get(digest);
+        if (blob == null || --blob.refs > 0) {
+            return;
+        }
+        blobs.remove(digest);
+        totalBytes -= blob.length;
+        evictedCount++;
+        // 正在发送的连接通过 openChannel 持有已打开的通道，删除只移除目录项，不影响其读完（POSIX 语义）
+        if (blob.file.exists() && !blob.file.delete()) {
+            LogUtils.logBusiness("删除图片缓存文件失败: {}", blob.file.getAbsolutePath());
+        }
+    }
+
+    /**
+     * 总大小超限时按最久未访问的顺序淘汰缓存键
+     */
+    private void evict() {
+        Iterator<Map.Entry<String, String>> it = index.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, String> entry = it.next();
+            String digest = entry.getValue();
+            expiresAt.remove(entry.getKey());
+            it.remove();
+            release(digest);
+        }
+    }
+
+    /**
+     * 计算内容的 SHA-256 摘要
+     *
+     * @param data 内容
+     * @return 十六进制摘要
+     */
+    @SuppressWarnings("checkstyle:MagicNumber")
+    private static String sha256(byte[] data) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(data);
+            char[] chars = new char[hash.length * 2];
+            for (int i = 0; i < hash.length; i++) {
+                chars[i * 2] = HEX[(hash[i] >> 4) & 0x0F];
+                chars[i * 2 + 1] = HEX[hash[i] & 0x0F];
+            }
+            return new String(chars);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256不可用", e);
+        }
+    }
+
+    /**
+     * 删除临时文件，失败时忽略
+     *
+     * @param path 文件路径，可为 null
+     */
+    private static void deleteQuietly(Path path) {
+        if (path == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            // 启动时会清理遗留的临时文件
+        }
+    }
+
+    /**
+     * 是否启用
+     *
+     * @return 启用时返回 true
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 缓存文件总大小
+     *
+     * @return 字节数
+     */
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    /**
+     * 命中次数
+     *
+     * @return 命中次数
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * 未命中次数
+     *
+     * @return 未命中次数
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * 淘汰的缓存文件数
+     *
+     * @return 淘汰的缓存文件数
+     */
+    public synchronized long getEvictedCount() {
+        return evictedCount;
+    }
+}
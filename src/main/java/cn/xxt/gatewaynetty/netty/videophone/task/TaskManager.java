@@ -1,20 +1,52 @@
 package cn.xxt.gatewaynetty.netty.videophone.task;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import cn.xxt.gatewaynetty.netty.config.RedisConfig;
 import cn.xxt.gatewaynetty.util.LogUtils;
+import cn.xxt.gatewaynetty.util.RedisScript;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.Timeout;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 import redis.clients.jedis.JedisPooled;
+import redis.clients.jedis.params.ScanParams;
+import redis.clients.jedis.resps.ScanResult;
+import redis.clients.jedis.resps.Tuple;
 
-import java.util.Set;
+import javax.annotation.PostConstruct;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiPredicate;
 
 /**
  * @program: gateway-cn.xxt.gatewaynetty.netty
- * @description:
+ * @description: 人脸下发任务的 Redis 存储
+ * <p>
+ * 任务保存为哈希 task:{taskId}（deviceKey、status、failureReason、timestamp、personList），
+ * 状态变更只改对应字段；deviceKey 字段即任务到设备的索引，完成任务时直接定位设备的待处理集合，
+ * 不再扫描全部设备。取任务、超时判定、完成任务都由 Lua 脚本在一次往返内完成。
+ * <p>
+ * 已发送任务的超时截止时间保存在有序集合 task_deadlines 中，内存中用时间轮计时，收到回执时取消；
+ * 到期的任务每秒批量删除一次，重启后从有序集合恢复时间轮。
+ * <p>
+ * 设备心跳由 {@link #processHeartbeat} 一次往返处理；刚确认过没有待处理任务的设备在近端缓存有效期内不访问 Redis，
+ * 本实例写入、取出、结束任务时清除对应设备的缓存，设备离线时由 {@link #removeDevice} 移除。
+ * <p>
+ * 脚本内按前缀拼接任务和设备的键，只适用于单实例 Redis。
  * @author: Havad
  * @create: 2025-02-17 17:03
  **/
@@ -27,9 +59,31 @@ public class TaskManager {
     private final JedisPooled jedis = RedisConfig.getJedisPool();
     private final ObjectMapper objectMapper = new ObjectMapper();
     /**
-     * 定时任务执行器服务，使用单线程的线程池。
+     * 定时任务执行器服务，使用单线程的线程池，用于批量处理到期的任务。
      */
     private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(1);
+    /**
+     * 任务超时时间轮，每个已发送的任务一个超时项，收到回执时取消
+     */
+    private final HashedWheelTimer timeoutWheel =
+            new HashedWheelTimer(new DefaultThreadFactory("task-timeout"), 1, TimeUnit.SECONDS, 256);
+    /**
+     * 已发送任务的超时项
+     */
+    private final ConcurrentHashMap<String, Timeout> timeouts = new ConcurrentHashMap<>();
+    /**
+     * 时间轮判定到期、等待批量处理的任务
+     */
+    private final Queue<String> expired = new ConcurrentLinkedQueue<>();
+    /**
+     * 设备任务状态的近端缓存，没有待处理任务的设备心跳时不访问 Redis
+     */
+    private final ConcurrentHashMap<String, DeviceTaskState> nearCache = new ConcurrentHashMap<>();
+    /**
+     * 近端缓存的有效期（毫秒），限制其他实例写入任务时本地缓存过期的时间；0 表示不使用近端缓存
+     */
+    @Value("${task.near-cache-ttl-millis:30000}")
+    private long nearCacheTtlMillis;
 
     /**
      * 任务超时时间，以秒为单位。
@@ -44,9 +98,174 @@ public class TaskManager {
      */
     private static final String TASK_KEY_PREFIX = "task:";
     /**
-     * 上次发送任务的关键字前缀，用于存储设备键与上次发送的任务 ID 之间的映射关系
-     */// 存储 deviceKey -> 上次发送的 taskId 的映射
+     * 上次发送任务的关键字前缀，值为设备上次发送的任务 ID
+     */
     private static final String LAST_SENT_TASK_KEY_PREFIX = "last_sent_task:";
+    /**
+     * 已发送任务的超时截止时间，有序集合，成员为 taskId，分值为截止时间（毫秒）
+     */
+    private static final String DEADLINES_KEY = "task_deadlines";
+    /**
+     * 迁移旧格式任务时每次 SCAN 的数量
+     */
+    private static final int MIGRATE_SCAN_COUNT = 500;
+    /**
+     * 每次处理的到期任务数，也是启动时每次读取截止时间的数量
+     */
+    private static final int SWEEP_BATCH_SIZE = 500;
+    /**
+     * 处理到期任务的间隔（毫秒）
+     */
+    private static final long SWEEP_INTERVAL_MILLIS = 1000;
+
+    /**
+     * 任务哈希字段：设备号
+     */
+    private static final String FIELD_DEVICE_KEY = "deviceKey";
+    /**
+     * 任务哈希字段：任务状态
+     */
+    private static final String FIELD_STATUS = "status";
+    /**
+     * 任务哈希字段：失败原因
+     */
+    private static final String FIELD_FAILURE_REASON = "failureReason";
+    /**
+     * 任务哈希字段：时间戳
+     */
+    private static final String FIELD_TIMESTAMP = "timestamp";
+    /**
+     * 任务哈希字段：人员列表 JSON，写入后不再修改
+     */
+    private static final String FIELD_PERSON_LIST = "personList";
+
+    /**
+     * 写入任务并加入设备的待处理集合。
+     * KEYS: 任务键, 待处理集合；ARGV: taskId, deviceKey, personList, timestamp
+     */
+    private static final RedisScript ADD_SCRIPT = new RedisScript(
+            "redis.call('DEL', KEYS[1])\n"
+                    + "redis.call('HSET', KEYS[1], 'deviceKey', ARGV[2], 'status', 'PENDING',"
+                    + " 'timestamp', ARGV[4], 'personList', ARGV[3])\n"
+                    + "redis.call('SADD', KEYS[2], ARGV[1])\n"
+                    + "return 1");
+
+    /**
+     * 弹出设备的下一个任务，标记为已发送，记录为设备上次发送的任务并写入超时截止时间，
+     * 返回 taskId 和任务的全部字段；集合中任务数据已不存在的 ID 直接丢弃。
+     * KEYS: 待处理集合, 上次发送键, 截止时间集合；ARGV: 任务键前缀, 当前时间, 截止时间
+     */
+    private static final RedisScript POP_SCRIPT = new RedisScript(
+            "local id = redis.call('SPOP', KEYS[1])\n"
+                    + "while id do\n"
+                    + "  local key = ARGV[1] .. id\n"
+                    + "  if redis.call('EXISTS', key) == 1 then\n"
+                    + "    redis.call('HSET', key, 'status', 'SENT', 'timestamp', ARGV[2])\n"
+                    + "    redis.call('SET', KEYS[2], id)\n"
+                    + "    redis.call('ZADD', KEYS[3], ARGV[3], id)\n"
+                    + "    local fields = redis.call('HGETALL', key)\n"
+                    + "    table.insert(fields, 1, id)\n"
+                    + "    return fields\n"
+                    + "  end\n"
+                    + "  id = redis.call('SPOP', KEYS[1])\n"
+                    + "end\n"
+                    + "return false");
+
+    /**
+     * 处理一次心跳：有回执时结束设备上次发送的任务，然后按 POP_SCRIPT 的方式弹出下一个任务。
+     * 返回 [结束的 taskId, 当前上次发送的 taskId, 弹出的 taskId, 任务字段...]，没有的值为空串，未弹出任务时只有前两项。
+     * KEYS: 上次发送键, 待处理集合, 截止时间集合；ARGV: 任务键前缀, 是否有回执(1/0), 当前时间, 截止时间
+     */
+    private static final RedisScript HEARTBEAT_SCRIPT = new RedisScript(
+            "local completed = ''\n"
+                    + "if ARGV[2] == '1' then\n"
+                    + "  local last = redis.call('GET', KEYS[1])\n"
+                    + "  if last then\n"
+                    + "    redis.call('DEL', KEYS[1], ARGV[1] .. last)\n"
+                    + "    redis.call('ZREM', KEYS[3], last)\n"
+                    + "    redis.call('SREM', KEYS[2], last)\n"
+                    + "    completed = last\n"
+                    + "  end\n"
+                    + "end\n"
+                    + "local id = redis.call('SPOP', KEYS[2])\n"
+                    + "while id do\n"
+                    + "  local key = ARGV[1] .. id\n"
+                    + "  if redis.call('EXISTS', key) == 1 then\n"
+                    + "    redis.call('HSET', key, 'status', 'SENT', 'timestamp', ARGV[3])\n"
+                    + "    redis.call('SET', KEYS[1], id)\n"
+                    + "    redis.call('ZADD', KEYS[3], ARGV[4], id)\n"
+                    + "    local fields = redis.call('HGETALL', key)\n"
+                    + "    table.insert(fields, 1, id)\n"
+                    + "    table.insert(fields, 1, id)\n"
+                    + "    table.insert(fields, 1, completed)\n"
+                    + "    return fields\n"
+                    + "  end\n"
+                    + "  id = redis.call('SPOP', KEYS[2])\n"
+                    + "end\n"
+                    + "return {completed, redis.call('GET', KEYS[1]) or ''}");
+
+    /**
+     * 读取设备上次发送的任务，返回 taskId 和任务的全部字段。
+     * KEYS: 上次发送键；ARGV: 任务键前缀
+     */
+    private static final RedisScript LAST_SENT_SCRIPT = new RedisScript(
+            "local id = redis.call('GET', KEYS[1])\n"
+                    + "if not id then return false end\n"
+                    + "local fields = redis.call('HGETALL', ARGV[1] .. id)\n"
+                    + "if #fields == 0 then return false end\n"
+                    + "table.insert(fields, 1, id)\n"
+                    + "return fields");
+
+    /**
+     * 更新已存在任务的状态，任务不存在时不创建。
+     * KEYS: 任务键；ARGV: status, failureReason（可为空串）
+     */
+    private static final RedisScript STATUS_SCRIPT = new RedisScript(
+            "if redis.call('EXISTS', KEYS[1]) == 0 then return 0 end\n"
+                    + "redis.call('HSET', KEYS[1], 'status', ARGV[1])\n"
+                    + "if ARGV[2] ~= '' then redis.call('HSET', KEYS[1], 'failureReason', ARGV[2]) end\n"
+                    + "return 1");
+
+    /**
+     * 结束任务：按任务中的 deviceKey 从设备的待处理集合移除，清除指向它的上次发送记录和超时截止时间，删除任务数据；
+     * 返回 deviceKey，任务不存在时返回空。
+     * KEYS: 任务键, 截止时间集合；ARGV: taskId, 上次发送键前缀, 待处理集合前缀
+     */
+    private static final RedisScript COMPLETE_SCRIPT = new RedisScript(
+            "redis.call('ZREM', KEYS[2], ARGV[1])\n"
+                    + "local device = redis.call('HGET', KEYS[1], 'deviceKey')\n"
+                    + "if device then\n"
+                    + "  local lastSent = ARGV[2] .. device\n"
+                    + "  if redis.call('GET', lastSent) == ARGV[1] then redis.call('DEL', lastSent) end\n"
+                    + "  redis.call('SREM', ARGV[3] .. device, ARGV[1])\n"
+                    + "end\n"
+                    + "redis.call('DEL', KEYS[1])\n"
+                    + "return device");
+
+    /**
+     * 批量处理到期任务：截止时间已到且仍为已发送的任务被删除，指向它的上次发送记录一并清除；
+     * 截止时间未到（已被重新写入）的任务保留。返回被删除的 [taskId, deviceKey, ...]。
+     * KEYS: 截止时间集合；ARGV: 当前时间, 任务键前缀, 上次发送键前缀, taskId...
+     */
+    private static final RedisScript SWEEP_SCRIPT = new RedisScript(
+            "local removed = {}\n"
+                    + "for i = 4, #ARGV do\n"
+                    + "  local id = ARGV[i]\n"
+                    + "  local score = redis.call('ZSCORE', KEYS[1], id)\n"
+                    + "  if score and tonumber(score) <= tonumber(ARGV[1]) then\n"
+                    + "    redis.call('ZREM', KEYS[1], id)\n"
+                    + "    local key = ARGV[2] .. id\n"
+                    + "    local device = redis.call('HGET', key, 'deviceKey')\n"
+                    + "    if device and redis.call('HGET', key, 'status') == 'SENT' then\n"
+                    + "      local lastSent = ARGV[3] .. device\n"
+                    + "      if redis.call('GET', lastSent) == id then redis.call('DEL', lastSent) end\n"
+                    + "      redis.call('DEL', key)\n"
+                    + "      table.insert(removed, id)\n"
+                    + "      table.insert(removed, device)\n"
+                    + "    end\n"
+                    + "  end\n"
+                    + "end\n"
+                    + "return removed");
 
     private String getPendingTasksKey(String deviceKey) {
         return PENDING_TASKS_KEY_PREFIX + deviceKey;
@@ -60,6 +279,187 @@ public class TaskManager {
         return LAST_SENT_TASK_KEY_PREFIX + deviceKey;
     }
 
+    /**
+     * 迁移旧格式数据，从 Redis 恢复已发送任务的超时，并启动到期任务的批量处理
+     */
+    @PostConstruct
+    public void init() {
+        migrateLegacyTasks();
+        restoreTimeouts();
+        scheduler.scheduleWithFixedDelay(this::sweepExpired, SWEEP_INTERVAL_MILLIS, SWEEP_INTERVAL_MILLIS,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * 从截止时间集合恢复时间轮中的超时项，重启期间已到期的任务在下一次批量处理时删除
+     */
+    private void restoreTimeouts() {
+        try {
+            long now = System.currentTimeMillis();
+            int restored = 0;
+            for (long start = 0; ; start += SWEEP_BATCH_SIZE) {
+                List<Tuple> page = jedis.zrangeWithScores(DEADLINES_KEY, start, start + SWEEP_BATCH_SIZE - 1);
+                for (Tuple tuple : page) {
+                    scheduleTimeout(tuple.getElement(), (long) tuple.getScore() - now);
+                    restored++;
+                }
+                if (page.size() < SWEEP_BATCH_SIZE) {
+                    break;
+                }
+            }
+            if (restored > 0) {
+                LogUtils.logBusiness("已恢复{}个已发送任务的超时", restored);
+            }
+        } catch (RuntimeException e) {
+            LogUtils.logError("恢复任务超时失败", e);
+        }
+    }
+
+    /**
+     * 在时间轮中登记任务超时，到期后放入待处理队列
+     *
+     * @param taskId      任务ID
+     * @param delayMillis 距截止时间的毫秒数，小于等于 0 时立即到期
+     */
+    private void scheduleTimeout(String taskId, long delayMillis) {
+        Timeout timeout = timeoutWheel.newTimeout(t -> {
+            if (timeouts.remove(taskId, t)) {
+                expired.add(taskId);
+            }
+        }, Math.max(0, delayMillis), TimeUnit.MILLISECONDS);
+        Timeout previous = timeouts.put(taskId, timeout);
+        if (previous != null) {
+            previous.cancel();
+        }
+    }
+
+    /**
+     * 取消任务的超时
+     *
+     * @param taskId 任务ID
+     */
+    private void cancelTimeout(String taskId) {
+        Timeout timeout = timeouts.remove(taskId);
+        if (timeout != null) {
+            timeout.cancel();
+        }
+    }
+
+    /**
+     * 批量删除到期的任务，每批一次往返；执行失败的批次放回队列，下次清理时重试
+     */
+    private void sweepExpired() {
+        List<String> args = new ArrayList<>(SWEEP_BATCH_SIZE + 3);
+        while (!expired.isEmpty()) {
+            args.clear();
+            args.add(String.valueOf(System.currentTimeMillis()));
+            args.add(TASK_KEY_PREFIX);
+            args.add(LAST_SENT_TASK_KEY_PREFIX);
+            String taskId;
+            while (args.size() < SWEEP_BATCH_SIZE + 3 && (taskId = expired.poll()) != null) {
+                args.add(taskId);
+            }
+            Object removed;
+            try {
+                removed = SWEEP_SCRIPT.eval(jedis, Collections.singletonList(DEADLINES_KEY), args);
+            } catch (RuntimeException e) {
+                expired.addAll(args.subList(3, args.size()));
+                LogUtils.logError("处理到期任务失败, {}个任务等待下次重试", e, args.size() - 3);
+                return;
+            }
+            if (removed instanceof List) {
+                List<?> values = (List<?>) removed;
+                for (int i = 0; i + 1 < values.size(); i += 2) {
+                    invalidate((String) values.get(i + 1));
+                    LogUtils.logBusiness("Task {} failed: {}", values.get(i), "Task timed out");
+                }
+            }
+        }
+    }
+
+    /**
+     * 将旧版本写入的 JSON 字符串任务转换为哈希，上次发送记录转换为任务 ID。
+     * 使用 SCAN 遍历，不阻塞 Redis；转换完成后再次启动时不会有需要处理的键。
+     */
+    private void migrateLegacyTasks() {
+        try {
+            int tasks = migrate(TASK_KEY_PREFIX + "*", this::migrateTask);
+            int lastSent = migrate(LAST_SENT_TASK_KEY_PREFIX + "*", this::migrateLastSent);
+            if (tasks > 0 || lastSent > 0) {
+                LogUtils.logBusiness("已转换旧格式任务{}个, 上次发送记录{}个", tasks, lastSent);
+            }
+        } catch (RuntimeException e) {
+            LogUtils.logError("转换旧格式任务失败", e);
+        }
+    }
+
+    /**
+     * 遍历匹配的字符串键并转换
+     *
+     * @param pattern   键的匹配模式
+     * @param converter 转换方法，返回是否已转换
+     * @return 转换的键数量
+     */
+    private int migrate(String pattern, BiPredicate<String, String> converter) {
+        int converted = 0;
+        ScanParams params = new ScanParams().match(pattern).count(MIGRATE_SCAN_COUNT);
+        String cursor = ScanParams.SCAN_POINTER_START;
+        do {
+            ScanResult<String> result = jedis.scan(cursor, params);
+            for (String key : result.getResult()) {
+                if ("string".equals(jedis.type(key))) {
+                    String value = jedis.get(key);
+                    if (value != null && converter.test(key, value)) {
+                        converted++;
+                    }
+                }
+            }
+            cursor = result.getCursor();
+        } while (!ScanParams.SCAN_POINTER_START.equals(cursor));
+        return converted;
+    }
+
+    /**
+     * 将 JSON 字符串任务转换为哈希
+     *
+     * @param key  任务键
+     * @param json 任务 JSON
+     * @return 是否已转换
+     */
+    private boolean migrateTask(String key, String json) {
+        try {
+            Task task = objectMapper.readValue(json, Task.class);
+            Map<String, String> fields = toFields(task);
+            jedis.del(key);
+            jedis.hset(key, fields);
+            return true;
+        } catch (JsonProcessingException e) {
+            LogUtils.logError("无法解析旧格式任务: {}", e, key);
+            return false;
+        }
+    }
+
+    /**
+     * 将 JSON 格式的上次发送记录转换为任务 ID
+     *
+     * @param key  上次发送键
+     * @param json 旧格式为任务 JSON，新格式为任务 ID
+     * @return 是否已转换
+     */
+    private boolean migrateLastSent(String key, String json) {
+        if (!json.startsWith("{")) {
+            return false;
+        }
+        try {
+            jedis.set(key, objectMapper.readValue(json, Task.class).getTaskId());
+            return true;
+        } catch (JsonProcessingException e) {
+            LogUtils.logError("无法解析旧格式上次发送记录: {}", e, key);
+            jedis.del(key);
+            return false;
+        }
+    }
+
     /**
      * 添加来自 Thingsboard 的任务
      *
@@ -68,10 +468,10 @@ public class TaskManager {
      */
     public void addTask(String deviceKey, Task task) {
         try {
-            String taskJson = objectMapper.writeValueAsString(task);
-            jedis.set(getTaskKey(task.getTaskId()), taskJson);
-            // 使用 sadd 添加到 Set
-            jedis.sadd(getPendingTasksKey(deviceKey), task.getTaskId());
+            String personList = objectMapper.writeValueAsString(task.getPersonList());
+            ADD_SCRIPT.eval(jedis, new String[]{getTaskKey(task.getTaskId()), getPendingTasksKey(deviceKey)},
+                    task.getTaskId(), deviceKey, personList, String.valueOf(System.currentTimeMillis()));
+            invalidate(deviceKey);
 
             LogUtils.logBusiness("向设备{}的redis中写入了任务{}", deviceKey, task.getTaskId());
         } catch (JsonProcessingException e) {
@@ -81,56 +481,105 @@ public class TaskManager {
 
 
     /**
-     * 获取下一个待处理任务。
+     * 获取下一个待处理任务，取出的同时标记为已发送并记录为设备上次发送的任务。
      *
      * @param deviceKey 设备标识
      * @return 下一个待处理任务对象，如果不存在则返回null
      */
-    @SuppressWarnings({"checkstyle:ReturnCount", "checkstyle:MagicNumber"})
     public Task getNextTaskToProcess(String deviceKey) {
-        // 从 Set 中随机弹出一个 task ID(由于每个设备只有一个在处理的任务，所以随机弹出和按顺序弹出没有区别)
-        String taskId = jedis.spop(getPendingTasksKey(deviceKey));
-        if (taskId != null) {
-            try {
-                LogUtils.logBusiness("取出task:{}", taskId);
-                String taskJson = jedis.get(getTaskKey(taskId));
-                if (taskJson != null) {
-                    Task task = objectMapper.readValue(taskJson, Task.class);
-                    task.setStatus(Task.TaskStatus.SENT);
-                    task.setTimestamp(System.currentTimeMillis());
-                    String sentTaskJson = objectMapper.writeValueAsString(task);
-                    jedis.set(getLastSentTaskKey(deviceKey), sentTaskJson);
-
-
-                    scheduler.schedule(() -> {
-                        String lastSentTaskJson = jedis.get(getLastSentTaskKey(deviceKey));
-                        if (lastSentTaskJson != null) {
-                            try {
-                                Task lastSentTask = objectMapper.readValue(lastSentTaskJson, Task.class);
-                                // Check if still SENT and timed out
-                                if (lastSentTask.getStatus() == Task.TaskStatus.SENT
-                                        && System.currentTimeMillis() - lastSentTask.getTimestamp()
-                                        > TASK_TIMEOUT_SECONDS * 1000) {
-                                    markTaskFailed(lastSentTask.getTaskId());
-                                }
-                            } catch (JsonProcessingException e) {
-                                LogUtils.logError("Error deserializing last sent task", e);
-                            }
-                        }
-                    }, TASK_TIMEOUT_SECONDS, TimeUnit.SECONDS);
-                    return task;
-                } else {
-                    LogUtils.logError("Task data not found for ID: {}", new Throwable(), taskId);
-                    jedis.lrem(getPendingTasksKey(deviceKey), 0, taskId);
-                    return null;
-                }
-            } catch (JsonProcessingException e) {
-                LogUtils.logError("Error deserializing task", e);
-                removeTask(taskId);
-                return null;
+        long now = System.currentTimeMillis();
+        long deadline = now + TimeUnit.SECONDS.toMillis(TASK_TIMEOUT_SECONDS);
+        Object reply = POP_SCRIPT.eval(jedis,
+                new String[]{getPendingTasksKey(deviceKey), getLastSentTaskKey(deviceKey), DEADLINES_KEY},
+                TASK_KEY_PREFIX, String.valueOf(now), String.valueOf(deadline));
+        Task task = fromReply(reply);
+        if (task == null) {
+            return null;
+        }
+        LogUtils.logBusiness("取出task:{}", task.getTaskId());
+        invalidate(deviceKey);
+        scheduleTimeout(task.getTaskId(), deadline - now);
+        return task;
+    }
+
+    /**
+     * 处理一次设备心跳：有回执时结束上次发送的任务，再取出下一个任务并标记为已发送，一次 Redis 往返完成。
+     * 近端缓存表明设备没有待处理任务且不需要结束任务时，不访问 Redis。
+     *
+     * @param deviceKey  设备标识
+     * @param hasReceipt 心跳中是否带有上条任务的回执
+     * @return 处理结果
+     */
+    public HeartbeatResult processHeartbeat(String deviceKey, boolean hasReceipt) {
+        long now = System.currentTimeMillis();
+        DeviceTaskState state = nearCache.get(deviceKey);
+        if (state != null && state.isIdle(now, hasReceipt)) {
+            return HeartbeatResult.EMPTY;
+        }
+
+        long deadline = now + TimeUnit.SECONDS.toMillis(TASK_TIMEOUT_SECONDS);
+        // 查询前放入本设备的占位，查询期间该设备的缓存被清除时占位随之移除，查询结果不再写入缓存；
+        // 其他设备的写入和清除不受影响
+        DeviceTaskState loading = null;
+        if (nearCacheTtlMillis > 0) {
+            loading = new DeviceTaskState(null, 0);
+            nearCache.put(deviceKey, loading);
+        }
+        List<?> reply;
+        try {
+            reply = (List<?>) HEARTBEAT_SCRIPT.eval(jedis,
+                    new String[]{getLastSentTaskKey(deviceKey), getPendingTasksKey(deviceKey), DEADLINES_KEY},
+                    TASK_KEY_PREFIX, hasReceipt ? "1" : "0", String.valueOf(now), String.valueOf(deadline));
+        } catch (RuntimeException e) {
+            if (loading != null) {
+                nearCache.remove(deviceKey, loading);
             }
+            throw e;
+        }
+        String completed = emptyToNull((String) reply.get(0));
+        String lastSent = emptyToNull((String) reply.get(1));
+        if (completed != null) {
+            cancelTimeout(completed);
+            LogUtils.logBusiness("Task {} completed successfully", completed);
         }
-        return null;
+
+        Task next = reply.size() > 2 ? fromReply(reply.subList(2, reply.size())) : null;
+        if (next != null) {
+            scheduleTimeout(next.getTaskId(), deadline - now);
+            LogUtils.logBusiness("取出task:{}", next.getTaskId());
+            invalidate(deviceKey);
+        } else if (loading != null) {
+            nearCache.replace(deviceKey, loading, new DeviceTaskState(lastSent, now + nearCacheTtlMillis));
+        }
+        return new HeartbeatResult(completed, next);
+    }
+
+    /**
+     * 清除设备的近端缓存
+     *
+     * @param deviceKey 设备标识
+     */
+    private void invalidate(String deviceKey) {
+        nearCache.remove(deviceKey);
+    }
+
+    /**
+     * 设备离线时移除其近端缓存，缓存不随离线设备增长；进行中的心跳的占位同时被移除，不会再把缓存写回
+     *
+     * @param deviceKey 设备标识
+     */
+    public void removeDevice(String deviceKey) {
+        invalidate(deviceKey);
+    }
+
+    /**
+     * 空串转换为 null
+     *
+     * @param value 字符串
+     * @return 空串时返回 null
+     */
+    private static String emptyToNull(String value) {
+        return value == null || value.isEmpty() ? null : value;
     }
 
     /**
@@ -140,17 +589,12 @@ public class TaskManager {
      * @return 最后一次发送的任务，如果不存在或解析失败则返回null
      */
     public Task getLastSentTask(String deviceKey) {
-        String taskJson = jedis.get(getLastSentTaskKey(deviceKey));
-        if (taskJson != null) {
-            try {
-                LogUtils.logBusiness("获取上一次发送的任务{}", deviceKey);
-                return objectMapper.readValue(taskJson, Task.class);
-            } catch (JsonProcessingException e) {
-                LogUtils.logError("Error deserializing last sent task", e);
-                return null;
-            }
+        Object reply = LAST_SENT_SCRIPT.eval(jedis, new String[]{getLastSentTaskKey(deviceKey)}, TASK_KEY_PREFIX);
+        Task task = fromReply(reply);
+        if (task != null) {
+            LogUtils.logBusiness("获取上一次发送的任务{}", deviceKey);
         }
-        return null;
+        return task;
     }
 
 
@@ -170,8 +614,6 @@ public class TaskManager {
      * @param taskId 任务标识符
      */
     public void markTaskSuccess(String taskId) {
-        updateTaskStatus(taskId, Task.TaskStatus.SUCCESS, null);
-        removeLastSentTask(taskId);
         removeTask(taskId);
         LogUtils.logBusiness("Task {} completed successfully", taskId);
     }
@@ -180,69 +622,152 @@ public class TaskManager {
      * 标记任务失败
      *
      * @param taskId 任务ID
-     * @see #updateTaskStatus(String, Task.TaskStatus, String)
      * @see #removeTask(String)
      */
     public void markTaskFailed(String taskId) {
-        updateTaskStatus(taskId, Task.TaskStatus.FAILED, "Task timed out");
-        removeLastSentTask(taskId);
         removeTask(taskId);
         LogUtils.logBusiness("Task {} failed: {}", taskId, "Task timed out");
     }
 
-    private void removeLastSentTask(String taskId) {
-        // 遍历所有设备，如果匹配给定的taskId则移除最后发送的任务
-        String taskJson = jedis.get(getTaskKey(taskId));
-        if (taskJson != null) {
-            try {
-                Task task = objectMapper.readValue(taskJson, Task.class);
-                String deviceKey = task.getDeviceKey(); // 直接从 Task 对象获取 deviceKey
-                jedis.del(getLastSentTaskKey(deviceKey)); // 删除 last_sent_task:{deviceKey}
-                LogUtils.logBusiness("移除了设备{}的上一次发送的任务{}", deviceKey, taskId);
-            } catch (JsonProcessingException e) {
-                LogUtils.logError("Error deserializing task in removeLastSentTask", e);
-            }
-        }
-    }
-
-
     /**
-     * 移除指定任务
+     * 移除指定任务，耗时与设备数量无关
      *
      * @param taskId 要移除的任务ID
      */
     private void removeTask(String taskId) {
         LogUtils.logBusiness("移除任务{}", taskId);
-        // 删除任务详情
-        jedis.del(getTaskKey(taskId));
-
-        // 从 Set 中移除 (只需要操作一次)
-        Set<String> keys = jedis.keys(PENDING_TASKS_KEY_PREFIX + "*");
-        for (String key : keys) {
-            jedis.srem(key, taskId);
+        cancelTimeout(taskId);
+        Object device = COMPLETE_SCRIPT.eval(jedis, new String[]{getTaskKey(taskId), DEADLINES_KEY},
+                taskId, LAST_SENT_TASK_KEY_PREFIX, PENDING_TASKS_KEY_PREFIX);
+        if (device instanceof String) {
+            invalidate((String) device);
         }
     }
 
     /**
-     * 更新任务状态。
+     * 更新任务状态，只修改对应字段。
      *
      * @param taskId        任务ID
      * @param status        要更新的任务状态
      * @param failureReason 失败原因，若任务状态为失败，此参数为失败原因；否则可以为空
      */
     private void updateTaskStatus(String taskId, Task.TaskStatus status, String failureReason) {
-        String taskJson = jedis.get(getTaskKey(taskId));
-        if (taskJson != null) {
-            try {
-                Task task = objectMapper.readValue(taskJson, Task.class);
-                task.setStatus(status);
-                if (failureReason != null) {
-                    task.setFailureReason(failureReason);
+        STATUS_SCRIPT.eval(jedis, new String[]{getTaskKey(taskId)},
+                status.name(), failureReason == null ? "" : failureReason);
+    }
+
+    /**
+     * 将任务转换为哈希字段
+     *
+     * @param task 任务
+     * @return 哈希字段
+     * @throws JsonProcessingException 人员列表无法序列化时抛出
+     */
+    private Map<String, String> toFields(Task task) throws JsonProcessingException {
+        Map<String, String> fields = new HashMap<>();
+        fields.put(FIELD_DEVICE_KEY, task.getDeviceKey());
+        fields.put(FIELD_STATUS, task.getStatus() == null ? Task.TaskStatus.PENDING.name() : task.getStatus().name());
+        if (task.getFailureReason() != null) {
+            fields.put(FIELD_FAILURE_REASON, task.getFailureReason());
+        }
+        fields.put(FIELD_TIMESTAMP, String.valueOf(task.getTimestamp()));
+        fields.put(FIELD_PERSON_LIST, objectMapper.writeValueAsString(task.getPersonList()));
+        return fields;
+    }
+
+    /**
+     * 将脚本返回的 [taskId, field1, value1, ...] 转换为任务
+     *
+     * @param reply 脚本返回值
+     * @return 任务，返回值为空或无法解析时返回null
+     */
+    private Task fromReply(Object reply) {
+        if (!(reply instanceof List) || ((List<?>) reply).isEmpty()) {
+            return null;
+        }
+        List<?> values = (List<?>) reply;
+        Task task = new Task();
+        task.setTaskId((String) values.get(0));
+        try {
+            for (int i = 1; i + 1 < values.size(); i += 2) {
+                String value = (String) values.get(i + 1);
+                switch ((String) values.get(i)) {
+                    case FIELD_DEVICE_KEY:
+                        task.setDeviceKey(value);
+                        break;
+                    case FIELD_STATUS:
+                        task.setStatus(Task.TaskStatus.valueOf(value));
+                        break;
+                    case FIELD_FAILURE_REASON:
+                        task.setFailureReason(value);
+                        break;
+                    case FIELD_TIMESTAMP:
+                        task.setTimestamp(Long.parseLong(value));
+                        break;
+                    case FIELD_PERSON_LIST:
+                        task.setPersonList(objectMapper.readValue(value,
+                                new TypeReference<List<Map<String, Object>>>() { }));
+                        break;
+                    default:
+                        break;
                 }
-                jedis.set(getTaskKey(taskId), objectMapper.writeValueAsString(task));
-            } catch (JsonProcessingException e) {
-                LogUtils.logError("Error updating task status", e);
             }
+        } catch (JsonProcessingException | IllegalArgumentException e) {
+            LogUtils.logError("Error deserializing task", e);
+            removeTask(task.getTaskId());
+            return null;
+        }
+        return task;
+    }
+
+    /**
+     * 心跳处理结果
+     */
+    @Getter
+    @AllArgsConstructor
+    public static final class HeartbeatResult {
+        /**
+         * 没有结束任务也没有新任务
+         */
+        static final HeartbeatResult EMPTY = new HeartbeatResult(null, null);
+
+        /**
+         * 因回执而结束的任务ID，没有时为 null
+         */
+        private final String completedTaskId;
+        /**
+         * 本次取出并已标记为发送的任务，没有时为 null
+         */
+        private final Task nextTask;
+    }
+
+    /**
+     * 近端缓存的设备任务状态：待处理集合为空，上次发送的任务为 lastSentTaskId
+     */
+    private static final class DeviceTaskState {
+        /**
+         * 上次发送的任务ID，没有时为 null
+         */
+        private final String lastSentTaskId;
+        /**
+         * 缓存失效时间
+         */
+        private final long expiresAt;
+
+        DeviceTaskState(String lastSentTaskId, long expiresAt) {
+            this.lastSentTaskId = lastSentTaskId;
+            this.expiresAt = expiresAt;
+        }
+
+        /**
+         * 本次心跳是否无需访问 Redis：缓存未失效，且没有回执或没有需要结束的任务
+         *
+         * @param now        当前时间
+         * @param hasReceipt 是否有回执
+         * @return 无需访问 Redis 时返回 true
+         */
+        boolean isIdle(long now, boolean hasReceipt) {
+            return now < expiresAt && (!hasReceipt || lastSentTaskId == null);
         }
     }
 
@@ -253,5 +778,7 @@ public class TaskManager {
      */
     public void shutdown() {
         scheduler.shutdownNow();
+        // 未到期的超时保存在 Redis 中，重启后恢复
+        timeoutWheel.stop();
     }
 }
@@ -22,6 +22,10 @@ import java.nio.charset.StandardCharsets;
 
 @SuppressWarnings("checkstyle:HideUtilityClassConstructor")
 public class AuthDeviceUtil {
+    /**
+     * 对象映射器
+     */
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
 
     /**
      * 调用设备认证接口，返回 content 字段的值
@@ -40,11 +44,18 @@ public class AuthDeviceUtil {
                 responseBuilder.append(line);
             }
         }
-        String response = responseBuilder.toString();
+        return parseAuthResponse(responseBuilder.toString());
+    }
 
-        // 使用 Jackson 解析 JSON
-        ObjectMapper mapper = new ObjectMapper();
-        JsonNode rootNode = mapper.readTree(response);
+    /**
+     * 解析设备认证接口的响应，返回 content 字段的值
+     *
+     * @param response 接口返回的 JSON 字符串
+     * @return content 字段值，字段缺失时返回 false
+     * @throws IOException JSON 解析失败时抛出
+     */
+    public static boolean parseAuthResponse(String response) throws IOException {
+        JsonNode rootNode = OBJECT_MAPPER.readTree(response);
         return rootNode.path("content").asBoolean();
     }
 
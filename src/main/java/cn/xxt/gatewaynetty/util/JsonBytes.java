@@ -0,0 +1,70 @@
+package cn.xxt.gatewaynetty.util;
+
+import com.fasterxml.jackson.core.io.JsonStringEncoder;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: 直接拼接 JSON 字节的工具，用于把已编码的 JSON 片段原样嵌入外层结构，避免解析后再序列化
+ * @author: Havad
+ * @create: 2026-10-18 15:45
+ **/
+
+@SuppressWarnings("checkstyle:HideUtilityClassConstructor")
+public class JsonBytes {
+    /**
+     * JSON 的 null 字面量
+     */
+    public static final byte[] NULL = "null".getBytes(StandardCharsets.UTF_8);
+
+    /**
+     * 写入 JSON 字符串（含引号和转义）
+     *
+     * @param out   输出
+     * @param value 字符串，为 null 时写入 null 字面量
+     */
+    public static void writeString(ByteArrayOutputStream out, String value) {
+        if (value == null) {
+            writeRaw(out, NULL);
+            return;
+        }
+        out.write('"');
+        writeRaw(out, JsonStringEncoder.getInstance().quoteAsUTF8(value));
+        out.write('"');
+    }
+
+    /**
+     * 写入字段名和冒号
+     *
+     * @param out  输出
+     * @param name 字段名
+     */
+    public static void writeFieldName(ByteArrayOutputStream out, String name) {
+        writeString(out, name);
+        out.write(':');
+    }
+
+    /**
+     * 原样写入已编码的 JSON 片段或 ASCII 文本
+     *
+     * @param out   输出
+     * @param bytes 字节
+     */
+    public static void writeRaw(ByteArrayOutputStream out, byte[] bytes) {
+        out.write(bytes, 0, bytes.length);
+    }
+
+    /**
+     * 写入 ASCII 文本，如数字、标点
+     *
+     * @param out  输出
+     * @param text 文本
+     */
+    public static void writeAscii(ByteArrayOutputStream out, String text) {
+        for (int i = 0; i < text.length(); i++) {
+            out.write(text.charAt(i));
+        }
+    }
+}
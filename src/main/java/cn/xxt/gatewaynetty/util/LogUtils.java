@@ -3,11 +3,20 @@ package cn.xxt.gatewaynetty.util;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * @program: gateway-cn.xxt.gatewaynetty.netty
  * @description: 日志类
+ * <p>
+ * 日志由 log4j2 的异步日志器（基于 Disruptor）写出，调用线程只负责把事件放入环形队列。
+ * 热点路径上的报文内容用 {@link #logDebug} 输出，默认关闭；按设备重复出现的日志用 {@link #logSampled} 限流；
+ * 可预期的协议错误用 {@link #countError} 计数，不采集堆栈。
  * @author: Havad
  * @create: 2025-02-15 15:00
  **/
@@ -22,6 +31,27 @@ public class LogUtils {
      * 错误计数器
      */
     private static final AtomicInteger ERROR_COUNT = new AtomicInteger(0);
+    /**
+     * 采样窗口数上限，超出时清空重新计数，避免设备标识过多时无限增长
+     */
+    private static final int MAX_SAMPLE_KEYS = 10000;
+
+    /**
+     * 每个采样窗口内，同一类别同一设备最多输出的日志条数
+     */
+    private static volatile int samplePermits = 20;
+    /**
+     * 采样窗口长度（毫秒）
+     */
+    private static volatile long sampleWindowMillis = 1000;
+    /**
+     * 每个“类别:设备”的采样窗口
+     */
+    private static final ConcurrentHashMap<String, SampleWindow> SAMPLE_WINDOWS = new ConcurrentHashMap<>();
+    /**
+     * 按类别统计的可预期错误次数
+     */
+    private static final ConcurrentHashMap<String, LongAdder> ERROR_COUNTERS = new ConcurrentHashMap<>();
 
 
     /**
@@ -37,6 +67,27 @@ public class LogUtils {
      */
     private static final Logger PERFORMANCE_LOGGER = LogManager.getLogger("com.gateway.performance");
 
+    /**
+     * 设置采样参数
+     *
+     * @param permits      每个窗口内同一类别同一设备最多输出的条数，0 表示不限
+     * @param windowMillis 窗口长度（毫秒）
+     */
+    public static void configureSampling(int permits, long windowMillis) {
+        samplePermits = permits;
+        sampleWindowMillis = windowMillis;
+        SAMPLE_WINDOWS.clear();
+    }
+
+    /**
+     * 报文级别的调试日志是否开启，参数需要额外计算（如十六进制转换）时先用它判断
+     *
+     * @return 是否开启
+     */
+    public static boolean isDebugEnabled() {
+        return BUSINESS_LOGGER.isDebugEnabled();
+    }
+
     /**
      * 记录业务日志的方法
      *
@@ -44,7 +95,68 @@ public class LogUtils {
      * @param params  日志信息参数
      */// 业务日志方法
     public static void logBusiness(String message, Object... params) {
-        BUSINESS_LOGGER.info(message, params);
+        if (BUSINESS_LOGGER.isInfoEnabled()) {
+            BUSINESS_LOGGER.info(message, params);
+        }
+    }
+
+    /**
+     * 记录报文内容等调试日志，默认关闭
+     *
+     * @param message 日志信息模板
+     * @param params  日志信息参数
+     */
+    public static void logDebug(String message, Object... params) {
+        if (BUSINESS_LOGGER.isDebugEnabled()) {
+            BUSINESS_LOGGER.debug(message, params);
+        }
+    }
+
+    /**
+     * 按类别和设备采样记录业务日志，窗口内超出条数的日志被丢弃，下一条输出时附带丢弃的条数
+     *
+     * @param category  日志类别
+     * @param deviceKey 设备标识，可为 null
+     * @param message   日志信息模板
+     * @param params    日志信息参数
+     */
+    public static void logSampled(String category, Object deviceKey, String message, Object... params) {
+        if (!BUSINESS_LOGGER.isInfoEnabled()) {
+            return;
+        }
+        long suppressed = acquire(category + ':' + deviceKey);
+        if (suppressed == 0) {
+            BUSINESS_LOGGER.info(message, params);
+        } else if (suppressed > 0) {
+            BUSINESS_LOGGER.info(message + "（此前已抑制{}条）", append(params, suppressed));
+        }
+    }
+
+    /**
+     * 记录可预期的错误（如协议格式错误）：按类别计数，并按类别采样输出一条不带堆栈的错误日志
+     *
+     * @param category 错误类别
+     * @param message  错误信息模板
+     * @param params   错误信息参数
+     */
+    public static void countError(String category, String message, Object... params) {
+        LongAdder counter = ERROR_COUNTERS.computeIfAbsent(category, c -> new LongAdder());
+        counter.increment();
+        if (!ERROR_LOGGER.isErrorEnabled() || acquire("error:" + category) < 0) {
+            return;
+        }
+        ERROR_LOGGER.error("[" + category + "] " + message + "（累计{}次）", append(params, counter.sum()));
+    }
+
+    /**
+     * 可预期错误的累计次数
+     *
+     * @return 类别到次数的快照
+     */
+    public static Map<String, Long> getErrorCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        ERROR_COUNTERS.forEach((category, counter) -> counts.put(category, counter.sum()));
+        return counts;
     }
 
     /**
@@ -55,7 +167,8 @@ public class LogUtils {
      * @param params  动态参数，用于格式化错误信息
      */// 错误日志方法
     public static void logError(String message, Throwable e, Object... params) {
-        ERROR_LOGGER.error(message, params, e);
+        // 异常放在参数末尾，log4j2 会把它作为异常输出，其余参数按占位符逐个格式化
+        ERROR_LOGGER.error(message, append(params, e));
 
         if (ERROR_COUNT.incrementAndGet() > ERROR_THRESHOLD) {
             // 发送告警通知，可以集成邮件、短信或其他告警系统
@@ -74,5 +187,67 @@ public class LogUtils {
         PERFORMANCE_LOGGER.info("操作: {}, 执行时间: {}ms", operation, executionTime);
     }
 
+    /**
+     * 在采样窗口中申请一条日志
+     *
+     * @param key 采样键
+     * @return 可以输出时返回此前被丢弃的条数，需要丢弃时返回 -1
+     */
+    private static long acquire(String key) {
+        int permits = samplePermits;
+        if (permits <= 0) {
+            return 0;
+        }
+        if (SAMPLE_WINDOWS.size() > MAX_SAMPLE_KEYS) {
+            SAMPLE_WINDOWS.clear();
+        }
+        return SAMPLE_WINDOWS.computeIfAbsent(key, k -> new SampleWindow())
+                .acquire(System.currentTimeMillis(), sampleWindowMillis, permits);
+    }
+
+    /**
+     * 在参数数组末尾追加一个参数
+     *
+     * @param params 原参数
+     * @param last   追加的参数
+     * @return 新的参数数组
+     */
+    private static Object[] append(Object[] params, Object last) {
+        Object[] result = Arrays.copyOf(params, params.length + 1);
+        result[params.length] = last;
+        return result;
+    }
+
+    /**
+     * 固定窗口计数
+     */
+    private static final class SampleWindow {
+        /**
+         * 当前窗口开始时间
+         */
+        private long windowStart;
+        /**
+         * 当前窗口已输出的条数
+         */
+        private int used;
+        /**
+         * 上次输出后被丢弃的条数
+         */
+        private long suppressed;
 
+        synchronized long acquire(long now, long windowMillis, int permits) {
+            if (now - windowStart >= windowMillis) {
+                windowStart = now;
+                used = 0;
+            }
+            if (used >= permits) {
+                suppressed++;
+                return -1;
+            }
+            used++;
+            long dropped = suppressed;
+            suppressed = 0;
+            return dropped;
+        }
+    }
 }
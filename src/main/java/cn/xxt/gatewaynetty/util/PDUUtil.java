@@ -67,7 +67,7 @@ public class PDUUtil {
     private static String getBody(String pdu) {
         int length = getLength(pdu);
         if (pdu.length() != length) {
-            LogUtils.logBusiness("【警告】实际 PDU 长度({})与 length 字段({})不符！", pdu.length(), length);
+            LogUtils.countError("pdu.length-mismatch", "实际 PDU 长度({})与 length 字段({})不符！", pdu.length(), length);
         }
         // 计算 body 长度：length - 14 - comm_type(1) - check(4) = length - 19
         int bodyLength = length - 19;
@@ -112,7 +112,7 @@ public class PDUUtil {
     @SuppressWarnings({"checkstyle:MagicNumber", "checkstyle:ReturnCount"})
     public static boolean validateCheck(String pdu) {
         if (pdu == null || pdu.length() < 15 || !pdu.startsWith("*#F#")) {
-            LogUtils.logError("无效的 PDU 数据！", new Throwable());
+            LogUtils.countError("pdu.invalid", "无效的 PDU 数据！");
             return false;
         }
 
@@ -128,17 +128,17 @@ public class PDUUtil {
         try {
             checkVal = Integer.parseInt(checkHex, 16);
         } catch (NumberFormatException e) {
-            LogUtils.logError("check 字段解析失败，非有效16进制：{}", e, checkHex);
+            LogUtils.countError("pdu.check-format", "check 字段解析失败，非有效16进制：{}", checkHex);
             return false;
         }
 
         // 4. 比较 length - 4 与转换后的 check 值是否相等
         int computedValue = length - 4;
         if (computedValue == checkVal) {
-            LogUtils.logBusiness("校验成功: length-4 = {} 与 check (10进制) = {} 相等", computedValue, checkVal);
+            LogUtils.logDebug("校验成功: length-4 = {} 与 check (10进制) = {} 相等", computedValue, checkVal);
             return true;
         } else {
-            LogUtils.logError("校验失败: length-4 = {} 不等于 check (10进制) = {}", new Throwable(), computedValue, checkVal);
+            LogUtils.countError("pdu.check", "校验失败: length-4 = {} 不等于 check (10进制) = {}", computedValue, checkVal);
             return false;
         }
     }
@@ -153,7 +153,7 @@ public class PDUUtil {
     @SuppressWarnings("checkstyle:MagicNumber")
     public static String getDeviceNo(String pdu) {
         if (pdu.length() < 18) {
-            LogUtils.logError("方法{}, 获取设备编号失败，解析失败的pdu为{}", new Throwable(), "getDeviceNo", pdu);
+            LogUtils.countError("pdu.device-no", "方法{}, 获取设备编号失败，解析失败的pdu为{}", "getDeviceNo", pdu);
         }
         String body = getBody(pdu);
         return body.substring(0, 18).replaceAll("\\s+", "");
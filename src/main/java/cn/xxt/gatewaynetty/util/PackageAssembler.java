@@ -1,8 +1,12 @@
 package cn.xxt.gatewaynetty.util;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
+
 /**
  * @program: gateway-cn.xxt.gatewaynetty.netty
- * @description: 用于处理多包消息的辅助类
+ * @description: 用于处理多包消息的辅助类，分包以 ByteBuf 保存，组装时拼成 CompositeByteBuf，不复制数据
  * @author: Havad
  * @create: 2025-02-15 16:31
  **/
@@ -12,27 +16,87 @@ public class PackageAssembler {
     /**
      * 数据包数组，用于存储各个数据包的内容。
      */
-    private final byte[][] packages;
+    private final ByteBuf[] packages;
     /**
      * 已接收数量
      */
     private int receivedCount = 0;
+    /**
+     * 已接收数据包的字节数之和
+     */
+    private int receivedBytes = 0;
+    /**
+     * 收到第一个数据包的时间（System.nanoTime）
+     */
+    private final long createdNanos;
 
     public PackageAssembler(int totalPackages) {
-        this.packages = new byte[totalPackages][];
+        this.packages = new ByteBuf[totalPackages];
+        this.createdNanos = System.nanoTime();
+    }
+
+    /**
+     * 声明的总包数
+     *
+     * @return 总包数
+     */
+    public int getTotalPackages() {
+        return packages.length;
     }
 
     /**
-     * 向指定索引位置添加数据包
+     * 已接收的数据包数
      *
-     * @param packageIndex 数据包索引位置
+     * @return 数据包数
+     */
+    public int getReceivedCount() {
+        return receivedCount;
+    }
+
+    /**
+     * 已接收数据包的字节数之和
+     *
+     * @return 字节数
+     */
+    public int getReceivedBytes() {
+        return receivedBytes;
+    }
+
+    /**
+     * 收到第一个数据包的时间
+     *
+     * @return System.nanoTime 时间戳
+     */
+    public long getCreatedNanos() {
+        return createdNanos;
+    }
+
+    /**
+     * 向指定索引位置添加数据包，调用方将数据包的所有权交给组装器
+     *
+     * @param packageIndex 数据包索引位置，调用方需保证在 [0, 总包数) 范围内
      * @param data         要添加的数据包内容
+     * @return 新增返回 true；该位置已有数据包（重传）时释放 data 并返回 false
      */
-    public void addPackage(int packageIndex, byte[] data) {
-        if (packages[packageIndex] == null) {
-            packages[packageIndex] = data;
-            receivedCount++;
+    public boolean addPackage(int packageIndex, ByteBuf data) {
+        if (packages[packageIndex] != null) {
+            data.release();
+            return false;
         }
+        packages[packageIndex] = data;
+        receivedCount++;
+        receivedBytes += data.readableBytes();
+        return true;
+    }
+
+    /**
+     * 指定位置是否已有数据包
+     *
+     * @param packageIndex 数据包索引位置，调用方需保证在 [0, 总包数) 范围内
+     * @return 已接收返回 true
+     */
+    public boolean hasPackage(int packageIndex) {
+        return packages[packageIndex] != null;
     }
 
     /**
@@ -47,22 +111,33 @@ public class PackageAssembler {
     /**
      * 获取完整的消息内容。
      * <p>
-     * 该方法通过遍历字节包数组，计算总长度，并复制所有字节包到一个新的字节数组中。
+     * 按序号把各数据包作为组件加入 CompositeByteBuf，数据包的所有权转移给返回值，调用方负责释放。
      *
-     * @return 合并后的完整消息字节数组
+     * @param alloc 分配器
+     * @return 合并后的完整消息
      */
-    public byte[] getCompleteMessage() {
-        int totalLength = 0;
-        for (byte[] pkg : packages) {
-            totalLength += pkg.length;
+    public ByteBuf getCompleteMessage(ByteBufAllocator alloc) {
+        CompositeByteBuf result = alloc.compositeBuffer(packages.length);
+        for (int i = 0; i < packages.length; i++) {
+            result.addComponent(true, packages[i]);
+            packages[i] = null;
         }
+        receivedCount = 0;
+        receivedBytes = 0;
+        return result;
+    }
 
-        byte[] result = new byte[totalLength];
-        int offset = 0;
-        for (byte[] pkg : packages) {
-            System.arraycopy(pkg, 0, result, offset, pkg.length);
-            offset += pkg.length;
+    /**
+     * 释放已接收但未组装的数据包
+     */
+    public void release() {
+        for (int i = 0; i < packages.length; i++) {
+            if (packages[i] != null) {
+                packages[i].release();
+                packages[i] = null;
+            }
         }
-        return result;
+        receivedCount = 0;
+        receivedBytes = 0;
     }
 }
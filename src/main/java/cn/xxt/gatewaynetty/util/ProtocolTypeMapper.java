@@ -1,11 +1,14 @@
 package cn.xxt.gatewaynetty.util;
 
-import java.util.HashMap;
+import cn.xxt.gatewaynetty.netty.model.VideoCommand;
+
+import java.nio.ByteBuffer;
+import java.util.EnumMap;
 import java.util.Map;
 
 /**
  * @program: gateway-cn.xxt.gatewaynetty.netty
- * @description: 卡尔视频话机协议名称和编码的映射
+ * @description: 卡尔视频话机协议名称和编码的映射，编码表见 {@link VideoCommand}
  * @author: Havad
  * @create: 2025-02-14 19:48
  **/
@@ -13,31 +16,71 @@ import java.util.Map;
 @SuppressWarnings({"checkstyle:HideUtilityClassConstructor", "checkstyle:MagicNumber"})
 public class ProtocolTypeMapper {
     /**
-     * 方法协议映射表。
-     * 存储了方法名与对应协议数据的映射关系。
+     * 协议头长度
+     */
+    public static final int HEADER_LENGTH = 20;
+    /**
+     * 协议头中会话序号的偏移
+     */
+    public static final int SESSION_OFFSET = 4;
+    /**
+     * 协议头中总包数的偏移
+     */
+    public static final int TOTAL_PACKAGES_OFFSET = 8;
+    /**
+     * 协议头中包序号的偏移
      */
-    private static final Map<String, byte[]> METHOD_PROTOCOL_MAP = new HashMap<>();
+    public static final int PACKAGE_INDEX_OFFSET = 10;
+    /**
+     * 协议头中数据长度的偏移
+     */
+    public static final int DATA_LENGTH_OFFSET = 18;
+
+    /**
+     * 同步标识的前缀字节
+     */
+    private static final byte ASYNC_IDENTITY_PREFIX = 0x40;
+    /**
+     * 异步标识后缀，对应设备类型字符 'G' 的十六进制值
+     */
+    private static final byte ASYNC_IDENTITY_SUFFIX = 0x47;  // 根据设备类型，如 'G' 对应 0x47
+    /**
+     * 协议加密类型
+     */
+    private static final short ENCRYPTION_TYPE = 0x2710;
+    /**
+     * 密钥索引
+     */
+    private static final int KEY_INDEX = 0;
+
+    /**
+     * 各命令预先构建的协议头模板，会话序号、总包数、包序号和数据长度在发送时填写
+     */
+    private static final Map<VideoCommand, byte[]> HEADER_TEMPLATES = new EnumMap<>(VideoCommand.class);
 
     static {
-        // 7.1 平台通用协议
-        METHOD_PROTOCOL_MAP.put("link", new byte[]{0x00, 0x00}); // 联机协议没有明确的协议类型，这里假设为0x00, 0x00
-        METHOD_PROTOCOL_MAP.put("heartbeat", new byte[]{0x03, 0x13}); // 心跳
-        METHOD_PROTOCOL_MAP.put("devstatus", new byte[]{0x03, (byte) 0xa7}); // 设备状态通用上报
-        METHOD_PROTOCOL_MAP.put("setAuthorize", new byte[]{0x03, 0x7f}); // 终端授权
-        METHOD_PROTOCOL_MAP.put("getAuthorize", new byte[]{0x03, (byte) 0xaf}); // 查询授权状态
-        METHOD_PROTOCOL_MAP.put("readlog", new byte[]{0x03, (byte) 0xb3}); // 读取终端日志
-
-        // 7.2 终端维护子系统
-        METHOD_PROTOCOL_MAP.put("deviceLog", new byte[]{0x03, 0x17}); // 通用终端上报日志
-        METHOD_PROTOCOL_MAP.put("reqfee", new byte[]{0x03, 0x11}); // 计费话机请求余额和费率
-        METHOD_PROTOCOL_MAP.put("call", new byte[]{0x03, 0x12}); // 话机上报通话记录
-        METHOD_PROTOCOL_MAP.put("setConfigInfo", new byte[]{0x03, (byte) 0x82}); // 家校通配置内容下发
-        METHOD_PROTOCOL_MAP.put("getConfigInfo", new byte[]{0x03, (byte) 0x83}); // 家校通配置内容获取
-        METHOD_PROTOCOL_MAP.put("feedback", new byte[]{0x03, 0x53}); // 终端任务反馈
-        METHOD_PROTOCOL_MAP.put("verifyNum", new byte[]{0x23, 0x28}); // 1.1 从亲情号号码池校验手机号
-        METHOD_PROTOCOL_MAP.put("querySIM", new byte[]{0x23, 0x29});    // 1.3 SIM卡套餐余量查询
-        METHOD_PROTOCOL_MAP.put("notice", new byte[]{0x03, 0x30});     // 1.5 推送广告、公告、通知等
-        METHOD_PROTOCOL_MAP.put("getFamilyNumList", new byte[]{0x03, (byte) 0x80});     // 根据卡号获取亲情号码
+        for (VideoCommand command : VideoCommand.values()) {
+            if (command == VideoCommand.UNKNOWN) {
+                continue;
+            }
+            ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+            // 0. 同步标识
+            header.put(ASYNC_IDENTITY_PREFIX);
+            header.put(ASYNC_IDENTITY_SUFFIX); // 0x47 (话机，'G')
+            // 2. 协议类型
+            header.putShort((short) command.getProtocolType());
+            // 4. 会话序号、8. 协议总包数、10. 协议包序号，发送时填写
+            header.putInt(0);
+            header.putShort((short) 0);
+            header.putShort((short) 0);
+            // 12. 秘钥序号
+            header.putInt(KEY_INDEX);
+            // 16. 协议加密类型
+            header.putShort(ENCRYPTION_TYPE);
+            // 18. 加密数据长度，发送时填写
+            header.putShort((short) 0);
+            HEADER_TEMPLATES.put(command, header.array());
+        }
     }
 
     /**
@@ -47,6 +90,21 @@ public class ProtocolTypeMapper {
      * @return 对应的协议类型字节码数组，如果未找到则返回null
      */
     public static byte[] getProtocolTypeByMethod(String method) {
-        return METHOD_PROTOCOL_MAP.getOrDefault(method, null);
+        VideoCommand command = VideoCommand.of(method);
+        if (command == VideoCommand.UNKNOWN) {
+            return null;
+        }
+        int type = command.getProtocolType();
+        return new byte[]{(byte) (type >>> 8), (byte) type};
+    }
+
+    /**
+     * 根据给定方法名获取预先构建的协议头模板
+     *
+     * @param method 方法名
+     * @return 协议头模板，调用方只能复制不能修改；未找到时返回null
+     */
+    public static byte[] getHeaderTemplate(String method) {
+        return HEADER_TEMPLATES.get(VideoCommand.of(method));
     }
 }
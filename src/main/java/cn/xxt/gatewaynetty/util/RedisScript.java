@@ -0,0 +1,81 @@
+package cn.xxt.gatewaynetty.util;
+
+import redis.clients.jedis.JedisPooled;
+import redis.clients.jedis.exceptions.JedisNoScriptException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: Redis Lua 脚本，优先用 EVALSHA 执行，服务端没有缓存脚本时退回 EVAL（同时缓存脚本）
+ * @author: Havad
+ * @create: 2026-10-18 16:55
+ **/
+
+public final class RedisScript {
+    /**
+     * 脚本内容
+     */
+    private final String script;
+    /**
+     * 脚本的 SHA-1，与 Redis 的 SCRIPT LOAD 结果一致
+     */
+    private final String sha;
+
+    public RedisScript(String script) {
+        this.script = script;
+        this.sha = sha1(script);
+    }
+
+    /**
+     * 执行脚本
+     *
+     * @param jedis Redis 客户端
+     * @param keys  脚本访问的键
+     * @param args  脚本参数
+     * @return 脚本返回值
+     */
+    public Object eval(JedisPooled jedis, List<String> keys, List<String> args) {
+        try {
+            return jedis.evalsha(sha, keys, args);
+        } catch (JedisNoScriptException e) {
+            return jedis.eval(script, keys, args);
+        }
+    }
+
+    /**
+     * 执行脚本
+     *
+     * @param jedis Redis 客户端
+     * @param keys  脚本访问的键
+     * @param args  脚本参数
+     * @return 脚本返回值
+     */
+    public Object eval(JedisPooled jedis, String[] keys, String... args) {
+        return eval(jedis, Arrays.asList(keys), Arrays.asList(args));
+    }
+
+    /**
+     * 计算脚本的 SHA-1
+     *
+     * @param script 脚本内容
+     * @return 十六进制 SHA-1
+     */
+    @SuppressWarnings("checkstyle:MagicNumber")
+    private static String sha1(String script) {
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-1").digest(script.getBytes(StandardCharsets.UTF_8));
+            StringBuilder sb = new StringBuilder(hash.length * 2);
+            for (byte b : hash) {
+                sb.append(Character.forDigit((b >> 4) & 0x0F, 16)).append(Character.forDigit(b & 0x0F, 16));
+            }
+            return sb.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-1不可用", e);
+        }
+    }
+}
@@ -1,8 +1,10 @@
 package cn.xxt.gatewaynetty.util;
 
+import cn.xxt.gatewaynetty.netty.exceptions.UnsupportedProtocolException;
+import cn.xxt.gatewaynetty.netty.model.VideoCommand;
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.Unpooled;
 import io.netty.channel.Channel;
+import io.netty.channel.ChannelFuture;
 import io.netty.util.AttributeKey;
 
 import javax.net.ssl.HttpsURLConnection;
@@ -13,6 +15,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.net.URLConnection;
 import java.nio.charset.StandardCharsets;
 import java.security.KeyManagementException;
 import java.security.NoSuchAlgorithmException;
@@ -30,22 +33,6 @@ import java.util.concurrent.atomic.AtomicInteger;
 
 @SuppressWarnings("checkstyle:HideUtilityClassConstructor")
 public class VideoParserUtil {
-    /**
-     * 同步标识的前缀字节
-     */
-    private static final byte ASYNC_IDENTITY_PREFIX = 0x40;
-    /**
-     * 异步标识后缀，对应设备类型字符 'G' 的十六进制值
-     */
-    private static final byte ASYNC_IDENTITY_SUFFIX = 0x47;  // 根据设备类型，如 'G' 对应 0x47
-    /**
-     * 协议加密类型
-     */
-    private static final byte[] ENCRYPTION_TYPE = {0x27, 0x10};
-    /**
-     * 密钥索引
-     */
-    private static final byte[] KEY_INDEX = {0x00, 0x00, 0x00, 0x00};
     /**
      * 最大数据包大小限制。
      */
@@ -64,8 +51,33 @@ public class VideoParserUtil {
      * @return 图片内容的Base64编码
      * @throws IOException 当读取图片数据或配置SSL时发生错误
      */
-    @SuppressWarnings("checkstyle:MagicNumber")
     public static String imageUrlToBase64(String imageUrl) throws IOException {
+        return Base64.getEncoder().encodeToString(downloadImage(imageUrl));
+    }
+
+    /**
+     * 下载图片
+     *
+     * @param imageUrl 图片的URL地址
+     * @return 图片内容
+     * @throws IOException 当读取图片数据或配置SSL时发生错误
+     */
+    public static byte[] downloadImage(String imageUrl) throws IOException {
+        return downloadImage(imageUrl, 0, 0);
+    }
+
+    /**
+     * 下载图片，带连接和读取超时
+     *
+     * @param imageUrl             图片的URL地址
+     * @param connectTimeoutMillis 连接超时（毫秒），0 表示不超时
+     * @param readTimeoutMillis    读取超时（毫秒），0 表示不超时
+     * @return 图片内容
+     * @throws IOException 当读取图片数据、配置SSL失败或超时时抛出
+     */
+    @SuppressWarnings("checkstyle:MagicNumber")
+    public static byte[] downloadImage(String imageUrl, int connectTimeoutMillis, int readTimeoutMillis)
+            throws IOException {
         // 如果是https链接，禁用SSL证书验证
         if (imageUrl.toLowerCase().startsWith("https")) {
             try {
@@ -95,8 +107,10 @@ public class VideoParserUtil {
         }
 
         // 读取图片数据
-        URL url = new URL(imageUrl);
-        try (InputStream inputStream = url.openStream();
+        URLConnection connection = new URL(imageUrl).openConnection();
+        connection.setConnectTimeout(connectTimeoutMillis);
+        connection.setReadTimeout(readTimeoutMillis);
+        try (InputStream inputStream = connection.getInputStream();
              ByteArrayOutputStream outputStream = new ByteArrayOutputStream()) {
 
             byte[] buffer = new byte[4096];
@@ -106,9 +120,7 @@ public class VideoParserUtil {
                 outputStream.write(buffer, 0, bytesRead);
             }
 
-            // 转换为Base64编码
-            byte[] imageBytes = outputStream.toByteArray();
-            return Base64.getEncoder().encodeToString(imageBytes);
+            return outputStream.toByteArray();
         }
     }
 
@@ -122,16 +134,7 @@ public class VideoParserUtil {
         if (command == null) {
             return "response";
         }
-
-        switch (command) {
-            case "setConfigInfo":
-            case "getConfigInfo":
-            case "querySIM":
-            case "notice":
-                return "request";
-            default:
-                return "response";
-        }
+        return VideoCommand.of(command).toDeviceDirection().getFieldName();
     }
 
     /**
@@ -144,16 +147,7 @@ public class VideoParserUtil {
         if (command == null) {
             return "request";
         }
-
-        switch (command) {
-            case "setConfigInfo":
-            case "getConfigInfo":
-            case "querySIM":
-            case "notice":
-                return "response";
-            default:
-                return "request";
-        }
+        return VideoCommand.of(command).toTbDirection().getFieldName();
     }
 
     /**
@@ -177,113 +171,85 @@ public class VideoParserUtil {
      * @param channel  通道对象，用于发送数据
      * @param method   请求的方法名
      * @param jsonData 需要发送的JSON格式数据
+     * @return 写入结果
+     */
+    public static ChannelFuture sendData(Channel channel, String method, String jsonData) {
+        return sendData(channel, method, jsonData.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 发送已编码的JSON数据，支持大数据分包传输。
+     *
+     * @param channel   通道对象，用于发送数据
+     * @param method    请求的方法名
+     * @param jsonBytes 需要发送的JSON数据的UTF-8字节
+     * @return 写入结果；未知命令时为失败的结果，数据为空时为成功的结果
      */
-    public static void sendData(Channel channel, String method, String jsonData) {
-        byte[] jsonBytes = jsonData.getBytes(StandardCharsets.UTF_8);
+    public static ChannelFuture sendData(Channel channel, String method, byte[] jsonBytes) {
+        byte[] header = ProtocolTypeMapper.getHeaderTemplate(method);
+        if (header == null) {
+            LogUtils.countError("video.unknown-command", "未知的视频话机命令，无法发送: {}", method);
+            return channel.newFailedFuture(new UnsupportedProtocolException("未知的视频话机命令: " + method));
+        }
         int dataLength = jsonBytes.length;
         int sessionIndex = getAndIncrementSessionCounter(channel);
-        byte[] protocolType = ProtocolTypeMapper.getProtocolTypeByMethod(method);
 
         // 计算总包数
         int totalPackets = (dataLength + MAX_PACKET_SIZE - 1) / MAX_PACKET_SIZE;
+        if (totalPackets == 0) {
+            return channel.newSucceededFuture();
+        }
 
-        // 分包发送
-        for (int i = 0; i < totalPackets; i++) {
-            int start = i * MAX_PACKET_SIZE;
-            int end = Math.min((i + 1) * MAX_PACKET_SIZE, dataLength);
-            byte[] packetData = new byte[end - start];
-            System.arraycopy(jsonBytes, start, packetData, 0, end - start);
-
-            // 构建完整的数据包
-            ByteBuf buffer = buildPacket(protocolType, sessionIndex, totalPackets, i, packetData);
-
-            // 发送
-            int finalI = i;
-            channel.writeAndFlush(buffer)
-                    .addListener(future -> {
-                        if (future.isSuccess()) {
-                            LogUtils.logBusiness("数据包发送成功 (包序号: {}/{})", finalI + 1, totalPackets);
-                        } else {
-                            LogUtils.logError("数据包发送失败 (包序号: {}/{})",
-                                    new Throwable(), finalI + 1, totalPackets, future.cause());
-                        }
-                    });
+        // 所有分包写入同一个池化直接缓冲区，一次写入、一次刷新
+        ByteBuf buffer = channel.alloc().directBuffer(totalPackets * ProtocolTypeMapper.HEADER_LENGTH + dataLength);
+        try {
+            for (int i = 0; i < totalPackets; i++) {
+                int start = i * MAX_PACKET_SIZE;
+                int length = Math.min(MAX_PACKET_SIZE, dataLength - start);
+                writePacket(buffer, header, sessionIndex, totalPackets, i, jsonBytes, start, length);
+            }
+        } catch (RuntimeException e) {
+            buffer.release();
+            throw e;
         }
+
+        // 发送
+        ChannelFuture write = channel.writeAndFlush(buffer);
+        write.addListener(future -> {
+            if (future.isSuccess()) {
+                LogUtils.logDebug("数据包发送成功 (共{}包, {}字节)", totalPackets, dataLength);
+            } else {
+                LogUtils.logError("数据包发送失败 (共{}包)", future.cause(), totalPackets);
+            }
+        });
+        return write;
     }
 
     /**
-     * 构建一个完整的数据包。
+     * 按协议头模板写入一个完整的数据包。
      *
-     * @param protocolType 协议类型
+     * @param buffer       目标缓冲区
+     * @param header       协议头模板
      * @param sessionIndex 会话序号
      * @param totalPackets 协议总包数
      * @param packetIndex  协议包序号
-     * @param data         数据内容
-     * @return 构建好的数据包 ByteBuf 对象
+     * @param data         全部数据内容
+     * @param offset       本包数据在 data 中的起始位置
+     * @param length       本包数据长度
      */
-    private static ByteBuf buildPacket(
-            byte[] protocolType, int sessionIndex, int totalPackets, int packetIndex, byte[] data) {
-
-        ByteBuf buffer = Unpooled.buffer();
-
-        // 0. 同步标识
-        buffer.writeByte(ASYNC_IDENTITY_PREFIX);
-        buffer.writeByte(ASYNC_IDENTITY_SUFFIX); // 0x47 (话机，'G')
-
-        // 2. 协议类型
-        buffer.writeBytes(protocolType); // {0x00, 0x00} (link)
-
+    private static void writePacket(ByteBuf buffer, byte[] header, int sessionIndex, int totalPackets,
+                                    int packetIndex, byte[] data, int offset, int length) {
+        int headerIndex = buffer.writerIndex();
+        buffer.writeBytes(header);
         // 4. 会话序号
-        buffer.writeBytes(intToBytesBigEndian(sessionIndex));
-
+        buffer.setInt(headerIndex + ProtocolTypeMapper.SESSION_OFFSET, sessionIndex);
         // 8. 协议总包数
-        buffer.writeBytes(shortToBytesBigEndian((short) totalPackets));
-
+        buffer.setShort(headerIndex + ProtocolTypeMapper.TOTAL_PACKAGES_OFFSET, totalPackets);
         // 10. 协议包序号
-        buffer.writeBytes(shortToBytesBigEndian((short) packetIndex));
-
-        // 12. 秘钥序号
-        buffer.writeBytes(KEY_INDEX);
-
-        // 16. 协议加密类型
-        buffer.writeBytes(ENCRYPTION_TYPE); // {0x27, 0x10}
-
+        buffer.setShort(headerIndex + ProtocolTypeMapper.PACKAGE_INDEX_OFFSET, packetIndex);
         // 18. 加密数据长度
-        buffer.writeBytes(shortToBytesBigEndian((short) data.length));
-
+        buffer.setShort(headerIndex + ProtocolTypeMapper.DATA_LENGTH_OFFSET, length);
         // 20. 数据内容 (JSON 的 UTF-8 字节)
-        buffer.writeBytes(data);
-
-        return buffer;
-    }
-
-    /**
-     * 将int值转换为字节序列（大端序）
-     *
-     * @param value 需要转换的int值
-     * @return 转换后的字节序列数组
-     */
-    @SuppressWarnings("checkstyle:MagicNumber")
-    private static byte[] intToBytesBigEndian(int value) {
-        return new byte[]{
-                (byte) ((value >>> 24) & 0xFF),
-                (byte) ((value >>> 16) & 0xFF),
-                (byte) ((value >>> 8) & 0xFF),
-                (byte) (value & 0xFF)
-        };
-    }
-
-    /**
-     * 将短整型数据转换为字节数组（大端序）
-     *
-     * @param value 需要转换的短整型值
-     * @return 转换后的字节数组
-     */
-    @SuppressWarnings("checkstyle:MagicNumber")
-    private static byte[] shortToBytesBigEndian(short value) {
-        return new byte[]{
-                (byte) ((value >>> 8) & 0xFF),
-                (byte) (value & 0xFF)
-        };
+        buffer.writeBytes(data, offset, length);
     }
 }
@@ -0,0 +1,150 @@
+package cn.xxt.gatewaynetty.kafka;
+
+import cn.xxt.gatewaynetty.mqtt.MqttSender;
+import cn.xxt.gatewaynetty.mqtt.builder.MqttMessageBuilderFactory;
+import cn.xxt.gatewaynetty.netty.model.DeviceData;
+import cn.xxt.gatewaynetty.netty.protocol.ProtocolIdentifier;
+import cn.xxt.gatewaynetty.netty.protocol.sender.TcpMessageNormalSender;
+import cn.xxt.gatewaynetty.netty.protocol.sender.TcpMessageSenderFactory;
+import cn.xxt.gatewaynetty.netty.registry.DeviceRegistry;
+import cn.xxt.gatewaynetty.util.LogUtils;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.channel.ChannelPromise;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.CharsetUtil;
+import io.netty.util.ReferenceCountUtil;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.listener.BatchListenerFailedException;
+import org.springframework.kafka.support.Acknowledgment;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowableOfType;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: 批量模式发往设备：使用真实的普通话机发送器，跳过不在线的设备，写入失败时在最小的未发送位移处失败重试
+ * @author: Havad
+ * @create: 2026-10-18 21:10
+ **/
+
+class DeviceDataKafkaBatchConsumerTest {
+    /**
+     * 设备注册实例
+     */
+    private DeviceRegistry deviceRegistry;
+    /**
+     * 被测消费者
+     */
+    private DeviceDataKafkaBatchConsumer consumer;
+
+    @BeforeEach
+    void setUp() {
+        deviceRegistry = mock(DeviceRegistry.class);
+        TcpMessageSenderFactory senderFactory = new TcpMessageSenderFactory();
+        senderFactory.registerSender(ProtocolIdentifier.PROTOCOL_NORMAL, new TcpMessageNormalSender());
+        consumer = new DeviceDataKafkaBatchConsumer(mock(MqttSender.class), deviceRegistry,
+                mock(MqttMessageBuilderFactory.class), senderFactory);
+    }
+
+    @Test
+    void skipsOfflineDevicesAndSendsTheRestOfTheBatch() throws Exception {
+        EmbeddedChannel online = new EmbeddedChannel();
+        EmbeddedChannel offline = new EmbeddedChannel();
+        offline.close().sync();
+        when(deviceRegistry.getChannel("d1")).thenReturn(online);
+        when(deviceRegistry.getChannel("d2")).thenReturn(offline);
+        List<ConsumerRecord<String, DeviceData>> records = Arrays.asList(
+                record(0, "d1"), record(1, "d2"), record(2, "d1"), record(3, "d2"));
+        Acknowledgment ack = mock(Acknowledgment.class);
+        long before = LogUtils.getErrorCounts().getOrDefault("kafka.device.offline", 0L);
+
+        consumer.handleToDevice(records, ack);
+
+        // 不在线的 d2 不阻塞同一批中发往 d1 的记录，也不触发整批重新投递
+        assertThat(drain(online)).containsExactly("msg-0", "msg-2");
+        assertThat(LogUtils.getErrorCounts().get("kafka.device.offline")).isEqualTo(before + 2);
+        verify(ack).acknowledge();
+        online.finishAndReleaseAll();
+    }
+
+    @Test
+    void failsAtFirstRecordWhoseWriteFailed() {
+        EmbeddedChannel online = new EmbeddedChannel();
+        EmbeddedChannel failing = new EmbeddedChannel(new ChannelOutboundHandlerAdapter() {
+            @Override
+            public void write(ChannelHandlerContext ctx, Object msg, ChannelPromise promise) {
+                ReferenceCountUtil.release(msg);
+                promise.setFailure(new IOException("connection reset"));
+            }
+        });
+        when(deviceRegistry.getChannel("d1")).thenReturn(online);
+        when(deviceRegistry.getChannel("d2")).thenReturn(failing);
+        List<ConsumerRecord<String, DeviceData>> records = Arrays.asList(
+                record(0, "d1"), record(1, "d1"), record(2, "d2"), record(3, "d1"));
+        Acknowledgment ack = mock(Acknowledgment.class);
+
+        BatchListenerFailedException e = catchThrowableOfType(
+                () -> consumer.handleToDevice(records, ack), BatchListenerFailedException.class);
+
+        assertThat(e.getRecord()).isSameAs(records.get(2));
+        verify(ack, never()).acknowledge();
+        online.finishAndReleaseAll();
+        failing.finishAndReleaseAll();
+    }
+
+    @Test
+    void acknowledgesWhenEveryDeviceSucceeds() {
+        EmbeddedChannel d1 = new EmbeddedChannel();
+        EmbeddedChannel d2 = new EmbeddedChannel();
+        when(deviceRegistry.getChannel("d1")).thenReturn(d1);
+        when(deviceRegistry.getChannel("d2")).thenReturn(d2);
+        Acknowledgment ack = mock(Acknowledgment.class);
+
+        consumer.handleToDevice(Arrays.asList(record(0, "d1"), record(1, "d2"), record(2, "d1")), ack);
+
+        verify(ack).acknowledge();
+        assertThat(drain(d1)).containsExactly("msg-0", "msg-2");
+        assertThat(drain(d2)).containsExactly("msg-1");
+    }
+
+    /**
+     * 构造发往设备的记录
+     *
+     * @param offset 位移
+     * @param device 设备ID
+     * @return 记录
+     */
+    private static ConsumerRecord<String, DeviceData> record(long offset, String device) {
+        DeviceData data = new DeviceData(device, "msg-" + offset, ProtocolIdentifier.PROTOCOL_NORMAL);
+        return new ConsumerRecord<>(KafkaConfig.TO_DEVICE_TOPIC, 0, offset, device, data);
+    }
+
+    /**
+     * 取出通道已写出的全部消息
+     *
+     * @param channel 通道
+     * @return 按写出顺序排列的消息文本
+     */
+    private static List<String> drain(EmbeddedChannel channel) {
+        List<String> written = new ArrayList<>();
+        ByteBuf buf;
+        while ((buf = channel.readOutbound()) != null) {
+            written.add(buf.toString(CharsetUtil.UTF_8));
+            buf.release();
+        }
+        return written;
+    }
+}
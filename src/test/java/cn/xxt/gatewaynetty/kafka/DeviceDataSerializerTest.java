@@ -0,0 +1,157 @@
+package cn.xxt.gatewaynetty.kafka;
+
+import cn.xxt.gatewaynetty.netty.model.DeviceData;
+import cn.xxt.gatewaynetty.netty.model.VideoMessage;
+import cn.xxt.gatewaynetty.netty.protocol.ProtocolIdentifier;
+import org.apache.kafka.common.errors.SerializationException;
+import org.apache.kafka.common.header.Headers;
+import org.apache.kafka.common.header.internals.RecordHeaders;
+import io.netty.util.CharsetUtil;
+import org.junit.jupiter.api.Test;
+import org.springframework.kafka.support.serializer.ErrorHandlingDeserializer;
+import org.springframework.kafka.support.serializer.JsonSerializer;
+
+import java.nio.ByteBuffer;
+import java.util.Collections;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: DeviceData 二进制格式：协议类型和视频消息方向按固定编码写入，已写入 Kafka 的消息不受枚举顺序调整影响
+ * @author: Havad
+ * @create: 2026-10-18 20:30
+ **/
+
+class DeviceDataSerializerTest {
+    /**
+     * 测试主题
+     */
+    private static final String TOPIC = "test";
+
+    /**
+     * 序列化器
+     */
+    private final DeviceDataSerializer serializer = new DeviceDataSerializer();
+    /**
+     * 反序列化器
+     */
+    private final DeviceDataDeserializer deserializer = new DeviceDataDeserializer();
+
+    @Test
+    void writesStableProtocolCodes() {
+        assertThat(protocolByte(ProtocolIdentifier.PROTOCOL_NORMAL)).isEqualTo((byte) 0);
+        assertThat(protocolByte(ProtocolIdentifier.PROTOCOL_VIDEO)).isEqualTo((byte) 1);
+        assertThat(protocolByte(ProtocolIdentifier.PROTOCOL_VIDEO_FACE)).isEqualTo((byte) 2);
+        assertThat(protocolByte(null)).isEqualTo((byte) -1);
+    }
+
+    @Test
+    void roundTripsEveryProtocol() {
+        for (ProtocolIdentifier protocol : ProtocolIdentifier.values()) {
+            DeviceData data = new DeviceData("device-1", "payload", protocol);
+            DeviceData decoded = deserializer.deserialize(TOPIC, serializer.serialize(TOPIC, data));
+            assertThat(decoded.getProtocolType()).isEqualTo(protocol);
+            assertThat(decoded.getMsg()).isEqualTo("payload");
+        }
+    }
+
+    @Test
+    void rejectsUnknownProtocolCode() {
+        byte[] bytes = serializer.serialize(TOPIC, new DeviceData("device-1", "payload", ProtocolIdentifier.PROTOCOL_NORMAL));
+        bytes[2] = 100;
+        assertThatThrownBy(() -> deserializer.deserialize(TOPIC, bytes))
+                .isInstanceOf(SerializationException.class);
+    }
+
+    @Test
+    void writesStableDirectionCodesAndRoundTripsVideoMessages() {
+        for (VideoMessage.Direction direction : VideoMessage.Direction.values()) {
+            VideoMessage message = VideoMessage.of("heartBeat", direction, "t", "{\"a\":1}".getBytes(CharsetUtil.UTF_8));
+            byte[] bytes = serializer.serialize(TOPIC, new DeviceData("device-1", message, ProtocolIdentifier.PROTOCOL_VIDEO));
+            // 头部和设备ID之后依次为 commandLen(2)、command(9)、direction(1)
+            int directionOffset = DeviceDataSerializer.HEADER_LENGTH + "device-1".length() + 2 + "heartBeat".length();
+            assertThat(bytes[directionOffset]).isEqualTo((byte) (direction == VideoMessage.Direction.REQUEST ? 0 : 1));
+
+            VideoMessage decoded = (VideoMessage) deserializer.deserialize(TOPIC, bytes).getMsg();
+            assertThat(decoded.getDirection()).isEqualTo(direction);
+            assertThat(decoded.getCommandName()).isEqualTo("heartBeat");
+        }
+    }
+
+    @Test
+    void readsLegacyJsonRecords() {
+        DeviceData data = new DeviceData("device-1", "payload", ProtocolIdentifier.PROTOCOL_VIDEO_FACE, 1000L, 0);
+        // kafka.value-format=json 时生产者写入的格式
+        byte[] bytes = new JsonSerializer<DeviceData>().serialize(TOPIC, data);
+
+        DeviceData decoded = deserializer.deserialize(TOPIC, bytes);
+        assertThat(decoded.getDeviceId()).isEqualTo("device-1");
+        assertThat(decoded.getProtocolType()).isEqualTo(ProtocolIdentifier.PROTOCOL_VIDEO_FACE);
+        assertThat(decoded.getMsg()).isEqualTo("payload");
+        assertThat(decoded.getReceivedAt()).isEqualTo(1000L);
+    }
+
+    @Test
+    void readsVersionOneRecords() {
+        byte[] deviceId = "device-1".getBytes(CharsetUtil.UTF_8);
+        byte[] payload = "{\"a\":1}".getBytes(CharsetUtil.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(DeviceDataSerializer.HEADER_LENGTH + deviceId.length + payload.length);
+        buffer.put(DeviceDataSerializer.MAGIC).put((byte) 1)
+                .put((byte) 0).put(DeviceDataSerializer.KIND_JSON)
+                .putShort((short) deviceId.length).put(deviceId).put(payload);
+
+        DeviceData decoded = deserializer.deserialize(TOPIC, buffer.array());
+        assertThat(decoded.getDeviceId()).isEqualTo("device-1");
+        assertThat(decoded.getProtocolType()).isEqualTo(ProtocolIdentifier.PROTOCOL_NORMAL);
+        assertThat(decoded.getMsg()).isEqualTo(Collections.singletonMap("a", 1));
+        assertThat(decoded.getReceivedAt()).isZero();
+        // 没有 receivedAt 记录头时仍为未知，不记为消费时刻
+        assertThat(deserializer.deserialize(TOPIC, new RecordHeaders(), buffer.array()).getReceivedAt()).isZero();
+    }
+
+    @Test
+    void badRecordsBecomeNullBehindErrorHandlingDeserializer() {
+        byte[] truncated = {DeviceDataSerializer.MAGIC, 1, 0};
+        assertThatThrownBy(() -> deserializer.deserialize(TOPIC, truncated))
+                .isInstanceOf(SerializationException.class);
+
+        // 消费者工厂中的包装方式：解析失败的记录以空值交给监听器，不会卡住拉取
+        try (ErrorHandlingDeserializer<DeviceData> wrapped = new ErrorHandlingDeserializer<>(deserializer)) {
+            assertThat(wrapped.deserialize(TOPIC, new RecordHeaders(), truncated)).isNull();
+        }
+    }
+
+    @Test
+    void carriesReceivedAtInRecordHeaderAndKeepsVersionOneBody() {
+        DeviceData data = new DeviceData("device-1", "payload", ProtocolIdentifier.PROTOCOL_NORMAL, 1234567890123L, 0);
+        Headers headers = new RecordHeaders();
+        byte[] bytes = serializer.serialize(TOPIC, headers, data);
+
+        // 消息体与未升级节点能读取的版本 1 相同
+        assertThat(bytes[1]).isEqualTo((byte) 1);
+        assertThat(bytes).hasSize(DeviceDataSerializer.HEADER_LENGTH + "device-1".length() + "payload".length());
+        DeviceData decoded = deserializer.deserialize(TOPIC, headers, bytes);
+        assertThat(decoded.getReceivedAt()).isEqualTo(1234567890123L);
+        assertThat(decoded.getMsg()).isEqualTo("payload");
+    }
+
+    @Test
+    void rejectsUnknownVersion() {
+        byte[] bytes = serializer.serialize(TOPIC, new DeviceData("device-1", "payload", ProtocolIdentifier.PROTOCOL_NORMAL));
+        bytes[1] = 2;
+        assertThatThrownBy(() -> deserializer.deserialize(TOPIC, bytes))
+                .isInstanceOf(SerializationException.class);
+    }
+
+    /**
+     * 序列化后头部中的协议类型字节
+     *
+     * @param protocol 协议类型
+     * @return 协议类型字节
+     */
+    private byte protocolByte(ProtocolIdentifier protocol) {
+        return serializer.serialize(TOPIC, new DeviceData("device-1", "payload", protocol))[2];
+    }
+}
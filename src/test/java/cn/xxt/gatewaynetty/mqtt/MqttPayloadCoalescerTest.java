@@ -0,0 +1,83 @@
+package cn.xxt.gatewaynetty.mqtt;
+
+import cn.xxt.gatewaynetty.netty.config.GatewayConfig;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: 合并遥测/属性消息时同一设备与其连接/断开消息的先后顺序
+ * @author: Havad
+ * @create: 2026-10-18 21:20
+ **/
+
+class MqttPayloadCoalescerTest {
+    /**
+     * 被测合并器
+     */
+    private final MqttPayloadCoalescer coalescer = new MqttPayloadCoalescer(64 * 1024);
+
+    @Test
+    void keepsTelemetryAfterDisconnectOfSameDevice() {
+        List<MqttSender.MqttPublishTask> result = coalescer.coalesce(Arrays.asList(
+                task(GatewayConfig.TELEMETRY_TOPIC, "{\"A\":[{\"v\":1}]}"),
+                task(GatewayConfig.DISCONNECT_TOPIC, "{\"device\":\"A\"}"),
+                task(GatewayConfig.TELEMETRY_TOPIC, "{\"A\":[{\"v\":2}]}")));
+
+        assertThat(result).extracting(MqttSender.MqttPublishTask::getTopic).containsExactly(
+                GatewayConfig.TELEMETRY_TOPIC, GatewayConfig.DISCONNECT_TOPIC, GatewayConfig.TELEMETRY_TOPIC);
+        assertThat(payload(result.get(0))).isEqualTo("{\"A\":[{\"v\":1}]}");
+        assertThat(payload(result.get(2))).isEqualTo("{\"A\":[{\"v\":2}]}");
+    }
+
+    @Test
+    void keepsMergingDevicesNotNamedByConnect() {
+        List<MqttSender.MqttPublishTask> result = coalescer.coalesce(Arrays.asList(
+                task(GatewayConfig.TELEMETRY_TOPIC, "{\"A\":[{\"v\":1}]}"),
+                task(GatewayConfig.CONNECT_TOPIC, "{\"device\":\"B\"}"),
+                task(GatewayConfig.TELEMETRY_TOPIC, "{\"A\":[{\"v\":2}]}")));
+
+        assertThat(result).hasSize(2);
+        assertThat(payload(result.get(0))).isEqualTo("{\"A\":[{\"v\":1},{\"v\":2}]}");
+        assertThat(result.get(0).getCount()).isEqualTo(2);
+        assertThat(result.get(1).getTopic()).isEqualTo(GatewayConfig.CONNECT_TOPIC);
+    }
+
+    @Test
+    void closesEveryBatchWhenDeviceIsUnknown() {
+        List<MqttSender.MqttPublishTask> result = coalescer.coalesce(Arrays.asList(
+                task(GatewayConfig.ATTRIBUTE_TOPIC, "{\"A\":{\"k\":1}}"),
+                task(GatewayConfig.ATTRIBUTE_TOPIC, "not json"),
+                task(GatewayConfig.ATTRIBUTE_TOPIC, "{\"A\":{\"k\":2}}")));
+
+        assertThat(result).extracting(MqttPayloadCoalescerTest::payload)
+                .containsExactly("{\"A\":{\"k\":1}}", "not json", "{\"A\":{\"k\":2}}");
+    }
+
+    /**
+     * 构造发布任务
+     *
+     * @param topic 主题
+     * @param body  消息体
+     * @return 发布任务
+     */
+    private static MqttSender.MqttPublishTask task(String topic, String body) {
+        return new MqttSender.MqttPublishTask(topic, new MqttMessage(body.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /**
+     * 读取发布任务的消息体
+     *
+     * @param task 发布任务
+     * @return 消息体
+     */
+    private static String payload(MqttSender.MqttPublishTask task) {
+        return new String(task.getMessage().getPayload(), StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,263 @@
+package cn.xxt.gatewaynetty.mqtt;
+
+import cn.xxt.gatewaynetty.bus.DeviceDataBus;
+import cn.xxt.gatewaynetty.mqtt.parser.MqttMessageParserFactory;
+import cn.xxt.gatewaynetty.netty.videophone.image.FaceImageFetcher;
+import cn.xxt.gatewaynetty.netty.videophone.image.LocalImageStore;
+import cn.xxt.gatewaynetty.netty.videophone.task.Task;
+import cn.xxt.gatewaynetty.netty.videophone.task.TaskManager;
+import cn.xxt.gatewaynetty.support.StubHttpServer;
+import org.eclipse.paho.client.mqttv3.MqttAsyncClient;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.ArgumentCaptor;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: 人脸任务入队顺序：图片并行下载，同一设备的任务按 RPC 到达顺序写入任务队列；图片服务器使用本地 HTTP 桩
+ * @author: Havad
+ * @create: 2026-10-18 20:50
+ **/
+
+class MqttReceiverFaceTaskTest {
+    /**
+     * RPC 主题
+     */
+    private static final String TOPIC = "v1/gateway/rpc";
+    /**
+     * 人脸 RPC 接收队列容量
+     */
+    private static final int INTAKE_CAPACITY = 1;
+
+    /**
+     * 任务管理器
+     */
+    private TaskManager taskManager;
+    /**
+     * 人脸图片下载器
+     */
+    private FaceImageFetcher imageFetcher;
+    /**
+     * RPC 响应发布器
+     */
+    private MqttAsyncPublisher publisher;
+    /**
+     * 被测接收器
+     */
+    private MqttReceiver receiver;
+
+    @BeforeEach
+    void setUp() {
+        MqttConnection connection = mock(MqttConnection.class);
+        when(connection.getMqttClient()).thenReturn(mock(MqttAsyncClient.class));
+        taskManager = mock(TaskManager.class);
+        imageFetcher = mock(FaceImageFetcher.class);
+        publisher = mock(MqttAsyncPublisher.class);
+        when(publisher.publishNonBlocking(any(), any())).thenReturn(CompletableFuture.completedFuture(null));
+        receiver = new MqttReceiver(mock(DeviceDataBus.class), connection, publisher,
+                taskManager, mock(MqttMessageParserFactory.class), imageFetcher, INTAKE_CAPACITY);
+    }
+
+    @AfterEach
+    void tearDown() {
+        receiver.stop();
+    }
+
+    @Test
+    void deleteDoesNotOvertakeEarlierAddForSameDevice() throws Exception {
+        CompletableFuture<String> picture = new CompletableFuture<>();
+        when(imageFetcher.fetchBase64("http://img/a.jpg")).thenReturn(picture);
+
+        receiver.messageArrived(TOPIC, addPerson("d1", "t1", "p1", "http://img/a.jpg"));
+        receiver.messageArrived(TOPIC, deletePerson("d1", "t2", "p1"));
+        // 图片未就绪时两个任务都不能入队
+        verify(taskManager, never()).addTask(any(), any());
+
+        picture.complete("YQ==");
+
+        assertThat(addedTaskIds("d1", 2)).containsExactly("t1", "t2");
+    }
+
+    @Test
+    void keepsOrderWithRealDownloads(@TempDir Path dir) throws Exception {
+        LocalImageStore store = new LocalImageStore();
+        ReflectionTestUtils.setField(store, "enabled", true);
+        ReflectionTestUtils.setField(store, "dir", dir.toString());
+        ReflectionTestUtils.setField(store, "maxBytes", 1024L * 1024);
+        store.open();
+        FaceImageFetcher fetcher = new FaceImageFetcher(store);
+        ReflectionTestUtils.setField(fetcher, "threads", 2);
+        ReflectionTestUtils.setField(fetcher, "queueCapacity", 10);
+        ReflectionTestUtils.setField(fetcher, "maxPerHost", 2);
+        ReflectionTestUtils.setField(fetcher, "connectTimeoutMillis", 1000);
+        ReflectionTestUtils.setField(fetcher, "readTimeoutMillis", 2000);
+        fetcher.init();
+        MqttConnection connection = mock(MqttConnection.class);
+        when(connection.getMqttClient()).thenReturn(mock(MqttAsyncClient.class));
+        MqttReceiver realReceiver = new MqttReceiver(mock(DeviceDataBus.class), connection,
+                mock(MqttAsyncPublisher.class), taskManager, mock(MqttMessageParserFactory.class), fetcher,
+                INTAKE_CAPACITY);
+
+        try (StubHttpServer stub = new StubHttpServer()) {
+            stub.on("/slow.jpg", (exchange, count) -> {
+                Thread.sleep(300);
+                StubHttpServer.respond(exchange, 200, "jpeg");
+            });
+            realReceiver.messageArrived(TOPIC, addPerson("d1", "t1", "p1", stub.url("/slow.jpg")));
+            realReceiver.messageArrived(TOPIC, deletePerson("d1", "t2", "p1"));
+
+            ArgumentCaptor<Task> tasks = ArgumentCaptor.forClass(Task.class);
+            verify(taskManager, timeout(5000).times(2)).addTask(eq("d1"), tasks.capture());
+            assertThat(tasks.getAllValues()).extracting(Task::getTaskId).containsExactly("t1", "t2");
+            assertThat(tasks.getAllValues().get(0).getPersonList().get(0)).containsKey("picture");
+        } finally {
+            realReceiver.stop();
+            fetcher.shutdown();
+        }
+    }
+
+    @Test
+    void otherDevicesAreNotBlocked() throws Exception {
+        when(imageFetcher.fetchBase64("http://img/a.jpg")).thenReturn(new CompletableFuture<>());
+
+        receiver.messageArrived(TOPIC, addPerson("d1", "t1", "p1", "http://img/a.jpg"));
+        receiver.messageArrived(TOPIC, deletePerson("d2", "t2", "p1"));
+
+        assertThat(addedTaskIds("d2", 1)).containsExactly("t2");
+        verify(taskManager, never()).addTask(eq("d1"), any());
+    }
+
+    @Test
+    void writesTaskOffCallbackThread() throws Exception {
+        when(imageFetcher.fetchBase64("http://img/a.jpg")).thenReturn(CompletableFuture.completedFuture("YQ=="));
+        AtomicReference<String> writer = new AtomicReference<>();
+        doAnswer(invocation -> {
+            writer.set(Thread.currentThread().getName());
+            return null;
+        }).when(taskManager).addTask(eq("d1"), any());
+
+        // 图片已在缓存中，回调线程上也不能直接访问 Redis
+        receiver.messageArrived(TOPIC, addPerson("d1", "t1", "p1", "http://img/a.jpg"));
+
+        assertThat(addedTaskIds("d1", 1)).containsExactly("t1");
+        assertThat(writer.get()).startsWith("face-task-writer");
+    }
+
+    @Test
+    void rejectsRpcWhenIntakeIsFull() throws Exception {
+        CountDownLatch entered = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(imageFetcher.fetchBase64("http://img/a.jpg")).thenAnswer(invocation -> {
+            // 模拟下载队列已满，接收线程阻塞在提交上
+            entered.countDown();
+            release.await();
+            return CompletableFuture.completedFuture("YQ==");
+        });
+
+        receiver.messageArrived(TOPIC, addPerson("d1", "t1", "p1", "http://img/a.jpg"));
+        assertThat(entered.await(5, TimeUnit.SECONDS)).isTrue();
+        receiver.messageArrived(TOPIC, deletePerson("d2", "t2", "p1"));
+        // 接收队列已满，回调线程不等待，直接回复失败
+        receiver.messageArrived(TOPIC, deletePerson("d3", "t3", "p1"));
+
+        verify(publisher).publishNonBlocking(eq(TOPIC), argThat(message -> {
+            String payload = new String(message.getPayload(), StandardCharsets.UTF_8);
+            return payload.contains("\"device\":\"d3\"") && payload.contains("\"success\":false");
+        }));
+        release.countDown();
+        assertThat(addedTaskIds("d1", 1)).containsExactly("t1");
+        assertThat(addedTaskIds("d2", 1)).containsExactly("t2");
+        verify(taskManager, never()).addTask(eq("d3"), any());
+    }
+
+    @Test
+    void failedDownloadDoesNotBlockLaterTasks() throws Exception {
+        CompletableFuture<String> picture = new CompletableFuture<>();
+        when(imageFetcher.fetchBase64("http://img/a.jpg")).thenReturn(picture);
+
+        receiver.messageArrived(TOPIC, addPerson("d1", "t1", "p1", "http://img/a.jpg"));
+        receiver.messageArrived(TOPIC, deletePerson("d1", "t2", "p1"));
+        picture.completeExceptionally(new IOException("timeout"));
+
+        assertThat(addedTaskIds("d1", 1)).containsExactly("t2");
+    }
+
+    /**
+     * 按调用顺序取出写入某台设备的任务ID
+     *
+     * @param device 设备ID
+     * @param count  期望的任务数
+     * @return 任务ID列表
+     */
+    private List<String> addedTaskIds(String device, int count) {
+        ArgumentCaptor<Task> tasks = ArgumentCaptor.forClass(Task.class);
+        verify(taskManager, timeout(5000).times(count)).addTask(eq(device), tasks.capture());
+        return tasks.getAllValues().stream().map(Task::getTaskId).collect(Collectors.toList());
+    }
+
+    /**
+     * 新增人员的 RPC
+     *
+     * @param device   设备ID
+     * @param taskId   任务ID
+     * @param personId 人员ID
+     * @param imageUrl 图片地址
+     * @return MQTT 消息
+     */
+    private static MqttMessage addPerson(String device, String taskId, String personId, String imageUrl) {
+        return rpc(device, "add person", taskId, "{\"operType\":1,\"id\":\"" + personId + "\",\"number\":\"1\","
+                + "\"depName\":\"d\",\"userType\":1,\"name\":\"n\",\"cardNo\":\"c\",\"imageUrl\":\"" + imageUrl + "\"}");
+    }
+
+    /**
+     * 删除人员的 RPC
+     *
+     * @param device   设备ID
+     * @param taskId   任务ID
+     * @param personId 人员ID
+     * @return MQTT 消息
+     */
+    private static MqttMessage deletePerson(String device, String taskId, String personId) {
+        return rpc(device, "del person", taskId, "{\"operType\":2,\"id\":\"" + personId + "\"}");
+    }
+
+    /**
+     * 构造 ThingsBoard 网关 RPC 消息
+     *
+     * @param device 设备ID
+     * @param method 方法名
+     * @param taskId 任务ID
+     * @param person 人员 JSON
+     * @return MQTT 消息
+     */
+    private static MqttMessage rpc(String device, String method, String taskId, String person) {
+        String json = "{\"device\":\"" + device + "\",\"data\":{\"id\":1,\"method\":\"" + method + "\","
+                + "\"params\":{\"taskId\":\"" + taskId + "\",\"body\":[" + person + "]}}}";
+        return new MqttMessage(json.getBytes(StandardCharsets.UTF_8));
+    }
+}
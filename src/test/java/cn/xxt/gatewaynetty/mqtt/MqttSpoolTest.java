@@ -0,0 +1,131 @@
+package cn.xxt.gatewaynetty.mqtt;
+
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: 磁盘缓存的游标只在发布确认后推进，重启后重放未确认的消息
+ * @author: Havad
+ * @create: 2026-10-18 21:40
+ **/
+
+class MqttSpoolTest {
+    /**
+     * 测试用分段大小，放得下两条单字节主题、单字节消息体的记录（每条 9 字节）
+     */
+    private static final int SEGMENT_BYTES = 20;
+
+    /**
+     * 缓存目录
+     */
+    @TempDir
+    File dir;
+
+    /**
+     * 被测缓存
+     */
+    private MqttSpool spool;
+
+    @AfterEach
+    void tearDown() {
+        spool.close();
+    }
+
+    @Test
+    void replaysUnackedMessagesAfterRestart() throws IOException {
+        spool = open();
+        spool.append("t", message("a"));
+        spool.append("t", message("b"));
+        List<MqttSender.MqttPublishTask> polled = spool.poll(10);
+        assertThat(bodies(polled)).containsExactly("a", "b");
+
+        // 只确认了后一条，游标仍停在前一条
+        spool.ack(polled.get(1).getReceipts());
+        spool.close();
+        spool = open();
+        polled = spool.poll(10);
+        assertThat(bodies(polled)).containsExactly("a", "b");
+
+        // 重放后的两条都要重新确认
+        spool.ack(polled.get(0).getReceipts());
+        spool.ack(polled.get(1).getReceipts());
+        spool.close();
+        spool = open();
+        assertThat(spool.isEmpty()).isTrue();
+    }
+
+    @Test
+    void keepsReadSegmentsUntilAcked() throws IOException {
+        spool = open();
+        for (String body : new String[]{"a", "b", "c", "d", "e"}) {
+            spool.append("t", message(body));
+        }
+        List<MqttSender.MqttPublishTask> polled = spool.poll(4);
+        assertThat(bodies(polled)).containsExactly("a", "b", "c", "d");
+        assertThat(spool.getSegmentCount()).isEqualTo(3);
+
+        List<MqttSpool.Receipt> receipts = new ArrayList<>();
+        for (MqttSender.MqttPublishTask task : polled) {
+            receipts.addAll(task.getReceipts());
+        }
+        spool.ack(receipts);
+        assertThat(spool.getSegmentCount()).isEqualTo(2);
+
+        spool.close();
+        spool = open();
+        assertThat(bodies(spool.poll(10))).containsExactly("e");
+    }
+
+    /**
+     * 打开测试目录下的缓存
+     *
+     * @return 缓存
+     * @throws IOException 文件操作失败时抛出
+     */
+    private MqttSpool open() throws IOException {
+        MqttSpool opened = new MqttSpool();
+        ReflectionTestUtils.setField(opened, "enabled", true);
+        ReflectionTestUtils.setField(opened, "dir", dir.getAbsolutePath());
+        ReflectionTestUtils.setField(opened, "segmentBytes", SEGMENT_BYTES);
+        ReflectionTestUtils.setField(opened, "maxSegments", 16);
+        opened.open();
+        return opened;
+    }
+
+    /**
+     * 构造消息
+     *
+     * @param body 消息体
+     * @return 消息
+     */
+    private static MqttMessage message(String body) {
+        return new MqttMessage(body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 读取消息体
+     *
+     * @param tasks 发布任务
+     * @return 消息体列表
+     */
+    private static List<String> bodies(List<MqttSender.MqttPublishTask> tasks) {
+        List<String> result = new ArrayList<>(tasks.size());
+        for (MqttSender.MqttPublishTask task : tasks) {
+            result.add(new String(task.getMessage().getPayload(), StandardCharsets.UTF_8));
+        }
+        return Collections.unmodifiableList(result);
+    }
+}
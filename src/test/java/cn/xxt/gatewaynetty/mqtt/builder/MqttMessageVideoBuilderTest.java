@@ -0,0 +1,57 @@
+package cn.xxt.gatewaynetty.mqtt.builder;
+
+import cn.xxt.gatewaynetty.netty.model.DeviceData;
+import cn.xxt.gatewaynetty.netty.protocol.ProtocolIdentifier;
+import cn.xxt.gatewaynetty.util.LogUtils;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.eclipse.paho.client.mqttv3.MqttMessage;
+import org.junit.jupiter.api.Test;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: 视频话机遥测构建：旧 Map 消息生成合法 JSON，缺少 command 时拒绝构建
+ * @author: Havad
+ * @create: 2026-10-19 10:20
+ **/
+
+class MqttMessageVideoBuilderTest {
+    /**
+     * 用于解析生成的遥测
+     */
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * 被测构建器
+     */
+    private final MqttMessageVideoBuilder builder = new MqttMessageVideoBuilder();
+
+    @Test
+    void buildsTelemetryFromLegacyMap() throws Exception {
+        Map<String, Object> msg = new HashMap<>();
+        msg.put("command", "devstatus");
+        msg.put("request", Collections.singletonMap("Battery", 80));
+
+        MqttMessage message = builder.buildMessage(new DeviceData("KAR1", msg, ProtocolIdentifier.PROTOCOL_VIDEO));
+
+        JsonNode values = MAPPER.readTree(message.getPayload()).get("KAR1").get(0).get("values");
+        assertThat(values.get("devstatus").get("Battery").asInt()).isEqualTo(80);
+    }
+
+    @Test
+    void rejectsLegacyMapWithoutCommand() {
+        Map<String, Object> msg = Collections.singletonMap("request", Collections.singletonMap("Battery", 80));
+        long before = LogUtils.getErrorCounts().getOrDefault("mqtt.build.video.nocommand", 0L);
+
+        assertThatThrownBy(() -> builder.buildMessage(new DeviceData("KAR1", msg, ProtocolIdentifier.PROTOCOL_VIDEO)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(LogUtils.getErrorCounts().get("mqtt.build.video.nocommand")).isEqualTo(before + 1);
+    }
+}
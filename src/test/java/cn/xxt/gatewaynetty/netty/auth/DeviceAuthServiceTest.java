@@ -0,0 +1,131 @@
+package cn.xxt.gatewaynetty.netty.auth;
+
+import cn.xxt.gatewaynetty.netty.transport.NettyTransport;
+import cn.xxt.gatewaynetty.support.StubHttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: 设备认证服务：结果缓存、失败不缓存、并发请求合并，使用本地 HTTP 桩代替认证接口
+ * @author: Havad
+ * @create: 2026-10-18 20:15
+ **/
+
+class DeviceAuthServiceTest {
+    /**
+     * 认证接口路径
+     */
+    private static final String AUTH_PATH = "/device-auth";
+    /**
+     * 等待结果的超时（秒）
+     */
+    private static final long TIMEOUT_SECONDS = 5;
+
+    /**
+     * 认证接口桩
+     */
+    private StubHttpServer stub;
+    /**
+     * 放行桩的响应，用于让并发请求同时处于进行中
+     */
+    private volatile CountDownLatch release = new CountDownLatch(0);
+    /**
+     * 被测服务
+     */
+    private DeviceAuthService authService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        stub = new StubHttpServer().on(AUTH_PATH, (exchange, count) -> {
+            release.await(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            String query = exchange.getRequestURI().getQuery();
+            if (query.endsWith("error")) {
+                StubHttpServer.respond(exchange, 500, "");
+            } else {
+                StubHttpServer.respond(exchange, 200, "{\"content\":" + query.endsWith("ok") + "}");
+            }
+        });
+        authService = new DeviceAuthService(new NettyTransport());
+        ReflectionTestUtils.setField(authService, "authUrl", stub.url(AUTH_PATH));
+        ReflectionTestUtils.setField(authService, "positiveTtlSeconds", 600L);
+        ReflectionTestUtils.setField(authService, "negativeTtlSeconds", 1L);
+        ReflectionTestUtils.setField(authService, "timeoutMillis", 3000);
+        ReflectionTestUtils.setField(authService, "ioThreads", 1);
+        ReflectionTestUtils.setField(authService, "cacheMaxSize", 100);
+        authService.init();
+    }
+
+    @AfterEach
+    void tearDown() {
+        authService.shutdown();
+        stub.close();
+    }
+
+    @Test
+    void cachesPositiveResult() throws Exception {
+        assertThat(authenticate("860000000000000001ok")).isTrue();
+        assertThat(authenticate("860000000000000001ok")).isTrue();
+        assertThat(stub.requestCount(AUTH_PATH)).isEqualTo(1);
+    }
+
+    @Test
+    void cachesNegativeResultUntilItsTtlExpires() throws Exception {
+        assertThat(authenticate("860000000000000002no")).isFalse();
+        assertThat(authenticate("860000000000000002no")).isFalse();
+        assertThat(stub.requestCount(AUTH_PATH)).isEqualTo(1);
+
+        TimeUnit.MILLISECONDS.sleep(1100);
+        assertThat(authenticate("860000000000000002no")).isFalse();
+        assertThat(stub.requestCount(AUTH_PATH)).isEqualTo(2);
+    }
+
+    @Test
+    void doesNotCacheFailedRequests() {
+        assertThatThrownBy(() -> authenticate("860000000000000003error")).isInstanceOf(ExecutionException.class);
+        assertThatThrownBy(() -> authenticate("860000000000000003error")).isInstanceOf(ExecutionException.class);
+        assertThat(stub.requestCount(AUTH_PATH)).isEqualTo(2);
+    }
+
+    @Test
+    void invalidateForcesNewRequest() throws Exception {
+        assertThat(authenticate("860000000000000004ok")).isTrue();
+        authService.invalidate("860000000000000004ok");
+        assertThat(authenticate("860000000000000004ok")).isTrue();
+        assertThat(stub.requestCount(AUTH_PATH)).isEqualTo(2);
+    }
+
+    @Test
+    void coalescesConcurrentRequestsForSameDevice() throws Exception {
+        release = new CountDownLatch(1);
+        List<CompletableFuture<Boolean>> futures = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            futures.add(authService.authenticate("860000000000000005ok"));
+        }
+        CompletableFuture<Boolean> other = authService.authenticate("860000000000000006ok");
+        release.countDown();
+
+        for (CompletableFuture<Boolean> future : futures) {
+            assertThat(future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isTrue();
+        }
+        assertThat(other.get(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isTrue();
+        // 同一设备只请求一次，不同设备各自请求
+        assertThat(stub.requestCount(AUTH_PATH)).isEqualTo(2);
+    }
+
+    private boolean authenticate(String deviceNo) throws Exception {
+        return authService.authenticate(deviceNo).get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,117 @@
+package cn.xxt.gatewaynetty.netty.handler;
+
+import cn.xxt.gatewaynetty.mqtt.parser.MqttNormalMessageParser;
+import cn.xxt.gatewaynetty.netty.auth.DeviceAuthService;
+import cn.xxt.gatewaynetty.netty.handler.kar_normal.AuthenticationNormalHandler;
+import cn.xxt.gatewaynetty.netty.model.Pdu;
+import cn.xxt.gatewaynetty.netty.registry.DeviceRegistry;
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: 异步认证流程：认证期间暂停读取并缓存后续消息，认证结果返回后恢复读取或关闭连接
+ * @author: Havad
+ * @create: 2026-10-18 20:20
+ **/
+
+class AsyncAuthenticationHandlerTest {
+    /**
+     * 测试设备编号
+     */
+    private static final String DEVICE_NO = "860000000000000001";
+
+    /**
+     * 设备注册表
+     */
+    private DeviceRegistry registry;
+    /**
+     * 认证服务，结果由测试控制
+     */
+    private DeviceAuthService authService;
+    /**
+     * 认证结果
+     */
+    private CompletableFuture<Boolean> result;
+    /**
+     * 普通话机连接
+     */
+    private EmbeddedChannel channel;
+
+    @BeforeEach
+    void setUp() {
+        registry = mock(DeviceRegistry.class);
+        authService = mock(DeviceAuthService.class);
+        result = new CompletableFuture<>();
+        when(authService.authenticate(DEVICE_NO)).thenReturn(result);
+        channel = new EmbeddedChannel(new AuthenticationNormalHandler(registry, authService));
+    }
+
+    @Test
+    void pausesReadsUntilAuthorizedThenReplaysBufferedMessages() {
+        Pdu first = pdu(1);
+        Pdu second = pdu(2);
+        channel.writeInbound(first);
+        assertThat(channel.config().isAutoRead()).isFalse();
+
+        // 认证期间到达的消息先缓存，不向后传递
+        channel.writeInbound(second);
+        assertThat((Object) channel.readInbound()).isNull();
+
+        result.complete(true);
+        channel.runPendingTasks();
+
+        verify(registry).register(DEVICE_NO, channel);
+        assertThat((Object) channel.readInbound()).isSameAs(first);
+        assertThat((Object) channel.readInbound()).isSameAs(second);
+        assertThat(channel.config().isAutoRead()).isTrue();
+        assertThat(channel.pipeline().get(AuthenticationNormalHandler.class)).isNull();
+        assertThat(channel.isActive()).isTrue();
+    }
+
+    @Test
+    void closesChannelWhenRejected() {
+        channel.writeInbound(pdu(1));
+        result.complete(false);
+        channel.runPendingTasks();
+
+        verify(registry, never()).register(any(), any());
+        assertThat((Object) channel.readInbound()).isNull();
+        assertThat(channel.isActive()).isFalse();
+    }
+
+    @Test
+    void closesChannelWhenAuthRequestFails() {
+        channel.writeInbound(pdu(1));
+        result.completeExceptionally(new IllegalStateException("timeout"));
+        channel.runPendingTasks();
+
+        verify(registry, never()).register(any(), any());
+        assertThat(channel.isActive()).isFalse();
+    }
+
+    @Test
+    void closesChannelOnInvalidFirstFrame() {
+        channel.writeInbound(Pdu.of("*#F#0010garbage"));
+
+        verify(authService, never()).authenticate(any());
+        assertThat(channel.isActive()).isFalse();
+    }
+
+    private static Pdu pdu(int seqNo) {
+        String body = DEVICE_NO;
+        int length = 4 + 4 + 1 + 2 + 4 + body.length() + 4;
+        return Pdu.of(MqttNormalMessageParser.appendHexLength(
+                "*#F#" + String.format("%04d", length) + "1" + String.format("01%04d", seqNo) + body));
+    }
+}
@@ -0,0 +1,248 @@
+package cn.xxt.gatewaynetty.netty.handler.kar_normal;
+
+import cn.xxt.gatewaynetty.bus.DeviceDataBus;
+import cn.xxt.gatewaynetty.netty.model.DeviceData;
+import cn.xxt.gatewaynetty.netty.model.DeviceDataEvent;
+import cn.xxt.gatewaynetty.netty.model.Pdu;
+import cn.xxt.gatewaynetty.util.LogUtils;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.AttributeKey;
+import io.netty.util.CharsetUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: 普通话机分帧：半包、前缀前的数据、非法 length 字段、非 ASCII 消息体和多分片短信
+ * @author: Havad
+ * @create: 2026-10-18 22:50
+ **/
+
+class PduFrameDecoderTest {
+    /**
+     * 测试设备编号
+     */
+    private static final String DEVICE_NO = "861234567890123456";
+
+    /**
+     * 只包含分帧解码器的连接
+     */
+    private EmbeddedChannel channel;
+
+    @BeforeEach
+    void setUp() {
+        channel = new EmbeddedChannel(new PduFrameDecoder());
+    }
+
+    @AfterEach
+    void tearDown() {
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    void waitsForTheRestOfASplitFrame() {
+        String frame = frame(1, DEVICE_NO + "0021");
+        byte[] bytes = frame.getBytes(CharsetUtil.UTF_8);
+
+        write(Arrays.copyOfRange(bytes, 0, 6));
+        assertThat((Object) channel.readInbound()).isNull();
+        write(Arrays.copyOfRange(bytes, 6, 20));
+        assertThat((Object) channel.readInbound()).isNull();
+        write(Arrays.copyOfRange(bytes, 20, bytes.length));
+
+        Pdu pdu = channel.readInbound();
+        assertThat(pdu.asString()).isEqualTo(frame);
+        assertThat(pdu.isValid()).isTrue();
+        assertThat((Object) channel.readInbound()).isNull();
+    }
+
+    @Test
+    void decodesSeveralFramesFromOneRead() {
+        String first = frame(1, DEVICE_NO);
+        String second = frame(3, DEVICE_NO + ",20261018,173512");
+
+        write(first + second);
+
+        assertThat(((Pdu) channel.readInbound()).asString()).isEqualTo(first);
+        assertThat(((Pdu) channel.readInbound()).asString()).isEqualTo(second);
+    }
+
+    @Test
+    void passesBytesBeforeAPrefixOnAndCountsThem() {
+        long before = unframedCount();
+        String frame = frame(1, DEVICE_NO);
+
+        write("garbage\r\n" + frame);
+
+        Pdu unframed = channel.readInbound();
+        assertThat(unframed.asString()).isEqualTo("garbage\r\n");
+        assertThat(unframed.isValid()).isFalse();
+        assertThat(((Pdu) channel.readInbound()).asString()).isEqualTo(frame);
+        assertThat(unframedCount()).isEqualTo(before + 1);
+    }
+
+    @Test
+    void keepsATrailingPartialPrefixUntilTheNextRead() {
+        String frame = frame(1, DEVICE_NO);
+
+        write("xy*#");
+        assertThat(((Pdu) channel.readInbound()).asString()).isEqualTo("xy");
+        assertThat((Object) channel.readInbound()).isNull();
+        write(frame.substring(2));
+
+        assertThat(((Pdu) channel.readInbound()).asString()).isEqualTo(frame);
+    }
+
+    @Test
+    void passesABadLengthFieldOnAndResyncsOnTheNextPrefix() {
+        long before = unframedCount();
+        String bad = "*#F#00x9101" + DEVICE_NO;
+        String tooShort = "*#F#0005101";
+        String frame = frame(1, DEVICE_NO);
+
+        write(bad + tooShort + frame);
+
+        assertThat(((Pdu) channel.readInbound()).asString()).isEqualTo(bad);
+        assertThat(((Pdu) channel.readInbound()).asString()).isEqualTo(tooShort);
+        Pdu pdu = channel.readInbound();
+        assertThat(pdu.asString()).isEqualTo(frame);
+        assertThat(pdu.isValid()).isTrue();
+        assertThat(unframedCount()).isEqualTo(before + 2);
+    }
+
+    @Test
+    void dropsAnUnframedRunLongerThanTheMaxFrameLength() {
+        EmbeddedChannel small = new EmbeddedChannel(new PduFrameDecoder(64, 1024));
+        long before = countOf("pdu.unframed.dropped");
+        String frame = frame(1, DEVICE_NO);
+
+        small.writeInbound(Unpooled.wrappedBuffer(repeat('x', 40).getBytes(CharsetUtil.UTF_8)));
+        small.writeInbound(Unpooled.wrappedBuffer((repeat('x', 40) + frame).getBytes(CharsetUtil.UTF_8)));
+
+        // 第一次读取的 40 字节在上限内传出，同一段数据超过上限的部分丢弃，之后的帧照常解出
+        assertThat(((Pdu) small.readInbound()).asString()).isEqualTo(repeat('x', 40));
+        assertThat(((Pdu) small.readInbound()).asString()).isEqualTo(frame);
+        assertThat((Object) small.readInbound()).isNull();
+        assertThat(countOf("pdu.unframed.dropped")).isEqualTo(before + 1);
+        assertThat(small.isOpen()).isTrue();
+        small.finishAndReleaseAll();
+    }
+
+    @Test
+    void closesTheConnectionWhenTheUnframedBudgetIsExceeded() {
+        EmbeddedChannel small = new EmbeddedChannel(new PduFrameDecoder(64, 100));
+        long before = countOf("pdu.unframed.overflow");
+        String junk = repeat('x', 60) + "*#F#";
+
+        small.writeInbound(Unpooled.wrappedBuffer(junk.getBytes(CharsetUtil.UTF_8)));
+        assertThat(small.isOpen()).isTrue();
+        small.writeInbound(Unpooled.wrappedBuffer((junk + frame(1, DEVICE_NO)).getBytes(CharsetUtil.UTF_8)));
+
+        assertThat(small.isOpen()).isFalse();
+        assertThat(countOf("pdu.unframed.overflow")).isEqualTo(before + 1);
+        small.finishAndReleaseAll();
+    }
+
+    @Test
+    void aCompleteFrameResetsTheUnframedBudget() {
+        EmbeddedChannel small = new EmbeddedChannel(new PduFrameDecoder(64, 100));
+        String junk = repeat('x', 60);
+        String frame = frame(1, DEVICE_NO);
+
+        small.writeInbound(Unpooled.wrappedBuffer((junk + frame + junk + frame).getBytes(CharsetUtil.UTF_8)));
+
+        assertThat(((Pdu) small.readInbound()).asString()).isEqualTo(junk);
+        assertThat(((Pdu) small.readInbound()).asString()).isEqualTo(frame);
+        assertThat(((Pdu) small.readInbound()).asString()).isEqualTo(junk);
+        assertThat(((Pdu) small.readInbound()).asString()).isEqualTo(frame);
+        assertThat(small.isOpen()).isTrue();
+        small.finishAndReleaseAll();
+    }
+
+    @Test
+    void countsTheLengthFieldInCharactersForNonAsciiBodies() {
+        String frame = frame(98, DEVICE_NO + ",13800138000,你好，今天放学后请回家吃饭");
+        String next = frame(1, DEVICE_NO);
+        byte[] bytes = (frame + next).getBytes(CharsetUtil.UTF_8);
+        // 在一个汉字的 UTF-8 序列中间切开
+        int split = frame.indexOf('你') + 20;
+
+        write(Arrays.copyOfRange(bytes, 0, split));
+        assertThat((Object) channel.readInbound()).isNull();
+        write(Arrays.copyOfRange(bytes, split, bytes.length));
+
+        Pdu pdu = channel.readInbound();
+        assertThat(pdu.asString()).isEqualTo(frame);
+        assertThat(pdu.isValid()).isTrue();
+        assertThat(pdu.getBody()).isEqualTo(DEVICE_NO + ",13800138000,你好，今天放学后请回家吃饭");
+        assertThat(((Pdu) channel.readInbound()).asString()).isEqualTo(next);
+    }
+
+    @Test
+    void concatenatesMultiFragmentSmsOnFunc98() {
+        DeviceDataBus bus = mock(DeviceDataBus.class);
+        EmbeddedChannel pipeline = new EmbeddedChannel(new PduFrameDecoder(),
+                new DataInboundNormalHandler(bus, new UnvalidatedMessageBuffer()));
+        pipeline.attr(AttributeKey.<String>valueOf("deviceId")).set(DEVICE_NO);
+        // 带前缀但校验不通过的分片、不带前缀的续传分片，最后是功能号 98 的帧
+        String fragment = "*#F#0039" + "1" + "980002" + "4F60597DFF0C4ECA5929" + "FFFF";
+        String continuation = "653E5B66540E8BF756DE";
+        String sms = frame(98, DEVICE_NO + ",13800138000,1");
+        byte[] bytes = (fragment + continuation + sms).getBytes(CharsetUtil.UTF_8);
+
+        pipeline.writeInbound(Unpooled.wrappedBuffer(bytes, 0, 25));
+        pipeline.writeInbound(Unpooled.wrappedBuffer(bytes, 25, 30));
+        pipeline.writeInbound(Unpooled.wrappedBuffer(bytes, 55, bytes.length - 55));
+
+        ArgumentCaptor<DeviceData> captor = ArgumentCaptor.forClass(DeviceData.class);
+        verify(bus).sendData(captor.capture(), eq(DeviceDataEvent.Type.TO_TB));
+        assertThat(captor.getValue().getDeviceId()).isEqualTo(DEVICE_NO);
+        assertThat(captor.getValue().getMsg().toString()).isEqualTo(sms + fragment + continuation);
+        pipeline.finishAndReleaseAll();
+    }
+
+    /**
+     * 构造一帧校验通过的 PDU，length 字段按字符计数
+     *
+     * @param funcNo 功能号
+     * @param body   消息体
+     * @return PDU 字符串
+     */
+    private static String frame(int funcNo, String body) {
+        int length = 19 + body.length();
+        return "*#F#" + String.format("%04d", length) + "1" + String.format("%02d%04d", funcNo, 1)
+                + body + String.format("%04X", length - 4);
+    }
+
+    private void write(String text) {
+        write(text.getBytes(CharsetUtil.UTF_8));
+    }
+
+    private void write(byte[] bytes) {
+        channel.writeInbound(Unpooled.wrappedBuffer(bytes));
+    }
+
+    private static String repeat(char c, int count) {
+        char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+
+    private static long unframedCount() {
+        return countOf("pdu.unframed");
+    }
+
+    private static long countOf(String category) {
+        return LogUtils.getErrorCounts().getOrDefault(category, 0L);
+    }
+}
@@ -0,0 +1,224 @@
+package cn.xxt.gatewaynetty.netty.handler.kar_video;
+
+import cn.xxt.gatewaynetty.netty.model.VideoCommand;
+import cn.xxt.gatewaynetty.netty.model.VideoMessage;
+import cn.xxt.gatewaynetty.util.LogUtils;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.CharsetUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: 视频话机流式解码：从抓取的报文和构造的帧解出命令和原始消息体
+ * @author: Havad
+ * @create: 2026-10-18 23:30
+ **/
+
+class JsonProtocolDecoderTest {
+    /**
+     * 用于比较 JSON 结构
+     */
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * 只包含视频话机解码器的连接
+     */
+    private EmbeddedChannel channel;
+
+    @BeforeEach
+    void setUp() {
+        channel = new EmbeddedChannel(new JsonProtocolDecoder(new MessageReassembler()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    void answersHeartbeatsWithoutParsingTheBody() {
+        channel.writeInbound(Unpooled.wrappedBuffer(fixture("video-heartbeat")));
+        channel.writeInbound(VideoFrames.frame(VideoFrames.HEARTBEAT_TYPE, 2, 1, 0,
+                "not json {".getBytes(CharsetUtil.UTF_8)));
+
+        for (int i = 0; i < 2; i++) {
+            VideoMessage message = channel.readInbound();
+            assertThat(message.getCommand()).isEqualTo(VideoCommand.HEARTBEAT);
+            assertThat(new String(message.getPayload(), CharsetUtil.UTF_8))
+                    .isEqualTo("{\"heartbeat\":\"gateway make\"}");
+        }
+        assertThat((Object) channel.readInbound()).isNull();
+    }
+
+    @Test
+    void decodesACapturedFrame() throws IOException {
+        byte[] frame = fixture("video-call");
+        channel.writeInbound(Unpooled.wrappedBuffer(frame));
+
+        VideoMessage message = channel.readInbound();
+        JsonNode body = MAPPER.readTree(Arrays.copyOfRange(frame, 20, frame.length));
+        assertThat(message.getCommand()).isEqualTo(VideoCommand.CALL);
+        assertThat(message.getDirection()).isEqualTo(VideoMessage.Direction.REQUEST);
+        assertThat(MAPPER.readTree(message.getPayload())).isEqualTo(body.get("request"));
+        assertThat(message.getPayloadText("Name")).isEqualTo("张三");
+    }
+
+    @Test
+    void dropsMessagesWithoutCommand() {
+        long before = errorCount("video.no-command");
+
+        channel.writeInbound(dataFrame("{\"type\":\"terminal\",\"request\":{\"Identity\":\"KAR1\"}}"));
+
+        assertThat((Object) channel.readInbound()).isNull();
+        assertThat(errorCount("video.no-command")).isEqualTo(before + 1);
+    }
+
+    @Test
+    void dropsMessagesWithoutBody() {
+        long before = errorCount("video.no-body");
+
+        channel.writeInbound(dataFrame("{\"command\":\"call\",\"request\":null}"));
+        channel.writeInbound(dataFrame("{\"command\":\"call\"}"));
+
+        assertThat((Object) channel.readInbound()).isNull();
+        assertThat(errorCount("video.no-body")).isEqualTo(before + 2);
+    }
+
+    @Test
+    void capturesNestedBodiesByteForByte() {
+        String request = "{\"request\":{\"command\":\"inner\"},\"list\":[1,{\"s\":\"}]\\\"\"}],\"n\":null}";
+        channel.writeInbound(dataFrame("{\"extra\":{\"request\":{\"x\":1}},\"command\":\"setConfigInfo\","
+                + "\"request\":" + request + ",\"tail\":[{\"response\":2}]}"));
+
+        VideoMessage message = channel.readInbound();
+        assertThat(message.getCommandName()).isEqualTo("setConfigInfo");
+        assertThat(message.getDirection()).isEqualTo(VideoMessage.Direction.REQUEST);
+        assertThat(new String(message.getPayload(), CharsetUtil.UTF_8)).isEqualTo(request);
+    }
+
+    @Test
+    void capturesScalarResponses() {
+        channel.writeInbound(dataFrame("{\"command\":\"feedback\",\"response\":\"ok \\\"quoted\\\"\"}"));
+
+        VideoMessage message = channel.readInbound();
+        assertThat(message.getDirection()).isEqualTo(VideoMessage.Direction.RESPONSE);
+        assertThat(new String(message.getPayload(), CharsetUtil.UTF_8)).isEqualTo("\"ok \\\"quoted\\\"\"");
+    }
+
+    @Test
+    void keepsByteOffsetsAfterNonAsciiFields() throws IOException {
+        String request = "{\"Name\":\"李四\",\"Note\":\"你好，\\u4e16界 \uD83D\uDE00\"}";
+        channel.writeInbound(dataFrame("{\"type\":\"终端\",\"command\":\"notice\",\"request\":" + request + "}"));
+
+        VideoMessage message = channel.readInbound();
+        assertThat(new String(message.getPayload(), CharsetUtil.UTF_8)).isEqualTo(request);
+        assertThat(message.getPayloadText("Note")).isEqualTo("你好，世界 \uD83D\uDE00");
+    }
+
+    @Test
+    void decodesAFrameSplitAcrossReads() throws IOException {
+        byte[] frame = fixture("video-call");
+        // 切在协议头中间、消息体中间和一个汉字的 UTF-8 序列中间
+        int inName = indexOf(frame, "张".getBytes(CharsetUtil.UTF_8)) + 1;
+        int[] cuts = {7, 20, 60, inName, frame.length};
+        int from = 0;
+        for (int cut : cuts) {
+            assertThat((Object) channel.readInbound()).isNull();
+            channel.writeInbound(Unpooled.wrappedBuffer(Arrays.copyOfRange(frame, from, cut)));
+            from = cut;
+        }
+
+        VideoMessage message = channel.readInbound();
+        assertThat(message.getCommand()).isEqualTo(VideoCommand.CALL);
+        assertThat(message.getPayloadText("Name")).isEqualTo("张三");
+    }
+
+    @Test
+    void reassemblesACapturedMultiPacketFrameFedInSmallChunks() throws IOException {
+        byte[] frame = fixture("video-readlog-multi");
+        for (int from = 0; from < frame.length; from += 97) {
+            channel.writeInbound(Unpooled.wrappedBuffer(Arrays.copyOfRange(frame, from,
+                    Math.min(frame.length, from + 97))));
+        }
+
+        VideoMessage message = channel.readInbound();
+        assertThat(message.getCommand()).isEqualTo(VideoCommand.READLOG);
+        assertThat(MAPPER.readTree(message.getPayload())).isEqualTo(MAPPER.readTree(body(frame)).get("request"));
+        assertThat((Object) channel.readInbound()).isNull();
+    }
+
+    /**
+     * 构造一帧单包消息
+     *
+     * @param json 消息体
+     * @return 帧
+     */
+    private static ByteBuf dataFrame(String json) {
+        return VideoFrames.frame(VideoFrames.DATA_TYPE, 1, 1, 0, json.getBytes(CharsetUtil.UTF_8));
+    }
+
+    /**
+     * 读取抓取的视频话机帧（十六进制，每行一个分包）
+     *
+     * @param name 帧名，不含扩展名
+     * @return 帧的原始字节
+     */
+    static byte[] fixture(String name) {
+        try (InputStream in = JsonProtocolDecoderTest.class.getResourceAsStream("/frames/" + name + ".hex")) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+            }
+            return ByteBufUtil.decodeHexDump(new String(out.toByteArray(), CharsetUtil.US_ASCII)
+                    .replaceAll("\\s+", ""));
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * 去掉每个分包的协议头后拼接消息体
+     *
+     * @param frame 帧
+     * @return 消息体
+     */
+    private static byte[] body(byte[] frame) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(frame.length);
+        int offset = 0;
+        while (offset + 20 <= frame.length) {
+            int dataLength = ((frame[offset + 18] & 0xFF) << 8) | (frame[offset + 19] & 0xFF);
+            out.write(frame, offset + 20, dataLength);
+            offset += 20 + dataLength;
+        }
+        return out.toByteArray();
+    }
+
+    private static int indexOf(byte[] data, byte[] target) {
+        for (int i = 0; i + target.length <= data.length; i++) {
+            if (Arrays.equals(Arrays.copyOfRange(data, i, i + target.length), target)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("not found");
+    }
+
+    private static long errorCount(String category) {
+        return LogUtils.getErrorCounts().getOrDefault(category, 0L);
+    }
+}
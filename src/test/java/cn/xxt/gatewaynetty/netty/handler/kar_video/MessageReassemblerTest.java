@@ -0,0 +1,268 @@
+package cn.xxt.gatewaynetty.netty.handler.kar_video;
+
+import cn.xxt.gatewaynetty.netty.model.VideoMessage;
+import io.netty.buffer.AbstractByteBufAllocator;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.buffer.UnpooledDirectByteBuf;
+import io.netty.buffer.UnpooledHeapByteBuf;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.CharsetUtil;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: 多包组装的字节预算、超时、不一致的总包数、重传分包，以及各释放路径上分包缓冲区都被释放
+ * @author: Havad
+ * @create: 2026-10-18 23:10
+ **/
+
+class MessageReassemblerTest {
+    /**
+     * 完整的消息体
+     */
+    private static final byte[] BODY =
+            "{\"command\":\"devStatus\",\"request\":{\"battery\":80,\"signal\":3}}".getBytes(CharsetUtil.UTF_8);
+
+    @Test
+    void assemblesFragmentsAndReleasesThem() {
+        MessageReassembler reassembler = new MessageReassembler();
+        TrackingAllocator alloc = new TrackingAllocator();
+        EmbeddedChannel channel = channel(reassembler, alloc);
+
+        channel.writeInbound(VideoFrames.fragment(1, 2, 1, part(1)));
+        assertThat(reassembler.getPendingBytes()).isEqualTo(part(1).length);
+        channel.writeInbound(VideoFrames.fragment(1, 2, 0, part(0)));
+
+        VideoMessage message = channel.readInbound();
+        assertThat(message.getCommandName()).isEqualTo("devStatus");
+        assertThat(reassembler.getPendingBytes()).isZero();
+        alloc.assertAllReleased(2);
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    void dropsSessionOverTheConnectionBudget() {
+        MessageReassembler reassembler = new MessageReassembler(BODY.length, Long.MAX_VALUE, 30_000);
+        TrackingAllocator alloc = new TrackingAllocator();
+        EmbeddedChannel channel = channel(reassembler, alloc);
+
+        channel.writeInbound(VideoFrames.fragment(1, 3, 0, BODY));
+        channel.writeInbound(VideoFrames.fragment(1, 3, 1, BODY));
+
+        assertThat(reassembler.getOverBudgetCount()).isEqualTo(1);
+        assertThat(reassembler.getPendingBytes()).isZero();
+        // 超出预算的分包不复制，已缓存的分包随会话释放
+        alloc.assertAllReleased(1);
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    void dropsSessionOverTheGlobalBudget() {
+        MessageReassembler reassembler = new MessageReassembler(Integer.MAX_VALUE, BODY.length + 10, 30_000);
+        TrackingAllocator first = new TrackingAllocator();
+        TrackingAllocator second = new TrackingAllocator();
+        EmbeddedChannel a = channel(reassembler, first);
+        EmbeddedChannel b = channel(reassembler, second);
+
+        a.writeInbound(VideoFrames.fragment(1, 2, 0, BODY));
+        b.writeInbound(VideoFrames.fragment(1, 2, 0, BODY));
+
+        assertThat(reassembler.getOverBudgetCount()).isEqualTo(1);
+        assertThat(reassembler.getPendingBytes()).isEqualTo(BODY.length);
+        assertThat(second.allocated).isEmpty();
+
+        a.finishAndReleaseAll();
+        assertThat(reassembler.getPendingBytes()).isZero();
+        first.assertAllReleased(1);
+        b.finishAndReleaseAll();
+    }
+
+    @Test
+    void concurrentConnectionsNeverOvershootTheGlobalBudget() throws Exception {
+        int connections = 8;
+        MessageReassembler reassembler = new MessageReassembler(Integer.MAX_VALUE, BODY.length * 3L, 30_000);
+        List<EmbeddedChannel> channels = new ArrayList<>();
+        for (int i = 0; i < connections; i++) {
+            channels.add(channel(reassembler, new TrackingAllocator()));
+        }
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(connections);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (EmbeddedChannel channel : channels) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    for (int session = 0; session < 50; session++) {
+                        channel.writeInbound(VideoFrames.fragment(session, 2, 0, BODY));
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertThat(reassembler.getPendingBytes()).isEqualTo(BODY.length * 3L);
+        for (EmbeddedChannel channel : channels) {
+            channel.finishAndReleaseAll();
+        }
+        assertThat(reassembler.getPendingBytes()).isZero();
+    }
+
+    @Test
+    void expiresIncompleteSessions() throws Exception {
+        MessageReassembler reassembler = new MessageReassembler(Integer.MAX_VALUE, Long.MAX_VALUE, 50);
+        TrackingAllocator alloc = new TrackingAllocator();
+        EmbeddedChannel channel = channel(reassembler, alloc);
+
+        channel.writeInbound(VideoFrames.fragment(1, 2, 0, part(0)));
+        Thread.sleep(120);
+        channel.runPendingTasks();
+
+        assertThat(reassembler.getExpiredCount()).isEqualTo(1);
+        assertThat(reassembler.getPendingBytes()).isZero();
+        alloc.assertAllReleased(1);
+        // 超时后迟到的分包开始一个新的会话，不会拼出消息
+        channel.writeInbound(VideoFrames.fragment(1, 2, 1, part(1)));
+        assertThat((Object) channel.readInbound()).isNull();
+        channel.finishAndReleaseAll();
+        alloc.assertAllReleased(2);
+    }
+
+    @Test
+    void dropsSessionWhenTotalPackagesChange() {
+        MessageReassembler reassembler = new MessageReassembler();
+        TrackingAllocator alloc = new TrackingAllocator();
+        EmbeddedChannel channel = channel(reassembler, alloc);
+
+        channel.writeInbound(VideoFrames.fragment(1, 3, 0, part(0)));
+        channel.writeInbound(VideoFrames.fragment(1, 2, 1, part(1)));
+
+        assertThat(reassembler.getRejectedCount()).isEqualTo(1);
+        assertThat(reassembler.getPendingBytes()).isZero();
+        alloc.assertAllReleased(1);
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    void rejectsOutOfRangePackageIndexes() {
+        MessageReassembler reassembler = new MessageReassembler();
+        TrackingAllocator alloc = new TrackingAllocator();
+        EmbeddedChannel channel = channel(reassembler, alloc);
+
+        channel.writeInbound(VideoFrames.fragment(1, 2, 2, part(0)));
+        channel.writeInbound(VideoFrames.fragment(1, 300, 0, part(0)));
+
+        assertThat(reassembler.getRejectedCount()).isEqualTo(2);
+        assertThat(alloc.allocated).isEmpty();
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    void ignoresDuplicateIndexesWithoutCopying() {
+        MessageReassembler reassembler = new MessageReassembler();
+        TrackingAllocator alloc = new TrackingAllocator();
+        EmbeddedChannel channel = channel(reassembler, alloc);
+
+        channel.writeInbound(VideoFrames.fragment(1, 2, 0, part(0)));
+        channel.writeInbound(VideoFrames.fragment(1, 2, 0, part(0)));
+        assertThat(alloc.allocated).hasSize(1);
+        assertThat(reassembler.getPendingBytes()).isEqualTo(part(0).length);
+
+        channel.writeInbound(VideoFrames.fragment(1, 2, 1, part(1)));
+        VideoMessage message = channel.readInbound();
+        assertThat(message.getCommandName()).isEqualTo("devStatus");
+        assertThat((Object) channel.readInbound()).isNull();
+        alloc.assertAllReleased(2);
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    void releasesPendingFragmentsWhenTheDecoderIsRemoved() {
+        MessageReassembler reassembler = new MessageReassembler();
+        TrackingAllocator alloc = new TrackingAllocator();
+        EmbeddedChannel channel = channel(reassembler, alloc);
+
+        channel.writeInbound(VideoFrames.fragment(1, 3, 0, part(0)));
+        channel.writeInbound(VideoFrames.fragment(2, 3, 1, part(1)));
+        assertThat(reassembler.getPendingBytes()).isEqualTo(BODY.length);
+
+        channel.pipeline().remove(JsonProtocolDecoder.class);
+
+        assertThat(reassembler.getPendingBytes()).isZero();
+        alloc.assertAllReleased(2);
+        channel.finishAndReleaseAll();
+    }
+
+    /**
+     * 消息体的前半或后半部分
+     *
+     * @param index 0 为前半部分，1 为后半部分
+     * @return 分包数据
+     */
+    private static byte[] part(int index) {
+        int middle = BODY.length / 2;
+        return index == 0 ? Arrays.copyOfRange(BODY, 0, middle) : Arrays.copyOfRange(BODY, middle, BODY.length);
+    }
+
+    private static EmbeddedChannel channel(MessageReassembler reassembler, TrackingAllocator alloc) {
+        EmbeddedChannel channel = new EmbeddedChannel(new JsonProtocolDecoder(reassembler));
+        channel.config().setAllocator(alloc);
+        return channel;
+    }
+
+    /**
+     * 记录分配出的缓冲区，用于检查分包缓冲区是否都已释放
+     */
+    private static final class TrackingAllocator extends AbstractByteBufAllocator {
+        /**
+         * 分配出的缓冲区
+         */
+        private final List<ByteBuf> allocated = new ArrayList<>();
+
+        TrackingAllocator() {
+            super(false);
+        }
+
+        @Override
+        protected ByteBuf newHeapBuffer(int initialCapacity, int maxCapacity) {
+            ByteBuf buf = new UnpooledHeapByteBuf(UnpooledByteBufAllocator.DEFAULT, initialCapacity, maxCapacity);
+            allocated.add(buf);
+            return buf;
+        }
+
+        @Override
+        protected ByteBuf newDirectBuffer(int initialCapacity, int maxCapacity) {
+            ByteBuf buf = new UnpooledDirectByteBuf(UnpooledByteBufAllocator.DEFAULT, initialCapacity, maxCapacity);
+            allocated.add(buf);
+            return buf;
+        }
+
+        @Override
+        public boolean isDirectBufferPooled() {
+            return false;
+        }
+
+        void assertAllReleased(int expectedCount) {
+            assertThat(allocated).hasSize(expectedCount);
+            for (ByteBuf buf : allocated) {
+                assertThat(buf.refCnt()).isZero();
+            }
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package cn.xxt.gatewaynetty.netty.handler.kar_video;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: 测试用的视频话机帧：20 字节协议头加数据
+ * @author: Havad
+ * @create: 2026-10-18 23:10
+ **/
+
+final class VideoFrames {
+    /**
+     * 普通消息的协议类型
+     */
+    static final short DATA_TYPE = 0x0101;
+    /**
+     * 心跳消息的协议类型
+     */
+    static final short HEARTBEAT_TYPE = 0x0313;
+
+    private VideoFrames() {
+    }
+
+    /**
+     * 构造一帧
+     *
+     * @param protocolType  协议类型
+     * @param session       会话序号
+     * @param totalPackages 总包数
+     * @param packageIndex  包序号
+     * @param data          数据
+     * @return 帧
+     */
+    static ByteBuf frame(short protocolType, int session, int totalPackages, int packageIndex, byte[] data) {
+        ByteBuf buf = Unpooled.buffer(20 + data.length);
+        buf.writeByte('@');
+        buf.writeByte('A');
+        buf.writeShort(protocolType);
+        buf.writeInt(session);
+        buf.writeShort(totalPackages);
+        buf.writeShort(packageIndex);
+        buf.writeInt(0);
+        buf.writeShort(0);
+        buf.writeShort(data.length);
+        buf.writeBytes(data);
+        return buf;
+    }
+
+    /**
+     * 构造多包消息中的一个分包
+     *
+     * @param session       会话序号
+     * @param totalPackages 总包数
+     * @param packageIndex  包序号
+     * @param data          数据
+     * @return 帧
+     */
+    static ByteBuf fragment(int session, int totalPackages, int packageIndex, byte[] data) {
+        return frame(DATA_TYPE, session, totalPackages, packageIndex, data);
+    }
+}
@@ -0,0 +1,138 @@
+package cn.xxt.gatewaynetty.netty.model;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import io.netty.util.CharsetUtil;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: 视频话机消息的字节拼接、按需读取字段，以及与旧 Map 消息的兼容
+ * @author: Havad
+ * @create: 2026-10-18 23:45
+ **/
+
+class VideoMessageTest {
+    /**
+     * 用于比较 JSON 结构
+     */
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    /**
+     * 含嵌套、转义和非 ASCII 字符的消息体
+     */
+    private static final String PAYLOAD = "{\"Identity\":\"KAR861234567890123456\",\"Name\":\"张\\\"三\\\\\","
+            + "\"Logs\":[{\"Index\":0,\"Content\":\"a\\nb\"}],\"Battery\":80,\"Net\":null,\"Ok\":true}";
+
+    @Test
+    void toJsonBytesParsesBackToTheSameTree() throws IOException {
+        VideoMessage message = VideoMessage.of("call", VideoMessage.Direction.REQUEST, "terminal", bytes(PAYLOAD));
+
+        ObjectNode expected = MAPPER.createObjectNode();
+        expected.put("type", "terminal");
+        expected.put("command", "call");
+        expected.set("request", MAPPER.readTree(PAYLOAD));
+        assertThat(MAPPER.readTree(message.toJsonBytes())).isEqualTo(expected);
+    }
+
+    @Test
+    void toJsonBytesEscapesNamesAndOmitsMissingType() throws IOException {
+        VideoMessage message = VideoMessage.of("we\"ird\\命令\n", VideoMessage.Direction.RESPONSE, null,
+                bytes("[1,\"x\"]"));
+
+        JsonNode tree = MAPPER.readTree(message.toJsonBytes());
+        assertThat(tree.has("type")).isFalse();
+        assertThat(tree.get("command").asText()).isEqualTo("we\"ird\\命令\n");
+        assertThat(tree.get("response")).isEqualTo(MAPPER.readTree("[1,\"x\"]"));
+    }
+
+    @Test
+    void wrapPayloadNestsTheBodyUnderOneKey() throws IOException {
+        VideoMessage message = VideoMessage.of("devstatus", VideoMessage.Direction.REQUEST, null, bytes(PAYLOAD));
+
+        JsonNode tree = MAPPER.readTree(message.wrapPayload("devstatus"));
+        assertThat(tree.size()).isEqualTo(1);
+        assertThat(tree.get("devstatus")).isEqualTo(MAPPER.readTree(PAYLOAD));
+    }
+
+    @Test
+    void getPayloadTextReadsEscapedScalarsAndSkipsTheRest() throws IOException {
+        VideoMessage message = VideoMessage.of("call", VideoMessage.Direction.REQUEST, null, bytes(PAYLOAD));
+
+        assertThat(message.getPayloadText("Name")).isEqualTo("张\"三\\");
+        assertThat(message.getPayloadText("Battery")).isEqualTo("80");
+        assertThat(message.getPayloadText("Ok")).isEqualTo("true");
+        // 不是标量、值为 null 或字段不存在时返回 null；嵌套对象中的同名字段不算
+        assertThat(message.getPayloadText("Logs")).isNull();
+        assertThat(message.getPayloadText("Net")).isNull();
+        assertThat(message.getPayloadText("Content")).isNull();
+        assertThat(message.getPayloadText("Missing")).isNull();
+    }
+
+    @Test
+    void getPayloadTextReturnsNullForNonObjectBodies() throws IOException {
+        assertThat(VideoMessage.of("x", VideoMessage.Direction.REQUEST, null, bytes("\"text\""))
+                .getPayloadText("a")).isNull();
+        assertThat(VideoMessage.of("x", VideoMessage.Direction.REQUEST, null, null).getPayloadText("a")).isNull();
+    }
+
+    @Test
+    void fromLegacyMapMatchesTheTypedMessage() throws IOException {
+        for (VideoMessage.Direction direction : VideoMessage.Direction.values()) {
+            VideoMessage typed = VideoMessage.of("getConfigInfo", direction, "platform", bytes(PAYLOAD));
+
+            // 经 kafka.value-format=json 传递后，消息在消费端反序列化为 Map
+            VideoMessage legacy = VideoMessage.from(toMap(typed));
+
+            assertThat(VideoMessage.from(typed)).isSameAs(typed);
+            assertThat(legacy.getCommand()).isEqualTo(typed.getCommand());
+            assertThat(legacy.getCommandName()).isEqualTo(typed.getCommandName());
+            assertThat(legacy.getDirection()).isEqualTo(typed.getDirection());
+            assertThat(legacy.getType()).isEqualTo(typed.getType());
+            assertThat(MAPPER.readTree(legacy.getPayload())).isEqualTo(MAPPER.readTree(typed.getPayload()));
+            assertThat(MAPPER.readTree(legacy.toJsonBytes())).isEqualTo(MAPPER.readTree(typed.toJsonBytes()));
+        }
+    }
+
+    @Test
+    void fromLegacyMapWithoutBodyDefaultsToAnEmptyRequest() {
+        Map<String, Object> map = new HashMap<>();
+        map.put("command", "link");
+
+        VideoMessage message = VideoMessage.from(map);
+
+        assertThat(message.getCommand()).isEqualTo(VideoCommand.LINK);
+        assertThat(message.getDirection()).isEqualTo(VideoMessage.Direction.REQUEST);
+        assertThat(new String(message.getPayload(), CharsetUtil.UTF_8)).isEqualTo("null");
+    }
+
+    @Test
+    void unknownCommandsMapToUnknown() {
+        assertThat(VideoCommand.of("notACommand")).isEqualTo(VideoCommand.UNKNOWN);
+        assertThat(VideoCommand.of(null)).isEqualTo(VideoCommand.UNKNOWN);
+        assertThat(VideoCommand.of("devstatus")).isEqualTo(VideoCommand.DEVSTATUS);
+
+        VideoMessage message = VideoMessage.of("notACommand", VideoMessage.Direction.REQUEST, null, bytes("{}"));
+        assertThat(message.getCommand()).isEqualTo(VideoCommand.UNKNOWN);
+        // 未登记的命令名原样保留并透传
+        assertThat(message.getCommandName()).isEqualTo("notACommand");
+    }
+
+    private static byte[] bytes(String json) {
+        return json.getBytes(CharsetUtil.UTF_8);
+    }
+
+    private static Map<String, Object> toMap(VideoMessage message) throws JsonProcessingException {
+        return MAPPER.readValue(MAPPER.writeValueAsString(message), new TypeReference<Map<String, Object>>() {
+        });
+    }
+}
@@ -0,0 +1,79 @@
+package cn.xxt.gatewaynetty.netty.videophone.http.file_tcp;
+
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.channel.FileRegion;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: 本地缓存分段发送：所有 FileRegion 共用创建时打开的通道，文件被淘汰删除后仍能发完
+ * @author: Havad
+ * @create: 2026-10-18 20:40
+ **/
+
+class CachedImageChunkedInputTest {
+    /**
+     * 临时缓存目录
+     */
+    @TempDir
+    Path dir;
+
+    @Test
+    void sendsWholeFileAfterItIsDeleted() throws Exception {
+        byte[] image = new byte[200 * 1024];
+        new Random(1).nextBytes(image);
+        byte[] packets = new ImageChunkedInput("face-1", image).toByteArray();
+        Path file = dir.resolve("blob.img");
+        Files.write(file, packets);
+
+        FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+        CachedImageChunkedInput input = new CachedImageChunkedInput(channel);
+        // 模拟缓存淘汰在发送前删除文件
+        Files.delete(file);
+
+        ByteArrayOutputStream sent = new ByteArrayOutputStream();
+        WritableByteChannel target = Channels.newChannel(sent);
+        int regions = 0;
+        while (!input.isEndOfInput()) {
+            FileRegion region = input.readChunk(ByteBufAllocator.DEFAULT);
+            transferAll(region, target);
+            region.release();
+            regions++;
+            // 释放单个 FileRegion 不关闭共用的通道
+            assertThat(channel.isOpen()).isTrue();
+        }
+
+        assertThat(regions).isGreaterThan(1);
+        assertThat(input.progress()).isEqualTo(packets.length);
+        assertThat(sent.toByteArray()).isEqualTo(packets);
+
+        input.close();
+        assertThat(channel.isOpen()).isFalse();
+    }
+
+    /**
+     * 把 FileRegion 的全部内容写入目标通道
+     *
+     * @param region FileRegion
+     * @param target 目标通道
+     * @throws IOException 读取文件失败时抛出
+     */
+    private static void transferAll(FileRegion region, WritableByteChannel target) throws IOException {
+        while (region.transferred() < region.count()) {
+            region.transferTo(target, region.transferred());
+        }
+    }
+}
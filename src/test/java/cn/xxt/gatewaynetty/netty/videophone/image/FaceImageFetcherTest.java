@@ -0,0 +1,215 @@
+package cn.xxt.gatewaynetty.netty.videophone.image;
+
+import cn.xxt.gatewaynetty.support.StubHttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.FileNotFoundException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: 人脸图片下载：重试、单主机并发上限、本地缓存、队列满时由提交线程下载，使用本地 HTTP 桩代替图片服务器
+ * @author: Havad
+ * @create: 2026-10-18 20:55
+ **/
+
+class FaceImageFetcherTest {
+    /**
+     * 等待结果的超时（秒）
+     */
+    private static final long TIMEOUT_SECONDS = 10;
+    /**
+     * 图片内容
+     */
+    private static final byte[] IMAGE = "jpeg-bytes".getBytes(StandardCharsets.UTF_8);
+    /**
+     * 图片内容的 Base64 编码
+     */
+    private static final String IMAGE_BASE64 = Base64.getEncoder().encodeToString(IMAGE);
+
+    /**
+     * 临时缓存目录
+     */
+    @TempDir
+    Path dir;
+
+    /**
+     * 图片服务器桩
+     */
+    private StubHttpServer stub;
+    /**
+     * 本地图片缓存
+     */
+    private LocalImageStore store;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        stub = new StubHttpServer();
+        store = new LocalImageStore();
+        ReflectionTestUtils.setField(store, "enabled", true);
+        ReflectionTestUtils.setField(store, "dir", dir.toString());
+        ReflectionTestUtils.setField(store, "maxBytes", 1024L * 1024);
+        ReflectionTestUtils.setField(store, "ttlSeconds", 600L);
+        store.open();
+    }
+
+    @AfterEach
+    void tearDown() {
+        stub.close();
+    }
+
+    @Test
+    void retriesServerErrors() throws Exception {
+        stub.on("/flaky.jpg", (exchange, count) ->
+                StubHttpServer.respond(exchange, count < 3 ? 500 : 200, count < 3 ? new byte[0] : IMAGE));
+        FaceImageFetcher fetcher = fetcher(4, 100, 4, 2);
+
+        assertThat(fetcher.fetchBase64(stub.url("/flaky.jpg")).get(TIMEOUT_SECONDS, TimeUnit.SECONDS))
+                .isEqualTo(IMAGE_BASE64);
+        assertThat(stub.requestCount("/flaky.jpg")).isEqualTo(3);
+        fetcher.shutdown();
+    }
+
+    @Test
+    void failsAfterRetriesAreExhausted() {
+        stub.on("/down.jpg", (exchange, count) -> StubHttpServer.respond(exchange, 503, new byte[0]));
+        FaceImageFetcher fetcher = fetcher(4, 100, 4, 2);
+
+        assertThatThrownBy(() -> fetcher.fetchBase64(stub.url("/down.jpg")).get(TIMEOUT_SECONDS, TimeUnit.SECONDS))
+                .isInstanceOf(ExecutionException.class);
+        assertThat(stub.requestCount("/down.jpg")).isEqualTo(3);
+        fetcher.shutdown();
+    }
+
+    @Test
+    void doesNotRetryMissingImages() {
+        stub.on("/missing.jpg", (exchange, count) -> StubHttpServer.respond(exchange, 404, new byte[0]));
+        FaceImageFetcher fetcher = fetcher(4, 100, 4, 2);
+
+        assertThatThrownBy(() -> fetcher.fetchBase64(stub.url("/missing.jpg")).get(TIMEOUT_SECONDS, TimeUnit.SECONDS))
+                .hasCauseInstanceOf(FileNotFoundException.class);
+        assertThat(stub.requestCount("/missing.jpg")).isEqualTo(1);
+        fetcher.shutdown();
+    }
+
+    @Test
+    void limitsConcurrentDownloadsPerHost() throws Exception {
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        AtomicInteger active = new AtomicInteger();
+        AtomicInteger maxActive = new AtomicInteger();
+        FaceImageFetcher fetcher = fetcher(8, 100, 2, 0);
+        for (int i = 0; i < 6; i++) {
+            String path = "/slow-" + i + ".jpg";
+            stub.on(path, (exchange, count) -> {
+                maxActive.accumulateAndGet(active.incrementAndGet(), Math::max);
+                Thread.sleep(200);
+                // 在响应之前减少计数，客户端释放许可时这里一定已经减过
+                active.decrementAndGet();
+                StubHttpServer.respond(exchange, 200, IMAGE);
+            });
+            futures.add(fetcher.fetchBase64(stub.url(path)));
+        }
+
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+        assertThat(maxActive.get()).isEqualTo(2);
+        fetcher.shutdown();
+    }
+
+    @Test
+    void servesRepeatedUrlsFromCache() throws Exception {
+        stub.on("/face.jpg", (exchange, count) -> StubHttpServer.respond(exchange, 200, IMAGE));
+        FaceImageFetcher fetcher = fetcher(4, 100, 4, 0);
+
+        assertThat(fetcher.fetchBase64(stub.url("/face.jpg")).get(TIMEOUT_SECONDS, TimeUnit.SECONDS))
+                .isEqualTo(IMAGE_BASE64);
+        assertThat(fetcher.fetchBase64(stub.url("/face.jpg")).get(TIMEOUT_SECONDS, TimeUnit.SECONDS))
+                .isEqualTo(IMAGE_BASE64);
+        assertThat(stub.requestCount("/face.jpg")).isEqualTo(1);
+        assertThat(store.getHitCount()).isEqualTo(1);
+        fetcher.shutdown();
+    }
+
+    @Test
+    void coalescesConcurrentRequestsForSameUrl() throws Exception {
+        stub.on("/shared.jpg", (exchange, count) -> {
+            Thread.sleep(200);
+            StubHttpServer.respond(exchange, 200, IMAGE);
+        });
+        FaceImageFetcher fetcher = fetcher(4, 100, 4, 0);
+
+        CompletableFuture<String> first = fetcher.fetchBase64(stub.url("/shared.jpg"));
+        CompletableFuture<String> second = fetcher.fetchBase64(stub.url("/shared.jpg"));
+
+        assertThat(second).isSameAs(first);
+        assertThat(first.get(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isEqualTo(IMAGE_BASE64);
+        assertThat(stub.requestCount("/shared.jpg")).isEqualTo(1);
+        fetcher.shutdown();
+    }
+
+    @Test
+    void blocksSubmitterWhenQueueIsFull() throws Exception {
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        FaceImageFetcher fetcher = fetcher(1, 1, 4, 0);
+        for (int i = 0; i < 5; i++) {
+            String path = "/queued-" + i + ".jpg";
+            stub.on(path, (exchange, count) -> {
+                Thread.sleep(100);
+                StubHttpServer.respond(exchange, 200, IMAGE);
+            });
+            CompletableFuture<String> future = fetcher.fetchBase64(stub.url(path));
+            // 提交线程只等待队列空位，不自己下载，返回时下载尚未完成
+            assertThat(future).isNotDone();
+            futures.add(future);
+        }
+
+        for (CompletableFuture<String> future : futures) {
+            assertThat(future.get(TIMEOUT_SECONDS, TimeUnit.SECONDS)).isEqualTo(IMAGE_BASE64);
+        }
+        fetcher.shutdown();
+    }
+
+    @Test
+    void failsAfterShutdown() {
+        FaceImageFetcher fetcher = fetcher(1, 1, 4, 0);
+        fetcher.shutdown();
+
+        assertThat(fetcher.fetchBase64(stub.url("/late.jpg"))).isCompletedExceptionally();
+    }
+
+    /**
+     * 创建下载器
+     *
+     * @param threads       下载线程数
+     * @param queueCapacity 等待队列容量
+     * @param maxPerHost    单主机并发上限
+     * @param maxRetries    最大重试次数
+     * @return 已初始化的下载器
+     */
+    private FaceImageFetcher fetcher(int threads, int queueCapacity, int maxPerHost, int maxRetries) {
+        FaceImageFetcher fetcher = new FaceImageFetcher(store);
+        ReflectionTestUtils.setField(fetcher, "threads", threads);
+        ReflectionTestUtils.setField(fetcher, "queueCapacity", queueCapacity);
+        ReflectionTestUtils.setField(fetcher, "maxPerHost", maxPerHost);
+        ReflectionTestUtils.setField(fetcher, "connectTimeoutMillis", 1000);
+        ReflectionTestUtils.setField(fetcher, "readTimeoutMillis", 2000);
+        ReflectionTestUtils.setField(fetcher, "maxRetries", maxRetries);
+        ReflectionTestUtils.setField(fetcher, "retryDelayMillis", 10L);
+        fetcher.init();
+        return fetcher;
+    }
+}
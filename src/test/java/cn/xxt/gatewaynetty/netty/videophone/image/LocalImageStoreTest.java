@@ -0,0 +1,111 @@
+package cn.xxt.gatewaynetty.netty.videophone.image;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: 图片本地缓存：键过期后按未命中处理，超过总大小时按 LRU 淘汰
+ * @author: Havad
+ * @create: 2026-10-18 20:45
+ **/
+
+class LocalImageStoreTest {
+    /**
+     * 临时缓存目录
+     */
+    @TempDir
+    Path dir;
+
+    /**
+     * 被测缓存
+     */
+    private LocalImageStore store;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        store = new LocalImageStore();
+        ReflectionTestUtils.setField(store, "enabled", true);
+        ReflectionTestUtils.setField(store, "dir", dir.toString());
+        ReflectionTestUtils.setField(store, "maxBytes", 1024L);
+        ReflectionTestUtils.setField(store, "ttlSeconds", 1L);
+        store.open();
+    }
+
+    @Test
+    void expiresKeysAfterTtl() throws Exception {
+        File file = store.put("file:a", new byte[]{1, 2, 3});
+        assertThat(store.get("file:a")).isEqualTo(file);
+
+        Thread.sleep(1100);
+
+        assertThat(store.get("file:a")).isNull();
+        assertThat(file).doesNotExist();
+        assertThat(store.getTotalBytes()).isZero();
+    }
+
+    @Test
+    void putPurgesExpiredKeysThatAreNeverReadAgain() throws Exception {
+        File expired = store.put("file:a", new byte[]{1, 2, 3});
+
+        Thread.sleep(1100);
+        File fresh = store.put("file:b", new byte[]{4, 5});
+
+        assertThat(expired).doesNotExist();
+        assertThat(fresh).exists();
+        assertThat(store.getTotalBytes()).isEqualTo(2);
+        assertThat(store.getEvictedCount()).isEqualTo(1);
+    }
+
+    @Test
+    void putReusesContentOfExpiredKey() throws Exception {
+        store.put("file:a", new byte[]{1, 2, 3});
+
+        Thread.sleep(1100);
+        File file = store.put("file:b", new byte[]{1, 2, 3});
+
+        assertThat(file).exists();
+        assertThat(store.get("file:a")).isNull();
+        assertThat(store.get("file:b")).isEqualTo(file);
+        assertThat(store.getTotalBytes()).isEqualTo(3);
+    }
+
+    @Test
+    void putRefreshesTtl() throws Exception {
+        store.put("file:a", new byte[]{1, 2, 3});
+        Thread.sleep(700);
+        store.put("file:a", new byte[]{1, 2, 3});
+        Thread.sleep(700);
+
+        assertThat(store.get("file:a")).isNotNull();
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedKeys() {
+        store.put("file:a", new byte[600]);
+        byte[] other = new byte[600];
+        other[0] = 1;
+        store.put("file:b", other);
+
+        assertThat(store.get("file:a")).isNull();
+        assertThat(store.get("file:b")).isNotNull();
+        assertThat(store.getEvictedCount()).isEqualTo(1);
+    }
+
+    @Test
+    void openChannelReturnsNullOnMiss() throws Exception {
+        assertThat(store.openChannel("file:missing")).isNull();
+        store.put("file:a", new byte[]{1, 2, 3});
+        try (FileChannel channel = store.openChannel("file:a")) {
+            assertThat(channel.size()).isEqualTo(3);
+        }
+    }
+}
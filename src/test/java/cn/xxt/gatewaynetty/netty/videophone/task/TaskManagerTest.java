@@ -0,0 +1,310 @@
+package cn.xxt.gatewaynetty.netty.videophone.task;
+
+import cn.xxt.gatewaynetty.netty.config.RedisConfig;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.stubbing.Answer;
+import org.springframework.test.util.ReflectionTestUtils;
+import redis.clients.jedis.JedisPooled;
+import redis.clients.jedis.exceptions.JedisConnectionException;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: 人脸任务存储：到期任务批量删除失败时放回队列；其余用例在本机 Redis（loadgen/docker-compose.yml）的 15 号库上
+ * 验证写入、取出、心跳回执、完成、超时、旧格式迁移和离线设备的近端缓存清理，Redis 不可用时跳过
+ * @author: Havad
+ * @create: 2026-10-18 21:00
+ **/
+
+class TaskManagerTest {
+    static {
+        // RedisConfig 在类加载时读取，先指向本机，-Dredis.* 可覆盖
+        setDefault("redis.host", "127.0.0.1");
+        setDefault("redis.port", "6379");
+        setDefault("redis.password", "");
+        setDefault("redis.database", "15");
+    }
+
+    /**
+     * 被测任务管理器
+     */
+    private TaskManager taskManager;
+
+    @BeforeEach
+    void setUp() {
+        taskManager = new TaskManager();
+    }
+
+    @AfterEach
+    void tearDown() {
+        taskManager.shutdown();
+    }
+
+    @Test
+    void addsAndPopsTask() {
+        JedisPooled jedis = redis();
+        taskManager.addTask("dev1", new Task("t1", "dev1", persons("p1")));
+
+        assertThat(jedis.smembers("pending_tasks_set:dev1")).containsExactly("t1");
+        assertThat(jedis.hget("task:t1", "status")).isEqualTo("PENDING");
+        assertThat(jedis.hget("task:t1", "deviceKey")).isEqualTo("dev1");
+
+        Task task = taskManager.getNextTaskToProcess("dev1");
+        assertThat(task.getTaskId()).isEqualTo("t1");
+        assertThat(task.getStatus()).isEqualTo(Task.TaskStatus.SENT);
+        assertThat(task.getPersonList()).extracting(person -> person.get("id")).containsExactly("p1");
+        assertThat(jedis.get("last_sent_task:dev1")).isEqualTo("t1");
+        assertThat(jedis.zscore("task_deadlines", "t1")).isGreaterThan((double) System.currentTimeMillis());
+        assertThat(jedis.exists("pending_tasks_set:dev1")).isFalse();
+
+        assertThat(taskManager.getNextTaskToProcess("dev1")).isNull();
+        assertThat(taskManager.getLastSentTask("dev1").getTaskId()).isEqualTo("t1");
+    }
+
+    @Test
+    void popSkipsIdsWithoutTaskData() {
+        JedisPooled jedis = redis();
+        jedis.sadd("pending_tasks_set:dev1", "gone");
+
+        assertThat(taskManager.getNextTaskToProcess("dev1")).isNull();
+        assertThat(jedis.exists("pending_tasks_set:dev1")).isFalse();
+        assertThat(jedis.exists("last_sent_task:dev1")).isFalse();
+    }
+
+    @Test
+    void marksExistingTaskSentWithoutCreatingMissingOnes() {
+        JedisPooled jedis = redis();
+        taskManager.addTask("dev1", new Task("t1", "dev1", persons("p1")));
+
+        taskManager.markTaskSent("t1");
+        taskManager.markTaskSent("missing");
+
+        assertThat(jedis.hget("task:t1", "status")).isEqualTo("SENT");
+        assertThat(jedis.exists("task:missing")).isFalse();
+    }
+
+    @Test
+    void heartbeatWithReceiptCompletesLastSentAndPopsNext() {
+        JedisPooled jedis = redis();
+        taskManager.addTask("dev1", new Task("t1", "dev1", persons("p1")));
+        TaskManager.HeartbeatResult first = taskManager.processHeartbeat("dev1", false);
+        assertThat(first.getCompletedTaskId()).isNull();
+        assertThat(first.getNextTask().getTaskId()).isEqualTo("t1");
+
+        taskManager.addTask("dev1", new Task("t2", "dev1", persons("p2")));
+        TaskManager.HeartbeatResult second = taskManager.processHeartbeat("dev1", true);
+
+        assertThat(second.getCompletedTaskId()).isEqualTo("t1");
+        assertThat(second.getNextTask().getTaskId()).isEqualTo("t2");
+        assertThat(jedis.exists("task:t1")).isFalse();
+        assertThat(jedis.zscore("task_deadlines", "t1")).isNull();
+        assertThat(jedis.get("last_sent_task:dev1")).isEqualTo("t2");
+    }
+
+    @Test
+    void completeRemovesEveryReferenceToTask() {
+        JedisPooled jedis = redis();
+        taskManager.addTask("dev1", new Task("t1", "dev1", persons("p1")));
+        taskManager.addTask("dev1", new Task("t2", "dev1", persons("p2")));
+        String sent = taskManager.getNextTaskToProcess("dev1").getTaskId();
+        String pending = "t1".equals(sent) ? "t2" : "t1";
+
+        taskManager.markTaskSuccess(sent);
+        taskManager.markTaskFailed(pending);
+
+        assertThat(jedis.exists("task:" + sent, "task:" + pending)).isZero();
+        assertThat(jedis.exists("last_sent_task:dev1")).isFalse();
+        assertThat(jedis.exists("pending_tasks_set:dev1")).isFalse();
+        assertThat(jedis.zcard("task_deadlines")).isZero();
+    }
+
+    @Test
+    void sweepRemovesTimedOutSentTasksOnly() {
+        JedisPooled jedis = redis();
+        taskManager.addTask("dev1", new Task("t1", "dev1", persons("p1")));
+        taskManager.getNextTaskToProcess("dev1");
+        taskManager.addTask("dev2", new Task("t2", "dev2", persons("p2")));
+        taskManager.getNextTaskToProcess("dev2");
+        // t1 已过截止时间，t2 在时间轮到期后又被重新发送，截止时间已推后
+        jedis.zadd("task_deadlines", System.currentTimeMillis() - 1, "t1");
+        Queue<String> expired = expiredQueue();
+        expired.add("t1");
+        expired.add("t2");
+
+        ReflectionTestUtils.invokeMethod(taskManager, "sweepExpired");
+
+        assertThat(jedis.exists("task:t1")).isFalse();
+        assertThat(jedis.exists("last_sent_task:dev1")).isFalse();
+        assertThat(jedis.zscore("task_deadlines", "t1")).isNull();
+        assertThat(jedis.hget("task:t2", "status")).isEqualTo("SENT");
+        assertThat(jedis.get("last_sent_task:dev2")).isEqualTo("t2");
+        assertThat(expired).isEmpty();
+    }
+
+    @Test
+    void migratesLegacyStringKeysOnStartup() throws Exception {
+        JedisPooled jedis = redis();
+        ObjectMapper mapper = new ObjectMapper();
+        Task legacy = new Task("old1", "dev1", persons("p1"));
+        legacy.setTimestamp(1234L);
+        jedis.set("task:old1", mapper.writeValueAsString(legacy));
+        jedis.set("last_sent_task:dev1", mapper.writeValueAsString(legacy));
+        jedis.set("last_sent_task:dev2", "already-an-id");
+
+        taskManager.init();
+
+        assertThat(jedis.type("task:old1")).isEqualTo("hash");
+        Map<String, String> fields = jedis.hgetAll("task:old1");
+        assertThat(fields).containsEntry("deviceKey", "dev1")
+                .containsEntry("status", "PENDING")
+                .containsEntry("timestamp", "1234");
+        assertThat(jedis.get("last_sent_task:dev1")).isEqualTo("old1");
+        assertThat(jedis.get("last_sent_task:dev2")).isEqualTo("already-an-id");
+        assertThat(taskManager.getLastSentTask("dev1").getPersonList())
+                .extracting(person -> person.get("id")).containsExactly("p1");
+    }
+
+    @Test
+    void removesNearCacheEntryWhenDeviceGoesOffline() {
+        redis();
+        ReflectionTestUtils.setField(taskManager, "nearCacheTtlMillis", 30000L);
+        taskManager.processHeartbeat("dev1", false);
+        Map<String, ?> nearCache = nearCache();
+        assertThat(nearCache).containsOnlyKeys("dev1");
+
+        taskManager.removeDevice("dev1");
+
+        assertThat(nearCache).isEmpty();
+    }
+
+    @Test
+    void cachesHeartbeatWhenAnotherDeviceChangesDuringQuery() {
+        addTaskDuringFirstQuery("dev2");
+
+        assertThat(taskManager.processHeartbeat("dev1", false).getNextTask()).isNull();
+
+        // 其他设备的写入不影响本设备的缓存
+        assertThat(nearCache()).containsOnlyKeys("dev1");
+    }
+
+    @Test
+    void skipsCachingWhenSameDeviceChangesDuringQuery() {
+        addTaskDuringFirstQuery("dev1");
+
+        assertThat(taskManager.processHeartbeat("dev1", false).getNextTask()).isNull();
+
+        // 查询期间写入的任务不能被空闲缓存挡住
+        assertThat(nearCache()).doesNotContainKey("dev1");
+        assertThat(taskManager.processHeartbeat("dev1", false).getNextTask().getTaskId()).isEqualTo("t2");
+    }
+
+    @Test
+    void requeuesExpiredTasksWhenSweepFails() {
+        JedisPooled broken = mock(JedisPooled.class, invocation -> {
+            throw new JedisConnectionException("connection refused");
+        });
+        ReflectionTestUtils.setField(taskManager, "jedis", broken);
+        Queue<String> expired = expiredQueue();
+        expired.add("t1");
+        expired.add("t2");
+
+        ReflectionTestUtils.invokeMethod(taskManager, "sweepExpired");
+
+        assertThat(expired).containsExactlyInAnyOrder("t1", "t2");
+    }
+
+    /**
+     * 连接本机 Redis 并清空测试库，不可用时跳过当前用例
+     *
+     * @return Redis 客户端
+     */
+    private static JedisPooled redis() {
+        JedisPooled jedis = RedisConfig.getJedisPool();
+        try {
+            jedis.ping();
+        } catch (JedisConnectionException e) {
+            assumeTrue(false, "本机 Redis 不可用: " + e.getMessage());
+        }
+        jedis.flushDB();
+        return jedis;
+    }
+
+    /**
+     * 开启近端缓存，并在第一次脚本调用返回后向指定设备写入任务 t2，模拟心跳查询期间的并发写入
+     *
+     * @param device 写入任务的设备
+     */
+    private void addTaskDuringFirstQuery(String device) {
+        JedisPooled jedis = spy(redis());
+        ReflectionTestUtils.setField(taskManager, "jedis", jedis);
+        ReflectionTestUtils.setField(taskManager, "nearCacheTtlMillis", 30000L);
+        AtomicBoolean written = new AtomicBoolean();
+        Answer<Object> answer = invocation -> {
+            Object reply = invocation.callRealMethod();
+            if (written.compareAndSet(false, true)) {
+                taskManager.addTask(device, new Task("t2", device, persons("p2")));
+            }
+            return reply;
+        };
+        doAnswer(answer).when(jedis).evalsha(anyString(), anyList(), anyList());
+        doAnswer(answer).when(jedis).eval(anyString(), anyList(), anyList());
+    }
+
+    /**
+     * 构造人员列表
+     *
+     * @param id 人员ID
+     * @return 只有一个人员的列表
+     */
+    private static List<Map<String, Object>> persons(String id) {
+        return Collections.singletonList(Collections.singletonMap("id", id));
+    }
+
+    /**
+     * 设备任务状态的近端缓存
+     *
+     * @return 近端缓存
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, ?> nearCache() {
+        return (Map<String, ?>) ReflectionTestUtils.getField(taskManager, "nearCache");
+    }
+
+    /**
+     * 时间轮判定到期、等待批量删除的任务队列
+     *
+     * @return 到期任务队列
+     */
+    @SuppressWarnings("unchecked")
+    private Queue<String> expiredQueue() {
+        return (Queue<String>) ReflectionTestUtils.getField(taskManager, "expired");
+    }
+
+    /**
+     * 未通过命令行指定时设置系统属性
+     *
+     * @param key   属性名
+     * @param value 默认值
+     */
+    private static void setDefault(String key, String value) {
+        if (System.getProperty(key) == null) {
+            System.setProperty(key, value);
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package cn.xxt.gatewaynetty.support;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: 测试用的本地 HTTP 桩：按路径返回预设响应，统计请求数和最大并发数
+ * @author: Havad
+ * @create: 2026-10-18 20:10
+ **/
+
+public final class StubHttpServer implements AutoCloseable {
+    /**
+     * JDK 自带的 HTTP 服务
+     */
+    private final HttpServer server;
+    /**
+     * 按路径统计的请求数
+     */
+    private final Map<String, AtomicInteger> requests = new ConcurrentHashMap<>();
+    /**
+     * 正在处理的请求数
+     */
+    private final AtomicInteger active = new AtomicInteger();
+    /**
+     * 处理中请求数的最大值
+     */
+    private final AtomicInteger maxActive = new AtomicInteger();
+
+    /**
+     * 请求处理逻辑
+     */
+    @FunctionalInterface
+    public interface Handler {
+        /**
+         * 处理一次请求
+         *
+         * @param exchange 请求
+         * @param count    该路径的第几次请求，从 1 开始
+         * @throws Exception 处理失败时抛出，连接会被直接关闭
+         */
+        void handle(HttpExchange exchange, int count) throws Exception;
+    }
+
+    public StubHttpServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+    }
+
+    /**
+     * 注册路径的处理逻辑
+     *
+     * @param path    路径
+     * @param handler 处理逻辑
+     * @return this
+     */
+    public StubHttpServer on(String path, Handler handler) {
+        server.createContext(path, exchange -> {
+            int current = active.incrementAndGet();
+            maxActive.accumulateAndGet(current, Math::max);
+            try {
+                handler.handle(exchange, requests.computeIfAbsent(path, k -> new AtomicInteger()).incrementAndGet());
+            } catch (Exception e) {
+                exchange.close();
+            } finally {
+                active.decrementAndGet();
+            }
+        });
+        return this;
+    }
+
+    /**
+     * 返回响应
+     *
+     * @param exchange 请求
+     * @param status   状态码
+     * @param body     响应体
+     * @throws IOException 写出失败时抛出
+     */
+    public static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /**
+     * 返回文本响应
+     *
+     * @param exchange 请求
+     * @param status   状态码
+     * @param body     响应体
+     * @throws IOException 写出失败时抛出
+     */
+    public static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        respond(exchange, status, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 路径地址
+     *
+     * @param path 路径
+     * @return 完整的 http 地址
+     */
+    public String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    /**
+     * 路径收到的请求数
+     *
+     * @param path 路径
+     * @return 请求数
+     */
+    public int requestCount(String path) {
+        AtomicInteger count = requests.get(path);
+        return count == null ? 0 : count.get();
+    }
+
+    /**
+     * 同时处理中的请求数的最大值
+     *
+     * @return 最大并发数
+     */
+    public int maxConcurrentRequests() {
+        return maxActive.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
@@ -0,0 +1,152 @@
+package cn.xxt.gatewaynetty.util;
+
+import cn.xxt.gatewaynetty.netty.exceptions.UnsupportedProtocolException;
+import cn.xxt.gatewaynetty.netty.handler.kar_video.JsonProtocolDecoder;
+import cn.xxt.gatewaynetty.netty.handler.kar_video.MessageReassembler;
+import cn.xxt.gatewaynetty.netty.model.VideoCommand;
+import cn.xxt.gatewaynetty.netty.model.VideoMessage;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelFuture;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.util.CharsetUtil;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * @program: gateway-cn.xxt.gatewaynetty.netty
+ * @description: 视频话机下行分包：按协议头解析回各包的序号、总包数和长度，并拼回原始数据
+ * @author: Havad
+ * @create: 2026-10-19 00:05
+ **/
+
+class VideoParserUtilTest {
+    /**
+     * 单包数据的最大长度
+     */
+    private static final int MAX_PACKET_SIZE = 2000;
+
+    /**
+     * 设备连接
+     */
+    private EmbeddedChannel channel;
+
+    @BeforeEach
+    void setUp() {
+        channel = new EmbeddedChannel();
+    }
+
+    @AfterEach
+    void tearDown() {
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    void framesALargeBodyIntoPacketsInOneWrite() {
+        byte[] body = largeBody();
+
+        ChannelFuture future = VideoParserUtil.sendData(channel, "notice", body);
+
+        assertThat(future.isSuccess()).isTrue();
+        ByteBuf out = channel.readOutbound();
+        assertThat((Object) channel.readOutbound()).isNull();
+        try {
+            int expectedPackets = (body.length + MAX_PACKET_SIZE - 1) / MAX_PACKET_SIZE;
+            assertThat(expectedPackets).isGreaterThan(1);
+            ByteArrayOutputStream reassembled = new ByteArrayOutputStream();
+            int index = 0;
+            while (out.isReadable()) {
+                int header = out.readerIndex();
+                assertThat(out.getByte(header)).isEqualTo((byte) '@');
+                assertThat(out.getByte(header + 1)).isEqualTo((byte) 'G');
+                assertThat(out.getUnsignedShort(header + 2)).isEqualTo(VideoCommand.NOTICE.getProtocolType());
+                assertThat(out.getInt(header + 4)).isZero();
+                assertThat(out.getUnsignedShort(header + 8)).isEqualTo(expectedPackets);
+                assertThat(out.getUnsignedShort(header + 10)).isEqualTo(index);
+                assertThat(out.getInt(header + 12)).isZero();
+                assertThat(out.getUnsignedShort(header + 16)).isEqualTo(0x2710);
+                int length = out.getUnsignedShort(header + 18);
+                int expectedLength = index < expectedPackets - 1
+                        ? MAX_PACKET_SIZE : body.length - MAX_PACKET_SIZE * (expectedPackets - 1);
+                assertThat(length).isEqualTo(expectedLength);
+
+                out.skipBytes(ProtocolTypeMapper.HEADER_LENGTH);
+                byte[] data = new byte[length];
+                out.readBytes(data);
+                reassembled.write(data, 0, length);
+                index++;
+            }
+            assertThat(index).isEqualTo(expectedPackets);
+            assertThat(reassembled.toByteArray()).isEqualTo(body);
+        } finally {
+            out.release();
+        }
+    }
+
+    @Test
+    void incrementsTheSessionNumberPerMessage() {
+        for (int session = 0; session < 3; session++) {
+            VideoParserUtil.sendData(channel, "link", "{\"result\":0}");
+            ByteBuf out = channel.readOutbound();
+            try {
+                assertThat(out.getInt(4)).isEqualTo(session);
+                assertThat(out.getUnsignedShort(8)).isEqualTo(1);
+                assertThat(out.getUnsignedShort(10)).isZero();
+            } finally {
+                out.release();
+            }
+        }
+    }
+
+    @Test
+    void gatewayDecoderReadsTheFramedPacketsBack() {
+        byte[] body = largeBody();
+        VideoParserUtil.sendData(channel, "notice", body);
+        ByteBuf out = channel.readOutbound();
+        EmbeddedChannel device = new EmbeddedChannel(new JsonProtocolDecoder(new MessageReassembler()));
+
+        device.writeInbound(out);
+
+        VideoMessage message = device.readInbound();
+        assertThat(message.getCommand()).isEqualTo(VideoCommand.NOTICE);
+        assertThat(message.toJsonBytes()).isEqualTo(body);
+        device.finishAndReleaseAll();
+    }
+
+    @Test
+    void writesNothingForAnUnknownCommand() {
+        long before = LogUtils.getErrorCounts().getOrDefault("video.unknown-command", 0L);
+
+        ChannelFuture future = VideoParserUtil.sendData(channel, "notACommand", "{}");
+
+        assertThat(future.isSuccess()).isFalse();
+        assertThat(future.cause()).isInstanceOf(UnsupportedProtocolException.class);
+        assertThat((Object) channel.readOutbound()).isNull();
+        assertThat(LogUtils.getErrorCounts().get("video.unknown-command")).isEqualTo(before + 1);
+    }
+
+    @Test
+    void writesNothingForAnEmptyBody() {
+        ChannelFuture future = VideoParserUtil.sendData(channel, "notice", new byte[0]);
+
+        assertThat(future.isSuccess()).isTrue();
+        assertThat((Object) channel.readOutbound()).isNull();
+    }
+
+    /**
+     * 超过两个分包、含多字节字符的消息体，分包边界会落在字符中间
+     *
+     * @return 消息体的 UTF-8 字节
+     */
+    private static byte[] largeBody() {
+        StringBuilder text = new StringBuilder();
+        while (text.length() < 1700) {
+            text.append("通知内容").append(text.length()).append(',');
+        }
+        return ("{\"command\":\"notice\",\"request\":{\"Text\":\"" + text + "\"}}").getBytes(CharsetUtil.UTF_8);
+    }
+}